@@ -0,0 +1,290 @@
+package assignment.Analysis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * A memory-bounded cache of position analyses keyed by Zobrist hash.
+ * <p>
+ * Eviction is segmented LRU: a new entry starts in a small probation segment and is promoted to the protected
+ * segment when it is hit again. Entries are evicted from the cold end of probation, so a burst of positions seen
+ * only once (a long game replay, a batch job) cannot flush out the positions the front-end keeps coming back to.
+ * When the protected segment is full its coldest entry is demoted back to probation instead of being dropped.
+ * <p>
+ * The cache is split into independently locked stripes chosen by the hash, so threads working on different
+ * positions rarely wait for each other. Each stripe gets an equal share of the memory bound, which is enforced
+ * with the estimated size of every entry ({@link PositionAnalysis#weight()}).
+ */
+public final class AnalysisCache {
+    /** Share of each stripe's memory kept for entries that were hit at least twice */
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A snapshot of the cache counters.
+     *
+     * @param hits lookups that found an entry
+     * @param misses lookups that did not
+     * @param evictions entries dropped to stay within the memory bound
+     * @param size entries currently cached
+     * @param bytes estimated memory of the cached entries
+     */
+    public record Stats(long hits, long misses, long evictions, long size, long bytes) {
+        /**
+         * Returns the share of lookups that were hits.
+         *
+         * @return the hit rate between 0 and 1, or 0 before the first lookup
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries, %d KiB",
+                    hits, misses, hitRate() * 100, evictions, size, bytes / 1024);
+        }
+    }
+
+    /** A cache entry, linked into its segment's list */
+    private static final class Node {
+        final long key;
+        PositionAnalysis value;
+        boolean inProtected;
+        Node prev;
+        Node next;
+
+        Node(long key, PositionAnalysis value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** A circular doubly-linked list with a sentinel, most recently used at the head */
+    private static final class Segment {
+        final Node sentinel = new Node(0, null);
+        long bytes;
+
+        Segment() {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        void addFirst(Node node) {
+            node.next = sentinel.next;
+            node.prev = sentinel;
+            sentinel.next.prev = node;
+            sentinel.next = node;
+            bytes += node.value.weight();
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            bytes -= node.value.weight();
+        }
+
+        Node last() {
+            return sentinel.prev == sentinel ? null : sentinel.prev;
+        }
+    }
+
+    /** One independently locked part of the cache */
+    private final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<Long, Node> nodes = new HashMap<>();
+        final Segment probation = new Segment();
+        final Segment protectedSegment = new Segment();
+        final long maxBytes;
+        final long maxProtectedBytes;
+
+        Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+            this.maxProtectedBytes = (long) (maxBytes * PROTECTED_SHARE);
+        }
+
+        PositionAnalysis get(long key) {
+            lock.lock();
+            try {
+                Node node = nodes.get(key);
+                if (node == null) return null;
+                if (node.inProtected) {
+                    protectedSegment.remove(node);
+                } else {
+                    probation.remove(node);
+                    node.inProtected = true;
+                }
+                protectedSegment.addFirst(node);
+                while (protectedSegment.bytes > maxProtectedBytes) {
+                    Node coldest = protectedSegment.last();
+                    protectedSegment.remove(coldest);
+                    coldest.inProtected = false;
+                    probation.addFirst(coldest);
+                }
+                return node.value;
+            } finally {
+                lock.unlock();
+            }
+        } //a hit moves the entry to the head of the protected segment, demoting its coldest entries if it overflows
+
+        void put(long key, PositionAnalysis value) {
+            lock.lock();
+            try {
+                Node node = nodes.get(key);
+                if (node != null) {
+                    Segment segment = node.inProtected ? protectedSegment : probation;
+                    segment.remove(node);
+                    node.value = value;
+                    segment.addFirst(node);
+                } else {
+                    node = new Node(key, value);
+                    nodes.put(key, node);
+                    probation.addFirst(node);
+                }
+                while (probation.bytes + protectedSegment.bytes > maxBytes) {
+                    Node victim = probation.last();
+                    if (victim == null) victim = protectedSegment.last();
+                    (victim.inProtected ? protectedSegment : probation).remove(victim);
+                    nodes.remove(victim.key);
+                    evictions.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                nodes.clear();
+                probation.sentinel.next = probation.sentinel.prev = probation.sentinel;
+                protectedSegment.sentinel.next = protectedSegment.sentinel.prev = protectedSegment.sentinel;
+                probation.bytes = 0;
+                protectedSegment.bytes = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Creates a cache with one stripe per available processor (rounded up to a power of two, at least 4).
+     *
+     * @param maxBytes the memory bound in bytes
+     */
+    public AnalysisCache(long maxBytes) {
+        this(maxBytes, Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes the memory bound in bytes
+     * @param stripes the number of independently locked stripes (rounded up to a power of two)
+     * @throws IllegalArgumentException if the bound or the stripe count is not positive
+     */
+    public AnalysisCache(long maxBytes, int stripes) {
+        if (maxBytes <= 0 || stripes <= 0) throw new IllegalArgumentException("Cache size and stripes must be positive");
+        int count = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.maxBytes = maxBytes;
+        this.stripes = new Stripe[count];
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(maxBytes / count);
+        }
+    }
+
+    private Stripe stripe(long key) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) (key >>> stripeShift)];
+    } //the top bits pick the stripe, the hash map inside uses the rest
+
+    /**
+     * Looks up the analysis of a position.
+     *
+     * @param hash the Zobrist hash of the position
+     * @return the cached analysis, or null if it is not cached
+     */
+    public PositionAnalysis get(long hash) {
+        PositionAnalysis value = stripe(hash).get(hash);
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    /**
+     * Looks up the analysis of a position, computing and caching it on a miss.
+     * The computation runs outside the stripe lock, so two threads missing the same position at the same time
+     * may both compute it; the results are identical and the second one simply replaces the first.
+     *
+     * @param hash the Zobrist hash of the position
+     * @param loader computes the analysis of the position with this hash
+     * @return the cached or computed analysis
+     */
+    public PositionAnalysis get(long hash, LongFunction<PositionAnalysis> loader) {
+        PositionAnalysis value = get(hash);
+        if (value == null) {
+            value = loader.apply(hash);
+            put(value);
+        }
+        return value;
+    }
+
+    /**
+     * Caches an analysis, evicting older entries if the memory bound is exceeded.
+     *
+     * @param analysis the analysis to cache, keyed by its hash
+     */
+    public void put(PositionAnalysis analysis) {
+        stripe(analysis.hash()).put(analysis.hash(), analysis);
+    }
+
+    /**
+     * Removes every entry. The counters are kept.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Returns the memory bound.
+     *
+     * @return the bound in bytes
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns a snapshot of the counters. Stripes are read one after another, so under concurrent use
+     * the size and bytes are approximate.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        long size = 0;
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.nodes.size();
+                bytes += stripe.probation.bytes + stripe.protectedSegment.bytes;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, bytes);
+    }
+}
@@ -0,0 +1,170 @@
+package assignment.Analysis;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Evaluator;
+import assignment.Engine.Notation;
+import assignment.Engine.PieceSquareEvaluator;
+import assignment.Engine.Search;
+import assignment.Engine.TranspositionTable;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+
+/**
+ * Continuous engine analysis of the position in front of the user, as an analysis board shows it: the best few
+ * moves (multi-PV), deepened until the position changes, with every completed iteration streamed to a listener.
+ * <p>
+ * One worker thread lives as long as the session and keeps its search and transposition table, so a new position
+ * neither starts a thread nor loses what the table learned about related positions. {@link #analyze} only hands
+ * the position over: the running search notices the newer request within a few thousand nodes and returns, and
+ * the worker starts on the newest position. Requests that are overtaken before they start are never searched.
+ * <p>
+ * The session is thread-safe. Listeners are called on the worker thread, and only for the position that is
+ * currently requested, so a slow listener never shows lines of a position the user has already left.
+ */
+public final class AnalysisSession implements AutoCloseable {
+    /** Number of lines shown when none is asked for */
+    public static final int DEFAULT_LINES = 3;
+
+    private static final LatencyHistogram SWITCH_TIME = Metrics.histogram("analysis.session.switch");
+
+    private record Request(EngineBoard board, Search.Limits limits, int lines, Search.Listener listener, long requested) {
+    }
+
+    private final Search search;
+    private final Thread worker;
+    private Request pending; //guarded by this
+    private volatile Request latest; //the newest request, searched or not; null after stop()
+    private volatile boolean closed;
+
+    /**
+     * Creates a session with the default evaluation and transposition table size, and starts its worker thread.
+     */
+    public AnalysisSession() {
+        this(new PieceSquareEvaluator(), Search.DEFAULT_HASH_BYTES);
+    }
+
+    /**
+     * Creates a session and starts its worker thread.
+     *
+     * @param evaluator the static evaluation
+     * @param hashBytes the size of the transposition table in bytes
+     */
+    public AnalysisSession(Evaluator evaluator, long hashBytes) {
+        search = new Search(evaluator, new TranspositionTable(hashBytes));
+        worker = new Thread(this::work, "analysis-session");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Starts analyzing a position, stopping the analysis of the previous one.
+     *
+     * @param board the position, owned by the session from now on (pass a copy to keep using it)
+     * @param limits when to stop; {@link Search.Limits#infinite()} analyzes until the next request
+     * @param lines the number of best moves to show
+     * @param listener receives every completed iteration of this position
+     */
+    public void analyze(EngineBoard board, Search.Limits limits, int lines, Search.Listener listener) {
+        if (lines < 1) throw new IllegalArgumentException("At least one line must be analyzed");
+        Request request = new Request(board, limits, lines, listener, Metrics.start());
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("The analysis session is closed");
+            pending = request;
+            latest = request; //from here on the running search sees it is outdated
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stops the current analysis without starting a new one.
+     */
+    public void stop() {
+        synchronized (this) {
+            pending = null;
+            latest = null;
+        }
+    }
+
+    /**
+     * Stops the analysis and ends the worker thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            pending = null;
+            latest = null;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Checks if a search is running or waiting to run.
+     *
+     * @return true until the current request is finished or stopped
+     */
+    public boolean isAnalyzing() {
+        return latest != null;
+    }
+
+    /**
+     * Formats an iteration for display, one line per move, e.g. {@code depth 8  1. +0.35  e4 e5 Nf3 Nc6}.
+     *
+     * @param board the analyzed position (left unchanged)
+     * @param iteration the completed iteration
+     * @return the formatted lines, separated by newlines
+     */
+    public static String format(EngineBoard board, Search.Iteration iteration) {
+        StringBuilder sb = new StringBuilder();
+        int rank = 1;
+        for (Search.Line line : iteration.lines()) {
+            if (!sb.isEmpty()) sb.append('\n');
+            sb.append(String.format("depth %d  %d. %6s  %s", iteration.depth(), rank++, formatScore(line.score()),
+                    Notation.toSan(board, line.pv())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a search score in pawns, or as a mate distance.
+     *
+     * @param score the score from the side to move's point of view
+     * @return e.g. "+0.35", "-1.20", "#3" or "#-2"
+     */
+    public static String formatScore(int score) {
+        return Search.isMate(score) ? "#" + Search.mateIn(score) : String.format("%+.2f", score / 100.0);
+    }
+
+    private void work() {
+        while (true) {
+            Request request;
+            synchronized (this) {
+                while (pending == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                request = pending;
+                pending = null;
+            }
+            SWITCH_TIME.stop(request.requested());
+            search.search(request.board(), request.limits(), request.lines(), new Search.Listener() {
+                @Override
+                public void iterationCompleted(Search.Iteration iteration) {
+                    if (latest == request) request.listener().iterationCompleted(iteration);
+                }
+
+                @Override
+                public boolean shouldStop() {
+                    return latest != request;
+                }
+            });
+            synchronized (this) {
+                if (latest == request) latest = null; //finished on its own, e.g. at MAX_PLY or its limits
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package assignment.Analysis;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Evaluator;
+import assignment.Engine.MoveGenerator;
+import assignment.Engine.PieceSquareEvaluator;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Model.Board;
+import assignment.Model.Color;
+import assignment.Model.PieceCode;
+
+import java.util.Arrays;
+
+/**
+ * Answers the questions the front-end asks about a position (legal moves, evaluation, status)
+ * through an {@link AnalysisCache}, so a position is only analyzed the first time it is seen.
+ * Analyzers are thread-safe as long as each thread passes its own board.
+ */
+public final class Analyzer {
+    /** Default memory bound of the cache, 64 MiB */
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    private static final LatencyHistogram COMPUTE_TIME = Metrics.histogram("analysis.compute");
+    private static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+
+    private final AnalysisCache cache;
+    private final Evaluator evaluator;
+
+    /**
+     * Creates an analyzer with the default cache size and evaluation.
+     */
+    public Analyzer() {
+        this(new AnalysisCache(DEFAULT_CACHE_BYTES), new PieceSquareEvaluator());
+    }
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param cache the cache to go through (may be shared by several analyzers with the same evaluator)
+     * @param evaluator the static evaluation
+     */
+    public Analyzer(AnalysisCache cache, Evaluator evaluator) {
+        this.cache = cache;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Analyzes a position, using the cached analysis if there is one.
+     *
+     * @param board the position (left unchanged)
+     * @return the analysis
+     */
+    public PositionAnalysis analyze(EngineBoard board) {
+        return cache.get(board.hash(), hash -> compute(board));
+    }
+
+    /**
+     * Analyzes a position of the game board.
+     * Castling rights and en passant are taken from the board; the fifty-move counter starts at zero.
+     *
+     * @param board the game board
+     * @param sideToMove the player whose turn it is
+     * @return the analysis
+     */
+    public PositionAnalysis analyze(Board board, Color sideToMove) {
+        return analyze(EngineBoard.of(board, sideToMove));
+    }
+
+    /**
+     * Returns the status of a position, including the fifty-move rule, which depends on the game rather
+     * than on the position and is therefore not part of the cached analysis.
+     *
+     * @param board the position
+     * @return the status
+     */
+    public GameStatus status(EngineBoard board) {
+        GameStatus status = analyze(board).status();
+        if (board.halfmoveClock() >= 100 && status != GameStatus.CHECKMATE) return GameStatus.FIFTY_MOVE_RULE;
+        return status;
+    }
+
+    /**
+     * Returns the cache this analyzer goes through.
+     *
+     * @return the cache
+     */
+    public AnalysisCache cache() {
+        return cache;
+    }
+
+    private PositionAnalysis compute(EngineBoard board) {
+        long start = Metrics.start();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        GameStatus status;
+        if (count == 0) {
+            status = board.inCheck() ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        } else if (isInsufficientMaterial(board)) {
+            status = GameStatus.INSUFFICIENT_MATERIAL;
+        } else {
+            status = board.inCheck() ? GameStatus.CHECK : GameStatus.ONGOING;
+        }
+        PositionAnalysis analysis = new PositionAnalysis(board.hash(), Arrays.copyOf(moves, count), evaluator.evaluate(board), status);
+        COMPUTE_TIME.stop(start);
+        return analysis;
+    }
+
+    /**
+     * Checks if neither side can possibly mate: bare kings, a single minor piece, or only bishops all on one square color.
+     *
+     * @param board the position
+     * @return true if the position is a dead draw by material
+     */
+    public static boolean isInsufficientMaterial(EngineBoard board) {
+        long heavy = 0;
+        for (int side = 0; side < 2; side++) {
+            int offset = side == EngineBoard.WHITE ? 0 : PieceCode.BLACK;
+            heavy |= board.pieces(PieceCode.PAWN | offset) | board.pieces(PieceCode.ROOK | offset) | board.pieces(PieceCode.QUEEN | offset);
+        }
+        if (heavy != 0) return false;
+        long knights = board.pieces(PieceCode.KNIGHT) | board.pieces(PieceCode.KNIGHT | PieceCode.BLACK);
+        long bishops = board.pieces(PieceCode.BISHOP) | board.pieces(PieceCode.BISHOP | PieceCode.BLACK);
+        int minors = Long.bitCount(knights | bishops);
+        if (minors <= 1) return true;
+        return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+    }
+}
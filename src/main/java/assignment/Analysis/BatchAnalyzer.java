@@ -0,0 +1,420 @@
+package assignment.Analysis;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Engine.Notation;
+import assignment.Engine.PieceSquareEvaluator;
+import assignment.Engine.Pgn;
+import assignment.Engine.Search;
+import assignment.Engine.TranspositionTable;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Storage.SaveValidator;
+import assignment.Storage.SavedGame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs a search on every position of an input (a file with one FEN per line, a PGN collection, or a directory of
+ * saved games such as {@code Saved Games/}) with a pool of worker threads, and streams the results out in input order.
+ * <p>
+ * A reader thread turns the input into jobs and hands them to the workers; the caller's thread takes the results in
+ * the order the jobs were read and passes them on. Between the two sits a bounded queue of pending results: once it
+ * is full the reader waits for the oldest result to be written, so a huge input or a slow output never piles up
+ * in memory. Setting up a position (parsing a FEN, replaying a PGN game, reading a save) happens on the workers too.
+ * <p>
+ * Each worker keeps its own {@link Search} with its own transposition table, so workers never share mutable state.
+ * <p>
+ * Usage: {@code java assignment.Analysis.BatchAnalyzer input [-depth D | -time MS] [-workers N] [-queue N]
+ * [-hash MB] [-format csv|json] [-output file]}
+ */
+public final class BatchAnalyzer {
+    /** Depth searched when neither a depth nor a time is given */
+    public static final int DEFAULT_DEPTH = 6;
+
+    private static final LatencyHistogram JOB_TIME = Metrics.histogram("batch.job");
+    private static final Counter JOBS = Metrics.counter("batch.jobs");
+    private static final Counter ERRORS = Metrics.counter("batch.errors");
+    private static final List<String> CSV_COLUMNS = List.of("index", "source", "fen", "best", "san", "score", "mate", "depth", "nodes", "millis", "pv", "error");
+
+    /** Output formats of the command-line tool */
+    public enum Format {
+        /** A header line, then one comma-separated line per position */
+        CSV,
+        /** A JSON array with one object per position, one per line */
+        JSON
+    }
+
+    /**
+     * One position to analyze.
+     *
+     * @param index the position's number in the input, starting at 0
+     * @param source where the position comes from, e.g. {@code line 12} or {@code game1.txt}
+     * @param position sets the position up; called on a worker thread
+     */
+    public record Job(int index, String source, Callable<EngineBoard> position) {
+
+        /**
+         * Sets the position up and checks that it can be searched: one king per side, no pawns on the first or last
+         * rank, and the other rules of {@link SaveValidator#problems}.
+         *
+         * @return the position
+         * @throws Exception if the position cannot be read or breaks one of the rules
+         */
+        public EngineBoard load() throws Exception {
+            EngineBoard board = position.call();
+            List<String> problems = SaveValidator.problems(board.toBoard(), board.sideToMoveColor());
+            if (!problems.isEmpty()) throw new IllegalArgumentException(String.join("; ", problems));
+            return board;
+        } //the search assumes a legal position, a missing king makes it fail deep inside the move generator
+    }
+
+    /**
+     * The analysis of one position. If the position could not be set up or searched, the search fields are empty and
+     * the error is filled.
+     *
+     * @param index the position's number in the input
+     * @param source where the position comes from
+     * @param fen the position analyzed, or null
+     * @param search the search result, or null
+     * @param san the best move in standard algebraic notation, or null
+     * @param error why the position could not be analyzed, or null
+     */
+    public record Result(int index, String source, String fen, Search.Result search, String san, String error) {
+    }
+
+    private final int workers;
+    private final int queueSize;
+    private final Search.Limits limits;
+    private final long hashBytes;
+
+    /**
+     * Creates a batch analyzer.
+     *
+     * @param workers the number of worker threads
+     * @param queueSize the number of results that may be pending (being searched or waiting to be written) at once
+     * @param limits the search limits for every position
+     * @param hashBytes the transposition table size of each worker
+     */
+    public BatchAnalyzer(int workers, int queueSize, Search.Limits limits, long hashBytes) {
+        if (workers < 1 || queueSize < 1) throw new IllegalArgumentException("Workers and queue size must be at least 1");
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.limits = limits;
+        this.hashBytes = hashBytes;
+    }
+
+    /**
+     * Analyzes every job and passes the results to a sink in job order, as soon as each one and all before it are done.
+     * The jobs stream is consumed on a separate thread, never faster than the sink accepts results.
+     *
+     * @param jobs the positions to analyze, in order
+     * @param sink receives the results, on the calling thread
+     * @return the number of results passed to the sink
+     * @throws IOException if reading the input fails
+     * @throws InterruptedException if the calling thread is interrupted; the workers are stopped
+     */
+    public long run(Stream<Job> jobs, Consumer<Result> sink) throws IOException, InterruptedException {
+        BlockingQueue<Future<Result>> pending = new ArrayBlockingQueue<>(queueSize);
+        CompletableFuture<Result> end = new CompletableFuture<>();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "batch-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(new PieceSquareEvaluator(), new TranspositionTable(hashBytes)));
+        Thread reader = new Thread(() -> {
+            try (jobs) {
+                Iterator<Job> iterator = jobs.iterator();
+                while (iterator.hasNext()) {
+                    Job job = iterator.next();
+                    pending.put(pool.submit(() -> analyze(job, searches.get())));
+                }
+                end.complete(null);
+            } catch (InterruptedException e) {
+                end.cancel(false);
+            } catch (RuntimeException e) {
+                end.completeExceptionally(e);
+            } finally {
+                putEnd(pending, end);
+            }
+        }, "batch-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long written = 0;
+        try {
+            while (true) {
+                Future<Result> next = pending.take();
+                if (next == end) {
+                    end.get(); //rethrows a failure of the reader
+                    return written;
+                }
+                sink.accept(next.get());
+                written++;
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new IllegalStateException("Batch analysis failed", e.getCause());
+        } finally {
+            reader.interrupt();
+            pool.shutdownNow();
+        }
+    } //the pending queue holds futures in submission order, so taking from it yields the results in input order
+
+    private static void putEnd(BlockingQueue<Future<Result>> pending, Future<Result> end) {
+        while (true) {
+            try {
+                pending.put(end);
+                return;
+            } catch (InterruptedException e) {
+                if (pending.remainingCapacity() == 0) pending.poll(); //the caller gave up, make room for the marker
+            }
+        }
+    }
+
+    private Result analyze(Job job, Search search) {
+        long start = Metrics.start();
+        JOBS.increment();
+        String fen = null;
+        try {
+            EngineBoard board = job.load();
+            fen = board.toFen();
+            search.clear(); //results must not depend on which worker searched what before
+            Search.Result result = search.search(board, limits);
+            String san = result.bestMove() == Move.NONE ? null : Notation.toSan(board, result.bestMove());
+            JOB_TIME.stop(start);
+            return new Result(job.index(), job.source(), fen, result, san, null);
+        } catch (Exception e) {
+            ERRORS.increment();
+            return new Result(job.index(), job.source(), fen, null, null, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    } //a failure is reported for its own position only, the others are still analyzed
+
+    /**
+     * Reads the jobs of an input. The input is read lazily as the stream is consumed; close the stream when done.
+     * <ul>
+     *     <li>A directory: every {@code .txt} saved game in it, by file name</li>
+     *     <li>A {@code .pgn} file: the final position of every game</li>
+     *     <li>Any other file: one FEN per line; empty lines and lines starting with {@code #} are skipped</li>
+     * </ul>
+     *
+     * @param input the file or directory
+     * @return the jobs, in input order
+     * @throws IOException if the input cannot be opened
+     */
+    public static Stream<Job> jobs(Path input) throws IOException {
+        AtomicInteger index = new AtomicInteger();
+        if (Files.isDirectory(input)) {
+            List<Path> saves;
+            try (Stream<Path> files = Files.list(input)) {
+                saves = files.filter(file -> file.getFileName().toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+            }
+            return saves.stream().map(file -> new Job(index.getAndIncrement(), file.getFileName().toString(), () -> {
+                SavedGame saved = SavedGame.read(file);
+                return EngineBoard.of(saved.board(), saved.sideToMove());
+            }));
+        }
+        BufferedReader reader = Files.newBufferedReader(input);
+        if (input.getFileName().toString().toLowerCase().endsWith(".pgn")) {
+            return Pgn.games(reader).onClose(() -> close(reader)).map(game -> {
+                int number = index.getAndIncrement();
+                String players = game.tags().getOrDefault("White", "?") + " - " + game.tags().getOrDefault("Black", "?");
+                return new Job(number, "game " + (number + 1) + " (" + players + ")", () -> {
+                    EngineBoard board = EngineBoard.fromFen(game.startFen());
+                    for (int move : Pgn.replay(game)) {
+                        board.make(move);
+                    }
+                    return board;
+                });
+            });
+        }
+        AtomicInteger line = new AtomicInteger();
+        return reader.lines().onClose(() -> close(reader))
+                .peek(text -> line.incrementAndGet())
+                .filter(text -> !text.isBlank() && !text.startsWith("#"))
+                .map(text -> new Job(index.getAndIncrement(), "line " + line.get(), () -> EngineBoard.fromFen(text)));
+    }
+
+    private static void close(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the line that starts an output: the CSV header or the opening bracket of the JSON array.
+     *
+     * @param out the output
+     * @param format the format
+     */
+    public static void writeHeader(PrintWriter out, Format format) {
+        out.println(format == Format.CSV ? String.join(",", CSV_COLUMNS) : "[");
+    }
+
+    /**
+     * Writes one result.
+     *
+     * @param out the output
+     * @param format the format
+     * @param result the result
+     * @param first true for the first result of the output (JSON separates the objects with commas)
+     */
+    public static void write(PrintWriter out, Format format, Result result, boolean first) {
+        Search.Result search = result.search();
+        boolean found = search != null && search.bestMove() != Move.NONE;
+        boolean mate = search != null && Search.isMate(search.score());
+        String pv = search == null ? null : pvText(search.pv());
+        if (format == Format.CSV) {
+            out.println(String.join(",",
+                    String.valueOf(result.index()), csv(result.source()), csv(result.fen()),
+                    found ? Move.toUci(search.bestMove()) : "", csv(result.san()),
+                    search == null || mate ? "" : String.valueOf(search.score()),
+                    mate ? String.valueOf(Search.mateIn(search.score())) : "",
+                    search == null ? "" : String.valueOf(search.depth()),
+                    search == null ? "" : String.valueOf(search.nodes()),
+                    search == null ? "" : String.valueOf(search.nanos() / 1_000_000),
+                    csv(pv), csv(result.error())));
+        } else {
+            StringBuilder sb = new StringBuilder(first ? "  {" : ", {");
+            sb.append("\"index\": ").append(result.index());
+            sb.append(", \"source\": ").append(json(result.source()));
+            sb.append(", \"fen\": ").append(json(result.fen()));
+            if (search != null) {
+                sb.append(", \"best\": ").append(json(found ? Move.toUci(search.bestMove()) : null));
+                sb.append(", \"san\": ").append(json(result.san()));
+                sb.append(mate ? ", \"mate\": " + Search.mateIn(search.score()) : ", \"score\": " + search.score());
+                sb.append(", \"depth\": ").append(search.depth());
+                sb.append(", \"nodes\": ").append(search.nodes());
+                sb.append(", \"millis\": ").append(search.nanos() / 1_000_000);
+                sb.append(", \"pv\": ").append(json(pv));
+            }
+            if (result.error() != null) sb.append(", \"error\": ").append(json(result.error()));
+            out.println(sb.append('}'));
+        }
+    }
+
+    /**
+     * Writes the line that ends an output: nothing for CSV, the closing bracket of the JSON array.
+     *
+     * @param out the output
+     * @param format the format
+     */
+    public static void writeFooter(PrintWriter out, Format format) {
+        if (format == Format.JSON) out.println("]");
+    }
+
+    private static String pvText(int[] pv) {
+        StringBuilder sb = new StringBuilder();
+        for (int move : pv) {
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(Move.toUci(move));
+        }
+        return sb.toString();
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(String value) {
+        if (value == null) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     * Results go to the output file or standard output, the summary to standard error.
+     *
+     * @param args the input and the options
+     * @throws IOException if reading the input or writing the output fails
+     * @throws InterruptedException if interrupted while waiting for results
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path input = null;
+        Path output = null;
+        int depth = 0;
+        long time = 0;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = 0;
+        long hashMegabytes = Search.DEFAULT_HASH_BYTES >> 20;
+        Format format = Format.CSV;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-depth" -> depth = Integer.parseInt(args[++i]);
+                case "-time" -> time = Long.parseLong(args[++i]);
+                case "-workers" -> workers = Integer.parseInt(args[++i]);
+                case "-queue" -> queue = Integer.parseInt(args[++i]);
+                case "-hash" -> hashMegabytes = Long.parseLong(args[++i]);
+                case "-format" -> format = Format.valueOf(args[++i].toUpperCase());
+                case "-output" -> output = Path.of(args[++i]);
+                default -> input = Path.of(args[i]);
+            }
+        }
+        if (input == null) {
+            System.out.println("Usage: BatchAnalyzer input [-depth D | -time MS] [-workers N] [-queue N] [-hash MB] [-format csv|json] [-output file]");
+            return;
+        }
+        Search.Limits limits = new Search.Limits(depth == 0 && time == 0 ? DEFAULT_DEPTH : depth, time, 0);
+        BatchAnalyzer analyzer = new BatchAnalyzer(workers, queue > 0 ? queue : 4 * workers, limits, hashMegabytes << 20);
+
+        long start = System.nanoTime();
+        PrintWriter out = output == null ? new PrintWriter(System.out) : new PrintWriter(Files.newBufferedWriter(output));
+        Format chosen = format;
+        long[] errors = new long[1];
+        long count;
+        try (out; Stream<Job> jobs = jobs(input)) {
+            writeHeader(out, chosen);
+            boolean[] first = {true};
+            count = analyzer.run(jobs, result -> {
+                if (result.error() != null) errors[0]++;
+                write(out, chosen, result, first[0]);
+                first[0] = false;
+                out.flush(); //a nightly run can be followed as it goes
+            });
+            writeFooter(out, chosen);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Analyzed %d positions in %.1f s with %d workers (%.1f positions/s, %d errors)%n",
+                count, seconds, workers, count / seconds, errors[0]);
+    }
+}
@@ -0,0 +1,30 @@
+package assignment.Analysis;
+
+/**
+ * The state of a game in a given position, as seen by the side to move.
+ */
+public enum GameStatus {
+    /** The game goes on and the side to move is not in check */
+    ONGOING,
+    /** The side to move is in check but has a legal move */
+    CHECK,
+    /** The side to move is in check and has no legal move, the game is lost */
+    CHECKMATE,
+    /** The side to move is not in check and has no legal move, the game is drawn */
+    STALEMATE,
+    /** Neither side has enough material to mate, the game is drawn */
+    INSUFFICIENT_MATERIAL,
+    /** Fifty moves were made by each side without a capture or a pawn move, the game is drawn */
+    FIFTY_MOVE_RULE,
+    /** The position appeared for the third time in the game, the game is drawn; only the game's history can tell */
+    THREEFOLD_REPETITION;
+
+    /**
+     * Checks if the game ends in this status.
+     *
+     * @return true for checkmate and every draw
+     */
+    public boolean isOver() {
+        return this != ONGOING && this != CHECK;
+    }
+}
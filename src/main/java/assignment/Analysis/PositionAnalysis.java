@@ -0,0 +1,120 @@
+package assignment.Analysis;
+
+import assignment.Engine.Move;
+
+import java.util.Arrays;
+
+/**
+ * The cached facts about one position: its legal moves, its static evaluation and its status.
+ * Everything here depends only on the position itself (pieces, side to move, castling and en passant rights),
+ * which is exactly what the Zobrist hash covers, so an analysis can be shared by every game that reaches the position.
+ * Instances are immutable.
+ */
+public final class PositionAnalysis {
+    /** Approximate heap bytes of an entry besides its move array, including the cache's bookkeeping */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final long hash;
+    private final int[] moves;
+    private final int evaluation;
+    private final GameStatus status;
+
+    /**
+     * Creates an analysis.
+     *
+     * @param hash the Zobrist hash of the position
+     * @param moves the legal moves (copied)
+     * @param evaluation the static evaluation in centipawns, from the side to move's point of view
+     * @param status the status of the position, never FIFTY_MOVE_RULE (that depends on the move clock, not the position)
+     */
+    public PositionAnalysis(long hash, int[] moves, int evaluation, GameStatus status) {
+        this.hash = hash;
+        this.moves = moves.clone();
+        this.evaluation = evaluation;
+        this.status = status;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position.
+     *
+     * @return the hash
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Returns the number of legal moves.
+     *
+     * @return the move count
+     */
+    public int moveCount() {
+        return moves.length;
+    }
+
+    /**
+     * Returns one legal move.
+     *
+     * @param index the move number, from 0 to moveCount() - 1
+     * @return the encoded move (see {@link Move})
+     */
+    public int move(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Returns a copy of the legal moves.
+     *
+     * @return the encoded moves
+     */
+    public int[] moves() {
+        return moves.clone();
+    }
+
+    /**
+     * Checks if a move is legal in this position.
+     *
+     * @param move the encoded move
+     * @return true if it is one of the legal moves
+     */
+    public boolean isLegal(int move) {
+        for (int legal : moves) {
+            if (legal == move) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the static evaluation.
+     *
+     * @return the score in centipawns, from the side to move's point of view
+     */
+    public int evaluation() {
+        return evaluation;
+    }
+
+    /**
+     * Returns the status of the position.
+     *
+     * @return the status
+     */
+    public GameStatus status() {
+        return status;
+    }
+
+    /**
+     * Estimates the heap size of this analysis while it is cached.
+     *
+     * @return the approximate size in bytes
+     */
+    public int weight() {
+        return ENTRY_OVERHEAD + 4 * moves.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(status + ", eval " + evaluation + ", moves");
+        Arrays.stream(moves).forEach(move -> sb.append(' ').append(Move.toUci(move)));
+        return sb.toString();
+    }
+}
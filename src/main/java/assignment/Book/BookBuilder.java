@@ -0,0 +1,145 @@
+package assignment.Book;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Pgn;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a Polyglot opening book from PGN game collections.
+ * Every game is replayed up to a maximum ply, and each (position, move) pair collects points for the side that
+ * played it: 2 for a win and 1 for a draw, as Polyglot does. Games are replayed in parallel and the counts are
+ * aggregated in a concurrent map, so building scales with the number of cores.
+ * <p>
+ * Usage: {@code java assignment.Book.BookBuilder output.bin input.pgn [more.pgn ...] [-maxply N] [-mingames N]}
+ */
+public final class BookBuilder {
+    private final int maxPly;
+    private final int minGames;
+
+    /** Points and number of games collected for one (position, move) pair */
+    private record Stats(long points, long games) {
+        Stats plus(Stats other) {
+            return new Stats(points + other.points, games + other.games);
+        }
+    }
+
+    /** A (position, move) pair, the aggregation key */
+    private record Key(long hash, int move) {
+    }
+
+    /**
+     * Creates a book builder.
+     *
+     * @param maxPly the number of halfmoves of each game that go into the book
+     * @param minGames the number of games a move must appear in to be kept
+     */
+    public BookBuilder(int maxPly, int minGames) {
+        this.maxPly = maxPly;
+        this.minGames = minGames;
+    }
+
+    /**
+     * Builds a book from PGN files and writes it in Polyglot format.
+     *
+     * @param pgnFiles the PGN collections to read
+     * @param output the .bin file to write
+     * @return the number of entries written
+     * @throws IOException if reading or writing fails
+     */
+    public long build(List<Path> pgnFiles, Path output) throws IOException {
+        Map<Key, Stats> counts = new ConcurrentHashMap<>();
+        for (Path file : pgnFiles) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+                Pgn.games(reader).parallel().forEach(game -> addGame(game, counts));
+            }
+        }
+
+        List<BookEntry> entries = new ArrayList<>();
+        Map<Long, Long> maxPoints = new HashMap<>();
+        counts.forEach((key, stats) -> maxPoints.merge(key.hash(), stats.points(), Math::max));
+        counts.forEach((key, stats) -> {
+            if (stats.games() < minGames || stats.points() == 0) return;
+            long max = maxPoints.get(key.hash());
+            long weight = max <= 0xFFFF ? stats.points() : Math.max(1, stats.points() * 0xFFFF / max); //keeps the ratios within 16 bits
+            entries.add(new BookEntry(key.hash(), key.move(), (int) weight, 0));
+        });
+        entries.sort(Comparator.comparing(BookEntry::key, Long::compareUnsigned)
+                .thenComparing(Comparator.comparingInt(BookEntry::weight).reversed()));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            for (BookEntry entry : entries) {
+                out.writeLong(entry.key());
+                out.writeShort(entry.move());
+                out.writeShort(entry.weight());
+                out.writeInt(entry.learn());
+            }
+        }
+        return entries.size();
+    }
+
+    private void addGame(Pgn.Game game, Map<Key, Stats> counts) {
+        int whitePoints = switch (game.result()) {
+            case "1-0" -> 2;
+            case "0-1" -> 0;
+            case "1/2-1/2" -> 1;
+            default -> -1;
+        };
+        if (whitePoints < 0) return; //unfinished games say nothing about the moves
+        int[] moves;
+        EngineBoard board;
+        try {
+            moves = Pgn.replay(game);
+            board = EngineBoard.fromFen(game.startFen());
+        } catch (IllegalArgumentException e) {
+            return; //a broken FEN tag only loses this game
+        }
+        for (int ply = 0; ply < moves.length && ply < maxPly; ply++) {
+            int points = board.sideToMove() == EngineBoard.WHITE ? whitePoints : 2 - whitePoints;
+            counts.merge(new Key(board.hash(), BookEntry.toPolyglot(moves[ply])), new Stats(points, 1), Stats::plus);
+            board.make(moves[ply]);
+        }
+    }
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     *
+     * @param args the output file, the input files and the options
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        int maxPly = 30;
+        int minGames = 1;
+        List<Path> inputs = new ArrayList<>();
+        Path output = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-maxply" -> maxPly = Integer.parseInt(args[++i]);
+                case "-mingames" -> minGames = Integer.parseInt(args[++i]);
+                default -> {
+                    if (output == null) output = Path.of(args[i]);
+                    else inputs.add(Path.of(args[i]));
+                }
+            }
+        }
+        if (output == null || inputs.isEmpty()) {
+            System.out.println("Usage: BookBuilder output.bin input.pgn [more.pgn ...] [-maxply N] [-mingames N]");
+            return;
+        }
+        long start = System.nanoTime();
+        long entries = new BookBuilder(maxPly, minGames).build(inputs, output);
+        System.out.println("Wrote " + entries + " entries to " + output + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,29 @@
+package assignment.Book;
+
+import assignment.Engine.Move;
+
+/**
+ * One entry of a Polyglot opening book: a move that was played in a position, with its weight.
+ *
+ * @param key the Polyglot Zobrist key of the position
+ * @param move the move in Polyglot's 16-bit encoding
+ * @param weight the relative weight of the move (higher is better)
+ * @param learn the learning data field, unused by this project and kept for compatibility
+ */
+public record BookEntry(long key, int move, int weight, int learn) {
+    /** Size of one entry in a Polyglot .bin file */
+    public static final int SIZE = 16;
+
+    /**
+     * Converts an engine move to Polyglot's 16-bit move encoding.
+     * Polyglot stores destination in the low bits, then source, then the promotion piece
+     * (1 = knight up to 4 = queen); castling is written as the king moving onto its rook, like {@link Move}.
+     *
+     * @param move the encoded engine move
+     * @return the Polyglot move
+     */
+    public static int toPolyglot(int move) {
+        int promotion = Move.kind(move) == Move.PROMOTION ? Move.promotion(move) - 1 : 0;
+        return Move.to(move) | (Move.from(move) << 6) | (promotion << 12);
+    }
+}
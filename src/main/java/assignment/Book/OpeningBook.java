@@ -0,0 +1,196 @@
+package assignment.Book;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Engine.MoveGenerator;
+import assignment.Model.Board;
+import assignment.Model.Color;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Reads an opening book in the Polyglot {@code .bin} format.
+ * The file is a sorted array of 16-byte big-endian entries (key, move, weight, learn).
+ * It is memory-mapped and searched with a binary search on the position key,
+ * so a lookup touches only a handful of pages and nothing is loaded up front.
+ * <p>
+ * Keys are the Zobrist hashes of {@link EngineBoard#hash()}, which are Polyglot keys (see
+ * {@link assignment.Model.Zobrist}), so third-party books work as well as those written by {@link BookBuilder}.
+ */
+public final class OpeningBook implements Closeable {
+    /** Entries per mapped segment, one segment covers 1 GiB of the file */
+    private static final int SEGMENT_ENTRIES = 1 << 26;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private OpeningBook(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size() / BookEntry.SIZE;
+        int count = (int) ((size + SEGMENT_ENTRIES - 1) / SEGMENT_ENTRIES);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i * SEGMENT_ENTRIES;
+            long entries = Math.min(SEGMENT_ENTRIES, size - start);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * BookEntry.SIZE, entries * BookEntry.SIZE);
+        }
+    } //books larger than 2 GiB are split over several mappings
+
+    /**
+     * Opens a Polyglot book file.
+     *
+     * @param file the .bin file
+     * @return the opened book
+     * @throws IOException if the file cannot be read or mapped
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new OpeningBook(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of entries in the book.
+     *
+     * @return the entry count
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads the entry at an index.
+     *
+     * @param index the entry index (0 to size - 1)
+     * @return the entry
+     */
+    public BookEntry entry(long index) {
+        MappedByteBuffer segment = segments[(int) (index / SEGMENT_ENTRIES)];
+        int offset = (int) (index % SEGMENT_ENTRIES) * BookEntry.SIZE;
+        return new BookEntry(segment.getLong(offset), segment.getShort(offset + 8) & 0xFFFF,
+                segment.getShort(offset + 10) & 0xFFFF, segment.getInt(offset + 12));
+    }
+
+    /**
+     * Returns all entries stored for a position key, in file order (normally highest weight first).
+     *
+     * @param key the Polyglot key of the position
+     * @return the entries, empty if the position is not in the book
+     */
+    public List<BookEntry> entries(long key) {
+        long low = 0;
+        long high = size;
+        while (low < high) { //finds the first entry whose key is not below the searched key
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        List<BookEntry> found = new ArrayList<>();
+        for (long i = low; i < size && keyAt(i) == key; i++) {
+            found.add(entry(i));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the book move with the highest weight.
+     *
+     * @param board the current position
+     * @return the encoded legal move, or Move.NONE if the position is not in the book
+     */
+    public int bestMove(EngineBoard board) {
+        int best = Move.NONE;
+        int bestWeight = -1;
+        for (BookEntry entry : entries(board.hash())) {
+            int move = toEngineMove(board, entry.move());
+            if (move != Move.NONE && entry.weight() > bestWeight) {
+                best = move;
+                bestWeight = entry.weight();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Picks a book move at random, with probability proportional to its weight.
+     *
+     * @param board the current position
+     * @param random the random source
+     * @return the encoded legal move, or Move.NONE if the position is not in the book
+     */
+    public int weightedMove(EngineBoard board, RandomGenerator random) {
+        List<BookEntry> entries = entries(board.hash());
+        int[] moves = new int[entries.size()];
+        long[] cumulative = new long[entries.size()];
+        long total = 0;
+        int count = 0;
+        for (BookEntry entry : entries) {
+            int move = toEngineMove(board, entry.move());
+            if (move == Move.NONE || entry.weight() == 0) continue;
+            total += entry.weight();
+            moves[count] = move;
+            cumulative[count++] = total;
+        }
+        if (count == 0) return Move.NONE;
+        long pick = random.nextLong(total);
+        for (int i = 0; i < count; i++) {
+            if (pick < cumulative[i]) return moves[i];
+        }
+        return moves[count - 1];
+    }
+
+    /**
+     * Returns the best book move for a position of the interactive game.
+     *
+     * @param board the game board
+     * @param sideToMove the player whose turn it is
+     * @return the move in coordinate notation (e.g. "e2e4"), or null if the position is not in the book
+     */
+    public String bestMove(Board board, Color sideToMove) {
+        int move = bestMove(EngineBoard.of(board, sideToMove));
+        return move == Move.NONE ? null : Move.toUci(move);
+    }
+
+    /**
+     * Converts a Polyglot move into the matching legal move of a position.
+     *
+     * @param board the position
+     * @param polyglotMove the move in Polyglot's 16-bit encoding
+     * @return the encoded legal move, or Move.NONE if no legal move matches (e.g. after a key collision)
+     */
+    public static int toEngineMove(EngineBoard board, int polyglotMove) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        for (int i = 0; i < count; i++) {
+            if (BookEntry.toPolyglot(moves[i]) == polyglotMove) return moves[i];
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Closes the book file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long keyAt(long index) {
+        return segments[(int) (index / SEGMENT_ENTRIES)].getLong((int) (index % SEGMENT_ENTRIES) * BookEntry.SIZE);
+    }
+}
@@ -0,0 +1,381 @@
+package assignment.Engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Attack sets of all piece types, as 64-bit bitboards (bit n set means square n is attacked).
+ * Knight, king and pawn attacks are looked up in precomputed tables.
+ * <p>
+ * Sliding attacks (rook, bishop, queen) use magic bitboards: the pieces on a square's relevant rays (its mask)
+ * are multiplied by a magic number, and the top bits of the product index a table holding the attack set for that
+ * blocker configuration. A lookup is an AND, a multiply, a shift and a load, instead of a walk along every ray.
+ * The magics were found ahead of time by {@link MagicFinder} and are compiled in. The tables (about 840 KB) are
+ * loaded from the bundled resource {@value #TABLE_RESOURCE}, which {@link MagicFinder} writes; filling them from
+ * scratch runs interpreted during class initialization and costs several times as long. If the resource is missing
+ * or was made for other magics, the tables are filled anyway, so the resource only ever saves time.
+ * Starting with {@code -Dchess.attacks.compute=true} ignores the resource, to compare the two.
+ * <p>
+ * The slider tables are loaded the first time a rook, bishop or queen is asked about, not with the class, so a
+ * program that only needs the small knight, king, pawn and between tables never reads them.
+ */
+public final class Attacks {
+    /** The precomputed slider table, gzip-compressed, next to this class on the class path */
+    public static final String TABLE_RESOURCE = "slider-attacks.bin.gz";
+    private static final long TABLE_FORMAT = 0x4348_5353_4C49_4431L; //"CHSSLID1"
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    /** Pawn capture targets, indexed by color (0 = white, 1 = black) and square */
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    /** Generated by {@link MagicFinder}, do not edit by hand */
+    private static final long[] ROOK_MAGICS = {
+            0x0880004000801022L, 0x4440200440021000L, 0x088008D002200080L, 0x8480041000480080L,
+            0x1080040068008022L, 0x2200010842004410L, 0x1500008409000200L, 0x020000804029040AL,
+            0x4800800040008020L, 0x2082002200410082L, 0x0301001041082000L, 0xC041808008003000L,
+            0x00A4800400800800L, 0x0010800200800400L, 0x0184800100020080L, 0x0040800040802100L,
+            0x4000848004400060L, 0x8684444010002000L, 0x2006820010204200L, 0x0000090021001000L,
+            0x2009010008001004L, 0x900C008004020080L, 0x4108040001100288L, 0x5020220000804114L,
+            0x0080034240002000L, 0x03D0104040002000L, 0x4000100480200480L, 0x0040401200200A00L,
+            0x0008008080040008L, 0x0001000300080400L, 0x4CE1080400421001L, 0x0860804200108124L,
+            0x1000804000800020L, 0x2020100020400040L, 0x4030104202002080L, 0x8048048008801000L,
+            0x40A0040080800802L, 0x0204020080800400L, 0x0500080104000290L, 0xA004012092000044L,
+            0x0002008100420020L, 0x000150002008C000L, 0x090C410020090010L, 0x88422200400A0011L,
+            0x0008002040040400L, 0x0002001004020008L, 0x021600C108020004L, 0x4204410080420004L,
+            0x0040800821004100L, 0x0200842000400480L, 0x0020620140B68200L, 0x80100008E1510100L,
+            0x0080800801040180L, 0x0803000804000300L, 0x0000080162300400L, 0x4002108041040200L,
+            0x8200102040800101L, 0x4602400016210481L, 0x08000A0040102082L, 0x0410210108100005L,
+            0x1011001008000423L, 0x11B1000400020801L, 0x0000012200881004L, 0x000008204401008AL,
+    };
+    /** Generated by {@link MagicFinder}, do not edit by hand */
+    private static final long[] BISHOP_MAGICS = {
+            0x0A4C907009012380L, 0x8020040140410008L, 0x4008160416A03010L, 0x08482140C8000008L,
+            0x1001104080060014L, 0x4001040240080400L, 0x8010880411040000L, 0x0001908228200400L,
+            0x0004600504080C40L, 0x20400208010C1280L, 0x40A0100102202814L, 0x4900044040800003L,
+            0x0143211040010002L, 0x4080008210408180L, 0x00031C2401041002L, 0x2040408410821000L,
+            0x4209481020482082L, 0x1085002004040042L, 0x1029010806440080L, 0x2002021420220000L,
+            0x0041000490400008L, 0x1040210A02100208L, 0x1848430488081840L, 0x20411000618A1020L,
+            0x0444200840C80108L, 0x2010552010010200L, 0x34009000080A4090L, 0x00140800240A0008L,
+            0x5181020004008400L, 0x2480408044100408L, 0x0082021000880100L, 0x0021042001040120L,
+            0x8085442210502000L, 0x11D2482000041900L, 0x4000805000890400L, 0x0200202020080080L,
+            0x000801240108C100L, 0x0C00880081211004L, 0x2A01010A00240211L, 0x262C090200405050L,
+            0x0002092160300809L, 0x0132080404004200L, 0x11000C0044080800L, 0x0410004200840800L,
+            0x0081082104020040L, 0x2002040806000420L, 0x042028050120044CL, 0x0041010222010084L,
+            0x0108412828411400L, 0x0002010401044029L, 0x0009008848084D44L, 0x0000808104091200L,
+            0x1A0100111E120000L, 0x8004900210410003L, 0xA007500401040800L, 0xD030500080809004L,
+            0x000014008210100AL, 0x0000408400880501L, 0x0010001044044400L, 0x00080029A0208800L,
+            0x008C1000C0050102L, 0x0800040604080A04L, 0x0200109001080880L, 0x1808100122082200L,
+    };
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    /** Where each square's entries start in the attack table */
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    /** The number of entries of the slider table */
+    private static final int TABLE_SIZE;
+    /** The squares strictly between two squares on a common line, indexed by from * 64 + to */
+    private static final long[] BETWEEN = new long[64 * 64];
+
+    static {
+        int[][] knightSteps = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            int col = square & 7;
+            for (int[] step : knightSteps) {
+                KNIGHT[square] |= bit(row + step[0], col + step[1]);
+            }
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dr != 0 || dc != 0) KING[square] |= bit(row + dr, col + dc);
+                }
+            }
+            PAWN[0][square] = bit(row + 1, col - 1) | bit(row + 1, col + 1);
+            PAWN[1][square] = bit(row - 1, col - 1) | bit(row - 1, col + 1);
+        }
+
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = mask(square, ROOK_DIRECTIONS);
+            ROOK_SHIFTS[square] = 64 - Long.bitCount(ROOK_MASKS[square]);
+            ROOK_OFFSETS[square] = size;
+            size += 1 << Long.bitCount(ROOK_MASKS[square]);
+        }
+        for (int square = 0; square < 64; square++) {
+            BISHOP_MASKS[square] = mask(square, BISHOP_DIRECTIONS);
+            BISHOP_SHIFTS[square] = 64 - Long.bitCount(BISHOP_MASKS[square]);
+            BISHOP_OFFSETS[square] = size;
+            size += 1 << Long.bitCount(BISHOP_MASKS[square]);
+        }
+        TABLE_SIZE = size;
+
+        for (int from = 0; from < 64; from++) {
+            for (int[][] directions : new int[][][]{ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+                for (int[] direction : directions) {
+                    long path = 0;
+                    int row = (from >>> 3) + direction[0];
+                    int col = (from & 7) + direction[1];
+                    while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                        BETWEEN[from * 64 + row * 8 + col] = path;
+                        path |= 1L << (row * 8 + col);
+                        row += direction[0];
+                        col += direction[1];
+                    }
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    } //only static helpers, no instances
+
+    private static final class Sliders {
+        /** The attack sets of every square and blocker configuration, rooks first, then bishops */
+        static final long[] TABLE = new long[TABLE_SIZE];
+        static final boolean FROM_RESOURCE = loadTable(TABLE);
+
+        static {
+            if (!FROM_RESOURCE) fillTable(TABLE);
+        }
+    } //initialized by the first slider lookup, as the JVM guarantees for a nested class, with no check on every lookup
+
+    /**
+     * Returns the squares a knight attacks.
+     *
+     * @param square the knight's square
+     * @return the attack bitboard
+     */
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    /**
+     * Returns the squares a king attacks.
+     *
+     * @param square the king's square
+     * @return the attack bitboard
+     */
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * Returns the squares a pawn attacks (captures onto).
+     *
+     * @param side the pawn's color (0 = white, 1 = black)
+     * @param square the pawn's square
+     * @return the attack bitboard
+     */
+    public static long pawn(int side, int square) {
+        return PAWN[side][square];
+    }
+
+    /**
+     * Returns the squares a rook attacks, stopping at (and including) the first piece on each ray.
+     *
+     * @param square the rook's square
+     * @param occupied the bitboard of all pieces on the board
+     * @return the attack bitboard
+     */
+    public static long rook(int square, long occupied) {
+        return Sliders.TABLE[ROOK_OFFSETS[square] + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * Returns the squares a bishop attacks, stopping at (and including) the first piece on each ray.
+     *
+     * @param square the bishop's square
+     * @param occupied the bitboard of all pieces on the board
+     * @return the attack bitboard
+     */
+    public static long bishop(int square, long occupied) {
+        return Sliders.TABLE[BISHOP_OFFSETS[square] + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Returns the squares a queen attacks.
+     *
+     * @param square the queen's square
+     * @param occupied the bitboard of all pieces on the board
+     * @return the attack bitboard
+     */
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * Returns the squares strictly between two squares, if they share a row, column or diagonal.
+     *
+     * @param from one square
+     * @param to the other square
+     * @return the squares in between, or 0 if the squares are adjacent or not on a common line
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from * 64 + to];
+    }
+
+    /**
+     * Computes rook attacks by walking the rays, the reference the magic tables are built and checked against.
+     *
+     * @param square the rook's square
+     * @param occupied the bitboard of all pieces on the board
+     * @return the attack bitboard
+     */
+    static long slideRook(int square, long occupied) {
+        return slide(square, occupied, ROOK_DIRECTIONS);
+    }
+
+    /**
+     * Computes bishop attacks by walking the rays, the reference the magic tables are built and checked against.
+     *
+     * @param square the bishop's square
+     * @param occupied the bitboard of all pieces on the board
+     * @return the attack bitboard
+     */
+    static long slideBishop(int square, long occupied) {
+        return slide(square, occupied, BISHOP_DIRECTIONS);
+    }
+
+    static long rookMask(int square) {
+        return ROOK_MASKS[square];
+    }
+
+    static long bishopMask(int square) {
+        return BISHOP_MASKS[square];
+    }
+
+    static long rookMagic(int square) {
+        return ROOK_MAGICS[square];
+    }
+
+    static long bishopMagic(int square) {
+        return BISHOP_MAGICS[square];
+    }
+
+    private static long mask(int square, int[][] directions) {
+        long mask = 0;
+        for (int[] direction : directions) {
+            int row = (square >>> 3) + direction[0];
+            int col = (square & 7) + direction[1];
+            while (row + direction[0] >= 0 && row + direction[0] < 8 && col + direction[1] >= 0 && col + direction[1] < 8) {
+                mask |= 1L << (row * 8 + col);
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return mask;
+    } //the last square of a ray is left out: whether a piece stands there does not change the attacks
+
+    /**
+     * Writes the slider table in the format of {@value #TABLE_RESOURCE}.
+     *
+     * @param out the stream to write to (closed when done)
+     * @throws IOException if writing fails
+     */
+    static void writeTable(OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * (3 + TABLE_SIZE));
+        buffer.putLong(TABLE_FORMAT).putLong(magicsChecksum()).putLong(TABLE_SIZE);
+        buffer.asLongBuffer().put(Sliders.TABLE);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(buffer.array());
+        }
+    }
+
+    /**
+     * Checks if the tables were loaded from the bundled resource rather than filled at startup.
+     *
+     * @return true if the resource was used
+     */
+    static boolean tableFromResource() {
+        return Sliders.FROM_RESOURCE;
+    }
+
+    private static boolean loadTable(long[] table) {
+        try (InputStream in = Attacks.class.getResourceAsStream(TABLE_RESOURCE)) {
+            if (in == null || Boolean.getBoolean("chess.attacks.compute")) return false;
+            ByteBuffer buffer = ByteBuffer.wrap(new GZIPInputStream(in).readAllBytes());
+            if (buffer.remaining() != 8 * (3 + table.length) || buffer.getLong() != TABLE_FORMAT
+                    || buffer.getLong() != magicsChecksum() || buffer.getLong() != table.length) {
+                return false;
+            }
+            buffer.asLongBuffer().get(table);
+            return true;
+        } catch (IOException e) {
+            return false; //a broken resource falls through to filling the tables
+        }
+    } //one bulk read and copy, no per-entry work
+
+    private static long magicsChecksum() {
+        long checksum = 0;
+        for (int square = 0; square < 64; square++) {
+            checksum = checksum * 31 + ROOK_MAGICS[square];
+            checksum = checksum * 31 + BISHOP_MAGICS[square];
+        }
+        return checksum;
+    } //a table made for other magics would be silently wrong, so the resource records which magics it belongs to
+
+    private static void fillTable(long[] table) {
+        long[][] rays = new long[8][64]; //the squares a slider sees on an empty board in each direction, rook directions first
+        for (int square = 0; square < 64; square++) {
+            for (int d = 0; d < 8; d++) {
+                int[] direction = d < 4 ? ROOK_DIRECTIONS[d] : BISHOP_DIRECTIONS[d - 4];
+                for (int row = (square >>> 3) + direction[0], col = (square & 7) + direction[1];
+                     row >= 0 && row < 8 && col >= 0 && col < 8; row += direction[0], col += direction[1]) {
+                    rays[d][square] |= 1L << (row * 8 + col);
+                }
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            fill(table, rays, square, ROOK_MASKS[square], ROOK_MAGICS[square], ROOK_SHIFTS[square], ROOK_OFFSETS[square], 0);
+            fill(table, rays, square, BISHOP_MASKS[square], BISHOP_MAGICS[square], BISHOP_SHIFTS[square], BISHOP_OFFSETS[square], 4);
+        }
+    }
+
+    private static void fill(long[] table, long[][] rays, int square, long mask, long magic, int shift, int offset, int firstRay) {
+        long subset = 0;
+        do {
+            long attacks = 0;
+            for (int d = firstRay; d < firstRay + 4; d++) {
+                long ray = rays[d][square];
+                long blockers = ray & subset;
+                if (blockers != 0) {
+                    int blocker = d == 0 || d == 2 || d == 4 || d == 5 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+                    ray ^= rays[d][blocker]; //everything behind the first blocker is hidden
+                }
+                attacks |= ray;
+            }
+            table[offset + (int) ((subset * magic) >>> shift)] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+    } //the carry-rippler trick enumerates every subset of the mask; rays towards higher squares meet their lowest blocker first
+
+    private static long slide(int square, long occupied, int[][] directions) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int row = (square >>> 3) + direction[0];
+            int col = (square & 7) + direction[1];
+            while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                long target = 1L << (row * 8 + col);
+                attacks |= target;
+                if ((occupied & target) != 0) break; //the ray stops at the first piece it hits
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static long bit(int row, int col) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8 ? 1L << (row * 8 + col) : 0;
+    } //returns an empty bitboard for squares off the board
+}
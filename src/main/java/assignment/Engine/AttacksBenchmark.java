@@ -0,0 +1,165 @@
+package assignment.Engine;
+
+import assignment.Model.Board;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Measures what the magic bitboard tables of {@link Attacks} cost and save.
+ * <ul>
+ *     <li>Queries: rook and bishop attacks through the magic tables against walking the rays square by square,
+ *     and {@link Board#freePath(int, int)} against the square-by-square walk it used before, on random positions.</li>
+ *     <li>Startup: starts fresh JVMs that do not touch the tables, that load them from the bundled resource, and
+ *     that fill them from scratch, and reports the wall time of each and the time the table initialization takes.</li>
+ * </ul>
+ * <p>
+ * Usage: {@code java assignment.Engine.AttacksBenchmark [runs]}
+ */
+public final class AttacksBenchmark {
+    private static final int QUERIES = 1 << 16;
+    private static final int ROUNDS = 5;
+
+    private AttacksBenchmark() {
+    } //only static helpers, no instances
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of JVMs to start per startup measurement; {@code -child} and
+     *             {@code -child-idle} are used internally by the startup measurement
+     * @throws IOException if a child JVM cannot be started
+     * @throws InterruptedException if interrupted while waiting for a child JVM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("-child")) {
+            long start = System.nanoTime();
+            long attacks = Attacks.rook(0, 0);
+            System.out.println((System.nanoTime() - start) + " " + Long.bitCount(attacks));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-child-idle")) {
+            System.out.println(0);
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        queries();
+        startup(runs);
+    }
+
+    private static void queries() {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] squares = new int[QUERIES];
+        long[] occupancies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            squares[i] = random.nextInt(64);
+            occupancies[i] = random.nextLong() & random.nextLong(); //about a quarter of the squares occupied, as in a middlegame
+        }
+        Board[] boards = new Board[64];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Board();
+            boards[i].clear();
+            for (int square = 0; square < 64; square++) {
+                if (random.nextInt(4) == 0) boards[i].setPiece(square, 1 + random.nextInt(5));
+            }
+        }
+        int[] pathFrom = new int[QUERIES];
+        int[] pathTo = new int[QUERIES];
+        for (int i = 0; i < QUERIES; ) {
+            int from = random.nextInt(64);
+            int to = random.nextInt(64);
+            if (from == to || (Attacks.queen(from, 0) & (1L << to)) == 0) continue; //only pairs on a common line
+            pathFrom[i] = from;
+            pathTo[i] = to;
+            i++;
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int repeat = 0; repeat < 20; repeat++) {
+                for (int i = 0; i < QUERIES; i++) sum += Attacks.rook(squares[i], occupancies[i]) ^ Attacks.bishop(squares[i], occupancies[i]);
+            }
+            long magicNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int repeat = 0; repeat < 20; repeat++) {
+                for (int i = 0; i < QUERIES; i++) sum -= Attacks.slideRook(squares[i], occupancies[i]) ^ Attacks.slideBishop(squares[i], occupancies[i]);
+            }
+            long loopNanos = System.nanoTime() - start;
+            if (sum != 0) throw new IllegalStateException("Magic and ray-walking attacks disagree");
+
+            int free = 0;
+            start = System.nanoTime();
+            for (int repeat = 0; repeat < 20; repeat++) {
+                for (int i = 0; i < QUERIES; i++) if (boards[i & 63].freePath(pathFrom[i], pathTo[i])) free++;
+            }
+            long tableNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int repeat = 0; repeat < 20; repeat++) {
+                for (int i = 0; i < QUERIES; i++) if (walkPath(boards[i & 63], pathFrom[i], pathTo[i])) free--;
+            }
+            long walkNanos = System.nanoTime() - start;
+            if (free != 0) throw new IllegalStateException("Table and walked paths disagree");
+
+            double queries = 20.0 * QUERIES * 2;
+            System.out.printf("Round %d: rook+bishop magic %.1f ns, ray walk %.1f ns | freePath table %.1f ns, walk %.1f ns%n",
+                    round, magicNanos / queries, loopNanos / queries, tableNanos / (queries / 2), walkNanos / (queries / 2));
+        }
+    }
+
+    private static boolean walkPath(Board board, int from, int to) {
+        int step = Integer.signum((to >>> 3) - (from >>> 3)) * 8 + Integer.signum((to & 7) - (from & 7));
+        for (int square = from + step; square != to; square += step) {
+            if (board.pieceAt(square) != 0) return false;
+        }
+        return true;
+    } //the loop Board.freePath ran before the tables
+
+    private static void startup(int runs) throws IOException, InterruptedException {
+        long[] idle = new long[runs];
+        long[] loaded = new long[runs];
+        long[] computed = new long[runs];
+        long[] loadInit = new long[runs];
+        long[] computeInit = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            child("-child-idle", false);
+            idle[i] = System.nanoTime() - start;
+            start = System.nanoTime();
+            loadInit[i] = Long.parseLong(child("-child", false).split(" ")[0]);
+            loaded[i] = System.nanoTime() - start;
+            start = System.nanoTime();
+            computeInit[i] = Long.parseLong(child("-child", true).split(" ")[0]);
+            computed[i] = System.nanoTime() - start;
+        }
+        System.out.printf("JVM startup (median of %d runs): %.1f ms without the attack tables%n", runs, median(idle) / 1e6);
+        System.out.printf("  tables loaded from %s: %.1f ms (initialization %.2f ms)%n", Attacks.TABLE_RESOURCE, median(loaded) / 1e6, median(loadInit) / 1e6);
+        System.out.printf("  tables filled at startup: %.1f ms (initialization %.2f ms)%n", median(computed) / 1e6, median(computeInit) / 1e6);
+    }
+
+    private static String child(String mode, boolean compute) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path")));
+        if (compute) command.add("-Dchess.attacks.compute=true");
+        command.add(AttacksBenchmark.class.getName());
+        command.add(mode);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String line;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = reader.readLine();
+        }
+        if (process.waitFor() != 0 || line == null) throw new IOException("The child JVM failed: " + line);
+        return line;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,812 @@
+package assignment.Engine;
+
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Model.Board;
+import assignment.Model.Castling;
+import assignment.Model.Color;
+import assignment.Model.GameHistory;
+import assignment.Model.Location;
+import assignment.Model.PieceCode;
+import assignment.Model.Position;
+import assignment.Model.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * A compact, mutable chess position used by the move generator and by analysis code.
+ * Unlike {@link Board}, which keeps one object per piece, this class stores the position as
+ * a 64-byte mailbox of piece codes plus one bitboard per piece code, and tracks the full game state:
+ * side to move, castling rights, en passant square, move clocks and an incrementally updated Zobrist hash.
+ * <p>
+ * Moves are applied with {@link #make(int)} and taken back with {@link #unmake()}, so a search can walk
+ * the game tree on a single instance without allocating. Squares are numbered row * 8 + column (a1 = 0, h8 = 63)
+ * and sides are 0 for white and 1 for black.
+ */
+public final class EngineBoard {
+    /** FEN of the standard starting position */
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    /** Side index of white */
+    public static final int WHITE = 0;
+    /** Side index of black */
+    public static final int BLACK = 1;
+
+    private final byte[] squares = new byte[64];
+    private final long[] pieces = new long[16];
+    private final long[] colors = new long[2];
+    private long occupied;
+    private int side;
+    private int castling;
+    private int epSquare = -1;
+    private int halfmove;
+    private int fullmove = 1;
+    private long hash;
+
+    /** Squares of the castling rooks, indexed by castling right bit (white king side, white queen side, black king side, black queen side) */
+    private final int[] castleRooks = {7, 0, 63, 56};
+    /** Castling rights that survive a move from or to each square */
+    private final int[] castleMask = new int[64];
+
+    //undo stack, one entry per move made
+    private int ply;
+    private int[] undoMove = new int[256];
+    private int[] undoState = new int[256];
+    private long[] undoHash = new long[256];
+
+    private NnueAccumulator accumulator; //only attached when a network evaluates this board
+
+    /**
+     * Creates a board with the standard starting position.
+     */
+    public EngineBoard() {
+        this(true);
+    }
+
+    private EngineBoard(boolean setUp) {
+        if (setUp) setFen(START_FEN);
+    } //copies and FEN boards skip parsing the start position
+
+    /**
+     * Creates a board from a FEN string.
+     *
+     * @param fen the position in Forsyth-Edwards notation
+     * @return the new board
+     * @throws IllegalArgumentException if the FEN is malformed
+     */
+    public static EngineBoard fromFen(String fen) {
+        EngineBoard board = new EngineBoard(false);
+        board.setFen(fen);
+        return board;
+    }
+
+    /**
+     * Creates an engine board from the interactive game board, with its castling rights and en passant square.
+     *
+     * @param board the game board
+     * @param sideToMove the player whose turn it is
+     * @return the new engine board
+     */
+    public static EngineBoard of(Board board, Color sideToMove) {
+        EngineBoard engine = new EngineBoard(false);
+        engine.clear();
+        for (int square = 0; square < 64; square++) {
+            int code = board.pieceAt(square);
+            if (code != PieceCode.EMPTY) engine.put(code, square);
+        }
+        engine.side = sideToMove == Color.WHITE ? WHITE : BLACK;
+        engine.castling = board.getCastlingRights();
+        for (int right = 0; right < 4; right++) {
+            engine.castleRooks[right] = board.castlingRook(right);
+        }
+        engine.epSquare = board.enPassantSquare();
+        engine.finishSetup();
+        return engine;
+    }
+
+    /**
+     * Creates an engine board from an immutable position snapshot, including its move counters.
+     *
+     * @param position the position
+     * @return the new engine board
+     */
+    public static EngineBoard of(Position position) {
+        EngineBoard engine = new EngineBoard(false);
+        engine.clear();
+        for (int square = 0; square < 64; square++) {
+            int code = position.pieceAt(square);
+            if (code != PieceCode.EMPTY) engine.put(code, square);
+        }
+        engine.side = position.sideToMove() == Color.WHITE ? WHITE : BLACK;
+        engine.castling = position.castlingRights();
+        for (int right = 0; right < 4; right++) {
+            engine.castleRooks[right] = position.castlingRook(right);
+        }
+        engine.epSquare = position.enPassantSquare();
+        engine.halfmove = position.halfmoveClock();
+        engine.fullmove = position.fullmoveNumber();
+        engine.finishSetup();
+        return engine;
+    }
+
+    /**
+     * Creates an engine board for the current position of a game, with the moves since the last capture or pawn
+     * move in its history, so the search sees the repetitions the game already had.
+     *
+     * @param history the game history
+     * @return the new engine board
+     * @throws IllegalStateException if the history holds a move that is not legal
+     */
+    public static EngineBoard of(GameHistory history) {
+        int first = Math.max(0, history.ply() - history.current().halfmoveClock());
+        EngineBoard engine = of(history.positionAt(first));
+        for (int ply = first; ply < history.ply(); ply++) {
+            try {
+                engine.make(Notation.parseUci(engine, history.moveAt(ply)));
+            } catch (InvalidMoveException e) {
+                throw new IllegalStateException("The game history holds an illegal move at ply " + ply, e);
+            }
+        }
+        return engine;
+    } //earlier positions cannot come back, so replaying them would only cost time
+
+    /**
+     * Copies this board into a new game board.
+     *
+     * @return a new game board holding the same pieces, castling rights and en passant square
+     */
+    public Board toBoard() {
+        Board board = new Board();
+        board.clear();
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != PieceCode.EMPTY) board.setPiece(square, squares[square]);
+        }
+        board.setEnPassantTarget(epSquare < 0 ? null : Location.ofSquare(epSquare));
+        board.setCastlingRights(castling);
+        for (int right = 0; right < 4; right++) {
+            board.setCastlingRook(right, castleRooks[right]);
+        }
+        return board;
+    }
+
+    /**
+     * Creates an independent copy of this board, including its move history.
+     *
+     * @return the copy
+     */
+    public EngineBoard copy() {
+        EngineBoard copy = new EngineBoard(false);
+        System.arraycopy(squares, 0, copy.squares, 0, 64);
+        System.arraycopy(pieces, 0, copy.pieces, 0, 16);
+        System.arraycopy(colors, 0, copy.colors, 0, 2);
+        System.arraycopy(castleRooks, 0, copy.castleRooks, 0, 4);
+        System.arraycopy(castleMask, 0, copy.castleMask, 0, 64);
+        copy.occupied = occupied;
+        copy.side = side;
+        copy.castling = castling;
+        copy.epSquare = epSquare;
+        copy.halfmove = halfmove;
+        copy.fullmove = fullmove;
+        copy.hash = hash;
+        copy.ply = ply;
+        copy.undoMove = Arrays.copyOf(undoMove, undoMove.length);
+        copy.undoState = Arrays.copyOf(undoState, undoState.length);
+        copy.undoHash = Arrays.copyOf(undoHash, undoHash.length);
+        return copy; //without the accumulator, the copy builds its own on its first network evaluation
+    }
+
+    /**
+     * Replaces the position with one given in Forsyth-Edwards notation.
+     * The move history is cleared.
+     *
+     * @param fen the position, e.g. {@link #START_FEN}
+     * @throws IllegalArgumentException if the FEN is malformed
+     */
+    public void setFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("FEN needs at least a board and a side to move: " + fen);
+        }
+        clear();
+        int row = 7;
+        int col = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                if (col != 8) throw new IllegalArgumentException("FEN rank " + (row + 1) + " does not have 8 squares: " + fen);
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int code = PieceCode.fromSymbol(c);
+                if (code <= 0 || row < 0 || col > 7) throw new IllegalArgumentException("Invalid FEN board: " + fen);
+                put(code, row * 8 + col);
+                col++;
+            }
+            if (col > 8) throw new IllegalArgumentException("FEN rank " + (row + 1) + " has more than 8 squares: " + fen);
+        }
+        if (row != 0 || col != 8) throw new IllegalArgumentException("FEN board does not have 8 ranks: " + fen);
+
+        switch (fields[1]) {
+            case "w" -> side = WHITE;
+            case "b" -> side = BLACK;
+            default -> throw new IllegalArgumentException("Invalid side to move in FEN: " + fen);
+        }
+        if (fields.length > 2) {
+            castling = Castling.parse(fields[2], castleRooks, this::pieceAt); //X-FEN and Shredder-FEN name Chess960 rooks by file
+        }
+        if (fields.length > 3 && !fields[3].equals("-")) {
+            String ep = fields[3];
+            if (ep.length() != 2 || ep.charAt(0) < 'a' || ep.charAt(0) > 'h' || (ep.charAt(1) != '3' && ep.charAt(1) != '6')) {
+                throw new IllegalArgumentException("Invalid en passant square in FEN: " + fen);
+            }
+            epSquare = (ep.charAt(1) - '1') * 8 + (ep.charAt(0) - 'a');
+        }
+        try {
+            halfmove = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            fullmove = fields.length > 5 ? Math.max(1, Integer.parseInt(fields[5])) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid move counters in FEN: " + fen);
+        }
+        finishSetup();
+    }
+
+    /**
+     * Returns the position in Forsyth-Edwards notation.
+     *
+     * @return the FEN string
+     */
+    public String toFen() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int code = squares[row * 8 + col];
+                if (code == PieceCode.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) sb.append(empty);
+                empty = 0;
+                sb.append(PieceCode.symbol(code));
+            }
+            if (empty > 0) sb.append(empty);
+            if (row > 0) sb.append('/');
+        }
+        sb.append(side == WHITE ? " w " : " b ");
+        sb.append(Castling.format(castling, castleRooks, this::pieceAt));
+        sb.append(' ').append(epSquare < 0 ? "-" : Move.squareName(epSquare));
+        sb.append(' ').append(halfmove).append(' ').append(fullmove);
+        return sb.toString();
+    }
+
+    /**
+     * Removes all pieces and resets the game state, leaving an empty board with white to move.
+     * Pieces can then be placed with {@link #setPiece(int, int)}.
+     */
+    public void clear() {
+        Arrays.fill(squares, (byte) 0);
+        Arrays.fill(pieces, 0);
+        Arrays.fill(colors, 0);
+        occupied = 0;
+        side = WHITE;
+        castling = 0;
+        epSquare = -1;
+        halfmove = 0;
+        fullmove = 1;
+        ply = 0;
+        hash = 0;
+        for (int right = 0; right < 4; right++) {
+            castleRooks[right] = Castling.standardRook(right);
+        }
+        if (accumulator != null) accumulator.invalidate();
+    }
+
+    /**
+     * Places a piece on a square (or empties it), for setting up positions by hand.
+     * Call {@link #setSideToMove(int)} afterwards to finish the setup and refresh the hash.
+     *
+     * @param square the square index
+     * @param code the piece code, or EMPTY
+     */
+    public void setPiece(int square, int code) {
+        if (squares[square] != PieceCode.EMPTY) remove(square);
+        if (code != PieceCode.EMPTY) put(code, square);
+        hash = computeHash();
+    }
+
+    /**
+     * Sets the side to move and recomputes the derived state (hash, castling masks).
+     * The move history is cleared.
+     *
+     * @param side WHITE or BLACK
+     */
+    public void setSideToMove(int side) {
+        this.side = side;
+        finishSetup();
+    }
+
+    /**
+     * Applies a move. The move must be pseudo-legal in this position
+     * (as produced by {@link MoveGenerator}); it may leave the own king in check.
+     *
+     * @param move the encoded move
+     */
+    public void make(int move) {
+        if (ply == undoMove.length) growHistory();
+        if (accumulator != null) accumulator.push(); //put and remove below update the new entry
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int kind = Move.kind(move);
+        int piece = squares[from];
+        int captured = kind == Move.CASTLING ? PieceCode.EMPTY : squares[to];
+
+        undoMove[ply] = move;
+        undoHash[ply] = hash;
+        int oldCastling = castling;
+        int oldEp = epSquare;
+        int oldHalfmove = halfmove;
+
+        long h = hash;
+        if (epSquare >= 0) {
+            h ^= Zobrist.enPassant(epSquare & 7);
+            epSquare = -1;
+        }
+        halfmove++;
+
+        switch (kind) {
+            case Move.CASTLING -> {
+                int rank = from & 56;
+                boolean kingSide = to > from;
+                int kingTo = rank | (kingSide ? 6 : 2);
+                int rookTo = rank | (kingSide ? 5 : 3);
+                int rook = squares[to];
+                remove(from);
+                remove(to);
+                put(piece, kingTo);
+                put(rook, rookTo);
+                h ^= Zobrist.piece(piece, from) ^ Zobrist.piece(rook, to) ^ Zobrist.piece(piece, kingTo) ^ Zobrist.piece(rook, rookTo);
+            }
+            case Move.EN_PASSANT -> {
+                int capturedSquare = to ^ 8; //the captured pawn stands behind the destination
+                captured = squares[capturedSquare];
+                remove(capturedSquare);
+                remove(from);
+                put(piece, to);
+                h ^= Zobrist.piece(captured, capturedSquare) ^ Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+                halfmove = 0;
+            }
+            case Move.PROMOTION -> {
+                int promoted = Move.promotion(move) | (piece & PieceCode.BLACK);
+                if (captured != PieceCode.EMPTY) {
+                    remove(to);
+                    h ^= Zobrist.piece(captured, to);
+                }
+                remove(from);
+                put(promoted, to);
+                h ^= Zobrist.piece(piece, from) ^ Zobrist.piece(promoted, to);
+                halfmove = 0;
+            }
+            default -> {
+                if (captured != PieceCode.EMPTY) {
+                    remove(to);
+                    h ^= Zobrist.piece(captured, to);
+                    halfmove = 0;
+                }
+                remove(from);
+                put(piece, to);
+                h ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+                if ((piece & 7) == PieceCode.PAWN) {
+                    halfmove = 0;
+                    if ((from ^ to) == 16) { //double push, only record the en passant square if it can be used
+                        int ep = (from + to) >>> 1;
+                        if ((Attacks.pawn(side, ep) & pieces[PieceCode.PAWN | ((side ^ 1) << 3)]) != 0) {
+                            epSquare = ep;
+                            h ^= Zobrist.enPassant(ep & 7);
+                        }
+                    }
+                }
+            }
+        }
+
+        int newCastling = castling & castleMask[from] & castleMask[to];
+        if (newCastling != castling) {
+            h ^= Zobrist.castling(castling) ^ Zobrist.castling(newCastling);
+            castling = newCastling;
+        }
+        if (side == BLACK) fullmove++;
+        side ^= 1;
+        hash = h ^ Zobrist.whiteToMove();
+        undoState[ply] = captured | (oldCastling << 4) | ((oldEp + 1) << 8) | (oldHalfmove << 16);
+        ply++;
+    }
+
+    /**
+     * Takes back the last move made with {@link #make(int)}.
+     */
+    public void unmake() {
+        NnueAccumulator attached = accumulator;
+        accumulator = null; //the entry below already has the pieces where they are put back
+        ply--;
+        int move = undoMove[ply];
+        int state = undoState[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = state & 15;
+        side ^= 1;
+        if (side == BLACK) fullmove--;
+
+        switch (Move.kind(move)) {
+            case Move.CASTLING -> {
+                int rank = from & 56;
+                boolean kingSide = to > from;
+                int kingTo = rank | (kingSide ? 6 : 2);
+                int rookTo = rank | (kingSide ? 5 : 3);
+                int king = squares[kingTo];
+                int rook = squares[rookTo];
+                remove(kingTo);
+                remove(rookTo);
+                put(king, from);
+                put(rook, to);
+            }
+            case Move.EN_PASSANT -> {
+                int pawn = squares[to];
+                remove(to);
+                put(pawn, from);
+                put(captured, to ^ 8);
+            }
+            case Move.PROMOTION -> {
+                remove(to);
+                put(PieceCode.PAWN | (side << 3), from);
+                if (captured != PieceCode.EMPTY) put(captured, to);
+            }
+            default -> {
+                int piece = squares[to];
+                remove(to);
+                put(piece, from);
+                if (captured != PieceCode.EMPTY) put(captured, to);
+            }
+        }
+        castling = (state >>> 4) & 15;
+        epSquare = ((state >>> 8) & 127) - 1;
+        halfmove = state >>> 16;
+        hash = undoHash[ply];
+        accumulator = attached;
+        if (attached != null) attached.pop();
+    }
+
+    /**
+     * Passes the turn without moving, as used by null-move pruning.
+     * Must be undone with {@link #unmakeNull()}.
+     */
+    public void makeNull() {
+        if (ply == undoMove.length) growHistory();
+        undoMove[ply] = Move.NONE;
+        undoHash[ply] = hash;
+        undoState[ply] = (castling << 4) | ((epSquare + 1) << 8) | (halfmove << 16);
+        if (epSquare >= 0) {
+            hash ^= Zobrist.enPassant(epSquare & 7);
+            epSquare = -1;
+        }
+        halfmove++;
+        side ^= 1;
+        hash ^= Zobrist.whiteToMove();
+        ply++;
+    }
+
+    /**
+     * Takes back a null move.
+     */
+    public void unmakeNull() {
+        ply--;
+        int state = undoState[ply];
+        side ^= 1;
+        epSquare = ((state >>> 8) & 127) - 1;
+        halfmove = state >>> 16;
+        hash = undoHash[ply];
+    }
+
+    /**
+     * Checks if a square is attacked by any piece of a side.
+     *
+     * @param square the square to check
+     * @param bySide the attacking side (WHITE or BLACK)
+     * @return true if at least one piece of that side attacks the square
+     */
+    public boolean isAttacked(int square, int bySide) {
+        int color = bySide << 3;
+        if ((Attacks.pawn(bySide ^ 1, square) & pieces[PieceCode.PAWN | color]) != 0) return true;
+        if ((Attacks.knight(square) & pieces[PieceCode.KNIGHT | color]) != 0) return true;
+        if ((Attacks.king(square) & pieces[PieceCode.KING | color]) != 0) return true;
+        long queens = pieces[PieceCode.QUEEN | color];
+        if ((Attacks.bishop(square, occupied) & (pieces[PieceCode.BISHOP | color] | queens)) != 0) return true;
+        return (Attacks.rook(square, occupied) & (pieces[PieceCode.ROOK | color] | queens)) != 0;
+    }
+
+    /**
+     * Returns all pieces of both sides that attack a square, given an occupancy.
+     * Passing a reduced occupancy reveals pieces standing behind removed ones (x-rays).
+     *
+     * @param square the target square
+     * @param occupancy the pieces considered present on the board
+     * @return the bitboard of attackers
+     */
+    public long attackersTo(int square, long occupancy) {
+        long rooks = pieces[PieceCode.ROOK] | pieces[PieceCode.ROOK | PieceCode.BLACK]
+                | pieces[PieceCode.QUEEN] | pieces[PieceCode.QUEEN | PieceCode.BLACK];
+        long bishops = pieces[PieceCode.BISHOP] | pieces[PieceCode.BISHOP | PieceCode.BLACK]
+                | pieces[PieceCode.QUEEN] | pieces[PieceCode.QUEEN | PieceCode.BLACK];
+        return ((Attacks.pawn(BLACK, square) & pieces[PieceCode.PAWN])
+                | (Attacks.pawn(WHITE, square) & pieces[PieceCode.PAWN | PieceCode.BLACK])
+                | (Attacks.knight(square) & (pieces[PieceCode.KNIGHT] | pieces[PieceCode.KNIGHT | PieceCode.BLACK]))
+                | (Attacks.king(square) & (pieces[PieceCode.KING] | pieces[PieceCode.KING | PieceCode.BLACK]))
+                | (Attacks.rook(square, occupancy) & rooks)
+                | (Attacks.bishop(square, occupancy) & bishops)) & occupancy;
+    }
+
+    /**
+     * Checks if the side to move is in check.
+     *
+     * @return true if the king of the side to move is attacked
+     */
+    public boolean inCheck() {
+        return isAttacked(kingSquare(side), side ^ 1);
+    }
+
+    /**
+     * Checks if the side that just moved left its own king in check, i.e. if the last move was illegal.
+     *
+     * @return true if the opponent of the side to move is in check
+     */
+    public boolean leftKingInCheck() {
+        return isAttacked(kingSquare(side ^ 1), side);
+    }
+
+    /**
+     * Returns the square of a side's king.
+     *
+     * @param side WHITE or BLACK
+     * @return the king's square, or 64 if that side has no king
+     */
+    public int kingSquare(int side) {
+        return Long.numberOfTrailingZeros(pieces[PieceCode.KING | (side << 3)]);
+    }
+
+    /**
+     * Returns the piece code on a square.
+     *
+     * @param square the square index
+     * @return the piece code, or EMPTY
+     */
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    /**
+     * Returns the bitboard of all pieces with a given code.
+     *
+     * @param code the piece code
+     * @return the bitboard
+     */
+    public long pieces(int code) {
+        return pieces[code];
+    }
+
+    /**
+     * Returns the bitboard of all pieces of a side.
+     *
+     * @param side WHITE or BLACK
+     * @return the bitboard
+     */
+    public long occupancy(int side) {
+        return colors[side];
+    }
+
+    /**
+     * Returns the bitboard of all pieces on the board.
+     *
+     * @return the bitboard
+     */
+    public long occupied() {
+        return occupied;
+    }
+
+    /**
+     * Returns the side to move.
+     *
+     * @return WHITE or BLACK
+     */
+    public int sideToMove() {
+        return side;
+    }
+
+    /**
+     * Returns the side to move as a {@link Color}.
+     *
+     * @return the color whose turn it is
+     */
+    public Color sideToMoveColor() {
+        return side == WHITE ? Color.WHITE : Color.BLACK;
+    }
+
+    /**
+     * Returns the castling rights still available.
+     *
+     * @return a mask of the Zobrist castling bits
+     */
+    public int castlingRights() {
+        return castling;
+    }
+
+    /**
+     * Returns the square of the rook used by a castling right.
+     *
+     * @param right the index of the castling right bit (0 = white king side ... 3 = black queen side)
+     * @return the rook's starting square
+     */
+    public int castlingRook(int right) {
+        return castleRooks[right];
+    }
+
+    /**
+     * Returns the en passant target square, if the side to move can capture en passant.
+     *
+     * @return the square, or -1 if there is none
+     */
+    public int enPassantSquare() {
+        return epSquare;
+    }
+
+    /**
+     * Returns the number of halfmoves since the last capture or pawn move.
+     *
+     * @return the halfmove clock
+     */
+    public int halfmoveClock() {
+        return halfmove;
+    }
+
+    /**
+     * Returns the fullmove number, starting at 1 and increased after each black move.
+     *
+     * @return the fullmove number
+     */
+    public int fullmoveNumber() {
+        return fullmove;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position, in the Polyglot key layout.
+     *
+     * @return the 64-bit hash
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Returns the number of moves made on this board since it was set up.
+     *
+     * @return the number of moves that can be taken back
+     */
+    public int ply() {
+        return ply;
+    }
+
+    /**
+     * Returns a move from the history.
+     *
+     * @param index the move number, 0 for the first move made
+     * @return the encoded move (Move.NONE for a null move)
+     */
+    public int moveAt(int index) {
+        return undoMove[index];
+    }
+
+    /**
+     * Returns the hash of the position before a move in the history.
+     *
+     * @param index the move number, 0 for the first move made
+     * @return the hash of the position in which that move was played
+     */
+    public long hashAt(int index) {
+        return undoHash[index];
+    }
+
+    /**
+     * Returns this board's NNUE accumulator for a network, up to date with the pieces on the board.
+     * The first call attaches it; from then on make and unmake keep it current.
+     *
+     * @param network the network
+     * @param kernel the arithmetic the accumulator uses
+     * @return the accumulator
+     */
+    NnueAccumulator accumulator(NnueNetwork network, NnueKernel kernel) {
+        if (accumulator == null || !accumulator.serves(network, kernel)) accumulator = new NnueAccumulator(network, kernel);
+        if (!accumulator.isValid()) accumulator.refresh(this);
+        return accumulator;
+    }
+
+    private void put(int code, int square) {
+        long bit = 1L << square;
+        squares[square] = (byte) code;
+        pieces[code] |= bit;
+        colors[code >>> 3] |= bit;
+        occupied |= bit;
+        if (accumulator != null && accumulator.isValid()) accumulator.add(code, square);
+    }
+
+    private void remove(int square) {
+        int code = squares[square];
+        long bit = ~(1L << square);
+        squares[square] = PieceCode.EMPTY;
+        pieces[code] &= bit;
+        colors[code >>> 3] &= bit;
+        occupied &= bit;
+        if (accumulator != null && accumulator.isValid()) accumulator.remove(code, square);
+    }
+
+    private void finishSetup() {
+        ply = 0;
+        if (accumulator != null) accumulator.invalidate();
+        Arrays.fill(castleMask, 15);
+        for (int right = 0; right < 4; right++) {
+            int rights = 1 << right;
+            int color = right < 2 ? 0 : PieceCode.BLACK;
+            int rook = castleRooks[right];
+            long king = pieces[PieceCode.KING | color] & (right < 2 ? 0xFFL : 0xFFL << 56);
+            if (squares[rook] != (PieceCode.ROOK | color) || king == 0
+                    || (rook > Long.numberOfTrailingZeros(king)) != ((right & 1) == 0)) {
+                castling &= ~rights; //a right without its king and rook on the back rank, rook on the right side, cannot be used
+                continue;
+            }
+            castleMask[rook] &= ~rights;
+            castleMask[Long.numberOfTrailingZeros(king)] &= ~rights;
+        }
+        if (epSquare >= 0) {
+            int pawn = epSquare ^ 8; //the pawn that just made the double push
+            boolean pushed = squares[pawn] == (PieceCode.PAWN | ((side ^ 1) << 3)) && squares[epSquare] == PieceCode.EMPTY;
+            if (!pushed || (Attacks.pawn(side ^ 1, epSquare) & pieces[PieceCode.PAWN | (side << 3)]) == 0) {
+                epSquare = -1; //follow polyglot and only keep en passant squares that can actually be used
+            }
+        }
+        hash = computeHash();
+    }
+
+    private long computeHash() {
+        long h = side == WHITE ? Zobrist.whiteToMove() : 0;
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != PieceCode.EMPTY) h ^= Zobrist.piece(squares[square], square);
+        }
+        h ^= Zobrist.castling(castling);
+        if (epSquare >= 0) h ^= Zobrist.enPassant(epSquare & 7);
+        return h;
+    }
+
+    private void growHistory() {
+        int size = undoMove.length * 2;
+        undoMove = Arrays.copyOf(undoMove, size);
+        undoState = Arrays.copyOf(undoState, size);
+        undoHash = Arrays.copyOf(undoHash, size);
+    }
+
+    /**
+     * Returns the board as text, in the same layout as {@link Board#toString()}.
+     *
+     * @return the board diagram
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("  a b c d e f g h\n");
+        sb.append("  ---------------\n");
+        for (int row = 7; row >= 0; row--) {
+            sb.append(row + 1).append("|");
+            for (int col = 0; col < 8; col++) {
+                sb.append(PieceCode.symbol(squares[row * 8 + col])).append(' ');
+            }
+            sb.append("|").append(row + 1).append("\n");
+        }
+        sb.append("  ---------------\n");
+        sb.append("  a b c d e f g h");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,280 @@
+package assignment.Engine;
+
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An engine opponent that plays on a time budget and thinks on the opponent's time (pondering).
+ * <p>
+ * The engine either thinks a fixed time per move or plays on a clock, in which case a {@link TimeManager}
+ * allocates the time of every move from the remaining time and the increment, and stretches or cuts it as the
+ * search goes. Searches run on a worker thread while the calling thread waits only until the move's hard
+ * deadline: if the search has not returned by then (a GC pause, a slow poll), this watchdog stops it and plays
+ * the best move of the last completed iteration, so a move is never late by more than a few milliseconds.
+ * Every move's budget and actual time are kept in {@link #lastTiming()} and recorded in the metrics.
+ * <p>
+ * After {@link #play(EngineBoard)} picks a move, the engine assumes the reply its principal variation expects and
+ * searches the resulting position in the background until the opponent actually moves. If the opponent plays the
+ * expected reply (a ponder hit), the background search simply goes on: the time already spent counts towards the
+ * move's budget, and the move is played as soon as the budget is used up, often at once. Otherwise (a miss) the
+ * background search is cancelled within a few thousand nodes and a normal search starts; the transposition table
+ * it filled is kept either way.
+ * <p>
+ * Searches run on one daemon thread that lives as long as the player, so pondering never starts a thread.
+ * A player is meant to be used by one game thread at a time.
+ */
+public final class EnginePlayer implements AutoCloseable {
+    /** Default thinking time per move, in milliseconds */
+    public static final long DEFAULT_MOVE_MILLIS = 1000;
+
+    private static final long WATCHDOG_GRACE_MILLIS = 5;
+
+    private static final LatencyHistogram RESPONSE_TIME = Metrics.histogram("engine.response");
+    private static final LatencyHistogram BUDGET = Metrics.histogram("engine.budget");
+    private static final Counter OVER_BUDGET = Metrics.counter("engine.overBudget");
+    private static final Counter LATE = Metrics.counter("engine.late");
+    private static final Counter WATCHDOG = Metrics.counter("engine.watchdog");
+    private static final Counter PONDER_HITS = Metrics.counter("engine.ponder.hits");
+    private static final Counter PONDER_MISSES = Metrics.counter("engine.ponder.misses");
+
+    /**
+     * The time spent on a move, against what it was given.
+     *
+     * @param budgetMillis the planned time (the optimum of the time manager)
+     * @param maximumMillis the hard limit
+     * @param actualMillis the time from the call of {@link #play(EngineBoard)} to its return
+     * @param remainingMillis the engine's clock after the move and its increment, or -1 without a clock
+     * @param watchdog true if the search missed the deadline and the watchdog played the move
+     */
+    public record Timing(long budgetMillis, long maximumMillis, long actualMillis, long remainingMillis, boolean watchdog) {
+    }
+
+    private final Search search;
+    private final long moveMillis;
+    private final TimeControl timeControl;
+    private final ExecutorService worker;
+
+    private long remainingMillis; //the engine's clock, when it plays on one
+    private Timing lastTiming;
+    private Future<Search.Result> ponder; //the running background search, or null
+    private TimeManager ponderTime;
+    private long ponderHash; //the position the background search expects
+
+    /**
+     * Creates a player with the default evaluation and transposition table size.
+     *
+     * @param moveMillis the thinking time per move, in milliseconds
+     */
+    public EnginePlayer(long moveMillis) {
+        this(new PieceSquareEvaluator(), Search.DEFAULT_HASH_BYTES, moveMillis);
+    }
+
+    /**
+     * Creates a player on a clock with the default evaluation and transposition table size.
+     *
+     * @param timeControl the engine's clock
+     */
+    public EnginePlayer(TimeControl timeControl) {
+        this(new PieceSquareEvaluator(), Search.DEFAULT_HASH_BYTES, timeControl);
+    }
+
+    /**
+     * Creates a player.
+     *
+     * @param evaluator the static evaluation
+     * @param hashBytes the size of the transposition table in bytes
+     * @param moveMillis the thinking time per move, in milliseconds
+     * @throws IllegalArgumentException if the thinking time is not positive
+     */
+    public EnginePlayer(Evaluator evaluator, long hashBytes, long moveMillis) {
+        this(evaluator, hashBytes, checkMoveMillis(moveMillis), null);
+    }
+
+    /**
+     * Creates a player on a clock.
+     *
+     * @param evaluator the static evaluation
+     * @param hashBytes the size of the transposition table in bytes
+     * @param timeControl the engine's clock
+     */
+    public EnginePlayer(Evaluator evaluator, long hashBytes, TimeControl timeControl) {
+        this(evaluator, hashBytes, 0, timeControl);
+    }
+
+    private EnginePlayer(Evaluator evaluator, long hashBytes, long moveMillis, TimeControl timeControl) {
+        this.search = new Search(evaluator, new TranspositionTable(hashBytes));
+        this.moveMillis = moveMillis;
+        this.timeControl = timeControl;
+        this.remainingMillis = timeControl == null ? 0 : timeControl.baseMillis();
+        this.worker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "engine-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MoveGenerator.legal(EngineBoard.fromFen(EngineBoard.START_FEN), new int[MoveGenerator.MAX_MOVES]); //loads the attack tables now, not on the first move's clock
+    }
+
+    /**
+     * Chooses a move, then starts pondering on the reply the engine expects.
+     *
+     * @param board the position, with the engine to move (not changed)
+     * @return the chosen move, or Move.NONE if there is no legal move
+     */
+    public int play(EngineBoard board) {
+        long start = System.nanoTime();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        if (count <= 1) {
+            stopPondering();
+            if (count == 1) record(newTimeManager(), System.nanoTime() - start, false); //an only move needs no thought
+            return count == 0 ? Move.NONE : moves[0];
+        }
+        TimeManager time;
+        Future<Search.Result> running;
+        if (ponder != null && ponderHash == board.hash()) {
+            PONDER_HITS.increment();
+            time = ponderTime;
+            time.ponderHit(); //the time spent so far was the opponent's
+            running = ponder;
+        } else {
+            if (ponder != null) {
+                PONDER_MISSES.increment();
+                stopPondering();
+            }
+            time = newTimeManager();
+            time.start();
+            EngineBoard position = board.copy(); //the watchdog may return while the search still runs
+            running = worker.submit(() -> search.search(position, Search.Limits.infinite(), 1, time));
+        }
+        ponder = null;
+
+        boolean watchdog = false;
+        Search.Result result;
+        try {
+            result = running.get(Math.max(0, time.deadline() - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            watchdog = true;
+            result = stopLate(running, time, moves[0]);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = stopLate(running, time, moves[0]);
+        }
+
+        long actual = System.nanoTime() - start;
+        record(time, actual, watchdog);
+        if (result.bestMove() != Move.NONE && result.pv().length >= 2) startPondering(board, result.bestMove(), result.pv()[1]);
+        return result.bestMove();
+    }
+
+    /**
+     * Returns the timing of the last move played.
+     *
+     * @return the timing, or null before the first move
+     */
+    public Timing lastTiming() {
+        return lastTiming;
+    }
+
+    /**
+     * Sets the clock back to the time control's base time, for a new game. Does nothing without a clock.
+     */
+    public void resetClock() {
+        if (timeControl != null) remainingMillis = timeControl.baseMillis();
+    }
+
+    /**
+     * Cancels the background search, for example when the game is reloaded. Waits until it has ended.
+     */
+    public void stopPondering() {
+        if (ponder == null) return;
+        ponderTime.stop();
+        await(ponder);
+        ponder = null;
+    }
+
+    /**
+     * Checks if the engine is searching in the background.
+     *
+     * @return true while pondering
+     */
+    public boolean isPondering() {
+        return ponder != null && !ponder.isDone();
+    }
+
+    /**
+     * Stops pondering and ends the search thread.
+     */
+    @Override
+    public void close() {
+        stopPondering();
+        worker.shutdown();
+    }
+
+    private TimeManager newTimeManager() {
+        return timeControl == null ? TimeManager.perMove(moveMillis) : TimeManager.clock(remainingMillis, timeControl.incrementMillis());
+    } //allocated from the clock as it is now, which does not change while the opponent thinks
+
+    private Search.Result stopLate(Future<Search.Result> running, TimeManager time, int anyMove) {
+        WATCHDOG.increment();
+        time.stop();
+        search.stop();
+        try {
+            return running.get(WATCHDOG_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+        }
+        Search.Iteration iteration = time.lastIteration();
+        if (iteration != null) {
+            Search.Line best = iteration.lines().get(0);
+            return new Search.Result(best.move(), best.score(), iteration.depth(), iteration.nodes(), iteration.nanos(), best.pv());
+        }
+        return new Search.Result(anyMove, 0, 0, 0, 0, new int[]{anyMove});
+    } //the search keeps running until its next poll, the worker starts the next search only after it
+
+    private void record(TimeManager time, long actualNanos, boolean watchdog) {
+        long actual = actualNanos / 1_000_000;
+        if (timeControl != null) remainingMillis += timeControl.incrementMillis() - actual;
+        lastTiming = new Timing(time.optimumMillis(), time.maximumMillis(), actual, timeControl == null ? -1 : remainingMillis, watchdog);
+        RESPONSE_TIME.record(actualNanos);
+        BUDGET.record(time.optimumMillis() * 1_000_000);
+        if (actual > time.optimumMillis()) OVER_BUDGET.increment();
+        if (actual > time.maximumMillis()) LATE.increment();
+    }
+
+    private void startPondering(EngineBoard board, int move, int expectedReply) {
+        EngineBoard expected = board.copy();
+        expected.make(move);
+        expected.make(expectedReply);
+        ponderHash = expected.hash();
+        TimeManager time = newTimeManager();
+        time.startPondering();
+        ponderTime = time;
+        ponder = worker.submit(() -> search.search(expected, Search.Limits.infinite(), 1, time));
+    }
+
+    private static long checkMoveMillis(long moveMillis) {
+        if (moveMillis <= 0) throw new IllegalArgumentException("The thinking time must be positive");
+        return moveMillis;
+    } //checked here, not on the first move: the constructor hands 0 on for a clock
+
+    private static Search.Result await(Future<Search.Result> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The background search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
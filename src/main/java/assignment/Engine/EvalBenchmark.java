@@ -0,0 +1,167 @@
+package assignment.Engine;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the NNUE evaluation with the classical one, in evaluations per second and in search speed, and checks
+ * that the incremental, scalar and SIMD paths all give the network's exact scores.
+ * <ul>
+ *     <li>Check: random make/unmake walks over random positions, comparing the incrementally updated accumulator
+ *     with a from-scratch evaluation after every step, for both kernels.</li>
+ *     <li>Static: one evaluation per position, the NNUE accumulator rebuilt from the pieces each time.</li>
+ *     <li>Incremental: make a move, evaluate, take it back, as a search leaf does. This is the case NNUE is
+ *     built for.</li>
+ *     <li>Search: nodes per second of a fixed-depth search with each evaluation.</li>
+ * </ul>
+ * The SIMD kernel needs {@code --add-modules jdk.incubator.vector}; without it both NNUE rows use plain loops.
+ * <p>
+ * Usage: {@code java --add-modules jdk.incubator.vector assignment.Engine.EvalBenchmark [positions]}
+ */
+public final class EvalBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int SEARCH_DEPTH = 6;
+
+    private EvalBenchmark() {
+    } //only static helpers, no instances
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of random positions (default 2000)
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        NnueNetwork network = NnueNetwork.defaultNetwork();
+        Evaluator classical = new PieceSquareEvaluator();
+        NnueEvaluator scalar = new NnueEvaluator(network, false);
+        NnueEvaluator simd = new NnueEvaluator(network, true);
+        System.out.printf("Network: 768 -> 2x%d -> 1, kernels: %s and %s%n", network.hidden(), scalar.kernelName(), simd.kernelName());
+        if (simd.kernelName().equals(scalar.kernelName())) {
+            System.out.println("The Vector API is not available, start with --add-modules jdk.incubator.vector to measure it");
+        }
+
+        SplittableRandom random = new SplittableRandom(7);
+        EngineBoard[] boards = new EngineBoard[count];
+        int[][] moves = new int[count][];
+        for (int i = 0; i < count; i++) {
+            boards[i] = randomPosition(random);
+            int[] list = new int[MoveGenerator.MAX_MOVES];
+            moves[i] = Arrays.copyOf(list, MoveGenerator.legal(boards[i], list));
+        }
+
+        int mismatches = check(boards, network, scalar, random) + check(boards, network, simd, random);
+        System.out.println(mismatches == 0 ? "Incremental, scalar and SIMD scores all match the reference" : mismatches + " mismatching scores");
+        if (mismatches > 0) System.exit(1);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d: static %s | incremental %s%n", round,
+                    String.format("classical %s, nnue scalar %s, nnue simd %s", rate(staticEvals(boards, classical)),
+                            rate(refreshes(boards, network, NnueKernel.SCALAR)), rate(refreshes(boards, network, NnueKernel.best()))),
+                    String.format("classical %s, nnue scalar %s, nnue simd %s", rate(incremental(boards, moves, classical)),
+                            rate(incremental(boards, moves, scalar)), rate(incremental(boards, moves, simd))));
+        }
+        for (Evaluator evaluator : new Evaluator[]{classical, scalar, simd}) {
+            Search search = new Search(evaluator, new TranspositionTable(Search.DEFAULT_HASH_BYTES));
+            long nodes = 0;
+            long nanos = 0;
+            for (int i = 0; i < 20; i++) {
+                Search.Result result = search.search(boards[i * (count / 20)].copy(), Search.Limits.depth(SEARCH_DEPTH));
+                nodes += result.nodes();
+                nanos += result.nanos();
+            }
+            String name = evaluator instanceof NnueEvaluator nnue ? "nnue " + nnue.kernelName() : "classical";
+            System.out.printf("Search depth %d, %-22s %,d nodes/s%n", SEARCH_DEPTH, name + ":", nodes * 1_000_000_000L / Math.max(1, nanos));
+        }
+    }
+
+    private static EngineBoard randomPosition(SplittableRandom random) {
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        while (true) {
+            EngineBoard board = new EngineBoard();
+            int plies = 10 + random.nextInt(50);
+            boolean ok = true;
+            for (int ply = 0; ply < plies && ok; ply++) {
+                int count = MoveGenerator.legal(board, list);
+                if (count == 0) ok = false;
+                else board.make(list[random.nextInt(count)]);
+            }
+            if (ok && MoveGenerator.legal(board, list) > 0) {
+                board.setFen(board.toFen()); //forget the history, as a position from a file would
+                return board;
+            }
+        }
+    }
+
+    private static int check(EngineBoard[] boards, NnueNetwork network, NnueEvaluator evaluator, SplittableRandom random) {
+        int mismatches = 0;
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        for (EngineBoard original : boards) {
+            EngineBoard board = original.copy();
+            int made = 0;
+            for (int step = 0; step < 16; step++) {
+                int count = MoveGenerator.legal(board, list);
+                if (count > 0 && (made == 0 || random.nextInt(3) > 0)) {
+                    board.make(list[random.nextInt(count)]);
+                    made++;
+                } else if (made > 0) {
+                    board.unmake();
+                    made--;
+                }
+                if (evaluator.evaluate(board) != network.evaluateFromScratch(board)) mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static double staticEvals(EngineBoard[] boards, Evaluator evaluator) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < 20; repeat++) {
+            for (EngineBoard board : boards) sum += evaluator.evaluate(board);
+        }
+        return perSecond(20L * boards.length, start, sum);
+    }
+
+    private static double refreshes(EngineBoard[] boards, NnueNetwork network, NnueKernel kernel) {
+        NnueAccumulator accumulator = new NnueAccumulator(network, kernel);
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < 20; repeat++) {
+            for (EngineBoard board : boards) {
+                accumulator.refresh(board);
+                sum += accumulator.evaluate(board.sideToMove());
+            }
+        }
+        return perSecond(20L * boards.length, start, sum);
+    }
+
+    private static double incremental(EngineBoard[] boards, int[][] moves, Evaluator evaluator) {
+        long sum = 0;
+        long evaluations = 0;
+        for (EngineBoard board : boards) evaluator.evaluate(board); //attach the accumulators outside the timing
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < 4; repeat++) {
+            for (int i = 0; i < boards.length; i++) {
+                EngineBoard board = boards[i];
+                for (int move : moves[i]) {
+                    board.make(move);
+                    sum += evaluator.evaluate(board);
+                    board.unmake();
+                }
+                evaluations += moves[i].length;
+            }
+        }
+        return perSecond(evaluations, start, sum);
+    }
+
+    private static double perSecond(long evaluations, long start, long sum) {
+        long nanos = System.nanoTime() - start;
+        if (sum == 42) System.out.print(""); //keeps the results alive
+        return evaluations * 1e9 / nanos;
+    }
+
+    private static String rate(double perSecond) {
+        return String.format("%.1fM/s", perSecond / 1e6);
+    }
+}
@@ -0,0 +1,16 @@
+package assignment.Engine;
+
+/**
+ * Static evaluation of a position.
+ * Scores are in centipawns from the point of view of the side to move, so a positive score is good for the side
+ * whose turn it is. Implementations must not change the board and should be thread-safe.
+ */
+public interface Evaluator {
+    /**
+     * Evaluates a position.
+     *
+     * @param board the position
+     * @return the score in centipawns, from the side to move's point of view
+     */
+    int evaluate(EngineBoard board);
+}
@@ -0,0 +1,159 @@
+package assignment.Engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Finds the magic multipliers used by {@link Attacks} for rook and bishop lookups, and prints them as Java source.
+ * <p>
+ * A magic for a square maps every blocker configuration on the square's relevant rays (the mask) to a table index
+ * with {@code (occupied & mask) * magic >>> shift}, where the shift leaves exactly as many bits as the mask has.
+ * Different configurations may share an index only if they give the same attack set. The finder tries sparse random
+ * numbers until one works for every configuration; with a fixed seed the output is reproducible.
+ * <p>
+ * The numbers in {@link Attacks} were produced by this tool once and are compiled in, so starting the program
+ * never searches for magics. The tool also writes the table resource {@link Attacks} loads at startup.
+ * <p>
+ * Usage:
+ * <ul>
+ *     <li>{@code java assignment.Engine.MagicFinder} - verifies the compiled magics and the attack tables in use
+ *     against walking the rays, for every square and blocker configuration</li>
+ *     <li>{@code java assignment.Engine.MagicFinder -generate [seed]} - prints new magics as Java source</li>
+ *     <li>{@code java assignment.Engine.MagicFinder -write directory} - verifies the tables, then writes
+ *     {@value Attacks#TABLE_RESOURCE} into the directory (e.g. {@code src/main/resources/assignment/Engine})</li>
+ * </ul>
+ */
+public final class MagicFinder {
+    private static final long DEFAULT_SEED = 0x5EED_C4E55L;
+
+    private MagicFinder() {
+    } //only static helpers, no instances
+
+    /**
+     * Searches a magic for a square.
+     *
+     * @param square the square
+     * @param rook true for rook rays, false for bishop rays
+     * @param random the random source
+     * @return a magic that maps every blocker configuration to a consistent index
+     */
+    public static long find(int square, boolean rook, SplittableRandom random) {
+        long mask = rook ? Attacks.rookMask(square) : Attacks.bishopMask(square);
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+        int count = 0;
+        long subset = 0;
+        do {
+            occupancies[count] = subset;
+            attacks[count] = rook ? Attacks.slideRook(square, subset) : Attacks.slideBishop(square, subset);
+            count++;
+            subset = (subset - mask) & mask;
+        } while (subset != 0); //the carry-rippler trick enumerates every subset of the mask
+        long[] used = new long[size];
+        int[] epoch = new int[size];
+        for (int attempt = 1; ; attempt++) {
+            long magic = random.nextLong() & random.nextLong() & random.nextLong();
+            if (Long.bitCount((mask * magic) & 0xFF00_0000_0000_0000L) < 6) continue; //cannot spread the mask well enough
+            boolean ok = true;
+            for (int i = 0; i < count && ok; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    used[index] = attacks[i];
+                } else if (used[index] != attacks[i]) {
+                    ok = false;
+                }
+            }
+            if (ok) return magic;
+        }
+    }
+
+    /**
+     * Checks a magic against every blocker configuration of a square.
+     *
+     * @param square the square
+     * @param rook true for rook rays, false for bishop rays
+     * @param magic the magic to check
+     * @return true if no two configurations with different attacks share an index
+     */
+    public static boolean verify(int square, boolean rook, long magic) {
+        long mask = rook ? Attacks.rookMask(square) : Attacks.bishopMask(square);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+        boolean[] filled = new boolean[1 << bits];
+        long subset = 0;
+        do {
+            long attacks = rook ? Attacks.slideRook(square, subset) : Attacks.slideBishop(square, subset);
+            int index = (int) ((subset * magic) >>> (64 - bits));
+            if (filled[index] && table[index] != attacks) return false;
+            filled[index] = true;
+            table[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+        return true;
+    }
+
+    /**
+     * Checks the attack tables in use against walking the rays, for every square and blocker configuration.
+     *
+     * @return the number of wrong entries
+     */
+    public static int verifyTables() {
+        int wrong = 0;
+        for (int square = 0; square < 64; square++) {
+            long subset = 0;
+            do {
+                if (Attacks.rook(square, subset) != Attacks.slideRook(square, subset)) wrong++;
+                subset = (subset - Attacks.rookMask(square)) & Attacks.rookMask(square);
+            } while (subset != 0);
+            do {
+                if (Attacks.bishop(square, subset) != Attacks.slideBishop(square, subset)) wrong++;
+                subset = (subset - Attacks.bishopMask(square)) & Attacks.bishopMask(square);
+            } while (subset != 0);
+        }
+        return wrong;
+    }
+
+    /**
+     * Verifies the compiled magics and tables, generates new magics, or writes the table resource.
+     *
+     * @param args nothing to verify, {@code -generate [seed]}, or {@code -write directory}
+     * @throws IOException if the table resource cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("-generate")) {
+            SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SEED);
+            long start = System.nanoTime();
+            for (boolean rook : new boolean[]{true, false}) {
+                StringBuilder sb = new StringBuilder("    private static final long[] " + (rook ? "ROOK" : "BISHOP") + "_MAGICS = {");
+                for (int square = 0; square < 64; square++) {
+                    sb.append(square % 4 == 0 ? "\n            " : " ");
+                    sb.append(String.format("0x%016XL,", find(square, rook, random)));
+                }
+                System.out.println(sb.append("\n    };"));
+            }
+            System.out.printf("Found 128 magics in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            return;
+        }
+        int failures = 0;
+        for (int square = 0; square < 64; square++) {
+            if (!verify(square, true, Attacks.rookMagic(square))) failures++;
+            if (!verify(square, false, Attacks.bishopMagic(square))) failures++;
+        }
+        System.out.println(failures == 0 ? "All 128 compiled magics are valid" : failures + " compiled magics are wrong");
+        int wrong = verifyTables();
+        System.out.println((wrong == 0 ? "All attack table entries are correct" : wrong + " attack table entries are wrong")
+                + (Attacks.tableFromResource() ? " (loaded from " + Attacks.TABLE_RESOURCE + ")" : " (filled at startup)"));
+        if (failures > 0 || wrong > 0) System.exit(1);
+        if (args.length > 1 && args[0].equals("-write")) {
+            Path file = Path.of(args[1]).resolve(Attacks.TABLE_RESOURCE);
+            Files.createDirectories(file.getParent());
+            Attacks.writeTable(Files.newOutputStream(file));
+            System.out.println("Wrote " + file + " (" + Files.size(file) / 1024 + " KiB)");
+        }
+    }
+}
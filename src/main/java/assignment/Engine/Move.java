@@ -0,0 +1,129 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+/**
+ * Static helpers for moves encoded as plain ints.
+ * Moves are passed around the engine as ints so that move lists are primitive arrays
+ * and generating a move never allocates. The layout is:
+ * <ul>
+ *     <li>bits 0-5: source square (row * 8 + column)</li>
+ *     <li>bits 6-11: destination square</li>
+ *     <li>bits 12-14: promotion piece type (see {@link PieceCode})</li>
+ *     <li>bits 15-16: move kind (normal, promotion, en passant or castling)</li>
+ * </ul>
+ * A castling move is stored as "king takes own rook": the destination is the square of the castling rook.
+ * This is the encoding Polyglot books use and it also works for rooks that do not start in the corners.
+ */
+public final class Move {
+    /** The null value, never a legal move */
+    public static final int NONE = 0;
+    /** A normal move or capture */
+    public static final int NORMAL = 0;
+    /** A pawn move to the last rank */
+    public static final int PROMOTION = 1;
+    /** A pawn capturing en passant */
+    public static final int EN_PASSANT = 2;
+    /** A king castling with a rook */
+    public static final int CASTLING = 3;
+
+    private Move() {
+    } //only static helpers, no instances
+
+    /**
+     * Encodes a normal move.
+     *
+     * @param from the source square
+     * @param to the destination square
+     * @return the encoded move
+     */
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    /**
+     * Encodes a move of a special kind.
+     *
+     * @param from the source square
+     * @param to the destination square (the rook square for castling)
+     * @param kind NORMAL, PROMOTION, EN_PASSANT or CASTLING
+     * @param promotion the promotion piece type, or 0
+     * @return the encoded move
+     */
+    public static int of(int from, int to, int kind, int promotion) {
+        return from | (to << 6) | (promotion << 12) | (kind << 15);
+    }
+
+    /**
+     * Returns the source square of a move.
+     *
+     * @param move the encoded move
+     * @return the square index (0-63)
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * Returns the destination square of a move.
+     *
+     * @param move the encoded move
+     * @return the square index (0-63)
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * Returns the kind of a move.
+     *
+     * @param move the encoded move
+     * @return NORMAL, PROMOTION, EN_PASSANT or CASTLING
+     */
+    public static int kind(int move) {
+        return (move >>> 15) & 3;
+    }
+
+    /**
+     * Returns the promotion piece type of a move.
+     *
+     * @param move the encoded move
+     * @return the piece type, or 0 if the move is not a promotion
+     */
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    /**
+     * Returns the name of a square in chess notation.
+     *
+     * @param square the square index (0-63)
+     * @return the square name (e.g. "e4")
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+
+    /**
+     * Converts a move to coordinate (UCI) notation, e.g. "e2e4" or "e7e8q".
+     * Castling is written as the king's two-square move when the king starts on the e file and the rook in the corner,
+     * as in standard chess ("e1g1"), and as the king moving onto its rook otherwise, as Chess960 needs ("f1h1"):
+     * there a king move to the g or c file can also be an ordinary king move.
+     *
+     * @param move the encoded move
+     * @return the move in coordinate notation
+     */
+    public static String toUci(int move) {
+        if (move == NONE) return "0000";
+        int from = from(move);
+        int to = to(move);
+        if (kind(move) == CASTLING && (from & 7) == 4 && ((to & 7) == 0 || (to & 7) == 7)) {
+            to = (from & 56) | (to > from ? 6 : 2); //the king ends on the g or c file
+        }
+        String text = squareName(from) + squareName(to);
+        if (kind(move) == PROMOTION) {
+            text += Character.toLowerCase(PieceCode.symbol(promotion(move)));
+        }
+        return text;
+    }
+}
@@ -0,0 +1,234 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+/**
+ * Generates moves for an {@link EngineBoard}.
+ * Moves are written into a caller-supplied int array (see {@link Move} for the encoding)
+ * and the number of moves is returned, so generation never allocates.
+ * Pseudo-legal generation follows the piece movement rules including castling, en passant and promotion;
+ * legal generation additionally drops moves that leave the own king in check.
+ */
+public final class MoveGenerator {
+    /** Upper bound on the number of moves in any chess position, a safe size for move arrays */
+    public static final int MAX_MOVES = 256;
+
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_8 = 0xFFL << 56;
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long FILE_H = FILE_A << 7;
+    private static final int[] PROMOTIONS = {PieceCode.QUEEN, PieceCode.ROOK, PieceCode.BISHOP, PieceCode.KNIGHT};
+
+    private MoveGenerator() {
+    } //only static helpers, no instances
+
+    /**
+     * Generates all legal moves of the side to move.
+     *
+     * @param board the position
+     * @param moves the array to write the moves into (at least MAX_MOVES long)
+     * @return the number of moves written
+     */
+    public static int legal(EngineBoard board, int[] moves) {
+        int count = pseudoLegal(board, moves, false);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            if (isLegal(board, moves[i])) moves[legal++] = moves[i];
+        }
+        return legal;
+    }
+
+    /**
+     * Generates the legal captures and queen promotions of the side to move, as searched in quiescence.
+     *
+     * @param board the position
+     * @param moves the array to write the moves into (at least MAX_MOVES long)
+     * @return the number of moves written
+     */
+    public static int legalCaptures(EngineBoard board, int[] moves) {
+        int count = pseudoLegal(board, moves, true);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            if (isLegal(board, moves[i])) moves[legal++] = moves[i];
+        }
+        return legal;
+    }
+
+    /**
+     * Checks if a pseudo-legal move keeps the own king out of check.
+     *
+     * @param board the position
+     * @param move a move generated by {@link #pseudoLegal}
+     * @return true if the move is legal
+     */
+    public static boolean isLegal(EngineBoard board, int move) {
+        board.make(move);
+        boolean legal = !board.leftKingInCheck();
+        board.unmake();
+        return legal;
+    }
+
+    /**
+     * Checks if the side to move has at least one legal move.
+     * This is cheaper than generating the full legal list when only checkmate or stalemate matters.
+     *
+     * @param board the position
+     * @return true if a legal move exists
+     */
+    public static boolean hasLegalMove(EngineBoard board) {
+        int[] moves = new int[MAX_MOVES];
+        int count = pseudoLegal(board, moves, false);
+        for (int i = 0; i < count; i++) {
+            if (isLegal(board, moves[i])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Generates pseudo-legal moves: moves that follow the piece rules but may leave the own king in check.
+     * Castling moves are fully checked here (the king may not castle out of, through or into check).
+     *
+     * @param board the position
+     * @param moves the array to write the moves into (at least MAX_MOVES long)
+     * @param capturesOnly if true, only captures and queen promotions are generated
+     * @return the number of moves written
+     */
+    public static int pseudoLegal(EngineBoard board, int[] moves, boolean capturesOnly) {
+        int side = board.sideToMove();
+        int color = side << 3;
+        long own = board.occupancy(side);
+        long enemy = board.occupancy(side ^ 1);
+        long occupied = board.occupied();
+        long targets = capturesOnly ? enemy : ~own;
+        int count = generatePawnMoves(board, moves, 0, side, enemy, occupied, capturesOnly);
+
+        for (long knights = board.pieces(PieceCode.KNIGHT | color); knights != 0; knights &= knights - 1) {
+            int from = Long.numberOfTrailingZeros(knights);
+            count = addMoves(moves, count, from, Attacks.knight(from) & targets);
+        }
+        for (long bishops = board.pieces(PieceCode.BISHOP | color); bishops != 0; bishops &= bishops - 1) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            count = addMoves(moves, count, from, Attacks.bishop(from, occupied) & targets);
+        }
+        for (long rooks = board.pieces(PieceCode.ROOK | color); rooks != 0; rooks &= rooks - 1) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            count = addMoves(moves, count, from, Attacks.rook(from, occupied) & targets);
+        }
+        for (long queens = board.pieces(PieceCode.QUEEN | color); queens != 0; queens &= queens - 1) {
+            int from = Long.numberOfTrailingZeros(queens);
+            count = addMoves(moves, count, from, Attacks.queen(from, occupied) & targets);
+        }
+        long kings = board.pieces(PieceCode.KING | color);
+        if (kings != 0) {
+            int from = Long.numberOfTrailingZeros(kings);
+            count = addMoves(moves, count, from, Attacks.king(from) & targets);
+            if (!capturesOnly) count = generateCastling(board, moves, count, side, from);
+        }
+        return count;
+    }
+
+    private static int generatePawnMoves(EngineBoard board, int[] moves, int count, int side, long enemy, long occupied, boolean capturesOnly) {
+        long pawns = board.pieces(PieceCode.PAWN | (side << 3));
+        long lastRank = side == EngineBoard.WHITE ? RANK_8 : RANK_1;
+        int forward = side == EngineBoard.WHITE ? 8 : -8;
+        long single;
+        long captureLeft;
+        long captureRight;
+        if (side == EngineBoard.WHITE) {
+            single = (pawns << 8) & ~occupied;
+            captureLeft = ((pawns & ~FILE_A) << 7) & enemy;
+            captureRight = ((pawns & ~FILE_H) << 9) & enemy;
+        } else {
+            single = (pawns >>> 8) & ~occupied;
+            captureLeft = ((pawns & ~FILE_A) >>> 9) & enemy;
+            captureRight = ((pawns & ~FILE_H) >>> 7) & enemy;
+        }
+
+        if (!capturesOnly) {
+            long doubled = side == EngineBoard.WHITE
+                    ? ((single & (RANK_1 << 16)) << 8) & ~occupied
+                    : ((single & (RANK_8 >>> 16)) >>> 8) & ~occupied;
+            for (long quiet = single & ~lastRank; quiet != 0; quiet &= quiet - 1) {
+                int to = Long.numberOfTrailingZeros(quiet);
+                moves[count++] = Move.of(to - forward, to);
+            }
+            for (; doubled != 0; doubled &= doubled - 1) {
+                int to = Long.numberOfTrailingZeros(doubled);
+                moves[count++] = Move.of(to - 2 * forward, to);
+            }
+        }
+        for (long promotions = single & lastRank; promotions != 0; promotions &= promotions - 1) {
+            int to = Long.numberOfTrailingZeros(promotions);
+            count = addPromotions(moves, count, to - forward, to, capturesOnly);
+        }
+        int leftStep = side == EngineBoard.WHITE ? 7 : -9;
+        int rightStep = side == EngineBoard.WHITE ? 9 : -7;
+        for (; captureLeft != 0; captureLeft &= captureLeft - 1) {
+            int to = Long.numberOfTrailingZeros(captureLeft);
+            count = addPawnCapture(moves, count, to - leftStep, to, lastRank);
+        }
+        for (; captureRight != 0; captureRight &= captureRight - 1) {
+            int to = Long.numberOfTrailingZeros(captureRight);
+            count = addPawnCapture(moves, count, to - rightStep, to, lastRank);
+        }
+
+        int ep = board.enPassantSquare();
+        if (ep >= 0) {
+            for (long attackers = Attacks.pawn(side ^ 1, ep) & pawns; attackers != 0; attackers &= attackers - 1) {
+                moves[count++] = Move.of(Long.numberOfTrailingZeros(attackers), ep, Move.EN_PASSANT, 0);
+            }
+        }
+        return count;
+    }
+
+    private static int addPawnCapture(int[] moves, int count, int from, int to, long lastRank) {
+        if ((lastRank & (1L << to)) != 0) return addPromotions(moves, count, from, to, false);
+        moves[count++] = Move.of(from, to);
+        return count;
+    } //under-promotions are captures too, so they stay in the capture list
+
+    private static int addPromotions(int[] moves, int count, int from, int to, boolean queenOnly) {
+        for (int type : PROMOTIONS) {
+            moves[count++] = Move.of(from, to, Move.PROMOTION, type);
+            if (queenOnly) break;
+        }
+        return count;
+    }
+
+    private static int generateCastling(EngineBoard board, int[] moves, int count, int side, int kingFrom) {
+        int rights = board.castlingRights() >>> (2 * side);
+        if ((rights & 3) == 0 || board.isAttacked(kingFrom, side ^ 1)) return count;
+        int rank = kingFrom & 56;
+        for (int right = 0; right < 2; right++) {
+            if ((rights & (1 << right)) == 0) continue;
+            int rookFrom = board.castlingRook(2 * side + right);
+            boolean kingSide = right == 0;
+            int kingTo = rank | (kingSide ? 6 : 2);
+            int rookTo = rank | (kingSide ? 5 : 3);
+            //every square the king or rook crosses must be empty, apart from the king and rook themselves
+            long path = between(kingFrom, kingTo) | between(rookFrom, rookTo) | (1L << kingTo) | (1L << rookTo);
+            path &= ~((1L << kingFrom) | (1L << rookFrom));
+            if ((path & board.occupied()) != 0) continue;
+            boolean safe = true;
+            for (long crossed = between(kingFrom, kingTo) | (1L << kingTo); crossed != 0 && safe; crossed &= crossed - 1) {
+                safe = !board.isAttacked(Long.numberOfTrailingZeros(crossed), side ^ 1);
+            }
+            if (safe) moves[count++] = Move.of(kingFrom, rookFrom, Move.CASTLING, 0);
+        }
+        return count;
+    }
+
+    private static long between(int a, int b) {
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        if (high - low < 2) return 0;
+        return ((1L << high) - 1) & ~((1L << (low + 1)) - 1);
+    } //squares strictly between two squares of the same rank
+
+    private static int addMoves(int[] moves, int count, int from, long targets) {
+        for (; targets != 0; targets &= targets - 1) {
+            moves[count++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,147 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+import java.util.Arrays;
+
+/**
+ * The first layer outputs of an {@link NnueNetwork} for one board, kept up to date while the board makes and
+ * takes back moves.
+ * <p>
+ * The accumulator is a stack with one entry (both sides' N values) per move made since it was last refreshed.
+ * {@link EngineBoard#make(int)} pushes a copy of the top entry and then adds and subtracts the weight rows of the
+ * pieces that appear and disappear; {@link EngineBoard#unmake()} just pops, so taking a move back costs nothing.
+ * Setting up a new position invalidates the stack, and the next evaluation rebuilds it from the pieces.
+ * <p>
+ * Owned by one board and, like the board, not thread-safe.
+ */
+final class NnueAccumulator {
+    private static final int INITIAL_DEPTH = 128;
+
+    private final NnueNetwork network;
+    private final NnueKernel kernel;
+    private final int hidden;
+    private final int entry; //values per stack entry, both sides
+    private short[] stack;
+    private int top;
+    private boolean valid;
+
+    /**
+     * Creates an empty, invalid accumulator.
+     *
+     * @param network the network whose first layer is accumulated
+     * @param kernel the arithmetic to use
+     */
+    NnueAccumulator(NnueNetwork network, NnueKernel kernel) {
+        this.network = network;
+        this.kernel = kernel;
+        this.hidden = network.hidden();
+        this.entry = 2 * hidden;
+        this.stack = new short[INITIAL_DEPTH * entry];
+    }
+
+    /**
+     * Checks if this accumulator serves an evaluation.
+     *
+     * @param network the evaluation's network
+     * @param kernel the evaluation's arithmetic
+     * @return true if both are the ones this accumulator was created for
+     */
+    boolean serves(NnueNetwork network, NnueKernel kernel) {
+        return this.network == network && this.kernel == kernel;
+    }
+
+    /**
+     * Checks if the top entry matches the board.
+     *
+     * @return false after a setup change, until the next {@link #refresh(EngineBoard)}
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Marks the accumulator as out of date, e.g. after pieces were placed by hand.
+     */
+    void invalidate() {
+        valid = false;
+        top = 0;
+    }
+
+    /**
+     * Rebuilds the accumulator from the pieces on the board, as the only stack entry.
+     *
+     * @param board the board
+     */
+    void refresh(EngineBoard board) {
+        top = 0;
+        for (int perspective = 0; perspective < 2; perspective++) {
+            System.arraycopy(network.featureBias, 0, stack, perspective * hidden, hidden);
+        }
+        for (int square = 0; square < 64; square++) {
+            int code = board.pieceAt(square);
+            if (code != PieceCode.EMPTY) add(code, square);
+        }
+        valid = true;
+    }
+
+    /**
+     * Starts a new stack entry as a copy of the current one, before a move changes the pieces.
+     */
+    void push() {
+        if (!valid) return;
+        if ((top + 2) * entry > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+        System.arraycopy(stack, top * entry, stack, (top + 1) * entry, entry);
+        top++;
+    }
+
+    /**
+     * Returns to the stack entry before the last {@link #push()}, when a move is taken back.
+     */
+    void pop() {
+        if (top == 0) {
+            valid = false; //taken back past the refresh, the pieces before it were never accumulated
+            return;
+        }
+        top--;
+    }
+
+    /**
+     * Accounts for a piece that appeared on a square.
+     *
+     * @param code the piece code
+     * @param square the square
+     */
+    void add(int code, int square) {
+        int base = top * entry;
+        kernel.add(stack, base, network.featureWeights, NnueNetwork.feature(EngineBoard.WHITE, code, square) * hidden, hidden);
+        kernel.add(stack, base + hidden, network.featureWeights, NnueNetwork.feature(EngineBoard.BLACK, code, square) * hidden, hidden);
+    }
+
+    /**
+     * Accounts for a piece that left a square.
+     *
+     * @param code the piece code
+     * @param square the square
+     */
+    void remove(int code, int square) {
+        int base = top * entry;
+        kernel.subtract(stack, base, network.featureWeights, NnueNetwork.feature(EngineBoard.WHITE, code, square) * hidden, hidden);
+        kernel.subtract(stack, base + hidden, network.featureWeights, NnueNetwork.feature(EngineBoard.BLACK, code, square) * hidden, hidden);
+    }
+
+    /**
+     * Runs the output layer on the top entry.
+     *
+     * @param sideToMove the side whose accumulator comes first
+     * @return the score in centipawns from the side to move's point of view
+     */
+    int evaluate(int sideToMove) {
+        int us = top * entry + sideToMove * hidden;
+        int them = top * entry + (sideToMove ^ 1) * hidden;
+        long output = (long) network.outputBias
+                + kernel.activate(stack, us, network.outputWeights, 0, hidden)
+                + kernel.activate(stack, them, network.outputWeights, hidden, hidden);
+        return (int) (output * NnueNetwork.SCALE / (NnueNetwork.QA * NnueNetwork.QB));
+    }
+}
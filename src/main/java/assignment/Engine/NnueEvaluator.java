@@ -0,0 +1,59 @@
+package assignment.Engine;
+
+/**
+ * Evaluates positions with an {@link NnueNetwork}.
+ * <p>
+ * The first evaluation of a board attaches an accumulator to it (see {@link NnueAccumulator}); after that the
+ * board's make and unmake keep it current, so evaluating a search node only runs the output layer. The evaluator
+ * itself holds no state and is thread-safe; the accumulator belongs to the board, like the rest of its state.
+ * <p>
+ * The arithmetic uses the Vector API when the JVM was started with {@code --add-modules jdk.incubator.vector},
+ * and plain loops otherwise (or with {@code -Dchess.nnue.scalar=true}); both give the same scores.
+ */
+public final class NnueEvaluator implements Evaluator {
+    private final NnueNetwork network;
+    private final NnueKernel kernel;
+
+    /**
+     * Creates an evaluator with the bundled network and the fastest available arithmetic.
+     *
+     * @throws IllegalStateException if the bundled network cannot be loaded
+     */
+    public NnueEvaluator() {
+        this(NnueNetwork.defaultNetwork(), true);
+    }
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param network the network
+     * @param simd true to use the Vector API if it is available, false to always use plain loops
+     */
+    public NnueEvaluator(NnueNetwork network, boolean simd) {
+        this.network = network;
+        this.kernel = simd ? NnueKernel.best() : NnueKernel.SCALAR;
+    }
+
+    @Override
+    public int evaluate(EngineBoard board) {
+        return board.accumulator(network, kernel).evaluate(board.sideToMove());
+    }
+
+    /**
+     * Returns the network.
+     *
+     * @return the network
+     */
+    public NnueNetwork network() {
+        return network;
+    }
+
+    /**
+     * Describes the arithmetic in use, for reports.
+     *
+     * @return "scalar" or the vector width
+     */
+    public String kernelName() {
+        return kernel.name();
+    }
+}
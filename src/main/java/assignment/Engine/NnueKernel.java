@@ -0,0 +1,99 @@
+package assignment.Engine;
+
+/**
+ * The arithmetic of the NNUE evaluation on arrays of 16-bit values: adding and subtracting weight rows to and
+ * from an accumulator, and the clipped dot product of the output layer.
+ * <p>
+ * {@link #best()} picks the SIMD implementation on the Vector API when the {@code jdk.incubator.vector} module is
+ * present (start the JVM with {@code --add-modules jdk.incubator.vector}), and the plain loops otherwise. Both
+ * compute exactly the same integers, so the choice only changes the speed.
+ */
+interface NnueKernel {
+    /** The plain Java implementation, available everywhere */
+    NnueKernel SCALAR = new Scalar();
+
+    /**
+     * Adds a weight row to an accumulator.
+     *
+     * @param accumulator the accumulator values
+     * @param offset the first accumulator value
+     * @param weights the weights
+     * @param row the first weight of the row
+     * @param length the number of values, a multiple of 16
+     */
+    void add(short[] accumulator, int offset, short[] weights, int row, int length);
+
+    /**
+     * Subtracts a weight row from an accumulator.
+     *
+     * @param accumulator the accumulator values
+     * @param offset the first accumulator value
+     * @param weights the weights
+     * @param row the first weight of the row
+     * @param length the number of values, a multiple of 16
+     */
+    void subtract(short[] accumulator, int offset, short[] weights, int row, int length);
+
+    /**
+     * Computes the sum of {@code clamp(accumulator[i], 0, QA) * weights[i]}.
+     *
+     * @param accumulator the accumulator values
+     * @param offset the first accumulator value
+     * @param weights the output weights
+     * @param row the first output weight
+     * @param length the number of values, a multiple of 16
+     * @return the dot product
+     */
+    int activate(short[] accumulator, int offset, short[] weights, int row, int length);
+
+    /**
+     * Returns a name for reports.
+     *
+     * @return e.g. "scalar" or "vector (256-bit)"
+     */
+    String name();
+
+    /**
+     * Returns the fastest implementation this JVM can run.
+     *
+     * @return the Vector API kernel if its module is present, otherwise {@link #SCALAR}
+     */
+    static NnueKernel best() {
+        if (Boolean.getBoolean("chess.nnue.scalar") || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        return new NnueVectorKernel(); //only loaded here, so the class never resolves without the module
+    }
+
+    /**
+     * The plain loops; the JIT may auto-vectorize the first two.
+     */
+    final class Scalar implements NnueKernel {
+        private Scalar() {
+        }
+
+        @Override
+        public void add(short[] accumulator, int offset, short[] weights, int row, int length) {
+            for (int i = 0; i < length; i++) accumulator[offset + i] += weights[row + i];
+        }
+
+        @Override
+        public void subtract(short[] accumulator, int offset, short[] weights, int row, int length) {
+            for (int i = 0; i < length; i++) accumulator[offset + i] -= weights[row + i];
+        }
+
+        @Override
+        public int activate(short[] accumulator, int offset, short[] weights, int row, int length) {
+            int sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += Math.clamp(accumulator[offset + i], 0, NnueNetwork.QA) * weights[row + i];
+            }
+            return sum;
+        }
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The weights of an efficiently updatable neural network (NNUE) evaluation, quantized to 16-bit integers.
+ * <p>
+ * The network has the common "768 -> 2 x N -> 1" shape. Every piece on the board switches on one of 768 inputs
+ * (own or opposing color, piece type, square), seen once from each side's point of view: black's view is the
+ * board mirrored top to bottom with the colors swapped, so both sides share the same weights. The first layer
+ * sums the weight rows of the active inputs into two accumulators of N values, one per side. Because a move only
+ * switches two to four inputs on or off, the accumulators are updated incrementally during the search instead of
+ * being recomputed (see {@link NnueAccumulator}). The output is a single neuron over the clipped accumulators,
+ * the side to move's first.
+ * <p>
+ * Quantization follows the usual scheme: first layer weights and biases are scaled by {@link #QA}, so the clipped
+ * activation ranges over 0..QA; output weights are scaled by {@link #QB}; the output is multiplied by
+ * {@link #SCALE} and divided by QA * QB to get centipawns.
+ * <p>
+ * The file format is gzip-compressed: the 8-byte format tag {@value #FORMAT}, the hidden size N as an int, then
+ * the first layer weights (768 rows of N shorts), the N first layer biases, the 2N output weights (shorts) and
+ * the output bias (an int), all little-endian. {@link NnueTrainer} writes such files.
+ */
+public final class NnueNetwork {
+    /** Name of the network resource bundled next to this class */
+    public static final String DEFAULT_RESOURCE = "nnue-default.bin.gz";
+    /** Number of inputs: 2 colors x 6 piece types x 64 squares */
+    public static final int INPUTS = 768;
+    /** Quantization of the first layer; also the upper clip of the activation */
+    public static final int QA = 255;
+    /** Quantization of the output layer */
+    public static final int QB = 64;
+    /** Centipawns per unit of the network output */
+    public static final int SCALE = 400;
+
+    private static final String FORMAT = "CHSNNUE1";
+
+    private final int hidden;
+    final short[] featureWeights; //INPUTS rows of hidden values
+    final short[] featureBias;
+    final short[] outputWeights; //the side to move's hidden values first, then the opponent's
+    final int outputBias;
+
+    /**
+     * Creates a network from quantized weights.
+     *
+     * @param hidden the accumulator size N, a positive multiple of 16
+     * @param featureWeights the first layer weights, 768 rows of N values
+     * @param featureBias the N first layer biases
+     * @param outputWeights the 2N output weights
+     * @param outputBias the output bias
+     */
+    public NnueNetwork(int hidden, short[] featureWeights, short[] featureBias, short[] outputWeights, int outputBias) {
+        if (hidden <= 0 || hidden % 16 != 0) throw new IllegalArgumentException("The hidden size must be a positive multiple of 16");
+        if (featureWeights.length != INPUTS * hidden || featureBias.length != hidden || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("The weight arrays do not match the hidden size " + hidden);
+        }
+        this.hidden = hidden;
+        this.featureWeights = featureWeights;
+        this.featureBias = featureBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Returns the network bundled with the program, loading it on first use.
+     *
+     * @return the default network
+     * @throws IllegalStateException if the resource is missing or broken
+     */
+    public static NnueNetwork defaultNetwork() {
+        return DefaultHolder.NETWORK;
+    }
+
+    private static final class DefaultHolder {
+        static final NnueNetwork NETWORK = loadDefault();
+
+        private static NnueNetwork loadDefault() {
+            try (InputStream in = NnueNetwork.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) throw new IllegalStateException(DEFAULT_RESOURCE + " is not on the class path (add src/main/resources)");
+                return read(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read " + DEFAULT_RESOURCE + ": " + e.getMessage(), e);
+            }
+        }
+    } //loaded on first use, so programs that never evaluate with the network never read it
+
+    /**
+     * Returns the accumulator size.
+     *
+     * @return N, the number of first layer outputs per side
+     */
+    public int hidden() {
+        return hidden;
+    }
+
+    /**
+     * Returns the input a piece switches on, seen from one side.
+     *
+     * @param perspective the side whose view is meant (WHITE or BLACK)
+     * @param code the piece code
+     * @param square the piece's square
+     * @return the input index, 0 to 767
+     */
+    public static int feature(int perspective, int code, int square) {
+        int relativeColor = (code >>> 3) ^ perspective;
+        int relativeSquare = perspective == EngineBoard.WHITE ? square : square ^ 56;
+        return ((relativeColor * 6 + (code & 7) - 1) << 6) | relativeSquare;
+    }
+
+    /**
+     * Evaluates a position from scratch, without an accumulator. Slow, meant for checking the incremental path.
+     *
+     * @param board the position (left unchanged)
+     * @return the score in centipawns from the side to move's point of view
+     */
+    public int evaluateFromScratch(EngineBoard board) {
+        int[][] sums = new int[2][hidden];
+        for (int perspective = 0; perspective < 2; perspective++) {
+            for (int i = 0; i < hidden; i++) sums[perspective][i] = featureBias[i];
+            for (int square = 0; square < 64; square++) {
+                int code = board.pieceAt(square);
+                if (code == PieceCode.EMPTY) continue;
+                int row = feature(perspective, code, square) * hidden;
+                for (int i = 0; i < hidden; i++) sums[perspective][i] += featureWeights[row + i];
+            }
+        }
+        long output = outputBias;
+        int us = board.sideToMove();
+        for (int i = 0; i < hidden; i++) {
+            output += (long) Math.clamp(sums[us][i], 0, QA) * outputWeights[i];
+            output += (long) Math.clamp(sums[us ^ 1][i], 0, QA) * outputWeights[hidden + i];
+        }
+        return (int) (output * SCALE / (QA * QB));
+    }
+
+    /**
+     * Reads a network file (see the class description for the format).
+     *
+     * @param in the gzip-compressed network, not closed
+     * @return the network
+     * @throws IOException if the stream cannot be read or is not a network file
+     */
+    public static NnueNetwork read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in, 1 << 16));
+        byte[] tag = new byte[FORMAT.length()];
+        data.readFully(tag);
+        if (!FORMAT.equals(new String(tag, StandardCharsets.US_ASCII))) throw new IOException("Not a network file");
+        ByteBuffer header = ByteBuffer.wrap(data.readNBytes(4)).order(ByteOrder.LITTLE_ENDIAN);
+        int hidden = header.getInt();
+        if (hidden <= 0 || hidden % 16 != 0 || hidden > 4096) throw new IOException("Unsupported hidden size " + hidden);
+        short[] weights = readShorts(data, INPUTS * hidden);
+        short[] bias = readShorts(data, hidden);
+        short[] output = readShorts(data, 2 * hidden);
+        ByteBuffer tail = ByteBuffer.wrap(data.readNBytes(4)).order(ByteOrder.LITTLE_ENDIAN);
+        if (tail.remaining() != 4) throw new IOException("The network file is truncated");
+        return new NnueNetwork(hidden, weights, bias, output, tail.getInt());
+    }
+
+    /**
+     * Writes the network (see the class description for the format).
+     *
+     * @param out the stream to write to, closed afterwards
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        try (DataOutputStream data = new DataOutputStream(new GZIPOutputStream(out, 1 << 16))) {
+            data.write(FORMAT.getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer buffer = ByteBuffer.allocate(4 + 2 * (featureWeights.length + featureBias.length + outputWeights.length) + 4)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(hidden);
+            buffer.asShortBuffer().put(featureWeights).put(featureBias).put(outputWeights);
+            buffer.position(buffer.position() + 2 * (featureWeights.length + featureBias.length + outputWeights.length));
+            buffer.putInt(outputBias);
+            data.write(buffer.array());
+        }
+    }
+
+    private static short[] readShorts(DataInputStream data, int count) throws IOException {
+        byte[] bytes = data.readNBytes(count * 2);
+        if (bytes.length != count * 2) throw new IOException("The network file is truncated");
+        short[] values = new short[count];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(values);
+        return values;
+    }
+}
@@ -0,0 +1,396 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Trains the network of {@link NnueEvaluator} and writes it in the {@link NnueNetwork} format.
+ * <p>
+ * The training data comes from self-play: games start with a few random moves, then both sides play the result
+ * of a fixed-depth search with the classical {@link PieceSquareEvaluator} (with an occasional random move for
+ * variety). Every quiet position (not in check, best move not a capture or promotion, no mate score) becomes a
+ * sample labelled with that search score and the game's outcome, so the network learns to see at a glance what the
+ * classical evaluation needs a search for, corrected by how such positions actually ended. The target is the
+ * expected score {@code (1 - lambda) / (1 + e^(-cp / 400)) + lambda * outcome}, so large material differences do
+ * not dominate the loss.
+ * <p>
+ * Training runs in floating point with Adam on mini-batches; first layer weights are kept within +-1.98 so the
+ * quantized accumulator cannot overflow 16 bits with all 32 pieces on the board. The result is quantized with
+ * {@link NnueNetwork#QA} and {@link NnueNetwork#QB}. The report compares the quantized network's error on held
+ * out samples with the classical evaluation's.
+ * <p>
+ * {@code -data} saves the generated positions as "FEN;score;result" lines, and {@code -input} trains on such a file instead
+ * of generating new positions.
+ * <p>
+ * Usage: {@code java assignment.Engine.NnueTrainer [-positions N] [-depth D] [-epochs E] [-hidden N] [-lambda L]
+ * [-seed S] [-data file | -input file] [-output file]}
+ */
+public final class NnueTrainer {
+    private static final int RANDOM_OPENING_PLIES = 8;
+    private static final double RANDOM_MOVE_RATE = 0.1;
+    private static final int MAX_GAME_PLIES = 300;
+    private static final int MAX_LABEL = 2000;
+    private static final int BATCH = 128;
+    private static final float WEIGHT_CLIP = 1.98f;
+    private static final double VALIDATION_SHARE = 0.05;
+
+    /**
+     * A training position: the active inputs from white's and black's view, the side to move and the label.
+     *
+     * @param white the inputs seen from white
+     * @param black the inputs seen from black
+     * @param side the side to move
+     * @param score the search score in centipawns from the side to move's point of view
+     * @param classical the classical static evaluation, for comparison
+     * @param result the outcome of the game the position is from, for white: 1, 0.5 or 0
+     */
+    record Sample(int[] white, int[] black, int side, int score, int classical, double result) {
+        static Sample of(EngineBoard board, int score, int classical, double result) {
+            int count = Long.bitCount(board.occupied());
+            int[] white = new int[count];
+            int[] black = new int[count];
+            int i = 0;
+            for (long occupied = board.occupied(); occupied != 0; occupied &= occupied - 1) {
+                int square = Long.numberOfTrailingZeros(occupied);
+                int code = board.pieceAt(square);
+                white[i] = NnueNetwork.feature(EngineBoard.WHITE, code, square);
+                black[i++] = NnueNetwork.feature(EngineBoard.BLACK, code, square);
+            }
+            return new Sample(white, black, board.sideToMove(), score, classical, result);
+        }
+    }
+
+    private final int hidden;
+    private final float[] weights; //INPUTS rows of hidden values
+    private final float[] bias;
+    private final float[] output; //2 * hidden: the side to move's, then the opponent's
+    private final float[] outputBias = new float[1];
+    private final float[] delta; //scratch: the gradient of each accumulator value
+
+    private NnueTrainer(int hidden, SplittableRandom random) {
+        this.hidden = hidden;
+        this.weights = new float[NnueNetwork.INPUTS * hidden];
+        this.bias = new float[hidden];
+        this.output = new float[2 * hidden];
+        this.delta = new float[hidden];
+        for (int i = 0; i < weights.length; i++) weights[i] = (float) ((random.nextDouble() * 2 - 1) * 0.1);
+        for (int i = 0; i < hidden; i++) bias[i] = 0.25f;
+        for (int i = 0; i < output.length; i++) output[i] = (float) ((random.nextDouble() * 2 - 1) * 0.2);
+    }
+
+    /**
+     * Generates training positions by self-play.
+     *
+     * @param positions the number of samples to produce
+     * @param depth the search depth of the labels
+     * @param random the random source
+     * @param data a file to write every sample to as "FEN;score;result", or null
+     * @return the samples
+     * @throws IOException if the data file cannot be written
+     */
+    static List<Sample> generate(int positions, int depth, SplittableRandom random, Path data) throws IOException {
+        List<Sample> samples = new ArrayList<>(positions);
+        Search search = new Search();
+        PieceSquareEvaluator classical = new PieceSquareEvaluator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long start = System.nanoTime();
+        try (BufferedWriter writer = data == null ? null : Files.newBufferedWriter(data)) {
+            while (samples.size() < positions) {
+                EngineBoard board = new EngineBoard();
+                List<Sample> game = new ArrayList<>();
+                List<String> fens = new ArrayList<>();
+                double result = 0.5; //white's score, a draw unless the game is decided
+                for (int ply = 0; ply < MAX_GAME_PLIES; ply++) {
+                    int count = MoveGenerator.legal(board, moves);
+                    if (count == 0) {
+                        if (board.inCheck()) result = board.sideToMove() == EngineBoard.WHITE ? 0 : 1;
+                        break;
+                    }
+                    if (board.halfmoveClock() >= 100) break;
+                    if (ply < RANDOM_OPENING_PLIES) {
+                        board.make(moves[random.nextInt(count)]);
+                        continue;
+                    }
+                    Search.Result found = search.search(board, Search.Limits.depth(depth));
+                    int best = found.bestMove();
+                    if (Search.isMate(found.score())) { //the rest of the game is a forced line
+                        result = (found.score() > 0) == (board.sideToMove() == EngineBoard.WHITE) ? 1 : 0;
+                        break;
+                    }
+                    boolean quiet = !board.inCheck() && Move.kind(best) != Move.PROMOTION && Move.kind(best) != Move.EN_PASSANT
+                            && (Move.kind(best) == Move.CASTLING || board.pieceAt(Move.to(best)) == PieceCode.EMPTY);
+                    if (quiet && Math.abs(found.score()) <= MAX_LABEL) {
+                        game.add(Sample.of(board, found.score(), classical.evaluate(board), 0.5));
+                        fens.add(board.toFen());
+                    }
+                    board.make(random.nextDouble() < RANDOM_MOVE_RATE ? moves[random.nextInt(count)] : best);
+                }
+                for (int i = 0; i < game.size() && samples.size() < positions; i++) {
+                    Sample sample = game.get(i);
+                    samples.add(new Sample(sample.white(), sample.black(), sample.side(), sample.score(), sample.classical(), result));
+                    if (writer != null) {
+                        writer.write(fens.get(i) + ";" + sample.score() + ";" + result);
+                        writer.newLine();
+                    }
+                    if (samples.size() % 10_000 == 0) {
+                        System.out.printf("%d positions (%.0f s)%n", samples.size(), (System.nanoTime() - start) / 1e9);
+                    }
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Reads positions saved with {@code -data}.
+     *
+     * @param file the "FEN;score;result" lines (without a result, the positions count as drawn)
+     * @return the samples
+     * @throws IOException if the file cannot be read or has a malformed line
+     */
+    static List<Sample> read(Path file) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        PieceSquareEvaluator classical = new PieceSquareEvaluator();
+        int number = 0;
+        for (String line : Files.readAllLines(file)) {
+            number++;
+            String[] fields = line.split(";");
+            try {
+                EngineBoard board = EngineBoard.fromFen(fields[0]);
+                samples.add(Sample.of(board, Integer.parseInt(fields[1].trim()), classical.evaluate(board),
+                        fields.length > 2 ? Double.parseDouble(fields[2].trim()) : 0.5));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException(file + " line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        return samples;
+    }
+
+    private void train(List<Sample> samples, int epochs, double lambda, SplittableRandom random) {
+        Adam weightSteps = new Adam(weights.length);
+        Adam biasSteps = new Adam(bias.length);
+        Adam outputSteps = new Adam(output.length);
+        Adam outputBiasSteps = new Adam(1);
+        float[] weightGradient = new float[weights.length];
+        float[] biasGradient = new float[bias.length];
+        float[] outputGradient = new float[output.length];
+        float[] outputBiasGradient = new float[1];
+        float[] us = new float[hidden];
+        float[] them = new float[hidden];
+        int[] order = new int[samples.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            double rate = 0.005 * Math.pow(0.5, (epoch - 1) / Math.max(1.0, epochs / 3.0)); //halves every third of the run
+            double loss = 0;
+            for (int from = 0; from < order.length; from += BATCH) {
+                int to = Math.min(order.length, from + BATCH);
+                Arrays.fill(weightGradient, 0);
+                Arrays.fill(biasGradient, 0);
+                Arrays.fill(outputGradient, 0);
+                outputBiasGradient[0] = 0;
+                for (int k = from; k < to; k++) {
+                    Sample sample = samples.get(order[k]);
+                    int[] ours = sample.side() == EngineBoard.WHITE ? sample.white() : sample.black();
+                    int[] theirs = sample.side() == EngineBoard.WHITE ? sample.black() : sample.white();
+                    double predicted = sigmoid(forward(sample, us, them));
+                    double outcome = sample.side() == EngineBoard.WHITE ? sample.result() : 1 - sample.result();
+                    double target = (1 - lambda) * sigmoid(sample.score() / (double) NnueNetwork.SCALE) + lambda * outcome;
+                    loss += (predicted - target) * (predicted - target);
+                    float g = (float) (2 * (predicted - target) * predicted * (1 - predicted));
+                    outputBiasGradient[0] += g;
+                    for (int i = 0; i < hidden; i++) {
+                        outputGradient[i] += g * clip(us[i]);
+                        outputGradient[hidden + i] += g * clip(them[i]);
+                    }
+                    backpropagate(ours, us, g, 0, weightGradient, biasGradient);
+                    backpropagate(theirs, them, g, hidden, weightGradient, biasGradient);
+                }
+                float scale = 1f / (to - from);
+                weightSteps.step(weights, weightGradient, scale, rate, WEIGHT_CLIP);
+                biasSteps.step(bias, biasGradient, scale, rate, WEIGHT_CLIP);
+                outputSteps.step(output, outputGradient, scale, rate, 127);
+                outputBiasSteps.step(outputBias, outputBiasGradient, scale, rate, 127);
+            }
+            System.out.printf("Epoch %d: loss %.6f%n", epoch, loss / order.length);
+        }
+    }
+
+    private double forward(Sample sample, float[] us, float[] them) {
+        accumulate(sample.side() == EngineBoard.WHITE ? sample.white() : sample.black(), us);
+        accumulate(sample.side() == EngineBoard.WHITE ? sample.black() : sample.white(), them);
+        double out = outputBias[0];
+        for (int i = 0; i < hidden; i++) out += output[i] * clip(us[i]) + output[hidden + i] * clip(them[i]);
+        return out;
+    } //the network output in units of SCALE centipawns
+
+    private void accumulate(int[] features, float[] values) {
+        System.arraycopy(bias, 0, values, 0, hidden);
+        for (int feature : features) {
+            int row = feature * hidden;
+            for (int i = 0; i < hidden; i++) values[i] += weights[row + i];
+        }
+    }
+
+    private void backpropagate(int[] features, float[] values, float g, int outputOffset, float[] weightGradient, float[] biasGradient) {
+        for (int i = 0; i < hidden; i++) {
+            delta[i] = values[i] <= 0 || values[i] >= 1 ? 0 : g * output[outputOffset + i]; //the clipped activation passes no gradient
+            biasGradient[i] += delta[i];
+        }
+        for (int feature : features) {
+            int row = feature * hidden;
+            for (int i = 0; i < hidden; i++) weightGradient[row + i] += delta[i];
+        }
+    }
+
+    private NnueNetwork quantize() {
+        short[] qWeights = new short[weights.length];
+        short[] qBias = new short[bias.length];
+        short[] qOutput = new short[output.length];
+        for (int i = 0; i < weights.length; i++) qWeights[i] = toShort(weights[i] * NnueNetwork.QA);
+        for (int i = 0; i < bias.length; i++) qBias[i] = toShort(bias[i] * NnueNetwork.QA);
+        for (int i = 0; i < output.length; i++) qOutput[i] = toShort(output[i] * NnueNetwork.QB);
+        return new NnueNetwork(hidden, qWeights, qBias, qOutput, Math.round(outputBias[0] * NnueNetwork.QA * NnueNetwork.QB));
+    }
+
+    private static short toShort(float value) {
+        return (short) Math.clamp(Math.round(value), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    private static float clip(float value) {
+        return Math.clamp(value, 0f, 1f);
+    }
+
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    /**
+     * Adam optimizer state for one parameter array.
+     */
+    private static final class Adam {
+        private static final double BETA1 = 0.9;
+        private static final double BETA2 = 0.999;
+        private final float[] m;
+        private final float[] v;
+        private int t;
+
+        Adam(int size) {
+            m = new float[size];
+            v = new float[size];
+        }
+
+        void step(float[] parameters, float[] gradient, float scale, double rate, float clip) {
+            t++;
+            double correction = rate * Math.sqrt(1 - Math.pow(BETA2, t)) / (1 - Math.pow(BETA1, t));
+            for (int i = 0; i < parameters.length; i++) {
+                float g = gradient[i] * scale;
+                if (g == 0 && m[i] == 0) continue; //inputs that never occur (pawns on the back rank) stay put
+                m[i] = (float) (BETA1 * m[i] + (1 - BETA1) * g);
+                v[i] = (float) (BETA2 * v[i] + (1 - BETA2) * g * g);
+                parameters[i] = Math.clamp((float) (parameters[i] - correction * m[i] / (Math.sqrt(v[i]) + 1e-8)), -clip, clip);
+            }
+        }
+    }
+
+    /**
+     * Generates data, trains a network and writes it.
+     *
+     * @param args see the class description
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int positions = 100_000;
+        int depth = 4;
+        int epochs = 12;
+        int hidden = 64;
+        double lambda = 0.3;
+        long seed = 20240601L;
+        Path data = null;
+        Path input = null;
+        Path outputFile = Path.of(NnueNetwork.DEFAULT_RESOURCE);
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                System.out.println("Missing value for " + args[i]);
+                return;
+            }
+            switch (args[i++]) {
+                case "-positions" -> positions = Integer.parseInt(value);
+                case "-depth" -> depth = Integer.parseInt(value);
+                case "-epochs" -> epochs = Integer.parseInt(value);
+                case "-hidden" -> hidden = Integer.parseInt(value);
+                case "-lambda" -> lambda = Double.parseDouble(value);
+                case "-seed" -> seed = Long.parseLong(value);
+                case "-data" -> data = Path.of(value);
+                case "-input" -> input = Path.of(value);
+                case "-output" -> outputFile = Path.of(value);
+                default -> {
+                    System.out.println("Usage: java assignment.Engine.NnueTrainer [-positions N] [-depth D] [-epochs E] [-hidden N] [-lambda L] [-seed S] [-data file | -input file] [-output file]");
+                    return;
+                }
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        long start = System.nanoTime();
+        List<Sample> samples;
+        if (input != null) {
+            samples = read(input);
+            System.out.printf("Read %d positions from %s%n", samples.size(), input);
+        } else {
+            samples = generate(positions, depth, random, data);
+            System.out.printf("Generated %d positions at depth %d in %.0f s%n", samples.size(), depth, (System.nanoTime() - start) / 1e9);
+        }
+        int validation = (int) (samples.size() * VALIDATION_SHARE);
+        List<Sample> held = new ArrayList<>(samples.subList(0, validation)); //the first games, never trained on
+        List<Sample> training = new ArrayList<>(samples.subList(validation, samples.size()));
+
+        NnueTrainer trainer = new NnueTrainer(hidden, random);
+        start = System.nanoTime();
+        trainer.train(training, epochs, lambda, random);
+        System.out.printf("Trained %d epochs on %d positions in %.0f s%n", epochs, training.size(), (System.nanoTime() - start) / 1e9);
+
+        NnueNetwork network = trainer.quantize();
+        double networkError = 0;
+        double floatError = 0;
+        double classicalError = 0;
+        float[] us = new float[hidden];
+        float[] them = new float[hidden];
+        for (Sample sample : held) {
+            networkError += Math.abs(network.evaluateFromScratch(toBoard(sample)) - sample.score());
+            floatError += Math.abs(trainer.forward(sample, us, them) * NnueNetwork.SCALE - sample.score());
+            classicalError += Math.abs(sample.classical() - sample.score());
+        }
+        System.out.printf("Held-out mean error against the search scores: network %.1f cp (%.1f cp before quantization), classical evaluation %.1f cp (%d positions)%n",
+                networkError / held.size(), floatError / held.size(), classicalError / held.size(), held.size());
+        if (outputFile.getParent() != null) Files.createDirectories(outputFile.getParent());
+        network.write(Files.newOutputStream(outputFile));
+        System.out.println("Wrote " + outputFile + " (" + Files.size(outputFile) / 1024 + " KiB)");
+    }
+
+    private static EngineBoard toBoard(Sample sample) {
+        EngineBoard board = new EngineBoard();
+        board.clear();
+        for (int feature : sample.white()) {
+            int color = feature >>> 6 >= 6 ? PieceCode.BLACK : 0;
+            board.setPiece(feature & 63, ((feature >>> 6) % 6 + 1) | color);
+        }
+        board.setSideToMove(sample.side());
+        return board;
+    }
+}
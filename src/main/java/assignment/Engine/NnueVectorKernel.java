@@ -0,0 +1,68 @@
+package assignment.Engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The NNUE arithmetic on the Vector API, which the JIT compiles to the widest SIMD instructions of the CPU
+ * (SSE, AVX2 or AVX-512 on x86, NEON on ARM). Only created by {@link NnueKernel#best()} when the
+ * {@code jdk.incubator.vector} module is present.
+ * <p>
+ * The accumulator updates are plain lane-wise 16-bit additions. The output layer clips 16-bit lanes to 0..QA,
+ * widens each half to 32-bit lanes and multiplies there, since the products do not fit in 16 bits.
+ */
+final class NnueVectorKernel implements NnueKernel {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final short QA = (short) NnueNetwork.QA;
+
+    NnueVectorKernel() {
+    }
+
+    @Override
+    public void add(short[] accumulator, int offset, short[] weights, int row, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .add(ShortVector.fromArray(SHORTS, weights, row + i))
+                    .intoArray(accumulator, offset + i);
+        }
+        for (; i < length; i++) accumulator[offset + i] += weights[row + i];
+    }
+
+    @Override
+    public void subtract(short[] accumulator, int offset, short[] weights, int row, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, row + i))
+                    .intoArray(accumulator, offset + i);
+        }
+        for (; i < length; i++) accumulator[offset + i] -= weights[row + i];
+    }
+
+    @Override
+    public int activate(short[] accumulator, int offset, short[] weights, int row, int length) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector clipped = ShortVector.fromArray(SHORTS, accumulator, offset + i).max((short) 0).min(QA);
+            ShortVector weight = ShortVector.fromArray(SHORTS, weights, row + i);
+            for (int part = 0; part < 2; part++) {
+                IntVector a = (IntVector) clipped.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector b = (IntVector) weight.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(a.mul(b));
+            }
+        }
+        int total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) total += Math.clamp(accumulator[offset + i], 0, NnueNetwork.QA) * weights[row + i];
+        return total;
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SHORTS.vectorBitSize() + "-bit)";
+    }
+}
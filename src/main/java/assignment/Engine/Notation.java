@@ -0,0 +1,197 @@
+package assignment.Engine;
+
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Model.PieceCode;
+
+import java.util.List;
+
+/**
+ * Converts between encoded moves and text notation.
+ * Supports standard algebraic notation (SAN, e.g. "Nf3", "exd5", "O-O", "e8=Q+") as used in PGN files,
+ * and coordinate notation (e.g. "g1f3", "e7e8q") as used by the game's move input and by UCI.
+ */
+public final class Notation {
+
+    private Notation() {
+    } //only static helpers, no instances
+
+    /**
+     * Parses a move in standard algebraic notation.
+     * Check and annotation suffixes ("+", "#", "!", "?") are ignored.
+     *
+     * @param board the position the move is played in
+     * @param san the move text, e.g. "Nbd7" or "O-O-O"
+     * @return the encoded legal move
+     * @throws InvalidMoveException if the text is not a legal move, or is ambiguous, in this position
+     */
+    public static int parseSan(EngineBoard board, String san) throws InvalidMoveException {
+        String text = san.replaceAll("[+#!?]+$", "").replace("e.p.", "").trim();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            boolean kingSide = text.length() == 3;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (Move.kind(move) == Move.CASTLING && (Move.to(move) > Move.from(move)) == kingSide) return move;
+            }
+            throw new InvalidMoveException("Castling is not legal here: " + san);
+        }
+
+        int type = PieceCode.PAWN;
+        int start = 0;
+        if (!text.isEmpty() && "NBRQK".indexOf(text.charAt(0)) >= 0) {
+            type = PieceCode.fromSymbol(text.charAt(0));
+            start = 1;
+        }
+        int promotion = 0;
+        int end = text.length();
+        int equals = text.indexOf('=');
+        if (equals >= 0 && equals + 1 < text.length()) {
+            promotion = PieceCode.type(PieceCode.fromSymbol(Character.toUpperCase(text.charAt(equals + 1))));
+            end = equals;
+        } else if (type == PieceCode.PAWN && end > 0 && "NBRQ".indexOf(text.charAt(end - 1)) >= 0) {
+            promotion = PieceCode.fromSymbol(text.charAt(end - 1)); //some files leave out the '=' ("e8Q")
+            end--;
+        }
+        if (end - start < 2) throw new InvalidMoveException("Invalid move notation: " + san);
+        int to = square(text.charAt(end - 2), text.charAt(end - 1));
+        if (to < 0) throw new InvalidMoveException("Invalid destination square: " + san);
+
+        int fromFile = -1;
+        int fromRow = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') fromFile = c - 'a';
+            else if (c >= '1' && c <= '8') fromRow = c - '1';
+            else if (c != 'x' && c != ':' && c != '-') throw new InvalidMoveException("Invalid move notation: " + san);
+        }
+
+        int found = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            if (Move.kind(move) == Move.CASTLING || Move.to(move) != to) continue;
+            if (PieceCode.type(board.pieceAt(from)) != type || Move.promotion(move) != promotion) continue;
+            if ((fromFile >= 0 && (from & 7) != fromFile) || (fromRow >= 0 && (from >>> 3) != fromRow)) continue;
+            if (found != Move.NONE) throw new InvalidMoveException("Ambiguous move: " + san);
+            found = move;
+        }
+        if (found == Move.NONE) throw new InvalidMoveException("Illegal move: " + san);
+        return found;
+    }
+
+    /**
+     * Parses a move in coordinate notation, e.g. "e2e4" or "e7e8q".
+     * Castling may be written as the king's two-square move to the g or c file ("e1g1") or as the king moving onto
+     * its rook ("e1h1"), which is the only form for Chess960 kings that do not start on the e file.
+     *
+     * @param board the position the move is played in
+     * @param text the move text
+     * @return the encoded legal move
+     * @throws InvalidMoveException if the text is not a legal move in this position
+     */
+    public static int parseUci(EngineBoard board, String text) throws InvalidMoveException {
+        String uci = text.trim().toLowerCase();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (Move.toUci(move).equals(uci)) return move;
+            if (Move.kind(move) == Move.CASTLING && castlingForms(move).contains(uci)) return move;
+        }
+        throw new InvalidMoveException("Illegal move: " + text);
+    }
+
+    /**
+     * Lists the coordinate forms of a castling move: the king onto its rook, and the king's two-square move
+     * to the g or c file when the king moves exactly two squares (a shorter king move would be an ordinary one).
+     *
+     * @param move the encoded castling move
+     * @return one or two move texts
+     */
+    public static List<String> castlingForms(int move) {
+        int from = Move.from(move);
+        int kingTo = (from & 56) | (Move.to(move) > from ? 6 : 2);
+        String takesRook = Move.squareName(from) + Move.squareName(Move.to(move));
+        return Math.abs(kingTo - from) == 2 ? List.of(takesRook, Move.squareName(from) + Move.squareName(kingTo)) : List.of(takesRook);
+    }
+
+    /**
+     * Writes a legal move in standard algebraic notation, including the check or mate suffix.
+     *
+     * @param board the position the move is played in (left unchanged)
+     * @param move the encoded move
+     * @return the move text, e.g. "Nxe5+"
+     */
+    public static String toSan(EngineBoard board, int move) {
+        StringBuilder sb = new StringBuilder();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = PieceCode.type(board.pieceAt(from));
+        boolean capture = Move.kind(move) == Move.EN_PASSANT
+                || (Move.kind(move) != Move.CASTLING && board.pieceAt(to) != PieceCode.EMPTY);
+
+        if (Move.kind(move) == Move.CASTLING) {
+            sb.append(to > from ? "O-O" : "O-O-O");
+        } else if (type == PieceCode.PAWN) {
+            if (capture) sb.append((char) ('a' + (from & 7))).append('x');
+            sb.append(Move.squareName(to));
+            if (Move.kind(move) == Move.PROMOTION) sb.append('=').append(PieceCode.symbol(Move.promotion(move)));
+        } else {
+            sb.append(PieceCode.symbol(type));
+            sb.append(disambiguation(board, move, type));
+            if (capture) sb.append('x');
+            sb.append(Move.squareName(to));
+        }
+
+        board.make(move);
+        if (board.inCheck()) sb.append(MoveGenerator.hasLegalMove(board) ? '+' : '#');
+        board.unmake();
+        return sb.toString();
+    }
+
+    /**
+     * Writes a sequence of legal moves, such as a principal variation, in standard algebraic notation.
+     *
+     * @param board the position the first move is played in (left unchanged)
+     * @param line the encoded moves, each legal after the ones before it
+     * @return the moves separated by spaces, e.g. "e4 e5 Nf3"
+     */
+    public static String toSan(EngineBoard board, int[] line) {
+        StringBuilder sb = new StringBuilder();
+        for (int move : line) {
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(toSan(board, move));
+            board.make(move);
+        }
+        for (int i = 0; i < line.length; i++) board.unmake();
+        return sb.toString();
+    }
+
+    private static String disambiguation(EngineBoard board, int move, int type) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        int from = Move.from(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRow = false;
+        for (int i = 0; i < count; i++) {
+            int other = Move.from(moves[i]);
+            if (other == from || Move.to(moves[i]) != Move.to(move) || Move.kind(moves[i]) == Move.CASTLING) continue;
+            if (PieceCode.type(board.pieceAt(other)) != type) continue;
+            ambiguous = true;
+            if ((other & 7) == (from & 7)) sameFile = true;
+            if ((other >>> 3) == (from >>> 3)) sameRow = true;
+        }
+        if (!ambiguous) return "";
+        if (!sameFile) return String.valueOf((char) ('a' + (from & 7)));
+        if (!sameRow) return String.valueOf((char) ('1' + (from >>> 3)));
+        return Move.squareName(from);
+    } //file first, then rank, then both, as the SAN rules require
+
+    private static int square(char file, char row) {
+        if (file < 'a' || file > 'h' || row < '1' || row > '8') return -1;
+        return (row - '1') * 8 + (file - 'a');
+    }
+}
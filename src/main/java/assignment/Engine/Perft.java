@@ -0,0 +1,260 @@
+package assignment.Engine;
+
+import assignment.Exceptions.InvalidLocationException;
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Model.Board;
+import assignment.Model.Color;
+import assignment.Model.Location;
+import assignment.Pieces.Pawn;
+import assignment.Pieces.Piece;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Perft: counts the leaf nodes of the legal move tree to a fixed depth.
+ * Comparing the counts with published values is the standard way to prove a move generator correct, since a single
+ * missing or extra move anywhere in the tree changes them. This class is also the move generation benchmark.
+ * <p>
+ * It additionally cross-checks the interactive rules ({@link Piece#moveTo(Location, char)} on a {@link Board})
+ * against the move generator: in every position of the tree, each piece of the side to move is tried on every
+ * square, and the game must accept exactly the moves the generator lists.
+ * <p>
+ * Chess960 positions, where the king and rooks castle from other squares, are a separate suite, so the standard
+ * suite's speed stays comparable between versions. Only the eight positions of that suite have reference counts,
+ * all from middlegames where castling is possible. The 960 starting positions are checked more lightly: they must
+ * all be different, with #518 the standard one, and the game rules must accept exactly the generated first moves.
+ * No castling is possible that early, and checking them deeper would cost half a minute per ply.
+ * <p>
+ * Usage:
+ * <ul>
+ *     <li>{@code java assignment.Engine.Perft} - runs the standard test positions, verifies the counts and the
+ *     game rules on the standard and Chess960 suites, and prints the speed</li>
+ *     <li>{@code java assignment.Engine.Perft depth [fen]} - prints the node count below every move of a position</li>
+ * </ul>
+ */
+public final class Perft {
+    /** A test position with its published perft counts, starting at depth 1 */
+    private record TestPosition(String name, String fen, long[] counts) {
+    }
+
+    private static final TestPosition[] SUITE = {
+            new TestPosition("start", EngineBoard.START_FEN, new long[]{20, 400, 8902, 197281, 4865609}),
+            new TestPosition("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    new long[]{48, 2039, 97862, 4085603}),
+            new TestPosition("endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    new long[]{14, 191, 2812, 43238, 674624}),
+            new TestPosition("promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    new long[]{6, 264, 9467, 422333}),
+            new TestPosition("discovered", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    new long[]{44, 1486, 62379, 2103487}),
+            new TestPosition("middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    new long[]{46, 2079, 89890, 3894594}),
+    };
+    /** Chess960 positions from the published reference list (the first eight), with castling rights in Shredder-FEN */
+    private static final TestPosition[] CHESS960_SUITE = {
+            new TestPosition("960 #1", "bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+                    new long[]{21, 528, 12189, 326672, 8146062}),
+            new TestPosition("960 #2", "2nnrbkr/p1qppppp/8/1ppb4/6PP/3PP3/PPP2P2/BQNNRBKR w HEhe - 1 9",
+                    new long[]{21, 807, 18002, 667366}),
+            new TestPosition("960 #3", "b1q1rrkb/pppppppp/3nn3/8/P7/1PPP4/4PPPP/BQNNRKRB w GE - 1 9",
+                    new long[]{20, 479, 10471, 273318}),
+            new TestPosition("960 #4", "qbbnnrkr/2pp2pp/p7/1p2pp2/8/P3PP2/1PPP1KPP/QBBNNR1R w hf - 0 9",
+                    new long[]{22, 593, 13440, 382958}),
+            new TestPosition("960 #5", "1nbbnrkr/p1p1ppp1/3p4/1p3P1p/3Pq2P/8/PPP1P1P1/QNBBNRKR w HFhf - 0 9",
+                    new long[]{28, 1120, 31058, 1171749}),
+            new TestPosition("960 #6", "1rqbkrbn/1ppppp1p/1n6/p1N3p1/8/2P4P/PP1PPPP1/1RQBKRBN w FBfb - 0 9",
+                    new long[]{29, 502, 14569, 287739}),
+            new TestPosition("960 #7", "q1bnrkr1/ppppp2p/2n2p2/4b1p1/2NP4/8/PPP1PPPP/QNB1RRKB w ge - 1 9",
+                    new long[]{30, 860, 24566, 732757}),
+            new TestPosition("960 #8", "qbn1brkr/ppp1p1p1/2n4p/3p1p2/P7/6PP/QPPPPP2/1BNNBRKR w HFhf - 0 9",
+                    new long[]{25, 635, 17054, 465806}),
+    };
+    private static final int CROSS_CHECK_DEPTH = 2;
+    private static final char[] PROMOTIONS = {'q', 'r', 'b', 'n'};
+
+    private Perft() {
+    } //only static helpers, no instances
+
+    /**
+     * Counts the leaf nodes of the legal move tree.
+     *
+     * @param board the position (restored before returning)
+     * @param depth the depth in plies
+     * @return the number of leaf nodes
+     */
+    public static long perft(EngineBoard board, int depth) {
+        if (depth == 0) return 1;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        if (depth == 1) return count; //bulk counting, the leaves do not need to be made
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            nodes += perft(board, depth - 1);
+            board.unmake();
+        }
+        return nodes;
+    }
+
+    /**
+     * Prints the node count below every legal move, the usual way to find where two generators disagree.
+     *
+     * @param board the position (restored before returning)
+     * @param depth the depth in plies, at least 1
+     * @return the total number of leaf nodes
+     */
+    public static long divide(EngineBoard board, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            long nodes = perft(board, depth - 1);
+            board.unmake();
+            System.out.println(Move.toUci(moves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    /**
+     * Checks that the game rules accept exactly the generated moves, in every position of the tree.
+     *
+     * @param board the position (restored before returning)
+     * @param depth the depth in plies
+     * @return the number of disagreements found (each is printed)
+     */
+    public static int crossCheck(EngineBoard board, int depth) {
+        int mismatches = compareRules(board);
+        if (depth == 0) return mismatches;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            mismatches += crossCheck(board, depth - 1);
+            board.unmake();
+        }
+        return mismatches;
+    }
+
+    private static int compareRules(EngineBoard engine) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(engine, moves);
+        Set<String> legal = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            legal.add(Move.toUci(moves[i]));
+            if (Move.kind(moves[i]) == Move.CASTLING) legal.addAll(Notation.castlingForms(moves[i])); //the game takes every form
+        }
+
+        Board board = engine.toBoard();
+        int mismatches = 0;
+        try {
+            for (int from = 0; from < 64; from++) {
+                Location fromLoc = new Location(from >>> 3, from & 7);
+                Piece piece = board.getPieceAt(fromLoc);
+                if (piece == null || piece.getColor() != engine.sideToMoveColor()) continue;
+                for (int to = 0; to < 64; to++) {
+                    Location toLoc = new Location(to >>> 3, to & 7);
+                    boolean promotes = piece instanceof Pawn && (to >>> 3 == 0 || to >>> 3 == 7);
+                    for (char promotion : promotes ? PROMOTIONS : new char[]{'q'}) {
+                        String uci = fromLoc + "" + toLoc + (promotes ? String.valueOf(promotion) : "");
+                        Board.Snapshot before = board.snapshot();
+                        boolean accepted;
+                        try {
+                            board.getPieceAt(fromLoc).moveTo(toLoc, promotion);
+                            accepted = true;
+                        } catch (InvalidMoveException e) {
+                            accepted = false;
+                        }
+                        board.restore(before);
+                        if (accepted != legal.contains(uci)) {
+                            mismatches++;
+                            System.out.println(engine.toFen() + ": the game " + (accepted ? "accepts " : "rejects ") + uci);
+                        }
+                    }
+                }
+            }
+        } catch (InvalidLocationException e) {
+            // square indices are always 0-63, so this cannot happen
+            throw new IllegalStateException(e);
+        }
+        return mismatches;
+    } //every piece of the side to move is tried on every square, on a game board built from the engine position
+
+    /**
+     * Runs the perft of every position of a suite to every depth it has counts for, printing the deepest count and
+     * its speed per position and in total.
+     *
+     * @return true if any count was wrong
+     */
+    private static boolean runSuite(String label, TestPosition[] suite) {
+        boolean failed = false;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (TestPosition position : suite) {
+            EngineBoard board = EngineBoard.fromFen(position.fen());
+            for (int depth = 1; depth <= position.counts().length; depth++) {
+                long start = System.nanoTime();
+                long nodes = perft(board, depth);
+                long nanos = System.nanoTime() - start;
+                boolean ok = nodes == position.counts()[depth - 1];
+                failed |= !ok;
+                if (depth == position.counts().length) {
+                    totalNodes += nodes;
+                    totalNanos += nanos;
+                    System.out.printf("%-11s depth %d: %,12d nodes %s  %6d ms  %5.1f Mnps%n", position.name(), depth, nodes,
+                            ok ? "ok  " : "FAIL", nanos / 1_000_000, nodes * 1000.0 / Math.max(1, nanos));
+                } else if (!ok) {
+                    System.out.printf("%-11s depth %d: %,12d nodes FAIL (expected %,d)%n", position.name(), depth, nodes, position.counts()[depth - 1]);
+                }
+            }
+        }
+        System.out.printf("%s: %,d nodes in %d ms, %.1f Mnps%n", label, totalNodes, totalNanos / 1_000_000, totalNodes * 1000.0 / Math.max(1, totalNanos));
+        return failed;
+    }
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     *
+     * @param args nothing for the test suite, or a depth and optionally a FEN
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            int depth = Integer.parseInt(args[0]);
+            String fen = args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : EngineBoard.START_FEN;
+            long start = System.nanoTime();
+            long nodes = divide(EngineBoard.fromFen(fen), depth);
+            System.out.println("\nNodes: " + nodes + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return;
+        }
+
+        boolean failed = runSuite("Move generator", SUITE);
+        failed |= runSuite("Chess960", CHESS960_SUITE);
+
+        long start = System.nanoTime();
+        int mismatches = 0;
+        for (TestPosition position : SUITE) {
+            mismatches += crossCheck(EngineBoard.fromFen(position.fen()), CROSS_CHECK_DEPTH);
+        }
+        for (TestPosition position : CHESS960_SUITE) {
+            mismatches += crossCheck(EngineBoard.fromFen(position.fen()), CROSS_CHECK_DEPTH);
+        }
+        Set<String> starts = new HashSet<>();
+        for (int number = 0; number < 960; number++) {
+            Board board = new Board();
+            board.init(number);
+            EngineBoard engine = EngineBoard.of(board, Color.WHITE);
+            starts.add(engine.toFen());
+            mismatches += crossCheck(engine, 0);
+        }
+        System.out.printf("Game rules: %d disagreements with the move generator to depth %d, and in the first moves of all 960 starting positions (%d ms)%n",
+                mismatches, CROSS_CHECK_DEPTH, (System.nanoTime() - start) / 1_000_000);
+        Board standard = new Board();
+        standard.init(Board.STANDARD_START);
+        boolean startsOk = starts.size() == 960 && EngineBoard.of(standard, Color.WHITE).toFen().equals(EngineBoard.START_FEN);
+        if (!startsOk) System.out.println("Chess960 starting positions: " + starts.size() + " different ones, expected 960 with #518 the standard one");
+        if (failed || mismatches > 0 || !startsOk) System.exit(1);
+    }
+}
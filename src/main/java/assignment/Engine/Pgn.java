@@ -0,0 +1,206 @@
+package assignment.Engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads and writes games in Portable Game Notation (PGN).
+ * Games are read lazily one at a time, so collections with millions of games can be streamed.
+ * Comments, variations and numeric annotation glyphs are skipped; only the main line is kept.
+ */
+public final class Pgn {
+
+    /**
+     * A game read from a PGN file.
+     *
+     * @param tags the tag pairs of the game, in file order (e.g. "White", "Result", "FEN")
+     * @param moves the main line moves in standard algebraic notation
+     * @param result the game result: "1-0", "0-1", "1/2-1/2" or "*"
+     */
+    public record Game(Map<String, String> tags, List<String> moves, String result) {
+
+        /**
+         * Returns the FEN the game starts from.
+         *
+         * @return the FEN tag, or the standard starting position if there is none
+         */
+        public String startFen() {
+            return tags.getOrDefault("FEN", EngineBoard.START_FEN);
+        }
+    }
+
+    private Pgn() {
+    } //only static helpers, no instances
+
+    /**
+     * Returns a lazy stream of the games in a PGN source.
+     * The stream reads from the reader as it is consumed; the caller closes the reader.
+     *
+     * @param reader the PGN text
+     * @return the games in file order
+     */
+    public static Stream<Game> games(BufferedReader reader) {
+        Iterator<Game> iterator = new Iterator<>() {
+            private Game next = readGame(reader);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Game next() {
+                if (next == null) throw new NoSuchElementException();
+                Game game = next;
+                next = readGame(reader);
+                return game;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Replays the moves of a game and returns them encoded.
+     * Replaying stops at the first move that cannot be parsed, so a damaged game still yields its valid opening.
+     *
+     * @param game the game to replay
+     * @return the encoded moves, in order
+     */
+    public static int[] replay(Game game) {
+        EngineBoard board = EngineBoard.fromFen(game.startFen());
+        int[] moves = new int[game.moves().size()];
+        int count = 0;
+        for (String san : game.moves()) {
+            try {
+                int move = Notation.parseSan(board, san);
+                board.make(move);
+                moves[count++] = move;
+            } catch (Exception e) {
+                break;
+            }
+        }
+        return count == moves.length ? moves : Arrays.copyOf(moves, count);
+    }
+
+    /**
+     * Writes a game as PGN text: the tag pairs in the given order, then the numbered moves wrapped at 80 columns
+     * and the result. Move numbers follow the start position's side to move and move number.
+     *
+     * @param game the game; the moves in standard algebraic notation, legal from {@link Game#startFen()}
+     * @return the PGN text, ending with an empty line so games can be appended one after the other
+     */
+    public static String format(Game game) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> tag : game.tags().entrySet()) {
+            sb.append('[').append(tag.getKey()).append(" \"")
+                    .append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+        }
+        sb.append('\n');
+        EngineBoard start = EngineBoard.fromFen(game.startFen());
+        int number = start.fullmoveNumber();
+        boolean white = start.sideToMove() == EngineBoard.WHITE;
+        int lineStart = sb.length();
+        List<String> tokens = new ArrayList<>(game.moves().size() + 1);
+        for (String move : game.moves()) {
+            if (white) tokens.add(number + ". " + move);
+            else tokens.add(tokens.isEmpty() ? number + "... " + move : move);
+            if (!white) number++;
+            white = !white;
+        }
+        tokens.add(game.result());
+        for (String token : tokens) {
+            if (sb.length() > lineStart && sb.length() - lineStart + 1 + token.length() > 79) {
+                sb.append('\n');
+                lineStart = sb.length();
+            } else if (sb.length() > lineStart) {
+                sb.append(' ');
+            }
+            sb.append(token);
+        }
+        return sb.append("\n\n").toString();
+    }
+
+    private static Game readGame(BufferedReader reader) {
+        try {
+            Map<String, String> tags = new LinkedHashMap<>();
+            StringBuilder movetext = new StringBuilder();
+            String line;
+            reader.mark(1 << 16);
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                    if (!movetext.isEmpty()) {
+                        reader.reset(); //this tag belongs to the next game
+                        break;
+                    }
+                    parseTag(trimmed, tags);
+                } else if (!trimmed.isEmpty()) {
+                    int comment = trimmed.indexOf(';'); //';' comments run to the end of the line
+                    movetext.append(comment >= 0 ? trimmed.substring(0, comment) : trimmed).append(' ');
+                }
+                reader.mark(1 << 16);
+            }
+            if (tags.isEmpty() && movetext.isEmpty()) return null;
+            List<String> moves = new ArrayList<>();
+            String result = parseMovetext(movetext, moves);
+            return new Game(tags, moves, result != null ? result : tags.getOrDefault("Result", "*"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void parseTag(String line, Map<String, String> tags) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if (space > 1 && open > space && close > open) {
+            tags.put(line.substring(1, space), line.substring(open + 1, close).replace("\\\"", "\""));
+        }
+    }
+
+    private static String parseMovetext(CharSequence text, List<String> moves) {
+        String result = null;
+        int depth = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                while (i < text.length() && text.charAt(i) != '}') i++;
+                i++;
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && "{}()".indexOf(text.charAt(i)) < 0) i++;
+                if (depth > 0) continue;
+                String token = text.subSequence(start, i).toString();
+                if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                    result = token;
+                    continue;
+                }
+                token = token.replaceFirst("^\\d+\\.+", ""); //move numbers, "12." or "12..."
+                if (token.isEmpty() || token.startsWith("$") || token.chars().allMatch(Character::isDigit)) continue;
+                moves.add(token);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,160 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+/**
+ * A classical evaluation: material plus piece-square tables.
+ * Values follow the well-known "simplified evaluation function". The king has separate middlegame and endgame
+ * tables that are blended by the remaining non-pawn material, so the king shelters early and centralizes late.
+ * <p>
+ * All values together form one weight vector of {@link #PARAMETERS} entries, so other weights (such as those
+ * {@link TexelTuner} finds) can be evaluated with the same code: the material of pawn to queen, then the tables of
+ * pawn to queen and the king's middlegame table, 64 squares each, then the king's endgame table. Tables are indexed
+ * from white's point of view with rank 8 first, as they are written below.
+ */
+public final class PieceSquareEvaluator implements Evaluator {
+    /** Material values in centipawns, indexed by piece type (the king's is only used for ordering) */
+    public static final int[] VALUES = {0, 100, 320, 330, 500, 900, 20000};
+    /** Number of weights: 5 material values and 7 tables */
+    public static final int PARAMETERS = 5 + 7 * 64;
+
+    static final int TABLE_OFFSET = 5;
+    static final int KING_ENDGAME_OFFSET = TABLE_OFFSET + 6 * 64;
+
+    /** Game phase weight of each piece type, 24 with all pieces on the board */
+    static final int[] PHASE = {0, 0, 1, 1, 2, 4, 0};
+    static final int MAX_PHASE = 24;
+
+    //tables are written from white's point of view with rank 8 on top, so white looks up square ^ 56
+    private static final int[] PAWN = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50};
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20};
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0};
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20};
+    private static final int[] KING_MIDDLEGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20};
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50};
+    private static final int[][] TABLES = {PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING_MIDDLEGAME, KING_ENDGAME};
+
+    private final int[] weights;
+
+    /**
+     * Creates the evaluation with the built-in values.
+     */
+    public PieceSquareEvaluator() {
+        this.weights = defaultWeights();
+    }
+
+    /**
+     * Creates the evaluation with other weights.
+     *
+     * @param weights the weight vector (see the class description), copied
+     * @throws IllegalArgumentException if the vector does not have {@link #PARAMETERS} entries
+     */
+    public PieceSquareEvaluator(int[] weights) {
+        if (weights.length != PARAMETERS) throw new IllegalArgumentException("Expected " + PARAMETERS + " weights, got " + weights.length);
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Returns the built-in values as a weight vector.
+     *
+     * @return a new array of {@link #PARAMETERS} weights
+     */
+    public static int[] defaultWeights() {
+        int[] weights = new int[PARAMETERS];
+        System.arraycopy(VALUES, 1, weights, 0, TABLE_OFFSET);
+        for (int table = 0; table < TABLES.length; table++) System.arraycopy(TABLES[table], 0, weights, TABLE_OFFSET + table * 64, 64);
+        return weights;
+    }
+
+    /**
+     * Returns the weights this evaluation uses.
+     *
+     * @return a copy of the weight vector
+     */
+    public int[] weights() {
+        return weights.clone();
+    }
+
+    @Override
+    public int evaluate(EngineBoard board) {
+        int score = 0;
+        int phase = 0;
+        int kingMiddlegame = 0;
+        int kingEndgame = 0;
+        for (long occupied = board.occupied(); occupied != 0; occupied &= occupied - 1) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            int code = board.pieceAt(square);
+            int type = PieceCode.type(code);
+            boolean white = (code & PieceCode.BLACK) == 0;
+            int index = white ? square ^ 56 : square;
+            int sign = white ? 1 : -1;
+            if (type == PieceCode.KING) {
+                kingMiddlegame += sign * weights[TABLE_OFFSET + 5 * 64 + index];
+                kingEndgame += sign * weights[KING_ENDGAME_OFFSET + index];
+            } else {
+                score += sign * (weights[type - 1] + weights[TABLE_OFFSET + ((type - 1) << 6) + index]);
+                phase += PHASE[type];
+            }
+        }
+        phase = Math.min(phase, MAX_PHASE);
+        score += (kingMiddlegame * phase + kingEndgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return board.sideToMove() == EngineBoard.WHITE ? score : -score;
+    } //white-positive score, negated for black at the end
+}
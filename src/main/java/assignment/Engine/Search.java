@@ -0,0 +1,516 @@
+package assignment.Engine;
+
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Model.PieceCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A best-move search: iterative deepening alpha-beta (principal variation search) with a transposition table,
+ * null-move pruning, killer and history move ordering, and a quiescence search over the captures that do not
+ * lose material according to {@link StaticExchange}.
+ * <p>
+ * Scores are in centipawns from the side to move's point of view. A forced mate scores {@link #MATE} minus the
+ * number of plies to it, so {@link #isMate(int)} and {@link #mateIn(int)} can tell mates from material.
+ * Repetitions (of the position's history as well as inside the search) and the fifty-move rule score as draws.
+ * <p>
+ * In multi-PV mode every iteration searches the root once per line, each time without the moves of the lines
+ * already found, so the result is the best few moves with their own scores and variations. A {@link Listener}
+ * receives every completed iteration while the search goes on, which is how analysis front ends show progress.
+ * <p>
+ * A search is not thread-safe: it owns its transposition table and move buffers, so concurrent searches need one
+ * instance each. {@link #stop()} may be called from any thread; the search then returns the result of the last
+ * completed iteration.
+ */
+public final class Search {
+    /** Score of being mated right now; mates further away score closer to zero */
+    public static final int MATE = 30000;
+    /** Deepest ply the search can reach, including quiescence */
+    public static final int MAX_PLY = 64;
+    /** Default transposition table size, 16 MiB */
+    public static final long DEFAULT_HASH_BYTES = 16L << 20;
+
+    private static final int INFINITY = 32000;
+    private static final int CHECK_INTERVAL = 2048;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int[] VALUES = PieceSquareEvaluator.VALUES;
+
+    private static final LatencyHistogram SEARCH_TIME = Metrics.histogram("search.time");
+    private static final Counter NODES = Metrics.counter("search.nodes");
+
+    /**
+     * What a search may spend. The search ends at whichever limit is reached first; 0 means no limit of that kind.
+     *
+     * @param depth the deepest iteration, in plies (at most MAX_PLY)
+     * @param timeMillis the time budget in milliseconds
+     * @param nodes the node budget
+     */
+    public record Limits(int depth, long timeMillis, long nodes) {
+        /**
+         * Limits a search to a fixed depth.
+         *
+         * @param depth the depth in plies
+         * @return the limits
+         */
+        public static Limits depth(int depth) {
+            return new Limits(depth, 0, 0);
+        }
+
+        /**
+         * Limits a search to a fixed time.
+         *
+         * @param millis the time in milliseconds
+         * @return the limits
+         */
+        public static Limits time(long millis) {
+            return new Limits(0, millis, 0);
+        }
+
+        /**
+         * Does not limit a search: it runs until {@link #stop()} is called, a listener asks it to stop,
+         * or MAX_PLY is reached.
+         *
+         * @return the limits
+         */
+        public static Limits infinite() {
+            return new Limits(0, 0, 0);
+        }
+    }
+
+    /**
+     * The outcome of a search.
+     *
+     * @param bestMove the best move found, or Move.NONE if the position has no legal move
+     * @param score the score of the best move from the side to move's point of view
+     * @param depth the last completed iteration
+     * @param nodes the positions visited, quiescence included
+     * @param nanos the time spent
+     * @param pv the principal variation, starting with the best move
+     */
+    public record Result(int bestMove, int score, int depth, long nodes, long nanos, int[] pv) {
+    }
+
+    /**
+     * One of the best moves of a multi-PV search.
+     *
+     * @param score the score of the line from the side to move's point of view
+     * @param pv the principal variation, starting with the move
+     */
+    public record Line(int score, int[] pv) {
+        /**
+         * Returns the first move of the line.
+         *
+         * @return the move
+         */
+        public int move() {
+            return pv[0];
+        }
+    }
+
+    /**
+     * A completed iteration, as reported to a {@link Listener}.
+     *
+     * @param depth the depth of the iteration
+     * @param nodes the positions visited so far in the whole search
+     * @param nanos the time spent so far
+     * @param lines the best lines, best first
+     */
+    public record Iteration(int depth, long nodes, long nanos, List<Line> lines) {
+    }
+
+    /**
+     * Follows a running search. Both methods are called on the searching thread, so they should return quickly.
+     */
+    public interface Listener {
+        /**
+         * Called after every completed iteration.
+         *
+         * @param iteration the lines found at the iteration's depth
+         */
+        void iterationCompleted(Iteration iteration);
+
+        /**
+         * Polled every few thousand nodes; returning true stops the search like {@link #stop()} does.
+         * Unlike a call to {@link #stop()}, the answer cannot get lost when it comes just before the search starts.
+         *
+         * @return true to stop the search
+         */
+        default boolean shouldStop() {
+            return false;
+        }
+    }
+
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+    private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] orderScores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[16][64];
+
+    private volatile boolean stopped;
+    private Listener listener;
+    private final int[] excluded = new int[MoveGenerator.MAX_MOVES];
+    private int excludedCount; //root moves already taken by better lines of the current iteration
+    private long deadline;
+    private long nodeLimit;
+    private long nodes;
+
+    /**
+     * Creates a search with the default evaluation and transposition table size.
+     */
+    public Search() {
+        this(new PieceSquareEvaluator(), new TranspositionTable(DEFAULT_HASH_BYTES));
+    }
+
+    /**
+     * Creates a search.
+     *
+     * @param evaluator the static evaluation
+     * @param table the transposition table, owned by this search from now on
+     */
+    public Search(Evaluator evaluator, TranspositionTable table) {
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    /**
+     * Searches a position for its best move.
+     *
+     * @param board the position (restored before returning)
+     * @param limits when to stop
+     * @return the result of the deepest completed iteration (at least depth 1, unless there is no legal move)
+     */
+    public Result search(EngineBoard board, Limits limits) {
+        return search(board, limits, 1, null);
+    }
+
+    /**
+     * Searches a position for its best moves, reporting every completed iteration.
+     *
+     * @param board the position (restored before returning)
+     * @param limits when to stop
+     * @param lines how many of the best moves to search (multi-PV), at least 1
+     * @param listener receives every completed iteration and may stop the search, or null
+     * @return the best line of the deepest completed iteration (at least depth 1, unless there is no legal move)
+     */
+    public Result search(EngineBoard board, Limits limits, int lines, Listener listener) {
+        if (lines < 1) throw new IllegalArgumentException("At least one line must be searched");
+        long start = Metrics.start();
+        long begin = System.nanoTime();
+        stopped = false;
+        this.listener = listener;
+        excludedCount = 0;
+        nodes = 0;
+        deadline = limits.timeMillis() > 0 ? begin + limits.timeMillis() * 1_000_000 : Long.MAX_VALUE;
+        nodeLimit = limits.nodes() > 0 ? limits.nodes() : Long.MAX_VALUE;
+        int maxDepth = limits.depth() > 0 ? Math.min(limits.depth(), MAX_PLY) : MAX_PLY;
+        table.newSearch();
+        for (int[] pair : killers) Arrays.fill(pair, Move.NONE);
+        for (int[] row : history) Arrays.fill(row, 0);
+
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int rootCount = MoveGenerator.legal(board, rootMoves);
+        if (rootCount == 0) {
+            return finish(start, new Result(Move.NONE, board.inCheck() ? -MATE : 0, 0, 0, 0, new int[0]));
+        }
+
+        int lineCount = Math.min(lines, rootCount);
+        Result result = new Result(rootMoves[0], evaluator.evaluate(board), 0, 0, 0, new int[]{rootMoves[0]});
+        try {
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                List<Line> found = new ArrayList<>(lineCount);
+                excludedCount = 0;
+                while (found.size() < lineCount) {
+                    int score = negamax(board, depth, -INFINITY, INFINITY, 0, true);
+                    if (stopped || pvLength[0] == 0) break;
+                    int[] line = Arrays.copyOf(pv[0], pvLength[0]);
+                    found.add(new Line(score, line));
+                    excluded[excludedCount++] = line[0];
+                }
+                excludedCount = 0;
+                if (stopped && depth > 1 || found.isEmpty()) break; //an unfinished iteration is not trusted
+                found.sort((a, b) -> Integer.compare(b.score(), a.score())); //a later line can beat an earlier one by searching deeper
+                Line best = found.get(0);
+                result = new Result(best.move(), best.score(), depth, nodes, System.nanoTime() - begin, best.pv());
+                if (listener != null) listener.iterationCompleted(new Iteration(depth, nodes, System.nanoTime() - begin, List.copyOf(found)));
+                if (stopped || lineCount == 1 && isMate(best.score()) && Math.abs(mateIn(best.score())) * 2 <= depth + 1) break; //a shortest mate will not get shorter
+            }
+        } finally {
+            excludedCount = 0;
+            this.listener = null;
+        }
+        return finish(start, new Result(result.bestMove(), result.score(), result.depth(), nodes, System.nanoTime() - begin, result.pv()));
+    }
+
+    /**
+     * Runs the quiescence search alone on a position, without limits. Evaluation tuning uses it to resolve the
+     * pending captures of a position before evaluating it.
+     *
+     * @param board the position (restored before returning)
+     * @return the score from the side to move's point of view, and the captures that lead to the quiet position
+     * whose static evaluation it is (empty if standing pat is best)
+     */
+    public Line quiesce(EngineBoard board) {
+        stopped = false;
+        listener = null;
+        excludedCount = 0;
+        nodes = 0;
+        deadline = Long.MAX_VALUE;
+        nodeLimit = Long.MAX_VALUE;
+        int score = quiescence(board, -INFINITY, INFINITY, 0);
+        return new Line(score, Arrays.copyOf(pv[0], pvLength[0]));
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible. Safe to call from any thread.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Empties the transposition table, so the next search starts from scratch.
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Checks if a score is a forced mate, for either side.
+     *
+     * @param score a search score
+     * @return true if the score announces a mate
+     */
+    public static boolean isMate(int score) {
+        return Math.abs(score) >= MATE - MAX_PLY;
+    }
+
+    /**
+     * Returns the number of moves to a mate announced by a score.
+     *
+     * @param score a mate score (see {@link #isMate(int)})
+     * @return the moves (not plies) to the mate; negative if the side to move is getting mated
+     */
+    public static int mateIn(int score) {
+        return score > 0 ? (MATE - score + 1) / 2 : -(MATE + score + 1) / 2;
+    }
+
+    private Result finish(long start, Result result) {
+        SEARCH_TIME.stop(start);
+        NODES.add(result.nodes());
+        return result;
+    }
+
+    private int negamax(EngineBoard board, int depth, int alpha, int beta, int ply, boolean pvNode) {
+        pvLength[ply] = 0;
+        if (ply > 0) {
+            if (isDraw(board)) return 0;
+            alpha = Math.max(alpha, -MATE + ply); //mate distance pruning: nothing here beats an earlier mate
+            beta = Math.min(beta, MATE - ply - 1);
+            if (alpha >= beta) return alpha;
+        }
+        boolean inCheck = board.inCheck();
+        if (inCheck) depth++; //check extension, so forced lines are not cut off at the horizon
+        if (depth <= 0 || ply >= MAX_PLY) return quiescence(board, alpha, beta, ply);
+        if (++nodes % CHECK_INTERVAL == 0) checkLimits();
+        if (stopped) return 0;
+
+        long entry = table.probe(board.hash());
+        int hashMove = TranspositionTable.move(entry);
+        if (entry != TranspositionTable.MISS && ply > 0 && !pvNode && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && score >= beta
+                    || bound == TranspositionTable.UPPER && score <= alpha) {
+                return score;
+            }
+        }
+
+        if (!pvNode && !inCheck && depth >= 3 && beta < MATE - MAX_PLY && hasPieces(board)
+                && evaluator.evaluate(board) >= beta) {
+            board.makeNull();
+            int score = -negamax(board, depth - 1 - NULL_MOVE_REDUCTION, -beta, -beta + 1, ply + 1, false);
+            board.unmakeNull();
+            if (stopped) return 0;
+            if (score >= beta) return score < MATE - MAX_PLY ? score : beta; //passing already holds, so a move will
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.pseudoLegal(board, list, false);
+        scoreMoves(board, list, count, hashMove, ply);
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, orderScores[ply], i, count);
+            if (ply == 0 && isExcluded(move)) continue;
+            board.make(move);
+            if (board.leftKingInCheck()) {
+                board.unmake();
+                continue;
+            }
+            legal++;
+            int score;
+            if (legal == 1) {
+                score = -negamax(board, depth - 1, -beta, -alpha, ply + 1, pvNode);
+            } else {
+                score = -negamax(board, depth - 1, -alpha - 1, -alpha, ply + 1, false);
+                if (score > alpha && score < beta) score = -negamax(board, depth - 1, -beta, -alpha, ply + 1, true);
+            }
+            board.unmake();
+            if (stopped) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    pv[ply][0] = move;
+                    System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (score >= beta) {
+                        if (isQuiet(board, move)) rememberCutoff(board, move, depth, ply);
+                        break;
+                    }
+                }
+            }
+        }
+        if (legal == 0) return inCheck ? -MATE + ply : 0;
+        if (ply == 0 && excludedCount > 0) return bestScore; //the best of the remaining moves is not this position's score
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(board.hash(), bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiescence(EngineBoard board, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (++nodes % CHECK_INTERVAL == 0) checkLimits();
+        if (stopped) return 0;
+        int standPat = evaluator.evaluate(board);
+        if (standPat >= beta || ply >= MAX_PLY) return standPat;
+        alpha = Math.max(alpha, standPat);
+        int[] list = moves[ply];
+        int count = MoveGenerator.pseudoLegal(board, list, true);
+        scoreMoves(board, list, count, Move.NONE, ply);
+        int bestScore = standPat;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, orderScores[ply], i, count);
+            if (!StaticExchange.isAtLeast(board, move, 0)) continue; //a losing capture will not raise the score
+            board.make(move);
+            if (board.leftKingInCheck()) {
+                board.unmake();
+                continue;
+            }
+            int score = -quiescence(board, -beta, -alpha, ply + 1);
+            board.unmake();
+            if (stopped) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    pv[ply][0] = move;
+                    System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (score >= beta) break;
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private boolean isDraw(EngineBoard board) {
+        int halfmove = board.halfmoveClock();
+        if (halfmove >= 100) return true;
+        long hash = board.hash();
+        int oldest = Math.max(0, board.ply() - halfmove);
+        for (int i = board.ply() - 4; i >= oldest; i -= 2) {
+            if (board.hashAt(i) == hash) return true;
+        }
+        return false;
+    } //a single repetition is scored as a draw: whoever could avoid it inside the search had better reasons to
+
+    private void checkLimits() {
+        if (nodes >= nodeLimit || System.nanoTime() >= deadline || listener != null && listener.shouldStop()) stopped = true;
+    }
+
+    private boolean isExcluded(int move) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (excluded[i] == move) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasPieces(EngineBoard board) {
+        int color = board.sideToMove() << 3;
+        return (board.pieces(PieceCode.KNIGHT | color) | board.pieces(PieceCode.BISHOP | color)
+                | board.pieces(PieceCode.ROOK | color) | board.pieces(PieceCode.QUEEN | color)) != 0;
+    } //with only king and pawns zugzwang is common, and passing would be a lie
+
+    private void scoreMoves(EngineBoard board, int[] list, int count, int hashMove, int ply) {
+        int[] scores = orderScores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int victim = Move.kind(move) == Move.EN_PASSANT ? PieceCode.PAWN
+                    : Move.kind(move) == Move.CASTLING ? PieceCode.EMPTY : PieceCode.type(board.pieceAt(Move.to(move)));
+            if (move == hashMove) {
+                scores[i] = 1 << 30;
+            } else if (victim != PieceCode.EMPTY || Move.kind(move) == Move.PROMOTION) {
+                int attacker = PieceCode.type(board.pieceAt(Move.from(move)));
+                scores[i] = (1 << 28) + VALUES[victim] * 16 - attacker + (Move.kind(move) == Move.PROMOTION ? VALUES[Move.promotion(move)] : 0);
+            } else if (move == killers[ply][0]) {
+                scores[i] = (1 << 27) + 1;
+            } else if (move == killers[ply][1]) {
+                scores[i] = 1 << 27;
+            } else {
+                scores[i] = history[board.pieceAt(Move.from(move))][Move.to(move)];
+            }
+        }
+    } //hash move, then captures by most valuable victim and least valuable attacker, killers, then history
+
+    private static int pickNext(int[] list, int[] scores, int index, int count) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        return move;
+    } //selection sort one step at a time: after a cutoff the rest of the list is never sorted
+
+    private static boolean isQuiet(EngineBoard board, int move) {
+        return Move.kind(move) == Move.CASTLING
+                || Move.kind(move) == Move.NORMAL && board.pieceAt(Move.to(move)) == PieceCode.EMPTY;
+    }
+
+    private void rememberCutoff(EngineBoard board, int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] row = history[board.pieceAt(Move.from(move))];
+        row[Move.to(move)] = Math.min(row[Move.to(move)] + depth * depth, 1 << 26);
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score + ply;
+        if (score <= -MATE + MAX_PLY) return score - ply;
+        return score;
+    } //mate scores are stored as distance from the stored position, not from the root
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score - ply;
+        if (score <= -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+}
@@ -0,0 +1,177 @@
+package assignment.Engine;
+
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Model.PieceCode;
+
+/**
+ * Static exchange evaluation (SEE): the material a capture wins or loses once every piece that can join the fight
+ * on the target square has captured there, each side always recapturing with its least valuable piece and stopping
+ * as soon as going on would lose material.
+ * <p>
+ * The exchange is resolved from the attack bitboards alone, without making moves. After each capture the capturing
+ * piece is removed from the occupancy, so sliders standing behind it (x-rays) join in. Pins are ignored, as usual
+ * for SEE. Piece values are those of {@link PieceSquareEvaluator#VALUES}.
+ * <p>
+ * {@link #isAtLeast(EngineBoard, int, int)} answers the question a search asks ("does this capture lose material?")
+ * without allocating and usually after a couple of steps; {@link #see(EngineBoard, int)} returns the exact value.
+ */
+public final class StaticExchange {
+    private static final int[] VALUES = PieceSquareEvaluator.VALUES;
+    private static final int MAX_EXCHANGE = 32;
+
+    /** Test positions with a capture and its exchange value, used by {@link #main(String[])} */
+    private record TestCase(String fen, String move, int value) {
+    }
+
+    private static final TestCase[] SUITE = {
+            new TestCase("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", "e1e5", 100),
+            new TestCase("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1", "d3e5", -220),
+            new TestCase("4k3/8/8/3p4/4P3/8/8/4K3 w - - 0 1", "e4d5", 100),
+            new TestCase("4k3/8/2p5/3p4/4P3/8/8/4K3 w - - 0 1", "e4d5", 0),
+            new TestCase("4k3/8/2p5/3n4/8/8/3Q4/3RK3 w - - 0 1", "d2d5", 320 - 900 + 100),
+            new TestCase("3qk3/3r4/8/3n4/8/8/3R4/3QK3 w - - 0 1", "d2d5", 320 - 500),
+            new TestCase("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6", 100),
+            new TestCase("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b7b8q", 900 - 100),
+            new TestCase("4k3/8/8/3q4/4K3/8/8/8 w - - 0 1", "e4d5", 900),
+            new TestCase("4k3/8/4r3/3q4/4K3/8/8/8 w - - 0 1", "e4d5", 900),
+    };
+
+    private StaticExchange() {
+    } //only static helpers, no instances
+
+    /**
+     * Computes the exact material balance of a move's exchange for the side making it.
+     * Non-captures are evaluated too: a quiet move to a square the opponent attacks scores the loss of the piece.
+     *
+     * @param board the position, not changed
+     * @param move the move, as generated by {@link MoveGenerator}
+     * @return the material won (positive) or lost (negative), in centipawns
+     */
+    public static int see(EngineBoard board, int move) {
+        if (Move.kind(move) == Move.CASTLING) return 0;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int[] gain = new int[MAX_EXCHANGE];
+        long occupied = board.occupied() ^ (1L << from);
+        int attacker = PieceCode.type(board.pieceAt(from));
+        if (Move.kind(move) == Move.EN_PASSANT) {
+            gain[0] = VALUES[PieceCode.PAWN];
+            occupied ^= 1L << (to ^ 8); //the captured pawn stands behind the target square
+        } else {
+            gain[0] = VALUES[PieceCode.type(board.pieceAt(to))];
+        }
+        if (Move.kind(move) == Move.PROMOTION) {
+            attacker = Move.promotion(move);
+            gain[0] += VALUES[attacker] - VALUES[PieceCode.PAWN];
+        }
+        int side = (board.pieceAt(from) >>> 3) ^ 1;
+        int depth = 0;
+        while (depth < MAX_EXCHANGE - 1) {
+            long attackers = board.attackersTo(to, occupied) & board.occupancy(side);
+            if (attackers == 0) break;
+            int type = leastValuable(board, attackers, side);
+            long bit = Long.lowestOneBit(board.pieces(type | (side << 3)) & attackers);
+            if (type == PieceCode.KING && (board.attackersTo(to, occupied ^ bit) & board.occupancy(side ^ 1)) != 0) {
+                break; //the king cannot capture into a defended square
+            }
+            depth++;
+            gain[depth] = VALUES[attacker] - gain[depth - 1]; //what this side gets if the piece it takes is not recaptured
+            occupied ^= bit;
+            attacker = type;
+            side ^= 1;
+        }
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    } //the swap list: gain[d] is the balance if the exchange stops after capture d, then folded back with minimax
+
+    /**
+     * Checks if a move's exchange gains at least a threshold, without computing the exact value.
+     * This is the form a search uses, e.g. {@code isAtLeast(board, move, 0)} to skip captures that lose material.
+     *
+     * @param board the position, not changed
+     * @param move the move, as generated by {@link MoveGenerator}
+     * @param threshold the material the side making the move must at least win (may be negative)
+     * @return true if SEE(move) &gt;= threshold
+     */
+    public static boolean isAtLeast(EngineBoard board, int move, int threshold) {
+        if (Move.kind(move) != Move.NORMAL) return see(board, move) >= threshold; //rare, take the exact route
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int swap = VALUES[PieceCode.type(board.pieceAt(to))] - threshold;
+        if (swap < 0) return false; //even if the capture is never answered, it does not win enough
+        swap = VALUES[PieceCode.type(board.pieceAt(from))] - swap;
+        if (swap <= 0) return true; //even if the capturing piece is lost, enough is won
+        long occupied = board.occupied() ^ (1L << from) ^ (1L << to);
+        int side = board.pieceAt(from) >>> 3;
+        boolean result = true;
+        while (true) {
+            side ^= 1;
+            long attackers = board.attackersTo(to, occupied) & board.occupancy(side);
+            if (attackers == 0) break;
+            result = !result;
+            int type = leastValuable(board, attackers, side);
+            if (type == PieceCode.KING) {
+                //the king may only take if the other side has nothing left on the square
+                return (board.attackersTo(to, occupied) & board.occupancy(side ^ 1)) != 0 ? !result : result;
+            }
+            swap = VALUES[type] - swap;
+            if (swap < (result ? 1 : 0)) break;
+            occupied ^= Long.lowestOneBit(board.pieces(type | (side << 3)) & attackers);
+        }
+        return result;
+    } //swap holds the balance the side to answer must beat, result flips with every capture that is worth making
+
+    /**
+     * Finds the pieces of a side that the opponent can win material on: every piece (other than the king) whose
+     * cheapest capture has a positive exchange value. The side to move of the board does not matter.
+     *
+     * @param board the position
+     * @param side the side whose pieces are checked (WHITE or BLACK)
+     * @return the bitboard of hanging pieces
+     */
+    public static long hanging(EngineBoard board, int side) {
+        long hanging = 0;
+        long pieces = board.occupancy(side) & ~board.pieces(PieceCode.KING | (side << 3));
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long attackers = board.attackersTo(square, board.occupied()) & board.occupancy(side ^ 1);
+            if (attackers == 0) continue;
+            int type = leastValuable(board, attackers, side ^ 1);
+            int from = Long.numberOfTrailingZeros(board.pieces(type | ((side ^ 1) << 3)) & attackers);
+            if (see(board, Move.of(from, square)) > 0) hanging |= 1L << square;
+        }
+        return hanging;
+    }
+
+    private static int leastValuable(EngineBoard board, long attackers, int side) {
+        for (int type = PieceCode.PAWN; type < PieceCode.KING; type++) {
+            if ((board.pieces(type | (side << 3)) & attackers) != 0) return type;
+        }
+        return PieceCode.KING;
+    }
+
+    /**
+     * Checks both SEE routines against a set of positions with known exchange values.
+     *
+     * @param args not used
+     * @throws InvalidMoveException if a test move is not legal in its position
+     */
+    public static void main(String[] args) throws InvalidMoveException {
+        int failures = 0;
+        for (TestCase test : SUITE) {
+            EngineBoard board = EngineBoard.fromFen(test.fen());
+            int move = Notation.parseUci(board, test.move());
+            int value = see(board, move);
+            boolean consistent = isAtLeast(board, move, value) && !isAtLeast(board, move, value + 1);
+            boolean ok = value == test.value() && consistent;
+            if (!ok) failures++;
+            System.out.printf("%-5s %-58s %6d (expected %6d) %s%n", test.move(), test.fen(), value, test.value(), ok ? "ok" : "FAIL");
+        }
+        System.out.println(failures == 0 ? "All exchanges ok" : failures + " exchanges wrong");
+        if (failures > 0) System.exit(1);
+    }
+}
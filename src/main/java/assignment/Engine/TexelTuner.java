@@ -0,0 +1,572 @@
+package assignment.Engine;
+
+import assignment.Model.PieceCode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tunes the weights of {@link PieceSquareEvaluator} on positions labelled with game results (the Texel method).
+ * <p>
+ * Every position is first resolved by the quiescence search ({@link Search#quiesce(EngineBoard)}): the captures
+ * it plays out lead to a quiet position, and that quiet position's static evaluation is what gets tuned. The
+ * evaluation maps to an expected score with {@code 1 / (1 + 10^(-K * cp / 400))}, where K is fitted to the data
+ * first, and the weights are moved by Adam on the full data set to minimize the mean squared error between
+ * expected scores and results. The evaluation is linear in its weights, so every quiet position boils down to
+ * a handful of (weight, coefficient) pairs and the gradient is exact. Captures are resolved again with the tuned
+ * weights after every round, since better values change which captures pay.
+ * <p>
+ * Data sets of many gigabytes are read through memory-mapped windows of the file and parsed in parallel, straight
+ * from the mapped bytes into compact arrays: 32 bytes of packed piece codes and one byte of side and result per
+ * position, so the file itself never has to fit in memory. Resolving and computing the gradient run on a
+ * fork-join pool over ranges of positions. Every 20th position is held out to check that the tuned weights
+ * generalize.
+ * <p>
+ * One position per line, as a FEN (only the board and the side to move are used) followed by the white-relative
+ * result in one of the common forms: {@code [1.0]}, {@code [0.5]} and {@code [0.0]}; a quoted {@code "1-0"},
+ * {@code "1/2-1/2"} or {@code "0-1"} as in EPD files; or the result field of the "FEN;score;result" lines
+ * {@link NnueTrainer} writes. Empty lines and lines starting with # are skipped.
+ * <p>
+ * The tuned weights are printed as Java tables in the layout of {@link PieceSquareEvaluator}.
+ * <p>
+ * Usage: {@code java assignment.Engine.TexelTuner -input file [-rounds R] [-iterations N] [-rate cp] [-threads N]}
+ */
+public final class TexelTuner {
+    private static final long WINDOW = 1L << 28; //bytes mapped at a time
+    private static final int PARSE_CHUNK = 1 << 18; //bytes per parsing task
+    private static final int RESOLVE_CHUNK = 1 << 11; //positions per quiescence task
+    private static final int GRADIENT_CHUNK = 1 << 14; //positions per gradient task
+    private static final int HOLD_OUT = 20;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double LN10_400 = Math.log(10) / 400;
+    private static final String USAGE = "Usage: java assignment.Engine.TexelTuner -input file [-rounds R] [-iterations N] [-rate cp] [-threads N]";
+    private static final String[] TABLE_NAMES = {"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING_MIDDLEGAME", "KING_ENDGAME"};
+
+    /**
+     * Labelled positions in compact form. Boards are 64 four-bit piece codes in four longs, a1 in the lowest bits
+     * of the first; the info byte holds white's result in half points (bits 0-1), the side to move (bit 2) and
+     * whether the position is unusable (bit 3).
+     */
+    static final class PositionSet {
+        private static final int SIDE = 4;
+        private static final int SKIP = 8;
+
+        long[] boards;
+        long[] leaves; //the boards after the quiescence captures, once resolved
+        byte[] info;
+        int size;
+
+        PositionSet(int capacity) {
+            boards = new long[4 * capacity];
+            info = new byte[capacity];
+        }
+
+        void add(long[] board, int result, int side) {
+            if (size == info.length) grow(size + 1);
+            System.arraycopy(board, 0, boards, 4 * size, 4);
+            info[size++] = (byte) (result | side << 2);
+        }
+
+        void addAll(PositionSet other) {
+            if (size + other.size > info.length) grow(size + other.size);
+            System.arraycopy(other.boards, 0, boards, 4 * size, 4 * other.size);
+            System.arraycopy(other.info, 0, info, size, other.size);
+            size += other.size;
+        }
+
+        private void grow(int needed) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE / 4 - 8, Math.max(needed, info.length * 2L));
+            if (capacity < needed) throw new IllegalStateException("More than " + capacity + " positions");
+            boards = Arrays.copyOf(boards, 4 * capacity);
+            info = Arrays.copyOf(info, capacity);
+        }
+
+        double result(int index) {
+            return (info[index] & 3) / 2.0;
+        }
+
+        boolean usable(int index) {
+            return (info[index] & SKIP) == 0;
+        }
+
+        void toBoard(int index, EngineBoard board) {
+            board.clear();
+            for (int square = 0; square < 64; square++) {
+                int code = piece(boards, index, square);
+                if (code != PieceCode.EMPTY) board.setPiece(square, code);
+            }
+            board.setSideToMove((info[index] & SIDE) != 0 ? EngineBoard.BLACK : EngineBoard.WHITE);
+        }
+
+        static int piece(long[] boards, int index, int square) {
+            return (int) (boards[4 * index + (square >>> 4)] >>> ((square & 15) << 2)) & 15;
+        }
+    }
+
+    private final PositionSet set;
+    private final ForkJoinPool pool;
+    private final double[] weights = new double[PieceSquareEvaluator.PARAMETERS];
+    private double k; //K * ln(10) / 400
+
+    private TexelTuner(PositionSet set, ForkJoinPool pool) {
+        this.set = set;
+        this.pool = pool;
+        int[] defaults = PieceSquareEvaluator.defaultWeights();
+        for (int i = 0; i < weights.length; i++) weights[i] = defaults[i];
+    }
+
+    /**
+     * Reads a data set through memory-mapped windows, parsing each window in parallel.
+     *
+     * @param file the labelled positions (see the class description)
+     * @param pool the pool to parse on
+     * @return the positions, in file order
+     * @throws IOException if the file cannot be read or has a malformed line
+     */
+    static PositionSet load(Path file, ForkJoinPool pool) throws IOException {
+        PositionSet all = new PositionSet(1 << 16);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                long length = Math.min(WINDOW, size - offset);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int end = (int) length;
+                if (offset + length < size) {
+                    while (end > 0 && buffer.get(end - 1) != '\n') end--; //the last partial line starts the next window
+                    if (end == 0) throw new IOException(file + ": the line at byte " + offset + " is too long");
+                }
+                for (PositionSet chunk : pool.invoke(new ParseTask(buffer, offset, 0, end))) all.addAll(chunk);
+                offset += end;
+            }
+        } catch (UncheckedIOException e) {
+            throw new IOException(file + ": " + e.getCause().getMessage(), e.getCause());
+        }
+        return all;
+    }
+
+    private static final class ParseTask extends RecursiveTask<List<PositionSet>> {
+        private static final long serialVersionUID = 1L; //ForkJoinTask is Serializable, the tasks are never serialized
+
+        private final transient ByteBuffer buffer;
+        private final long base;
+        private final int from;
+        private final int to;
+
+        ParseTask(ByteBuffer buffer, long base, int from, int to) {
+            this.buffer = buffer;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<PositionSet> compute() {
+            int middle = from + (to - from) / 2;
+            if (to - from > PARSE_CHUNK) {
+                while (middle < to && buffer.get(middle - 1) != '\n') middle++;
+            }
+            if (to - from <= PARSE_CHUNK || middle >= to) {
+                List<PositionSet> result = new ArrayList<>(1);
+                result.add(parse(buffer, base, from, to));
+                return result;
+            }
+            ParseTask left = new ParseTask(buffer, base, from, middle);
+            left.fork();
+            List<PositionSet> right = new ParseTask(buffer, base, middle, to).compute();
+            List<PositionSet> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    } //splits at line ends; absolute reads leave the shared buffer's position alone
+
+    private static PositionSet parse(ByteBuffer buffer, long base, int from, int to) {
+        PositionSet set = new PositionSet(Math.max(16, (to - from) / 64));
+        long[] board = new long[4];
+        int start = from;
+        while (start < to) {
+            int end = start;
+            while (end < to && buffer.get(end) != '\n') end++;
+            int next = end + 1;
+            if (end > start && buffer.get(end - 1) == '\r') end--;
+            if (end > start && buffer.get(start) != '#' && !parseLine(buffer, start, end, board, set)) {
+                byte[] line = new byte[Math.min(end - start, 120)];
+                buffer.get(start, line);
+                throw new UncheckedIOException(new IOException("malformed position at byte " + (base + start) + ": "
+                        + new String(line, StandardCharsets.US_ASCII)));
+            }
+            start = next;
+        }
+        return set;
+    }
+
+    private static boolean parseLine(ByteBuffer buffer, int from, int end, long[] board, PositionSet set) {
+        Arrays.fill(board, 0);
+        int rank = 7;
+        int file = 0;
+        int whiteKings = 0;
+        int blackKings = 0;
+        int p = from;
+        for (; p < end && buffer.get(p) != ' '; p++) {
+            int c = buffer.get(p);
+            if (c == '/') {
+                if (file != 8 || rank == 0) return false;
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > 8) return false;
+            } else {
+                int code = PieceCode.fromSymbol((char) c);
+                if (code <= 0 || file > 7) return false;
+                int square = rank * 8 + file++;
+                board[square >>> 4] |= (long) code << ((square & 15) << 2);
+                if (code == PieceCode.KING) whiteKings++;
+                if (code == (PieceCode.KING | PieceCode.BLACK)) blackKings++;
+            }
+        }
+        if (rank != 0 || file != 8 || whiteKings != 1 || blackKings != 1 || p + 1 >= end) return false;
+        int side = switch (buffer.get(p + 1)) {
+            case 'w' -> EngineBoard.WHITE;
+            case 'b' -> EngineBoard.BLACK;
+            default -> -1;
+        };
+        int result = parseResult(buffer, p + 2, end);
+        if (side < 0 || result < 0) return false;
+        set.add(board, result, side);
+        return true;
+    }
+
+    private static int parseResult(ByteBuffer buffer, int from, int end) {
+        int firstSemicolon = -1;
+        int lastSemicolon = -1;
+        for (int p = from; p < end; p++) {
+            int c = buffer.get(p);
+            if (c == '[' || c == '"') return resultAt(buffer, p + 1, end);
+            if (c == ';') {
+                if (firstSemicolon < 0) firstSemicolon = p;
+                lastSemicolon = p;
+            }
+        }
+        return lastSemicolon > firstSemicolon ? resultAt(buffer, lastSemicolon + 1, end) : -1; //"FEN;score;result"
+    }
+
+    private static int resultAt(ByteBuffer buffer, int p, int end) {
+        while (p < end && buffer.get(p) == ' ') p++;
+        if (p >= end) return -1;
+        int first = buffer.get(p);
+        int second = p + 1 < end ? buffer.get(p + 1) : ']';
+        int third = p + 2 < end ? buffer.get(p + 2) : '0';
+        if (first == '1') return second == '/' ? 1 : 2; //"1-0", "1.0", "1" or "1/2-1/2"
+        if (first != '0') return -1;
+        return second == '.' && third == '5' ? 1 : 0; //"0-1", "0.0", "0" or "0.5"
+    } //white's result in half points, or -1 if there is none
+
+    /**
+     * Resolves every position with the quiescence search of the current weights.
+     *
+     * @return the number of unusable positions (the side not to move in check)
+     */
+    private int resolve() {
+        int[] rounded = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) rounded[i] = (int) Math.round(weights[i]);
+        PieceSquareEvaluator evaluator = new PieceSquareEvaluator(rounded);
+        if (set.leaves == null) set.leaves = new long[4 * set.size];
+        pool.invoke(new ResolveTask(evaluator, 0, set.size));
+        int skipped = 0;
+        for (int i = 0; i < set.size; i++) {
+            if (!set.usable(i)) skipped++;
+        }
+        return skipped;
+    }
+
+    private final class ResolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PieceSquareEvaluator evaluator;
+        private final int from;
+        private final int to;
+
+        ResolveTask(PieceSquareEvaluator evaluator, int from, int to) {
+            this.evaluator = evaluator;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > RESOLVE_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ResolveTask(evaluator, from, middle), new ResolveTask(evaluator, middle, to));
+                return;
+            }
+            Search search = new Search(evaluator, new TranspositionTable(0)); //the quiescence search never probes the table
+            EngineBoard board = new EngineBoard();
+            for (int i = from; i < to; i++) {
+                set.toBoard(i, board);
+                if (board.leftKingInCheck()) {
+                    set.info[i] |= PositionSet.SKIP;
+                    continue;
+                }
+                for (int move : search.quiesce(board).pv()) board.make(move);
+                int leaf = 4 * i;
+                Arrays.fill(set.leaves, leaf, leaf + 4, 0);
+                for (long occupied = board.occupied(); occupied != 0; occupied &= occupied - 1) {
+                    int square = Long.numberOfTrailingZeros(occupied);
+                    set.leaves[leaf + (square >>> 4)] |= (long) board.pieceAt(square) << ((square & 15) << 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the loss, and optionally its gradient, over the training or the held-out positions.
+     *
+     * @return the summed gradient (if asked for) followed by the summed squared error and the position count
+     */
+    private double[] evaluate(boolean heldOut, boolean gradient) {
+        return pool.invoke(new GradientTask(heldOut, gradient, 0, set.size));
+    }
+
+    private double loss(boolean heldOut) {
+        double[] sums = evaluate(heldOut, false);
+        return sums[weights.length] / Math.max(1, sums[weights.length + 1]);
+    }
+
+    private final class GradientTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean heldOut;
+        private final boolean gradient;
+        private final int from;
+        private final int to;
+
+        GradientTask(boolean heldOut, boolean gradient, int from, int to) {
+            this.heldOut = heldOut;
+            this.gradient = gradient;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > GRADIENT_CHUNK) {
+                int middle = (from + to) >>> 1;
+                GradientTask left = new GradientTask(heldOut, gradient, from, middle);
+                left.fork();
+                double[] sums = new GradientTask(heldOut, gradient, middle, to).compute();
+                double[] other = left.join();
+                for (int i = 0; i < sums.length; i++) sums[i] += other[i];
+                return sums;
+            }
+            double[] sums = new double[weights.length + 2];
+            int[] index = new int[64];
+            double[] coefficient = new double[64]; //two per piece
+            for (int i = from; i < to; i++) {
+                if ((i % HOLD_OUT == 0) != heldOut || !set.usable(i)) continue;
+                int count = features(set.leaves, i, index, coefficient);
+                double score = 0;
+                for (int f = 0; f < count; f++) score += coefficient[f] * weights[index[f]];
+                double expected = 1 / (1 + Math.exp(-k * score));
+                double error = set.result(i) - expected;
+                sums[weights.length] += error * error;
+                sums[weights.length + 1]++;
+                if (gradient) {
+                    double slope = -2 * error * expected * (1 - expected) * k;
+                    for (int f = 0; f < count; f++) sums[index[f]] += slope * coefficient[f];
+                }
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * Lists the weights a quiet position's white-relative evaluation adds up, with their coefficients.
+     *
+     * @return the number of pairs
+     */
+    private static int features(long[] boards, int position, int[] index, double[] coefficient) {
+        int count = 0;
+        int phase = 0;
+        int whiteKing = -1;
+        int blackKing = -1;
+        for (int square = 0; square < 64; square++) {
+            int code = PositionSet.piece(boards, position, square);
+            if (code == PieceCode.EMPTY) continue;
+            int type = PieceCode.type(code);
+            boolean white = (code & PieceCode.BLACK) == 0;
+            int relative = white ? square ^ 56 : square;
+            if (type == PieceCode.KING) {
+                if (white) whiteKing = relative;
+                else blackKing = relative;
+                continue;
+            }
+            double sign = white ? 1 : -1;
+            index[count] = type - 1;
+            coefficient[count++] = sign;
+            index[count] = PieceSquareEvaluator.TABLE_OFFSET + ((type - 1) << 6) + relative;
+            coefficient[count++] = sign;
+            phase += PieceSquareEvaluator.PHASE[type];
+        }
+        double middlegame = Math.min(phase, PieceSquareEvaluator.MAX_PHASE) / (double) PieceSquareEvaluator.MAX_PHASE;
+        int kingTable = PieceSquareEvaluator.TABLE_OFFSET + 5 * 64;
+        int[] kings = {whiteKing, blackKing};
+        for (int side = 0; side < 2; side++) {
+            double sign = side == 0 ? 1 : -1;
+            index[count] = kingTable + kings[side];
+            coefficient[count++] = sign * middlegame;
+            index[count] = PieceSquareEvaluator.KING_ENDGAME_OFFSET + kings[side];
+            coefficient[count++] = sign * (1 - middlegame);
+        }
+        return count;
+    } //the evaluation is linear in its weights, so these pairs are also its gradient
+
+    /**
+     * Fits the scaling constant K of the current weights by golden section search.
+     */
+    private void fitScaling() {
+        double low = 0.1;
+        double high = 4;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int step = 0; step < 30; step++) {
+            double a = high - ratio * (high - low);
+            double b = low + ratio * (high - low);
+            k = a * LN10_400;
+            double lossA = loss(false);
+            k = b * LN10_400;
+            double lossB = loss(false);
+            if (lossA < lossB) high = b;
+            else low = a;
+        }
+        k = (low + high) / 2 * LN10_400;
+    }
+
+    private void descend(int iterations, double rate) {
+        double[] m = new double[weights.length];
+        double[] v = new double[weights.length];
+        for (int t = 1; t <= iterations; t++) {
+            double[] sums = evaluate(false, true);
+            double positions = Math.max(1, sums[weights.length + 1]);
+            double correction = rate * Math.sqrt(1 - Math.pow(BETA2, t)) / (1 - Math.pow(BETA1, t));
+            for (int i = 0; i < weights.length; i++) {
+                double g = sums[i] / positions;
+                if (g == 0 && m[i] == 0) continue; //weights no position uses (pawns on the back ranks) stay put
+                m[i] = BETA1 * m[i] + (1 - BETA1) * g;
+                v[i] = BETA2 * v[i] + (1 - BETA2) * g * g;
+                weights[i] -= correction * m[i] / (Math.sqrt(v[i]) + 1e-12);
+            }
+            if (t % 50 == 0 || t == iterations) {
+                System.out.printf("  iteration %d: training loss %.6f%n", t, sums[weights.length] / positions);
+            }
+        }
+    }
+
+    /**
+     * Formats a weight vector as the tables of {@link PieceSquareEvaluator}, ready to paste.
+     *
+     * @param weights the weights, see {@link PieceSquareEvaluator} for the layout
+     * @return the Java declarations
+     */
+    static String format(int[] weights) {
+        StringBuilder sb = new StringBuilder("public static final int[] VALUES = {0");
+        for (int type = 0; type < 5; type++) sb.append(", ").append(weights[type]);
+        sb.append(", 20000};\n");
+        for (int table = 0; table < TABLE_NAMES.length; table++) {
+            sb.append("private static final int[] ").append(TABLE_NAMES[table]).append(" = {");
+            for (int row = 0; row < 8; row++) {
+                sb.append("\n        ");
+                for (int col = 0; col < 8; col++) {
+                    sb.append(weights[PieceSquareEvaluator.TABLE_OFFSET + table * 64 + row * 8 + col]);
+                    sb.append(row == 7 && col == 7 ? "};\n" : col == 7 ? "," : ", ");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Loads a data set, tunes the weights and prints them.
+     *
+     * @param args see the class description
+     * @throws IOException if the data cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Path input = null;
+        int rounds = 3;
+        int iterations = 200;
+        double rate = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                System.out.println("Missing value for " + args[i]);
+                return;
+            }
+            switch (args[i++]) {
+                case "-input" -> input = Path.of(value);
+                case "-rounds" -> rounds = Integer.parseInt(value);
+                case "-iterations" -> iterations = Integer.parseInt(value);
+                case "-rate" -> rate = Double.parseDouble(value);
+                case "-threads" -> threads = Integer.parseInt(value);
+                default -> {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+        }
+        if (input == null) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            PositionSet set = load(input, pool);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Loaded %,d positions from %s in %.1f s (%,.0f positions/s, %d threads)%n",
+                    set.size, input, seconds, set.size / seconds, threads);
+
+            TexelTuner tuner = new TexelTuner(set, pool);
+            start = System.nanoTime();
+            int skipped = tuner.resolve();
+            System.out.printf("Resolved the captures in %.1f s%s%n", (System.nanoTime() - start) / 1e9,
+                    skipped > 0 ? " (" + skipped + " positions skipped: the side not to move is in check)" : "");
+            tuner.fitScaling();
+            double initialTraining = tuner.loss(false);
+            double initialHeld = tuner.loss(true);
+            System.out.printf("K = %.3f; loss of the built-in weights: training %.6f, held out %.6f%n",
+                    tuner.k / LN10_400, initialTraining, initialHeld);
+
+            for (int round = 1; round <= rounds; round++) {
+                start = System.nanoTime();
+                if (round > 1) tuner.resolve();
+                System.out.printf("Round %d%n", round);
+                tuner.descend(iterations, rate);
+                System.out.printf("  held out loss %.6f (%.1f s)%n", tuner.loss(true), (System.nanoTime() - start) / 1e9);
+            }
+
+            int[] tuned = new int[tuner.weights.length];
+            for (int i = 0; i < tuned.length; i++) tuned[i] = (int) Math.round(tuner.weights[i]);
+            System.out.printf("Loss: training %.6f -> %.6f, held out %.6f -> %.6f%n",
+                    initialTraining, tuner.loss(false), initialHeld, tuner.loss(true));
+            System.out.println();
+            System.out.print(format(tuned));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
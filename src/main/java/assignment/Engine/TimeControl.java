@@ -0,0 +1,33 @@
+package assignment.Engine;
+
+/**
+ * A clock: a base time per game plus an increment per move.
+ *
+ * @param baseMillis the time each side starts with
+ * @param incrementMillis the time added after each move
+ */
+public record TimeControl(long baseMillis, long incrementMillis) {
+    /**
+     * Parses a time control in seconds, such as {@code 10+0.1} or {@code 60}.
+     *
+     * @param text the time control
+     * @return the time control
+     * @throws IllegalArgumentException if the text is not a time control
+     */
+    public static TimeControl parse(String text) {
+        String[] parts = text.split("\\+");
+        try {
+            long base = Math.round(Double.parseDouble(parts[0]) * 1000);
+            long increment = parts.length > 1 ? Math.round(Double.parseDouble(parts[1]) * 1000) : 0;
+            if (base <= 0 || increment < 0 || parts.length > 2) throw new NumberFormatException();
+            return new TimeControl(base, increment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time control " + text + ", expected seconds+increment");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseMillis / 1000.0 + "+" + incrementMillis / 1000.0 + " s";
+    }
+}
@@ -0,0 +1,179 @@
+package assignment.Engine;
+
+/**
+ * Decides how long a search may think about one move, as the {@link Search.Listener} of that search.
+ * <p>
+ * With a clock, the manager allocates two times from the remaining time and the increment: an optimum, about a
+ * twenty-fifth of the clock plus most of the increment, and a maximum of four times that, but never more than half
+ * of the clock. Both keep {@link #MOVE_OVERHEAD_MILLIS} back for everything around the search. After every
+ * completed iteration the optimum is scaled:
+ * <ul>
+ *     <li>up to 2.5 times when the best move keeps changing or the score drops, so a crisis gets more time</li>
+ *     <li>down to 0.6 times when the best move has stayed the same for several iterations</li>
+ * </ul>
+ * No new iteration is started once half the scaled optimum is used, because it would rarely finish in time, and a
+ * running iteration is stopped at twice the scaled optimum or at the maximum. With a fixed time per move the
+ * search stops a margin before that time, which is the maximum, so the watchdog only steps in when polling is late.
+ * <p>
+ * Stopping is cooperative: the search polls {@link #shouldStop()} every few thousand nodes, which a GC pause or a
+ * descheduled thread can delay. The {@link #deadline()} is the hard limit a watchdog on another thread enforces
+ * (see {@link EnginePlayer}), using {@link #lastIteration()} when the search does not return in time.
+ * <p>
+ * A manager is used for one move. The search thread calls the listener methods; the others may be called from
+ * the thread that waits for the move.
+ */
+public final class TimeManager implements Search.Listener {
+    /** Time kept back on the clock for the game loop, printing and pauses of the JVM, in milliseconds */
+    public static final long MOVE_OVERHEAD_MILLIS = 30;
+
+    private static final int MOVES_TO_GO = 25;
+    private static final int STABLE_ITERATIONS = 4;
+    private static final double MIN_SCALE = 0.6;
+    private static final double MAX_SCALE = 2.5;
+
+    private final long optimum; //nanoseconds
+    private final long maximum;
+    private final boolean adaptive;
+
+    private volatile long begin; //when the search started, counted for the time the search has spent
+    private volatile long deadline = Long.MAX_VALUE; //when the clock runs out for this move
+    private volatile boolean pondering;
+    private volatile boolean stopped;
+    private volatile long target; //the optimum scaled by the last iteration
+    private volatile boolean enough; //the last iteration used so much time that the next would not finish
+    private volatile Search.Iteration last;
+    private double instability;
+    private int stableIterations;
+
+    private TimeManager(long optimumMillis, long maximumMillis, boolean adaptive) {
+        this.optimum = optimumMillis * 1_000_000;
+        this.maximum = maximumMillis * 1_000_000;
+        this.adaptive = adaptive;
+        this.target = optimum;
+    }
+
+    /**
+     * Creates a manager that thinks a fixed time. The search stops {@link #MOVE_OVERHEAD_MILLIS} (at most a quarter
+     * of the time) before it, and the time itself is the hard limit.
+     *
+     * @param millis the time for the move, in milliseconds
+     * @return the manager
+     */
+    public static TimeManager perMove(long millis) {
+        if (millis <= 0) throw new IllegalArgumentException("The thinking time must be positive");
+        long optimum = Math.max(1, millis - Math.min(MOVE_OVERHEAD_MILLIS, millis / 4));
+        return new TimeManager(optimum, millis, false);
+    } //the search's own stop and the watchdog must not be the same moment, or every move runs a little over
+
+    /**
+     * Creates a manager that allocates the time for a move from a clock.
+     *
+     * @param remainingMillis the time left on the clock of the side to move
+     * @param incrementMillis the time added to it after the move
+     * @return the manager
+     */
+    public static TimeManager clock(long remainingMillis, long incrementMillis) {
+        long usable = Math.max(1, remainingMillis - MOVE_OVERHEAD_MILLIS);
+        long optimum = Math.max(1, Math.min(usable / MOVES_TO_GO + incrementMillis * 3 / 4, usable / 3));
+        long maximum = Math.max(optimum, Math.min(optimum * 4, usable / 2));
+        return new TimeManager(optimum, maximum, true);
+    } //with a small clock the increment is most of the budget, but never more than a third of what is left
+
+    /**
+     * Returns the time the move is planned to take, before any iteration scaled it.
+     *
+     * @return the optimum in milliseconds
+     */
+    public long optimumMillis() {
+        return optimum / 1_000_000;
+    }
+
+    /**
+     * Returns the most time the move may take.
+     *
+     * @return the maximum in milliseconds
+     */
+    public long maximumMillis() {
+        return maximum / 1_000_000;
+    }
+
+    /**
+     * Starts the clock together with the search.
+     */
+    public void start() {
+        begin = System.nanoTime();
+        deadline = begin + maximum;
+        pondering = false;
+    }
+
+    /**
+     * Starts a search on the opponent's time: the clock does not run and the search does not stop by itself
+     * until {@link #ponderHit()}.
+     */
+    public void startPondering() {
+        begin = System.nanoTime();
+        pondering = true;
+    }
+
+    /**
+     * Starts the clock of a search started with {@link #startPondering()}, because the opponent played the
+     * expected move. The time the search already spent counts towards the optimum, but the maximum starts now.
+     */
+    public void ponderHit() {
+        deadline = System.nanoTime() + maximum;
+        pondering = false;
+    }
+
+    /**
+     * Stops the search at its next poll, for example when the expected move was not played.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns when the move must be played.
+     *
+     * @return the hard deadline in System.nanoTime() terms, or Long.MAX_VALUE while pondering
+     */
+    public long deadline() {
+        return pondering ? Long.MAX_VALUE : deadline;
+    }
+
+    /**
+     * Returns the last completed iteration, the best move known at any moment.
+     *
+     * @return the iteration, or null if none has completed yet
+     */
+    public Search.Iteration lastIteration() {
+        return last;
+    }
+
+    @Override
+    public void iterationCompleted(Search.Iteration iteration) {
+        Search.Iteration previous = last;
+        last = iteration;
+        if (!adaptive || previous == null) return;
+        Search.Line best = iteration.lines().get(0);
+        Search.Line before = previous.lines().get(0);
+        boolean changed = best.move() != before.move();
+        instability = instability / 2 + (changed ? 1 : 0);
+        stableIterations = changed ? 0 : stableIterations + 1;
+        int drop = Search.isMate(best.score()) || Search.isMate(before.score()) ? 0 : before.score() - best.score();
+
+        double scale = (1 + instability) * (drop >= 50 ? 1.5 : drop >= 20 ? 1.2 : 1);
+        if (stableIterations >= STABLE_ITERATIONS && drop < 20) scale *= 0.6;
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        target = Math.min(maximum, (long) (optimum * scale));
+        enough = iteration.nanos() >= target / 2;
+    }
+
+    @Override
+    public boolean shouldStop() {
+        if (stopped) return true;
+        if (pondering) return false;
+        long now = System.nanoTime();
+        long limit = adaptive ? Math.min(maximum, target * 2) : optimum;
+        return enough || now >= deadline || now - begin >= limit;
+    }
+}
@@ -0,0 +1,160 @@
+package assignment.Engine;
+
+import java.util.Arrays;
+
+/**
+ * A hash table of search results keyed by Zobrist hash, so that a position reached again (through a transposition
+ * or in the next iteration of iterative deepening) does not have to be searched again, and so that its best move
+ * can be tried first.
+ * <p>
+ * Entries live in two parallel long arrays, one for the full hash and one for the packed result, so the table is a
+ * couple of flat arrays instead of millions of objects. Each slot holds one entry; a new result replaces the old one
+ * unless the old one is from the same search and was searched deeper. The table is not thread-safe, every search
+ * has its own.
+ * <p>
+ * A packed entry holds, from the lowest bit: the move (17 bits), the score (16 bits, signed), the depth (8 bits),
+ * the bound (2 bits) and the search generation (8 bits). The top bit is always set, so an empty slot (0) never
+ * looks like a stored entry.
+ */
+public final class TranspositionTable {
+    /** The stored score is exact */
+    public static final int EXACT = 0;
+    /** The stored score is a lower bound: the search failed high */
+    public static final int LOWER = 1;
+    /** The stored score is an upper bound: no move reached alpha */
+    public static final int UPPER = 2;
+    /** Returned by {@link #probe(long)} when the position is not in the table */
+    public static final long MISS = 0;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+    private int generation;
+
+    /**
+     * Creates a table.
+     *
+     * @param bytes the memory to use, rounded down to a power of two number of entries (at least 1024 entries)
+     */
+    public TranspositionTable(long bytes) {
+        int size = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(1024, bytes / ENTRY_BYTES)));
+        this.keys = new long[size];
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param hash the position's Zobrist hash
+     * @return the packed entry (read it with the static accessors), or MISS
+     */
+    public long probe(long hash) {
+        int slot = (int) hash & mask;
+        return keys[slot] == hash ? entries[slot] : MISS;
+    }
+
+    /**
+     * Stores the result of searching a position.
+     *
+     * @param hash the position's Zobrist hash
+     * @param move the best move found, or Move.NONE
+     * @param score the score, already adjusted for mate distance by the caller
+     * @param depth the depth searched, 0 to 255
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long hash, int move, int score, int depth, int bound) {
+        int slot = (int) hash & mask;
+        long old = entries[slot];
+        if (old != MISS && keys[slot] != hash && generation(old) == generation && depth(old) > depth) return;
+        if (move == Move.NONE && keys[slot] == hash) move = move(old); //keep the move of a shallower search
+        keys[slot] = hash;
+        entries[slot] = VALID | (long) generation << 43 | (long) bound << 41 | (long) depth << 33
+                | (long) (score & 0xFFFF) << 17 | move;
+    } //deeper entries of the current search survive collisions, anything older is simply replaced
+
+    /**
+     * Starts a new search: entries of earlier searches become replaceable regardless of their depth.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, MISS);
+        generation = 0;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the capacity in entries
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Estimates how full the table is from its first thousand slots, in the way UCI reports "hashfull".
+     *
+     * @return the used share of the table in permille
+     */
+    public int permilleFull() {
+        int used = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (entries[i] != MISS && generation(entries[i]) == generation) used++;
+        }
+        return used;
+    }
+
+    /**
+     * Reads the move of an entry.
+     *
+     * @param entry a packed entry
+     * @return the stored move, or Move.NONE
+     */
+    public static int move(long entry) {
+        return (int) entry & 0x1FFFF;
+    }
+
+    /**
+     * Reads the score of an entry.
+     *
+     * @param entry a packed entry
+     * @return the stored score
+     */
+    public static int score(long entry) {
+        return (short) (entry >>> 17);
+    }
+
+    /**
+     * Reads the depth of an entry.
+     *
+     * @param entry a packed entry
+     * @return the depth the entry was searched to
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> 33) & 0xFF;
+    }
+
+    /**
+     * Reads the bound of an entry.
+     *
+     * @param entry a packed entry
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> 41) & 3;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 43) & 0xFF;
+    }
+}
@@ -1,13 +1,50 @@
 package assignment;
 
+import assignment.Analysis.AnalysisSession;
+import assignment.Analysis.Analyzer;
+import assignment.Analysis.GameStatus;
+import assignment.Analysis.PositionAnalysis;
+import assignment.Engine.EngineBoard;
+import assignment.Engine.EnginePlayer;
+import assignment.Engine.Move;
+import assignment.Engine.Notation;
+import assignment.Engine.Pgn;
+import assignment.Engine.Search;
+import assignment.Engine.StaticExchange;
+import assignment.Engine.TimeControl;
 import assignment.Model.Board;
+import assignment.Model.Castling;
+import assignment.Model.GameHistory;
 import assignment.Model.Location;
 import assignment.Model.Color;
-import assignment.Pieces.*;
+import assignment.Model.PieceCode;
+import assignment.Model.Position;
+import assignment.Pieces.Piece;
 import assignment.Exceptions.InvalidLocationException;
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Spectator.GameFeed;
+import assignment.Storage.PositionStore;
+import assignment.Storage.SaveValidator;
+import assignment.Storage.SavedGame;
+import assignment.Storage.StoredPosition;
 
-import java.io.*;
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Controls the flow of a chess game.
@@ -16,15 +53,39 @@ import java.util.Scanner;
  *     <li>The game board and its state</li>
  *     <li>Player turns (alternating between white and black)</li>
  *     <li>Move validation and execution</li>
+ *     <li>The history of the game, for taking moves back and replaying them, repetition draws and PGN export</li>
  *     <li>Game commands (help, save, load, exit)</li>
+ *     <li>The feed that streams the game to spectators</li>
  * </ul>
- * Note: Checkmate, stalemate, and draw conditions are not implemented in this version.
+ * Moves follow the full rules, including castling, en passant, promotion and the ban on leaving the own king in check.
+ * Check, checkmate, stalemate and the draws by rule are announced, but the game only stops when the user exits.
  */
 public class Game {
+    private static final LatencyHistogram MOVE_TIME = Metrics.histogram("game.handleMove");
+    private static final Counter MOVES = Metrics.counter("game.moves");
+    private static final Counter REJECTED = Metrics.counter("game.moves.rejected");
+    private static final LatencyHistogram SAVE_TIME = Metrics.histogram("game.save");
+    private static final LatencyHistogram OPEN_TIME = Metrics.histogram("game.open");
+    private static final LatencyHistogram STORE_TIME = Metrics.histogram("game.storePosition");
+    private static final LatencyHistogram STORE_OPEN_TIME = Metrics.histogram("game.openStoredPosition");
+    private static final LatencyHistogram ANALYZE_TIME = Metrics.histogram("game.analyze");
+    private static final LatencyHistogram PGN_TIME = Metrics.histogram("game.exportPgn");
+
     private Board board;
     private Color currentPlayer;
-    private final Scanner scanner;
+    private final BufferedReader input; //not a Scanner, whose regular expressions and locale data cost a cold start tens of milliseconds
     private static final String SAVE_DIRECTORY = "src/main/java/assignment/Saved Games/";
+    private static final String STORE_FILE = "positions.store";
+    private static final int STORE_CAPACITY = 65536;
+    private PositionStore store; //opened on first use, most games never touch it
+    private final Analyzer analyzer = new Analyzer();
+    private volatile Position position; //replaced after every change of the board, read by other threads
+    private GameHistory history; //every position since the start or the last load, the current one included
+    private AnalysisSession session; //started by the first :e, most games never use it
+    private int analysisLines; //0 while the engine analysis is off
+    private EnginePlayer engine; //created by :c
+    private Color engineColor; //null while both sides are played by humans
+    private final GameFeed feed = new GameFeed();
 
     /**
      * Creates a new chess game with standard initial setup.
@@ -33,43 +94,97 @@ public class Game {
     public Game() {
         board = new Board();
         currentPlayer = Color.WHITE; //white always starts first, apparently for historical reasons and not racism
-        scanner = new Scanner(System.in);
+        position = Position.of(board, currentPlayer);
+        history = new GameHistory(position);
+        input = new BufferedReader(new InputStreamReader(System.in));
+        restartFeed();
+    }
+
+    /**
+     * Returns an immutable snapshot of the current position.
+     * Safe to call from any thread while the game goes on: the snapshot never changes, and the game publishes
+     * a new one after every move or load.
+     *
+     * @return the current position, linked to the positions played before it
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the feed that streams this game to spectators: a delta for every move, and a snapshot every few
+     * moves and whenever the game jumps to another position. Spectators may subscribe from any thread.
+     *
+     * @return the game's feed
+     */
+    public GameFeed getFeed() {
+        return feed;
     }
 
     /**
      * Starts and runs the main game loop.
-     * The loop continues until the user explicitly exits using the ':x' command.
+     * The loop continues until the user explicitly exits using the ':x' command, or the input ends.
      * Each iteration:
      * <ul>
      *     <li>Displays the current board state</li>
+     *     <li>Lets the engine move if it plays the side to move (see {@link #setEngine(Color, TimeControl, long)})</li>
      *     <li>Shows whose turn it is</li>
      *     <li>Processes user input (either a move or a command)</li>
      * </ul>
+     * While the loop waits for the user's input, an engine opponent ponders on the reply it expects.
      */
-    //Checkmate or draw checks are not implemented, game only stops if the user stops it
+    //the game only stops if the user stops it, even after checkmate, so positions can still be saved or analyzed
     @SuppressWarnings("InfiniteLoopStatement")
     public void play() {
         while (true) { //throws a warning because this while never ends unless an exception is thrown, this is expected as the only way to exit the game is via the :x command
             board.display();
+            if (currentPlayer == engineColor && playEngineMove()) continue;
             System.out.println(currentPlayer + "'s turn");
             
-            String input = scanner.nextLine().trim();
+            String line = readLine();
             
-            if (input.startsWith(":")) { //checks if input is a command or a move
-                handleCommand(input);
+            if (line.startsWith(":")) { //checks if input is a command or a move
+                handleCommand(line);
             } else {
-                handleMove(input);
+                handleMove(line);
             }
         }
     }
 
+    /**
+     * Reads the next line the user typed, without surrounding whitespace.
+     * When the input ends, as it does after a piped script, the game exits as {@code :x} would.
+     *
+     * @return the line
+     */
+    private String readLine() {
+        String line;
+        try {
+            line = input.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (line == null) System.exit(0);
+        return line.trim();
+    }
+
     /**
      * Processes game commands that start with ':'.
      * Available commands:
      * <ul>
      *     <li>:h - Display help information</li>
+     *     <li>:n [number|random|FEN] - Start a new game, from a Chess960 starting position or any FEN</li>
      *     <li>:s [filename] - Save the current game to specified file</li>
      *     <li>:o [filename] - Open (load) a previously saved game from specified file</li>
+     *     <li>:ss [name] - Save the current position to the position store</li>
+     *     <li>:so [name] - Open a position from the position store</li>
+     *     <li>:u - Take back the last move (and the engine's reply, if it plays)</li>
+     *     <li>:r - Replay a move that was taken back</li>
+     *     <li>:p [filename] - Export the game as PGN</li>
+     *     <li>:a - Analyze the current position (status, evaluation, legal moves and hanging pieces)</li>
+     *     <li>:e [lines|off] - Start or stop the engine analysis of the best moves, following every move</li>
+     *     <li>:c [white|black|off] [millis|seconds+increment] - Let the engine play a side, thinking the given time per move or on a clock</li>
+     *     <li>:m - Print the metrics (when started with -Dchess.metrics=true)</li>
      *     <li>:x - Exit the game (with confirmation)</li>
      * </ul>
      *
@@ -84,6 +199,9 @@ public class Game {
             case ":h":
                 printHelp();
                 break;
+            case ":n":
+                newGame(filename == null ? null : command.trim().split("\\s+", 2)[1]); //a FEN needs its upper case letters
+                break;
             case ":s":
                 if (filename == null) {
                     System.out.println("Please provide a filename to save the game (e.g., :s mygame)");
@@ -98,6 +216,68 @@ public class Game {
                 }
                 openGame(filename + ".txt");
                 break;
+            case ":ss":
+                if (filename == null) {
+                    System.out.println("Please provide a name to store the position (e.g., :ss mygame)");
+                    return;
+                }
+                storePosition(filename);
+                break;
+            case ":so":
+                if (filename == null) {
+                    System.out.println("Please provide a name to open from the store (e.g., :so mygame)");
+                    return;
+                }
+                openStoredPosition(filename);
+                break;
+            case ":u":
+                undoMove();
+                break;
+            case ":r":
+                redoMove();
+                break;
+            case ":p":
+                if (filename == null) {
+                    System.out.println("Please provide a filename to export the game to (e.g., :p mygame)");
+                    return;
+                }
+                exportPgn(filename + ".pgn");
+                break;
+            case ":a":
+                analyzePosition();
+                break;
+            case ":e":
+                if ("off".equals(filename)) {
+                    stopEngineAnalysis();
+                    return;
+                }
+                try {
+                    int lines = filename == null ? AnalysisSession.DEFAULT_LINES : Integer.parseInt(filename);
+                    if (lines < 1) throw new NumberFormatException();
+                    startEngineAnalysis(lines);
+                } catch (NumberFormatException e) {
+                    System.out.println("Please provide the number of lines to show, or 'off' (e.g., :e 3)");
+                }
+                break;
+            case ":c":
+                String[] options = filename == null ? new String[0] : filename.split("\\s+");
+                try {
+                    TimeControl clock = options.length > 1 && options[1].contains("+") ? TimeControl.parse(options[1]) : null;
+                    long millis = options.length > 1 && clock == null ? Long.parseLong(options[1]) : EnginePlayer.DEFAULT_MOVE_MILLIS;
+                    if (millis <= 0) throw new NumberFormatException();
+                    switch (options.length > 0 ? options[0] : "") {
+                        case "white" -> setEngine(Color.WHITE, clock, millis);
+                        case "black" -> setEngine(Color.BLACK, clock, millis);
+                        case "off" -> setEngine(null, clock, millis);
+                        default -> System.out.println("Please choose the engine's side: ':c white', ':c black' or ':c off', optionally with the time per move in milliseconds (e.g., :c black 2000) or a clock in seconds plus increment (e.g., :c black 300+2)");
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println("The time must be a positive number of milliseconds per move (e.g., :c black 2000) or a clock in seconds plus increment (e.g., :c black 300+2)");
+                }
+                break;
+            case ":m":
+                System.out.print(Metrics.ENABLED ? Metrics.dump() : "Metrics are disabled, start the game with -Dchess.metrics=true\n");
+                break;
             case ":x":
                 if (exitGame()) {
                     System.exit(0);
@@ -110,27 +290,33 @@ public class Game {
 
     /**
      * Processes a move input from the user.
-     * The move must be in the format "e2e4" (source square followed by destination square).
+     * The move must be in the format "e2e4" (source square followed by destination square),
+     * optionally followed by the piece a pawn is promoted to ("e7e8n"); pawns become queens by default.
+     * Castling is entered as the king's move ("e1g1").
      * Validates that:
      * <ul>
      *     <li>The input format is correct</li>
      *     <li>There is a piece at the source location</li>
      *     <li>The piece belongs to the current player</li>
-     *     <li>The move is valid according to chess rules</li>
+     *     <li>A promotion piece (q, r, b or n) is only given for a pawn reaching the last rank</li>
+     *     <li>The move is valid according to chess rules, and does not leave the player's king in check</li>
      * </ul>
      *
      * @param moveString the move in chess notation (e.g., "e2e4")
      */
     public void handleMove(String moveString) {
+        long start = Metrics.start();
+        boolean moved = false;
         try {
-            if (moveString.length() != 4) {
-                System.out.println("Invalid move format! Format should be two pairs of coordinates, first the piece you want to move, and then the destination, for example 'e2e4'. Don't leave a space between the coordinates.");
+            if (moveString.length() != 4 && moveString.length() != 5) {
+                System.out.println("Invalid move format! Format should be two pairs of coordinates, first the piece you want to move, and then the destination, for example 'e2e4'. Don't leave a space between the coordinates. To promote a pawn to something other than a queen, add the piece, for example 'e7e8n'.");
                 return;
             }
 
             //parse the input as coordinates
             Location from = new Location(moveString.substring(0, 2));
             Location to = new Location(moveString.substring(2, 4));
+            char promotion = moveString.length() == 5 ? moveString.charAt(4) : 'Q';
 
             Piece piece = board.getPieceAt(from);
             if (piece == null) {
@@ -140,14 +326,120 @@ public class Game {
                 System.out.println("Choose your own piece, not an enemy one.");
                 return;
             }
+            if (moveString.length() == 5) {
+                if ("qrbnQRBN".indexOf(promotion) < 0) {
+                    throw new InvalidMoveException("Pawns can only be promoted to a queen (q), rook (r), bishop (b) or knight (n).");
+                }
+                if (PieceCode.type(PieceCode.of(piece)) != PieceCode.PAWN || to.getRow() != (currentPlayer == Color.WHITE ? 7 : 0)) {
+                    throw new InvalidMoveException("Only a pawn reaching the last rank can be promoted.");
+                }
+            } //the rules ignore the promotion piece of any other move, so a stray letter would be accepted
 
-            //if piece selected is valid, move piece and continue to the other player's turn
-            board.movePiece(from, to);
+            //the piece checks its own movement rules, if they pass continue to the other player's turn
+            int code = PieceCode.of(piece);
+            piece.moveTo(to, promotion);
+            int promoted = PieceCode.type(board.pieceAt(to.getSquare()));
+            String uci = from.toString() + to + (PieceCode.type(code) == PieceCode.PAWN && promoted != PieceCode.PAWN
+                    ? String.valueOf(Character.toLowerCase(PieceCode.symbol(promoted))) : "");
             currentPlayer = currentPlayer.nextColor();
+            position = position.next(board);
+            history.play(uci, position);
+            moved = true;
+            publishMove(uci);
+            announceStatus();
+            followPosition();
             
         } catch (InvalidLocationException e) {
             System.out.println("Invalid location: " + e.getMessage());
+        } catch (InvalidMoveException e) {
+            System.out.println("Invalid move: " + e.getMessage());
+        } finally {
+            (moved ? MOVES : REJECTED).increment();
+            MOVE_TIME.stop(start);
+        }
+    }
+
+    private void publishMove(String uci) {
+        try {
+            feed.publishMove(uci);
+        } catch (InvalidMoveException e) {
+            restartFeed();
         }
+    } //the feed checks moves by the engine's rules; should they ever disagree with the board's, spectators get the position
+
+    private void restartFeed() {
+        feed.reset(EngineBoard.of(position), history.ply());
+    }
+
+    private void announceStatus() {
+        switch (status()) {
+            case CHECK -> System.out.println("Check!");
+            case CHECKMATE -> System.out.println("Checkmate! " + currentPlayer.nextColor() + " wins. Type ':x' to exit or ':s' to save the game.");
+            case STALEMATE -> System.out.println("Stalemate! The game is drawn.");
+            case INSUFFICIENT_MATERIAL -> System.out.println("Neither side can checkmate anymore, the game is drawn.");
+            case FIFTY_MOVE_RULE -> System.out.println("Fifty moves without a capture or pawn move, the game is drawn.");
+            case THREEFOLD_REPETITION -> System.out.println("The same position appeared for the third time, the game is drawn.");
+            default -> {
+            }
+        }
+    }
+
+    private GameStatus status() {
+        GameStatus status = analyzer.status(EngineBoard.of(position));
+        return !status.isOver() && history.repetitions() >= 3 ? GameStatus.THREEFOLD_REPETITION : status;
+    } //repetitions depend on the game, not only on the position, so the analysis cache cannot know them
+
+    /**
+     * Starts a new game, keeping the engine settings. The setup is one of:
+     * <ul>
+     *     <li>nothing, for the standard starting position</li>
+     *     <li>a number from 0 to 959, for that Chess960 starting position (518 is the standard one)</li>
+     *     <li>"random", for a random Chess960 starting position</li>
+     *     <li>a FEN, with Chess960 castling rights in X-FEN or Shredder-FEN</li>
+     * </ul>
+     *
+     * @param setup the starting position, or null for the standard one
+     */
+    public void newGame(String setup) {
+        String description;
+        Board next = new Board();
+        Color toMove = Color.WHITE;
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        try {
+            if (setup == null) {
+                description = "the standard starting position";
+            } else if (setup.equalsIgnoreCase("random") || setup.matches("\\d+")) {
+                int number = setup.equalsIgnoreCase("random") ? ThreadLocalRandom.current().nextInt(960) : Integer.parseInt(setup);
+                next.init(number);
+                description = "Chess960 starting position " + number;
+            } else {
+                EngineBoard fen = EngineBoard.fromFen(setup);
+                List<String> problems = SaveValidator.problems(fen.toBoard(), fen.sideToMoveColor());
+                if (!problems.isEmpty()) throw new IllegalArgumentException(String.join("; ", problems) + ".");
+                next = fen.toBoard();
+                toMove = fen.sideToMoveColor();
+                halfmoveClock = fen.halfmoveClock();
+                fullmoveNumber = fen.fullmoveNumber();
+                description = fen.toFen();
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Cannot start that game: " + e.getMessage());
+            System.out.println("Use ':n' for a standard game, ':n random' or ':n 0' to ':n 959' for Chess960, or ':n' followed by a FEN.");
+            return;
+        }
+        board = next;
+        currentPlayer = toMove;
+        position = Position.of(board, currentPlayer, halfmoveClock, fullmoveNumber);
+        history = new GameHistory(position);
+        restartFeed();
+        System.out.println("New game from " + description);
+        if (engine != null) {
+            engine.stopPondering(); //the expected reply will not come in this game
+            engine.resetClock();
+        }
+        announceStatus();
+        followPosition();
     }
 
     /**
@@ -155,37 +447,24 @@ public class Game {
      * The save format includes:
      * <ul>
      *     <li>The current player's turn</li>
+     *     <li>The castling rights and the en passant square</li>
+     *     <li>The moves that led to the position, so draws by repetition can still be claimed after loading</li>
      *     <li>The position and type of each piece on the board</li>
      * </ul>
      * 
      * @param filename the name of the file to save the game to
      */
     public void saveGame(String filename) {
-        String fullPath = SAVE_DIRECTORY + filename;
+        long start = Metrics.start();
         try {
             // Create the directory if it doesn't exist
             new File(SAVE_DIRECTORY).mkdirs();
-            
-            try (PrintWriter writer = new PrintWriter(new FileWriter(fullPath))) {
-                //first line in the saved file is the current player's turn
-                writer.println(currentPlayer.name());
-                //save board state
-                for (int i = 0; i < 8; i++) {
-                    for (int j = 0; j < 8; j++) {
-                        Location loc = new Location(i, j);
-                        Piece piece = board.getPieceAt(loc);
-                        //write empty for null pieces, otherwise write piece info
-                        if (piece == null) {
-                            writer.println(i + "," + j + ",empty,none");
-                        } else {
-                            writer.println(i + "," + j + "," + piece.getClass().getSimpleName() + "," + piece.getColor());
-                        }
-                    }
-                }
-                System.out.println("Game saved successfully to " + filename);
-            }
-        } catch (IOException | InvalidLocationException e) {
+            new SavedGame(board, currentPlayer, history).write(Path.of(SAVE_DIRECTORY, filename));
+            System.out.println("Game saved successfully to " + filename);
+        } catch (IOException e) {
             System.out.println("Error saving game: " + e.getMessage());
+        } finally {
+            SAVE_TIME.stop(start);
         }
     }
 
@@ -195,6 +474,7 @@ public class Game {
      * <ul>
      *     <li>The current player's turn</li>
      *     <li>All pieces and their positions on the board</li>
+     *     <li>The moves that led to the position, if the save has them</li>
      * </ul>
      * 
      * @param filename the name of the file to load the game from
@@ -208,60 +488,264 @@ public class Game {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(saveFile))) {
-            String colorLine = reader.readLine();
-            if (colorLine != null) {
-                currentPlayer = Color.valueOf(colorLine);
-                board = new Board(); // Create an empty board
-                
-                String line;
-                while ((line = reader.readLine()) != null) { //populate the board with the saved piece positions
-                    String[] parts = line.split(",");
-                    if (parts.length == 4) {
-                        int row = Integer.parseInt(parts[0]);
-                        int col = Integer.parseInt(parts[1]);
-                        String pieceType = parts[2];
-                        Location loc = new Location(row, col);
-                        
-                        // Handle empty squares explicitly
-                        if (pieceType.equals("empty")) {
-                            board.setPiece(loc, null);
-                        } else {
-                            Color pieceColor = Color.valueOf(parts[3]);
-                            Piece piece = createPiece(pieceType, pieceColor, loc);
-                            if (piece != null) {
-                                board.setPiece(loc, piece);
-                            }
-                        }
-                    }
-                }
-                System.out.println("Game loaded successfully from " + filename);
-            }
-        } catch (IOException | InvalidLocationException e) {
+        long start = Metrics.start();
+        try {
+            SavedGame saved = SavedGame.read(saveFile.toPath());
+            board = saved.board();
+            currentPlayer = saved.sideToMove();
+            history = saved.history();
+            position = history.current();
+            restartFeed();
+            System.out.println("Game loaded successfully from " + filename);
+            if (engine != null) engine.stopPondering(); //the expected reply will not come in this game
+            followPosition();
+        } catch (IOException e) {
             System.out.println("Error loading game: " + e.getMessage());
+        } finally {
+            OPEN_TIME.stop(start);
+        }
+    }
+
+    /**
+     * Saves the current position to the single-file position store.
+     * Unlike {@link #saveGame(String)}, this writes one fixed-size binary record instead of a text file,
+     * so it stays fast even with millions of saved games.
+     *
+     * @param name the name to save the position under
+     */
+    public void storePosition(String name) {
+        long start = Metrics.start();
+        try {
+            positionStore().put(name, board, currentPlayer);
+            System.out.println("Position stored as " + name);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error storing position: " + e.getMessage());
+        } finally {
+            STORE_TIME.stop(start);
+        }
+    }
+
+    /**
+     * Opens a position from the position store.
+     * The lookup goes through the store's name index, so it does not depend on how many positions are stored.
+     *
+     * @param name the name the position was saved under
+     */
+    public void openStoredPosition(String name) {
+        long start = Metrics.start();
+        try {
+            StoredPosition stored = positionStore().get(name);
+            if (stored == null) {
+                System.out.println("No stored position named '" + name + "'!");
+                return;
+            }
+            board = stored.toBoard();
+            currentPlayer = stored.sideToMove();
+            position = Position.of(board, currentPlayer);
+            history = new GameHistory(position);
+            restartFeed();
+            System.out.println("Position loaded successfully from " + name);
+            if (engine != null) engine.stopPondering();
+            followPosition();
+        } catch (IOException e) {
+            System.out.println("Error opening position store: " + e.getMessage());
+        } finally {
+            STORE_OPEN_TIME.stop(start);
+        }
+    }
+
+    /**
+     * Takes back the last move. When the engine plays, its reply is taken back too, so it is the user's turn again.
+     * Taken back moves can be replayed with {@link #redoMove()} until another move is played.
+     */
+    public void undoMove() {
+        if (!history.canUndo()) {
+            System.out.println("There is no move to take back.");
+            return;
+        }
+        String taken = history.moveAt(history.ply() - 1);
+        history.undo();
+        if (history.current().sideToMove() == engineColor && history.canUndo()) {
+            taken = history.moveAt(history.ply() - 1) + " " + taken;
+            history.undo();
+        }
+        showHistoryPosition("Took back " + taken);
+    }
+
+    /**
+     * Replays a move taken back with {@link #undoMove()}, together with the engine's reply if it plays.
+     */
+    public void redoMove() {
+        if (!history.canRedo()) {
+            System.out.println("There is no move to replay.");
+            return;
+        }
+        String replayed = history.moveAt(history.ply());
+        history.redo();
+        if (history.current().sideToMove() == engineColor && history.canRedo()) {
+            replayed += " " + history.moveAt(history.ply());
+            history.redo();
         }
+        showHistoryPosition("Replayed " + replayed);
     }
 
+    private void showHistoryPosition(String message) {
+        position = history.current();
+        board = position.toBoard();
+        currentPlayer = position.sideToMove();
+        restartFeed();
+        System.out.println(message);
+        if (engine != null) engine.stopPondering();
+        announceStatus();
+        followPosition();
+    } //puts the history's current position on the board
+
     /**
-     * Creates a new chess piece of the specified type.
+     * Exports the game from its start (or the last load) to the current position in Portable Game Notation.
      *
-     * @param type the type of piece to create (Pawn, Rook, Knight, Bishop, Queen, or King)
-     * @param color the color of the piece
-     * @param location the location where the piece should be placed
-     * @return the created piece, or null if the piece type is invalid
+     * @param filename the name of the file to write, in the save directory
+     */
+    public void exportPgn(String filename) {
+        long start = Metrics.start();
+        try {
+            EngineBoard replay = EngineBoard.of(history.start());
+            List<String> moves = new ArrayList<>(history.ply());
+            for (String uci : history.moves()) {
+                int move = Notation.parseUci(replay, uci);
+                moves.add(Notation.toSan(replay, move));
+                replay.make(move);
+            }
+            GameStatus status = status();
+            String result = status == GameStatus.CHECKMATE ? (currentPlayer == Color.WHITE ? "0-1" : "1-0")
+                    : status.isOver() ? "1/2-1/2" : "*";
+            Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("Event", "Casual game");
+            tags.put("Site", "?");
+            tags.put("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+            tags.put("Round", "-");
+            tags.put("White", engineColor == Color.WHITE ? "Engine" : "Player");
+            tags.put("Black", engineColor == Color.BLACK ? "Engine" : "Player");
+            tags.put("Result", result);
+            String startFen = EngineBoard.of(history.start()).toFen();
+            if (!startFen.equals(EngineBoard.START_FEN)) {
+                if (isChess960(history.start())) tags.put("Variant", "Chess960");
+                tags.put("SetUp", "1");
+                tags.put("FEN", startFen);
+            }
+            new File(SAVE_DIRECTORY).mkdirs();
+            Files.writeString(Path.of(SAVE_DIRECTORY, filename), Pgn.format(new Pgn.Game(tags, moves, result)));
+            System.out.println("Game exported to " + filename + " (" + moves.size() + (moves.size() == 1 ? " move" : " moves") + ")");
+        } catch (IOException e) {
+            System.out.println("Error exporting game: " + e.getMessage());
+        } catch (InvalidMoveException e) {
+            System.out.println("Error exporting game, the history holds an illegal move: " + e.getMessage());
+        } finally {
+            PGN_TIME.stop(start);
+        }
+    }
+
+    private static boolean isChess960(Position position) {
+        int[] rooks = new int[4];
+        for (int right = 0; right < 4; right++) {
+            rooks[right] = position.castlingRook(right);
+        }
+        return !Castling.isStandard(position.castlingRights(), rooks, position::pieceAt);
+    } //only castling plays differently in Chess960, a position without such castling rights is an ordinary one
+
+    /**
+     * Prints the status, the static evaluation, the legal moves and the hanging pieces of the current position.
+     * Results come from the analysis cache, so positions seen before are answered without recomputing them.
      */
-    private Piece createPiece(String type, Color color, Location location) {
-        return switch (type) {
-            case "Pawn" -> new Pawn(color, location, board);
-            case "Rook" -> new Rook(color, location, board);
-            case "Knight" -> new Knight(color, location, board);
-            case "Bishop" -> new Bishop(color, location, board);
-            case "Queen" -> new Queen(color, location, board);
-            case "King" -> new King(color, location, board);
-            default -> null;
-        };
+    public void analyzePosition() {
+        long start = Metrics.start();
+        EngineBoard engine = EngineBoard.of(position);
+        PositionAnalysis analysis = analyzer.analyze(engine);
+        ANALYZE_TIME.stop(start);
+        System.out.println("Status: " + analysis.status());
+        System.out.printf("Evaluation: %+.2f for %s%n", analysis.evaluation() / 100.0, currentPlayer);
+        StringBuilder moves = new StringBuilder();
+        for (int i = 0; i < analysis.moveCount(); i++) {
+            moves.append(' ').append(Move.toUci(analysis.move(i)));
+        }
+        System.out.println(analysis.moveCount() + " legal moves:" + moves);
+        StringBuilder hanging = new StringBuilder();
+        for (int side = EngineBoard.WHITE; side <= EngineBoard.BLACK; side++) {
+            for (long pieces = StaticExchange.hanging(engine, side); pieces != 0; pieces &= pieces - 1) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                hanging.append(' ').append(PieceCode.symbol(engine.pieceAt(square))).append(Move.squareName(square));
+            }
+        }
+        System.out.println("Hanging pieces:" + (hanging.isEmpty() ? " none" : hanging));
     }
 
+    /**
+     * Starts the engine analysis of the current position: the best moves with their scores and variations,
+     * printed after every completed search depth. The analysis runs in the background while the game goes on,
+     * and moves to every new position as soon as it is on the board.
+     *
+     * @param lines the number of best moves to show
+     */
+    public void startEngineAnalysis(int lines) {
+        if (session == null) session = new AnalysisSession();
+        analysisLines = lines;
+        System.out.println("Engine analysis on (" + lines + (lines == 1 ? " line" : " lines") + "), type ':e off' to stop it");
+        followPosition();
+    }
+
+    /**
+     * Stops the engine analysis started by {@link #startEngineAnalysis(int)}.
+     */
+    public void stopEngineAnalysis() {
+        if (session != null) session.stop();
+        analysisLines = 0;
+        System.out.println("Engine analysis off");
+    }
+
+    /**
+     * Lets the engine play a side, or hands both sides back to humans.
+     * The engine thinks for the given time per move, or plays on a clock that it manages itself (only the engine's
+     * clock runs, and it is reset by a new game). It ponders on the reply it expects while the human thinks,
+     * so a predicted reply is often answered at once.
+     *
+     * @param color the side the engine plays, or null to turn the engine off
+     * @param clock the engine's clock, or null to think a fixed time per move
+     * @param moveMillis the thinking time per move without a clock, in milliseconds
+     */
+    public void setEngine(Color color, TimeControl clock, long moveMillis) {
+        if (engine != null) engine.close();
+        engine = color == null ? null : clock == null ? new EnginePlayer(moveMillis) : new EnginePlayer(clock);
+        engineColor = color;
+        System.out.println(color == null ? "Both sides are played by humans"
+                : "The engine plays " + color + " (" + (clock == null ? moveMillis + " ms per move" : clock + " clock") + ")");
+    }
+
+    private boolean playEngineMove() {
+        EngineBoard current = EngineBoard.of(history);
+        int move = engine.play(current);
+        if (move == Move.NONE) return false; //the game is over, leave the board to the user
+        EnginePlayer.Timing timing = engine.lastTiming();
+        System.out.println(engineColor + " plays " + Notation.toSan(current, move) + " (" + timing.actualMillis() + " ms of "
+                + timing.budgetMillis() + (timing.remainingMillis() < 0 ? " ms)" : " ms planned, " + timing.remainingMillis() / 100 / 10.0 + " s left)"));
+        handleMove(Move.toUci(move));
+        return true;
+    }
+
+    private void followPosition() {
+        if (analysisLines == 0) return;
+        EngineBoard engine = EngineBoard.of(history);
+        EngineBoard display = engine.copy(); //the session searches on the other one
+        session.analyze(engine, Search.Limits.infinite(), analysisLines,
+                iteration -> System.out.println(AnalysisSession.format(display, iteration)));
+    } //restarts the analysis on the current position, if it is on
+
+    private PositionStore positionStore() throws IOException {
+        if (store == null) {
+            new File(SAVE_DIRECTORY).mkdirs();
+            store = PositionStore.open(Path.of(SAVE_DIRECTORY, STORE_FILE), STORE_CAPACITY);
+        }
+        return store;
+    } //maps the store file the first time it is needed
+
     /**
      * Prompts the user for confirmation before exiting the game.
      *
@@ -269,7 +753,7 @@ public class Game {
      */
     public boolean exitGame() {
         System.out.print("Are you sure you want to exit? Make sure to save your game before exiting. (y/n): ");
-        String response = scanner.nextLine().trim().toLowerCase();
+        String response = readLine().toLowerCase();
         return response.equals("y");
     }
 
@@ -279,9 +763,19 @@ public class Game {
     public void printHelp() {
         System.out.println("Available commands:");
         System.out.println(":h - Show this help message");
+        System.out.println(":n [number|random|FEN] - Start a new game: standard, a Chess960 starting position 0-959 or random, or any FEN (e.g., :n random)");
         System.out.println(":s [filename] - Save the current game (e.g., :s mygame)");
         System.out.println(":o [filename] - Open a saved game (e.g., :o mygame)");
+        System.out.println(":ss [name] - Store the current position in the position store (e.g., :ss mygame)");
+        System.out.println(":so [name] - Open a position from the position store (e.g., :so mygame)");
+        System.out.println(":u - Take back the last move (with the engine's reply, if it plays)");
+        System.out.println(":r - Replay a move that was taken back");
+        System.out.println(":p [filename] - Export the game as PGN (e.g., :p mygame)");
+        System.out.println(":a - Analyze the current position (status, evaluation, legal moves, hanging pieces)");
+        System.out.println(":e [lines|off] - Show the engine's best moves, updated as it searches deeper (e.g., :e 3)");
+        System.out.println(":c [white|black|off] [millis|seconds+increment] - Let the engine play a side, with the time per move or a clock (e.g., :c black 2000 or :c black 300+2)");
+        System.out.println(":m - Print the metrics (start with -Dchess.metrics=true to record them)");
         System.out.println(":x - Exit the game");
-        System.out.println("\nMove format: 'e2e4' (from square to square). En passant, castling, and promotion are not implemented yet. No checks for a game winning scenario or draw are implemented yet, the user needs to exit the game manually.");
+        System.out.println("\nMove format: 'e2e4' (from square to square). Castle by moving the king two squares ('e1g1') or onto its rook ('e1h1', the only way for Chess960 kings off the e file). Pawns are promoted to a queen, add a letter to choose another piece ('e7e8n'). Checkmate and stalemate are announced, but the game only ends when you exit it.");
     }
 } 
\ No newline at end of file
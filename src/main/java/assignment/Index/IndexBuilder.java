@@ -0,0 +1,181 @@
+package assignment.Index;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Notation;
+import assignment.Engine.Pgn;
+import assignment.Model.Color;
+import assignment.Model.GameHistory;
+import assignment.Model.Position;
+import assignment.Storage.SavedGame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Collects the positions of games into a {@link PositionIndex}.
+ * <p>
+ * Every position of a game, from its start to its last move, becomes one row: the row's bit is set in the postings
+ * of each piece on each square where it stands, and in the side to move's postings if white is to move. Rows are
+ * numbered in the order games are added, so a game's positions are consecutive rows and its plies follow from
+ * its first row. The postings grow by doubling as rows are added.
+ */
+public final class IndexBuilder {
+    private final long[][] postings = new long[PositionIndex.SLOTS][];
+    private final List<String> games = new ArrayList<>();
+    private int[] gameStart = new int[16];
+    private int rows;
+    private int capacity = 64 * 1024; //rows the postings have room for
+
+    /**
+     * Adds a game from its history: every position from the history's start to its current position.
+     *
+     * @param name the name the game is reported under
+     * @param history the game
+     */
+    public void add(String name, GameHistory history) {
+        startGame(name);
+        for (int ply = 0; ply <= history.ply(); ply++) {
+            Position position = history.positionAt(ply);
+            int row = nextRow();
+            for (int square = 0; square < 64; square++) setPiece(position.pieceAt(square), square, row);
+            if (position.sideToMove() == Color.WHITE) set(PositionIndex.WHITE_TO_MOVE, row);
+        }
+    }
+
+    /**
+     * Adds a game of a PGN collection: its start position and the position after every legal move. Replaying stops
+     * at the first move that is not legal, as in {@link Pgn#replay(Pgn.Game)}.
+     *
+     * @param name the name the game is reported under
+     * @param game the game
+     * @throws IllegalArgumentException if the game's start position is not a valid FEN
+     */
+    public void add(String name, Pgn.Game game) {
+        EngineBoard board = EngineBoard.fromFen(game.startFen());
+        startGame(name);
+        addRow(board);
+        for (String san : game.moves()) {
+            try {
+                board.make(Notation.parseSan(board, san));
+            } catch (Exception e) {
+                break;
+            }
+            addRow(board);
+        }
+    }
+
+    /**
+     * Adds the games of a save file, a PGN collection, or every save and PGN collection below a directory.
+     * Saves are named by their path relative to the input, PGN games by their file and number ({@code file.pgn#3}).
+     *
+     * @param input a file or a directory
+     * @param skipped receives a message for every file or PGN game that cannot be read; its games are left out
+     * @return the number of games added
+     * @throws IOException if the directory cannot be listed
+     */
+    public int addAll(Path input, Consumer<String> skipped) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> walk = Files.walk(input)) {
+                files = walk.filter(Files::isRegularFile).filter(file -> {
+                    String name = file.getFileName().toString().toLowerCase();
+                    return name.endsWith(".txt") || name.endsWith(".pgn");
+                }).sorted().toList();
+            }
+        } else {
+            files = List.of(input);
+        }
+        int before = games.size();
+        for (Path file : files) {
+            String name = Files.isDirectory(input) ? input.relativize(file).toString() : file.getFileName().toString();
+            try {
+                if (name.toLowerCase().endsWith(".pgn")) {
+                    addPgn(file, name, skipped);
+                } else {
+                    add(name, SavedGame.read(file).history());
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                skipped.accept(name + ": " + e.getMessage());
+            }
+        }
+        return games.size() - before;
+    }
+
+    private void addPgn(Path file, String name, Consumer<String> skipped) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file); Stream<Pgn.Game> stream = Pgn.games(reader)) {
+            int number = 0;
+            for (Pgn.Game game : (Iterable<Pgn.Game>) stream::iterator) {
+                number++;
+                try {
+                    add(name + "#" + number, game);
+                } catch (IllegalArgumentException e) {
+                    skipped.accept(name + "#" + number + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of positions added so far.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Builds the index of the games added so far. The builder can go on adding games afterwards.
+     *
+     * @return the index
+     */
+    public PositionIndex build() {
+        int words = PositionIndex.words(rows);
+        long[][] trimmed = new long[PositionIndex.SLOTS][];
+        for (int slot = 0; slot < trimmed.length; slot++) {
+            if (postings[slot] != null) trimmed[slot] = Arrays.copyOf(postings[slot], words);
+        }
+        int[] starts = Arrays.copyOf(gameStart, games.size() + 1);
+        starts[games.size()] = rows;
+        return new PositionIndex(List.copyOf(games), starts, rows, trimmed);
+    }
+
+    private void startGame(String name) {
+        if (games.size() + 1 >= gameStart.length) gameStart = Arrays.copyOf(gameStart, gameStart.length * 2);
+        gameStart[games.size()] = rows;
+        games.add(name);
+    }
+
+    private void addRow(EngineBoard board) {
+        int row = nextRow();
+        for (int square = 0; square < 64; square++) setPiece(board.pieceAt(square), square, row);
+        if (board.sideToMove() == EngineBoard.WHITE) set(PositionIndex.WHITE_TO_MOVE, row);
+    }
+
+    private int nextRow() {
+        if (rows == Integer.MAX_VALUE) throw new IllegalStateException("The index is full");
+        if (rows == capacity) {
+            capacity = (int) Math.min(Integer.MAX_VALUE, 2L * capacity);
+            for (int slot = 0; slot < postings.length; slot++) {
+                if (postings[slot] != null) postings[slot] = Arrays.copyOf(postings[slot], PositionIndex.words(capacity));
+            }
+        }
+        return rows++;
+    }
+
+    private void setPiece(int code, int square, int row) {
+        if (code != 0) set(code * 64 + square, row);
+    }
+
+    private void set(int slot, int row) {
+        if (postings[slot] == null) postings[slot] = new long[PositionIndex.words(capacity)];
+        postings[slot][row >>> 6] |= 1L << row;
+    }
+}
@@ -0,0 +1,83 @@
+package assignment.Index;
+
+import assignment.Model.Color;
+import assignment.Model.PieceCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A position pattern for {@link PositionIndex}: conditions on the pieces that must all hold.
+ * <p>
+ * A query is a list of terms separated by spaces (an {@code &} between them is allowed too). A term is a piece
+ * letter as in FEN (upper case for white, lower case for black) and where the piece stands:
+ * <ul>
+ *     <li>a square, {@code kg8}, or several squares, {@code kg8,h8}</li>
+ *     <li>a rank, {@code R*7}, or a file, {@code Pe*}</li>
+ *     <li>anywhere, {@code q*}</li>
+ * </ul>
+ * A term matches if at least one such piece stands on one of its squares; with a leading {@code !} it matches if
+ * none does. The terms {@code w} and {@code b} ask for the side to move. For example, "white has a rook on the 7th
+ * and black's king is on g8" is {@code R*7 kg8}, and "black has no queen" is {@code !q*}.
+ *
+ * @param terms the piece conditions, all of which must hold
+ * @param sideToMove the side to move the position must have, or null for either
+ * @param text the query as given
+ */
+public record PatternQuery(List<Term> terms, Color sideToMove, String text) {
+    /**
+     * One piece condition.
+     *
+     * @param code the piece code
+     * @param squares the squares as a bitboard (bit row * 8 + column)
+     * @param negated true if the piece must stand on none of the squares
+     */
+    public record Term(int code, long squares, boolean negated) {
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param text the query, see the class description
+     * @return the query
+     * @throws IllegalArgumentException if a term cannot be read, or the query has none
+     */
+    public static PatternQuery parse(String text) {
+        List<Term> terms = new ArrayList<>();
+        Color side = null;
+        for (String token : text.trim().split("[\\s&]+")) {
+            if (token.isEmpty()) continue;
+            if (token.equals("w") || token.equals("b")) {
+                Color color = token.equals("w") ? Color.WHITE : Color.BLACK;
+                if (side != null && side != color) throw new IllegalArgumentException("Both sides to move: " + text);
+                side = color;
+                continue;
+            }
+            boolean negated = token.startsWith("!");
+            String term = negated ? token.substring(1) : token;
+            int code = term.isEmpty() ? -1 : PieceCode.fromSymbol(term.charAt(0));
+            if (code <= PieceCode.EMPTY) throw new IllegalArgumentException("Not a piece: " + token);
+            long squares = 0;
+            for (String spec : term.substring(1).split(",")) squares |= squares(spec, token);
+            terms.add(new Term(code, squares, negated));
+        }
+        if (terms.isEmpty() && side == null) throw new IllegalArgumentException("Empty query");
+        return new PatternQuery(List.copyOf(terms), side, text.trim());
+    }
+
+    private static long squares(String spec, String token) {
+        if (spec.equals("*")) return -1L;
+        if (spec.length() != 2) throw new IllegalArgumentException("Not a square, rank or file: " + token);
+        char file = spec.charAt(0);
+        char rank = spec.charAt(1);
+        long files = file == '*' ? -1L : file >= 'a' && file <= 'h' ? 0x0101010101010101L << (file - 'a') : 0;
+        long ranks = rank == '*' ? -1L : rank >= '1' && rank <= '8' ? 0xFFL << 8 * (rank - '1') : 0;
+        if (files == 0 || ranks == 0) throw new IllegalArgumentException("Not a square, rank or file: " + token);
+        return files & ranks;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
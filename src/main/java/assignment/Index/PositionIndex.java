@@ -0,0 +1,263 @@
+package assignment.Index;
+
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Model.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of the positions of many games that answers piece-pattern queries ({@link PatternQuery}) without
+ * opening a single game.
+ * <p>
+ * The index is a bitmap per piece and square (the postings): bit r of the bitmap of "black king on g8" is set if
+ * position r has a black king on g8. One more bitmap holds the positions with white to move. A query is answered
+ * with plain bitwise operations over 64 positions per long: a term ORs the bitmaps of its squares, a negated term
+ * is inverted, and the terms are ANDed together. The loops are simple enough for the JIT to turn them into SIMD
+ * instructions, and they run in blocks of {@link #BLOCK_WORDS} words, so the bitmaps being combined stay in the
+ * L1 cache however many positions there are. Only the bitmaps a query names are read. The set bits left are the
+ * matching positions, turned into games and plies through the first row of every game.
+ * <p>
+ * An index takes 96 bytes per position at most (one bit per piece and square), less since most pieces never visit
+ * most squares and such bitmaps are left out. It is built by {@link IndexBuilder}, kept in a file with
+ * {@link #write(Path)}, and immutable, so any number of threads may query it at once.
+ * <p>
+ * Usage: {@code java assignment.Index.PositionIndex build input index} (input: a save, a PGN collection or a
+ * directory of them), then {@code java assignment.Index.PositionIndex query index "R*7 kg8" [-limit N]}
+ */
+public final class PositionIndex {
+    /** Words combined at a time: 32 KiB per bitmap, so a few bitmaps stay in the L1 and L2 caches */
+    public static final int BLOCK_WORDS = 4096;
+    /** Most matches a query lists when no -limit is given */
+    public static final int DEFAULT_LIMIT = 100;
+
+    static final int WHITE_TO_MOVE = 16 * 64; //the bitmap slot after those of the piece codes
+    static final int SLOTS = WHITE_TO_MOVE + 1;
+
+    private static final long MAGIC = 0x4348535349445831L; //"CHSSIDX1"
+    private static final LatencyHistogram QUERY_TIME = Metrics.histogram("index.query");
+
+    /**
+     * One matching position.
+     *
+     * @param game the game's number in the index
+     * @param name the game's name
+     * @param ply the ply of the position, 0 for the game's start
+     */
+    public record Match(int game, String name, int ply) {
+    }
+
+    private final List<String> games;
+    private final int[] gameStart; //the first row of every game, and the number of rows at the end
+    private final int rows;
+    private final int words;
+    private final long[][] postings; //by slot, null if no position has the piece on the square
+
+    PositionIndex(List<String> games, int[] gameStart, int rows, long[][] postings) {
+        this.games = games;
+        this.gameStart = gameStart;
+        this.rows = rows;
+        this.words = words(rows);
+        this.postings = postings;
+    }
+
+    /**
+     * Returns the number of positions.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the number of games
+     */
+    public int games() {
+        return games.size();
+    }
+
+    /**
+     * Counts the positions matching a query.
+     *
+     * @param query the query
+     * @return the number of matching positions
+     */
+    public long count(PatternQuery query) {
+        long count = 0;
+        for (long word : matches(query)) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Finds the positions matching a query, in the order the games were added.
+     *
+     * @param query the query
+     * @param limit the most matches to return
+     * @return the matches
+     */
+    public List<Match> find(PatternQuery query, int limit) {
+        long[] matches = matches(query);
+        List<Match> found = new ArrayList<>();
+        int game = 0;
+        for (int word = 0; word < words && found.size() < limit; word++) {
+            for (long bits = matches[word]; bits != 0 && found.size() < limit; bits &= bits - 1) {
+                int row = word << 6 | Long.numberOfTrailingZeros(bits);
+                while (gameStart[game + 1] <= row) game++; //rows only grow, so the game pointer only moves forward
+                found.add(new Match(game, games.get(game), row - gameStart[game]));
+            }
+        }
+        return found;
+    }
+
+    private long[] matches(PatternQuery query) {
+        long start = Metrics.start();
+        long[] result = new long[words];
+        long[] term = new long[BLOCK_WORDS];
+        for (int from = 0; from < words; from += BLOCK_WORDS) {
+            int length = Math.min(BLOCK_WORDS, words - from);
+            Arrays.fill(result, from, from + length, -1L);
+            if (query.sideToMove() != null) {
+                long[] white = postings[WHITE_TO_MOVE];
+                if (white == null) {
+                    Arrays.fill(term, 0, length, 0);
+                } else {
+                    System.arraycopy(white, from, term, 0, length);
+                }
+                and(result, from, term, length, query.sideToMove() == Color.BLACK);
+            }
+            for (PatternQuery.Term t : query.terms()) {
+                Arrays.fill(term, 0, length, 0);
+                for (long squares = t.squares(); squares != 0; squares &= squares - 1) {
+                    long[] bitmap = postings[t.code() * 64 + Long.numberOfTrailingZeros(squares)];
+                    if (bitmap != null) or(term, bitmap, from, length);
+                }
+                and(result, from, term, length, t.negated());
+            }
+        }
+        if ((rows & 63) != 0) result[words - 1] &= (1L << rows) - 1; //a negated term sets the bits past the last row
+        QUERY_TIME.stop(start);
+        return result;
+    } //a block of the result and of one term at a time, so the words combined are still in the cache
+
+    private static void or(long[] term, long[] bitmap, int from, int length) {
+        for (int i = 0; i < length; i++) term[i] |= bitmap[from + i];
+    }
+
+    private static void and(long[] result, int from, long[] term, int length, boolean negated) {
+        if (negated) {
+            for (int i = 0; i < length; i++) result[from + i] &= ~term[i];
+        } else {
+            for (int i = 0; i < length; i++) result[from + i] &= term[i];
+        }
+    } //two loops instead of a condition per word, so both stay vectorizable
+
+    static int words(int rows) {
+        return (int) ((rows + 63L) >>> 6);
+    }
+
+    /**
+     * Writes the index to a file, replacing it if it exists.
+     *
+     * @param file the index file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(rows);
+            out.writeInt(games.size());
+            for (int game = 0; game < games.size(); game++) {
+                out.writeInt(gameStart[game]);
+                out.writeUTF(games.get(game));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(words * Long.BYTES);
+            for (long[] bitmap : postings) {
+                out.writeBoolean(bitmap != null);
+                if (bitmap == null) continue;
+                buffer.clear();
+                buffer.asLongBuffer().put(bitmap, 0, words);
+                out.write(buffer.array());
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(Path)}.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public static PositionIndex read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readLong() != MAGIC) throw new IOException(file + " is not a position index");
+            int rows = in.readInt();
+            int count = in.readInt();
+            if (rows < 0 || count < 0) throw new IOException(file + " is damaged");
+            List<String> games = new ArrayList<>(count);
+            int[] gameStart = new int[count + 1];
+            for (int game = 0; game < count; game++) {
+                gameStart[game] = in.readInt();
+                games.add(in.readUTF());
+            }
+            gameStart[count] = rows;
+            int words = words(rows);
+            byte[] bytes = new byte[words * Long.BYTES];
+            long[][] postings = new long[SLOTS][];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (!in.readBoolean()) continue;
+                in.readFully(bytes);
+                postings[slot] = new long[words];
+                ByteBuffer.wrap(bytes).asLongBuffer().get(postings[slot]);
+            }
+            return new PositionIndex(List.copyOf(games), gameStart, rows, postings);
+        }
+    }
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     *
+     * @param args "build" with the input and the index file, or "query" with the index file, the query and options
+     * @throws IOException if the input or the index cannot be read, or the index cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            long start = System.nanoTime();
+            IndexBuilder builder = new IndexBuilder();
+            int added = builder.addAll(Path.of(args[1]), problem -> System.err.println("Skipped " + problem));
+            PositionIndex index = builder.build();
+            index.write(Path.of(args[2]));
+            System.err.printf("Indexed %d positions of %d games in %.1f s (%d KiB)%n", index.size(), added,
+                    (System.nanoTime() - start) / 1e9, Files.size(Path.of(args[2])) >> 10);
+        } else if (args.length >= 3 && args[0].equals("query")) {
+            int limit = DEFAULT_LIMIT;
+            for (int i = 3; i < args.length; i++) {
+                if (args[i].equals("-limit")) limit = Integer.parseInt(args[++i]);
+            }
+            PositionIndex index = read(Path.of(args[1]));
+            PatternQuery query = PatternQuery.parse(args[2]);
+            long start = System.nanoTime();
+            long count = index.count(query);
+            List<Match> matches = index.find(query, limit);
+            double millis = (System.nanoTime() - start) / 1e6;
+            for (Match match : matches) System.out.println(match.name() + "," + match.ply());
+            System.err.printf("%d of %d positions in %d games match '%s' (%.2f ms, %d listed)%n",
+                    count, index.size(), index.games(), query, millis, matches.size());
+        } else {
+            System.out.println("Usage: PositionIndex build input index | PositionIndex query index \"pattern\" [-limit N]");
+        }
+    }
+}
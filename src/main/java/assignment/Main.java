@@ -1,5 +1,7 @@
 package assignment;
 
+import assignment.Metrics.Metrics;
+
 /**
  * Entry point for the chess game application.
  * Creates and starts a new chess game with standard rules.
@@ -8,10 +10,12 @@ public class Main {
     /**
      * The main method that starts the chess game.
      * Creates a new Game instance and starts the game loop.
+     * With {@code -Dchess.metrics=true -Dchess.metrics.period=SECONDS}, metrics are also printed periodically.
      *
      * @param args command line arguments (not used)
      */
     public static void main(String[] args) {
+        Metrics.startReporterFromProperties();
         Game game = new Game();
         game.play();
     }
@@ -0,0 +1,51 @@
+package assignment.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named event counter. Increments from many threads do not contend (it is backed by a {@link LongAdder}),
+ * and they do nothing at all when metrics are disabled.
+ */
+public final class Counter implements CounterMXBean {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Counts one event.
+     */
+    public void increment() {
+        if (Metrics.ENABLED) count.increment();
+    }
+
+    /**
+     * Counts several events.
+     *
+     * @param events the number of events
+     */
+    public void add(long events) {
+        if (Metrics.ENABLED) count.add(events);
+    }
+
+    /**
+     * Returns the name of this counter.
+     *
+     * @return the name
+     */
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-28s %d", name, getCount());
+    }
+}
@@ -0,0 +1,13 @@
+package assignment.Metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMXBean {
+    /**
+     * Returns the current count.
+     *
+     * @return the count
+     */
+    long getCount();
+}
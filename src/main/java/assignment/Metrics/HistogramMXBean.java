@@ -0,0 +1,53 @@
+package assignment.Metrics;
+
+/**
+ * JMX view of a {@link LatencyHistogram}. Times are in microseconds.
+ */
+public interface HistogramMXBean {
+    /**
+     * Returns the number of recorded calls.
+     *
+     * @return the count
+     */
+    long getCount();
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * Returns the median latency.
+     *
+     * @return the 50th percentile in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * Returns the 99th percentile latency.
+     *
+     * @return the 99th percentile in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * Returns the 99.9th percentile latency.
+     *
+     * @return the 99.9th percentile in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * Returns the slowest recorded call.
+     *
+     * @return the maximum in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Clears the recorded values.
+     */
+    void reset();
+}
@@ -0,0 +1,157 @@
+package assignment.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with fixed relative precision, in the style of HdrHistogram.
+ * Values below 32 ns get a bucket each; above that every power of two is split into 32 linear buckets,
+ * so any recorded value is known within about 3%. Recording is a few atomic increments and never allocates.
+ * Values are in nanoseconds and capped at about 18 minutes.
+ * <p>
+ * Typical use around a call:
+ * <pre>{@code
+ * long start = Metrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     HISTOGRAM.stop(start);
+ * }
+ * }</pre>
+ */
+public final class LatencyHistogram implements HistogramMXBean {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = SUB_COUNT + (MAX_BITS - SUB_BITS) * SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records the time since a start taken with {@link Metrics#start()}.
+     *
+     * @param startNanos the start time
+     */
+    public void stop(long startNanos) {
+        if (Metrics.ENABLED) record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records one value.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (!Metrics.ENABLED) return;
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB_COUNT + shift * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    } //the highest set bit picks the power of two, the next SUB_BITS bits the linear bucket inside it
+
+    static long lowerBound(int index) {
+        if (index < SUB_COUNT) return index;
+        int shift = (index - SUB_COUNT) / SUB_COUNT;
+        return (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+    }
+
+    /**
+     * Returns the value at a percentile, as the midpoint of its bucket.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long low = lowerBound(i);
+                long high = i + 1 < BUCKETS ? lowerBound(i + 1) : low + 1;
+                return Math.min((low + high - 1) / 2, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the name of this histogram.
+     *
+     * @return the name
+     */
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    } //not atomic with concurrent recording, a few values may be lost or kept
+
+    @Override
+    public String toString() {
+        return String.format("%-28s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                name, getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,131 @@
+package assignment.Metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The registry of all counters and latency histograms.
+ * <p>
+ * Metrics are switched on with {@code -Dchess.metrics=true}. The switch is read once into the constant
+ * {@link #ENABLED}, and every recording method starts with {@code if (Metrics.ENABLED)}, so with metrics off the JIT
+ * folds the checks away and instrumented code runs as if it was not instrumented (not even {@code System.nanoTime()}
+ * is called). With metrics on, every metric is also registered as an MXBean under {@code assignment.metrics}
+ * (visible in JConsole or VisualVM), and {@code -Dchess.metrics.period=SECONDS} starts a periodic text dump.
+ * <p>
+ * Metrics are created once per name and kept in static fields at the call site:
+ * <pre>{@code
+ * private static final LatencyHistogram MOVE_TIME = Metrics.histogram("game.handleMove");
+ * }</pre>
+ */
+public final class Metrics {
+    /** Whether metrics are recorded, fixed at startup */
+    public static final boolean ENABLED = Boolean.getBoolean("chess.metrics");
+
+    private static final String DOMAIN = "assignment.metrics";
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    } //only static helpers, no instances
+
+    /**
+     * Returns the counter with a name, creating it on first use.
+     *
+     * @param name the name, dot-separated by convention (e.g. "game.moves.rejected")
+     * @return the counter
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> register("Counter", key, new Counter(key)));
+    }
+
+    /**
+     * Returns the latency histogram with a name, creating it on first use.
+     *
+     * @param name the name, dot-separated by convention (e.g. "board.movePiece")
+     * @return the histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> register("Histogram", key, new LatencyHistogram(key)));
+    }
+
+    /**
+     * Takes a start time for {@link LatencyHistogram#stop(long)}.
+     *
+     * @return the current System.nanoTime(), or 0 when metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    private static <T> T register(String type, String name, T metric) {
+        if (!ENABLED) return metric;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) server.registerMBean(metric, objectName);
+        } catch (JMException e) {
+            System.err.println("Could not register metric " + name + " with JMX: " + e.getMessage());
+        }
+        return metric;
+    } //JMX problems must never break the game, the metric still works without it
+
+    /**
+     * Formats every metric as text, one per line, counters first.
+     *
+     * @return the dump
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder("metrics at ")
+                .append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n');
+        COUNTERS.values().forEach(counter -> sb.append("  ").append(counter).append('\n'));
+        HISTOGRAMS.values().forEach(histogram -> sb.append("  ").append(histogram).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Starts printing {@link #dump()} at a fixed period on a daemon thread. Does nothing when metrics are disabled
+     * or a reporter is already running.
+     *
+     * @param period the time between dumps
+     * @param out where to print
+     */
+    public static synchronized void startReporter(Duration period, PrintStream out) {
+        if (!ENABLED || reporter != null) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.print(dump()), period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts the reporter if {@code -Dchess.metrics.period=SECONDS} is set.
+     */
+    public static void startReporterFromProperties() {
+        long seconds = Long.getLong("chess.metrics.period", 0);
+        if (seconds > 0) startReporter(Duration.ofSeconds(seconds), System.out);
+    }
+
+    /**
+     * Stops the periodic dump.
+     */
+    public static synchronized void stopReporter() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+}
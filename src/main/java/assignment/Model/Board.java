@@ -1,23 +1,71 @@
 package assignment.Model;
 
+import assignment.Engine.Attacks;
 import assignment.Pieces.*;
-import assignment.Exceptions.InvalidLocationException;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+
+import java.util.Arrays;
 
 /**
  * Represents a chess board and manages the placement and movement of pieces.
  * The board is represented as an 8x8 grid where each cell can contain a chess piece.
  * This class provides methods for initializing the board, moving pieces, and checking
- * if paths between locations are clear.
+ * if paths between locations are clear or attacked.
+ * <p>
+ * Besides the pieces, the board keeps the state the rules need: which castling rights are left, which rook each
+ * of them castles with, and on which square a pawn can be captured en passant. The rooks make Chess960 work:
+ * {@link #init(int)} sets up any of its 960 starting positions, and castling moves the king to the g or c file
+ * and the rook next to it wherever they started.
+ * <p>
+ * Pieces are not stored as objects. The board holds a {@link PieceCode} for each of the 64 squares
+ * (indexed by row * 8 + column) plus a list of squares per piece code, so a whole board is a few small byte arrays.
+ * {@link #getPieceAt(Location)} hands out {@link Piece} objects as views of a square, for code that works with pieces;
+ * the rules themselves run on the codes (see {@link Rules}).
  */
 public class Board {
-    /** The 8x8 grid representing the chess board, where each cell can contain a piece */
-    private final Piece[][] pieces;
+    private static final LatencyHistogram MOVE_TIME = Metrics.histogram("board.movePiece");
+    private static final Counter CAPTURES = Metrics.counter("board.captures");
+
+    /** Number of the standard starting position among the Chess960 starting positions */
+    public static final int STANDARD_START = 518;
+    /** The squares two knights can take among the five back rank squares left after the bishops and the queen */
+    private static final int[][] KNIGHTS = {{0, 1}, {0, 2}, {0, 3}, {0, 4}, {1, 2}, {1, 3}, {1, 4}, {2, 3}, {2, 4}, {3, 4}};
+    /** Room per piece code in the piece lists: 8 pawns can promote, so 10 covers every legal position */
+    private static final int LIST_SIZE = 10;
+
+    /** The piece code on every square, indexed by row * 8 + column */
+    private final byte[] squares = new byte[64];
+    /** The squares of every piece code, LIST_SIZE entries per code */
+    private final byte[] pieceLists = new byte[16 * LIST_SIZE];
+    /** How many entries of each piece list are used */
+    private final byte[] pieceCounts = new byte[16];
+    /** Where the piece on a square is in its piece list, for constant-time removal */
+    private final byte[] listIndex = new byte[64];
+    /** The occupied squares as a bitboard, for the sliding attack lookups of {@link Attacks} */
+    private long occupied;
+    /** Castling rights that are left, a combination of the Zobrist castling flags */
+    private int castlingRights;
+    /** The square of the rook each castling right castles with, indexed by right bit (see {@link Castling}) */
+    private final int[] castlingRooks = new int[4];
+    /** The square a pawn can move to when capturing en passant, or -1 */
+    private int enPassantSquare = -1;
+
+    /**
+     * A copy of the board state, used to take back a move that turned out to be illegal.
+     *
+     * @param squares the piece code on every square, indexed by row * 8 + column
+     * @param castlingRights the castling rights
+     * @param enPassantSquare the en passant square, or -1
+     */
+    public record Snapshot(byte[] squares, int castlingRights, int enPassantSquare) {
+    }
 
     /**
      * Creates a new chess board and initializes it with pieces in their starting positions.
      */
     public Board() {
-        pieces = new Piece[8][8];
         init();
     }
 
@@ -28,54 +76,114 @@ public class Board {
      * Pawns occupy the second rank for white and seventh rank for black.
      */
     public void init() {
-        try {
-            // Initialize pawns
-            for (int i = 0; i < 8; i++) {
-                pieces[1][i] = new Pawn(Color.WHITE, new Location(1, i), this);
-                pieces[6][i] = new Pawn(Color.BLACK, new Location(6, i), this);
-            }
+        init(STANDARD_START);
+    } //initializes the board state
+
+    /**
+     * Initializes the board with one of the 960 Chess960 starting positions, numbered as in the standard
+     * (Scharnagl) numbering: position 518 is the standard starting position.
+     * The pieces of the back rank are shuffled, with the bishops on squares of opposite colors and the king between
+     * the rooks; black mirrors white. Both sides can castle on both sides.
+     *
+     * @param number the starting position number, 0 to 959
+     * @throws IllegalArgumentException if the number is out of range
+     */
+    public void init(int number) {
+        int[] backRank = backRank(number);
+        clear();
+        for (int col = 0; col < 8; col++) {
+            put(col, backRank[col]);
+            put(8 + col, PieceCode.PAWN);
+            put(48 + col, PieceCode.PAWN | PieceCode.BLACK);
+            put(56 + col, backRank[col] | PieceCode.BLACK);
+        }
+        boolean kingSeen = false;
+        for (int col = 0; col < 8; col++) {
+            if (backRank[col] == PieceCode.KING) kingSeen = true;
+            if (backRank[col] != PieceCode.ROOK) continue;
+            int right = kingSeen ? 0 : 1; //the rook right of the king castles king side
+            castlingRooks[right] = col;
+            castlingRooks[right + 2] = 56 + col;
+        }
+        castlingRights = Zobrist.WHITE_KING_SIDE | Zobrist.WHITE_QUEEN_SIDE | Zobrist.BLACK_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE;
+    }
 
-            // Initialize Rooks
-            pieces[0][0] = new Rook(Color.WHITE, new Location(0, 0), this);
-            pieces[0][7] = new Rook(Color.WHITE, new Location(0, 7), this);
-            pieces[7][0] = new Rook(Color.BLACK, new Location(7, 0), this);
-            pieces[7][7] = new Rook(Color.BLACK, new Location(7, 7), this);
-
-            // Initialize Knights
-            pieces[0][1] = new Knight(Color.WHITE, new Location(0, 1), this);
-            pieces[0][6] = new Knight(Color.WHITE, new Location(0, 6), this);
-            pieces[7][1] = new Knight(Color.BLACK, new Location(7, 1), this);
-            pieces[7][6] = new Knight(Color.BLACK, new Location(7, 6), this);
-
-            // Initialize Bishops
-            pieces[0][2] = new Bishop(Color.WHITE, new Location(0, 2), this);
-            pieces[0][5] = new Bishop(Color.WHITE, new Location(0, 5), this);
-            pieces[7][2] = new Bishop(Color.BLACK, new Location(7, 2), this);
-            pieces[7][5] = new Bishop(Color.BLACK, new Location(7, 5), this);
-
-            // Initialize Queens
-            pieces[0][3] = new Queen(Color.WHITE, new Location(0, 3), this);
-            pieces[7][3] = new Queen(Color.BLACK, new Location(7, 3), this);
-
-            // Initialize Kings
-            pieces[0][4] = new King(Color.WHITE, new Location(0, 4), this);
-            pieces[7][4] = new King(Color.BLACK, new Location(7, 4), this);
-        } catch (InvalidLocationException e) {
-            // should never happen because of the hard-coded coordinates, it is here because the above Location() calls had an unhandled exception
-            throw new RuntimeException("You've got bigger problems than you thought", e);
+    /**
+     * Builds the back rank of a Chess960 starting position from its number. The number is read as mixed radix
+     * digits: the light-squared bishop's file (4 choices), the dark-squared bishop's file (4), the queen's square
+     * among the 6 free ones, and the knights' squares among the 5 left (10 pairs). Rook, king and rook fill the
+     * last three squares from left to right.
+     */
+    private static int[] backRank(int number) {
+        if (number < 0 || number >= 960) {
+            throw new IllegalArgumentException("Chess960 starting positions are numbered 0 to 959, not " + number + ".");
         }
-    } //initializes the board state
+        int[] backRank = new int[8];
+        backRank[2 * (number % 4) + 1] = PieceCode.BISHOP; //b, d, f or h: the light squares of the first rank
+        number /= 4;
+        backRank[2 * (number % 4)] = PieceCode.BISHOP;
+        number /= 4;
+        placeOnFree(backRank, number % 6, PieceCode.QUEEN);
+        int[] knights = KNIGHTS[number / 6];
+        placeOnFree(backRank, knights[1], PieceCode.KNIGHT); //the right knight first, so the left one's index still holds
+        placeOnFree(backRank, knights[0], PieceCode.KNIGHT);
+        placeOnFree(backRank, 0, PieceCode.ROOK);
+        placeOnFree(backRank, 0, PieceCode.KING);
+        placeOnFree(backRank, 0, PieceCode.ROOK);
+        return backRank;
+    }
+
+    private static void placeOnFree(int[] backRank, int index, int type) {
+        for (int col = 0; col < 8; col++) {
+            if (backRank[col] == PieceCode.EMPTY && index-- == 0) {
+                backRank[col] = type;
+                return;
+            }
+        }
+    }
 
     /**
      * Gets the piece at the specified location on the board.
+     * The piece is a new view of the square: it reports the square's color and type and moves whatever stands there.
      *
      * @param loc the location to check
      * @return the piece at the specified location, or null if the location is empty
      */
     public Piece getPieceAt(Location loc) {
-        return pieces[loc.getRow()][loc.getColumn()];
+        return PieceCode.create(squares[loc.getSquare()], loc, this);
     } //returns the piece in loc
 
+    /**
+     * Gets the piece code on a square, without creating a piece object.
+     *
+     * @param square the square index, row * 8 + column
+     * @return the piece code, or PieceCode.EMPTY
+     */
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    /**
+     * Counts the pieces with a code.
+     *
+     * @param code the piece code
+     * @return how many such pieces are on the board
+     */
+    public int pieceCount(int code) {
+        return pieceCounts[code];
+    }
+
+    /**
+     * Gets the square of one of the pieces with a code, in no particular order.
+     *
+     * @param code the piece code
+     * @param index 0 to {@link #pieceCount(int)} - 1
+     * @return the square index
+     */
+    public int pieceSquare(int code, int index) {
+        return pieceLists[code * LIST_SIZE + index];
+    }
+
     /**
      * Moves a piece from one location to another, assuming the move is valid.
      * The destination square must be empty.
@@ -84,12 +192,21 @@ public class Board {
      * @param to the destination location
      */
     public void movePiece(Location from, Location to) {
-        Piece piece = pieces[from.getRow()][from.getColumn()];
-        pieces[from.getRow()][from.getColumn()] = null;
-        pieces[to.getRow()][to.getColumn()] = piece;
-        piece.setLocation(to);
+        movePiece(from.getSquare(), to.getSquare());
     } //move validity already checked, this just moves the piece and leaves nothing behind
 
+    /**
+     * Moves a piece between two square indices, assuming the move is valid and the destination is empty.
+     *
+     * @param from the starting square
+     * @param to the destination square
+     */
+    public void movePiece(int from, int to) {
+        long start = Metrics.start();
+        relocate(from, to);
+        MOVE_TIME.stop(start);
+    }
+
     /**
      * Moves a piece from one location to another, capturing any piece at the destination.
      * Similar to movePiece, but used when capturing an opponent's piece.
@@ -98,23 +215,406 @@ public class Board {
      * @param to the destination location where an opponent's piece will be captured
      */
     public void movePieceCapturing(Location from, Location to) {
-        Piece piece = pieces[from.getRow()][from.getColumn()];
-        pieces[from.getRow()][from.getColumn()] = null;
-        pieces[to.getRow()][to.getColumn()] = piece;
-        piece.setLocation(to);
+        movePieceCapturing(from.getSquare(), to.getSquare());
     } //same as the previous one, but with an opponent's piece at 'to'
 
+    /**
+     * Moves a piece between two square indices, capturing the piece at the destination.
+     *
+     * @param from the starting square
+     * @param to the destination square, holding an opponent's piece
+     */
+    public void movePieceCapturing(int from, int to) {
+        long start = Metrics.start();
+        remove(to);
+        relocate(from, to);
+        CAPTURES.increment();
+        MOVE_TIME.stop(start);
+    }
+
+    /**
+     * Castles: moves the king to the g or c file and its castling rook (see {@link #castlingRook(int)}) to the square
+     * next to it, on the f or d file. In standard chess the king moves two squares and the rook jumps over it;
+     * in Chess960 either of them may not move at all.
+     * The caller has already checked that castling is allowed.
+     *
+     * @param kingFrom the king's square
+     * @param kingTo the king's destination, on the g file to castle king side and on the c file for queen side
+     */
+    public void castle(Location kingFrom, Location kingTo) {
+        castle(kingFrom.getSquare(), kingTo.getSquare());
+    }
+
+    /**
+     * Castles between two square indices, see {@link #castle(Location, Location)}.
+     *
+     * @param kingFrom the king's square
+     * @param kingTo the king's destination
+     */
+    public void castle(int kingFrom, int kingTo) {
+        long start = Metrics.start();
+        int king = squares[kingFrom];
+        boolean black = (king & PieceCode.BLACK) != 0;
+        boolean kingSide = (kingTo & 7) == 6;
+        int rookFrom = castlingRooks[(black ? 2 : 0) + (kingSide ? 0 : 1)];
+        int rook = squares[rookFrom];
+        remove(kingFrom);
+        remove(rookFrom);
+        put(kingTo, king);
+        put(kingSide ? kingTo - 1 : kingTo + 1, rook);
+        castlingRights &= ~Castling.rightsOf(black);
+        enPassantSquare = -1;
+        MOVE_TIME.stop(start);
+    } //both pieces are lifted before either is put down, since in Chess960 each may land where the other stood
+
+    /**
+     * Captures en passant: moves the pawn diagonally to the empty target square and removes the enemy pawn
+     * that passed it.
+     *
+     * @param from the capturing pawn's square
+     * @param to the en passant target square
+     */
+    public void captureEnPassant(Location from, Location to) {
+        captureEnPassant(from.getSquare(), to.getSquare());
+    }
+
+    /**
+     * Captures en passant between two square indices, see {@link #captureEnPassant(Location, Location)}.
+     *
+     * @param from the capturing pawn's square
+     * @param to the en passant target square
+     */
+    public void captureEnPassant(int from, int to) {
+        long start = Metrics.start();
+        relocate(from, to);
+        remove((from & ~7) | (to & 7)); //the captured pawn stands beside the capturing one, not on the target
+        CAPTURES.increment();
+        MOVE_TIME.stop(start);
+    }
+
+    /**
+     * Replaces a pawn that reached the last rank with a new piece of the same color.
+     *
+     * @param location the pawn's square
+     * @param symbol the piece to promote to: 'Q', 'R', 'B' or 'N'
+     */
+    public void promote(Location location, char symbol) {
+        promote(location.getSquare(), symbol);
+    }
+
+    /**
+     * Replaces the pawn on a square index with a new piece of the same color.
+     *
+     * @param square the pawn's square
+     * @param symbol the piece to promote to: 'Q', 'R', 'B' or 'N'
+     */
+    public void promote(int square, char symbol) {
+        int color = squares[square] & PieceCode.BLACK;
+        remove(square);
+        put(square, PieceCode.type(PieceCode.fromSymbol(Character.toUpperCase(symbol))) | color);
+    }
+
+    private void relocate(int from, int to) {
+        int code = squares[from];
+        remove(from);
+        put(to, code);
+        if (castlingRights != 0) castlingRights &= ~rightsLostBy(code, from, to);
+        enPassantSquare = -1;
+    } //every move ends the en passant chance, a king or rook leaving (or a rook being captured) ends castling on that side
+
+    private int rightsLostBy(int code, int from, int to) {
+        int lost = PieceCode.type(code) == PieceCode.KING ? Castling.rightsOf((code & PieceCode.BLACK) != 0) : 0;
+        for (int right = 0; right < 4; right++) {
+            if (castlingRooks[right] == from || castlingRooks[right] == to) lost |= 1 << right;
+        }
+        return lost;
+    }
+
+    private void put(int square, int code) {
+        int count = pieceCounts[code];
+        if (count == LIST_SIZE) {
+            throw new IllegalArgumentException("Too many " + PieceCode.symbol(code) + " pieces on the board, at most " + LIST_SIZE + " are allowed.");
+        }
+        squares[square] = (byte) code;
+        occupied |= 1L << square;
+        pieceLists[code * LIST_SIZE + count] = (byte) square;
+        listIndex[square] = (byte) count;
+        pieceCounts[code] = (byte) (count + 1);
+    }
+
+    private void remove(int square) {
+        int code = squares[square];
+        int last = pieceLists[code * LIST_SIZE + --pieceCounts[code]];
+        pieceLists[code * LIST_SIZE + listIndex[square]] = (byte) last;
+        listIndex[last] = listIndex[square];
+        squares[square] = PieceCode.EMPTY;
+        occupied &= ~(1L << square);
+    } //the last square of the list fills the gap, so the list stays packed
+
     /**
      * Sets a piece at a specific location on the board.
      * Used primarily when loading a game from a file.
      *
      * @param location the location where to place the piece
-     * @param piece the piece to place
+     * @param piece the piece to place, or null to empty the square
+     * @throws IllegalArgumentException if the board already holds the maximum number of such pieces
      */
     public void setPiece(Location location, Piece piece) {
-        pieces[location.getRow()][location.getColumn()] = piece;
+        setPiece(location.getSquare(), PieceCode.of(piece));
     } //this one is only used when loading a game from a file, to set the pieces according to the saved board state
 
+    /**
+     * Places a piece code on a square (or empties it), for setting up positions.
+     *
+     * @param square the square index, row * 8 + column
+     * @param code the piece code, or PieceCode.EMPTY
+     * @throws IllegalArgumentException if the board already holds the maximum number of such pieces
+     */
+    public void setPiece(int square, int code) {
+        if (squares[square] != PieceCode.EMPTY) remove(square);
+        if (code != PieceCode.EMPTY) put(square, code);
+    }
+
+    /**
+     * Removes every piece from the board.
+     * Used when a saved position is restored onto a fresh board.
+     */
+    public void clear() {
+        Arrays.fill(squares, (byte) PieceCode.EMPTY);
+        Arrays.fill(pieceCounts, (byte) 0);
+        occupied = 0;
+        castlingRights = 0;
+        for (int right = 0; right < 4; right++) {
+            castlingRooks[right] = Castling.standardRook(right);
+        }
+        enPassantSquare = -1;
+    }
+
+    /**
+     * Returns the castling rights that are left.
+     *
+     * @return a combination of Zobrist.WHITE_KING_SIDE, WHITE_QUEEN_SIDE, BLACK_KING_SIDE and BLACK_QUEEN_SIDE
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Sets the castling rights, used when a position is loaded.
+     *
+     * @param castlingRights a combination of the Zobrist castling flags
+     */
+    public void setCastlingRights(int castlingRights) {
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * Returns the square of the rook a castling right castles with.
+     *
+     * @param right the index of the castling right bit (0 = white king side ... 3 = black queen side)
+     * @return the rook's starting square; the corner square in standard chess
+     */
+    public int castlingRook(int right) {
+        return castlingRooks[right];
+    }
+
+    /**
+     * Sets the rook a castling right castles with, used when a Chess960 position is loaded.
+     *
+     * @param right the index of the castling right bit (0 = white king side ... 3 = black queen side)
+     * @param square the rook's starting square, on the castling side's back rank
+     */
+    public void setCastlingRook(int right, int square) {
+        castlingRooks[right] = square;
+    }
+
+    /**
+     * Writes the castling rights as in FEN, with the Chess960 rook files where they are needed (see {@link Castling}).
+     *
+     * @return e.g. "KQkq", or "-" if no right is left
+     */
+    public String castlingText() {
+        return Castling.format(castlingRights, castlingRooks, this::pieceAt);
+    }
+
+    /**
+     * Sets the castling rights and their rooks from FEN text, used when a position is loaded.
+     * The pieces must already be on the board.
+     *
+     * @param text the castling rights in X-FEN or Shredder-FEN, e.g. "KQkq", "HAha" or "-"
+     * @throws IllegalArgumentException if the text is not valid castling rights
+     */
+    public void setCastlingText(String text) {
+        castlingRights = Castling.parse(text, castlingRooks, this::pieceAt);
+    }
+
+    /**
+     * Gives every castling right whose king and rook still stand on their standard starting squares.
+     * Used for saved games that do not record castling rights.
+     */
+    public void inferCastlingRights() {
+        castlingRights = 0;
+        if (squares[4] == PieceCode.KING) {
+            if (squares[7] == PieceCode.ROOK) castlingRights |= Zobrist.WHITE_KING_SIDE;
+            if (squares[0] == PieceCode.ROOK) castlingRights |= Zobrist.WHITE_QUEEN_SIDE;
+        }
+        if (squares[60] == (PieceCode.KING | PieceCode.BLACK)) {
+            if (squares[63] == (PieceCode.ROOK | PieceCode.BLACK)) castlingRights |= Zobrist.BLACK_KING_SIDE;
+            if (squares[56] == (PieceCode.ROOK | PieceCode.BLACK)) castlingRights |= Zobrist.BLACK_QUEEN_SIDE;
+        }
+    }
+
+    /**
+     * Returns the square a pawn can capture onto en passant.
+     *
+     * @return the square the last double-stepping pawn passed over, or null
+     */
+    public Location getEnPassantTarget() {
+        return enPassantSquare < 0 ? null : Location.ofSquare(enPassantSquare);
+    }
+
+    /**
+     * Returns the en passant square as an index.
+     *
+     * @return the square the last double-stepping pawn passed over, or -1
+     */
+    public int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Sets the en passant square. Pawns set it after a double step, loading a position may restore it.
+     *
+     * @param enPassantTarget the square passed over, or null
+     */
+    public void setEnPassantTarget(Location enPassantTarget) {
+        this.enPassantSquare = enPassantTarget == null ? -1 : enPassantTarget.getSquare();
+    }
+
+    /**
+     * Copies the board state so that a move can be taken back.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(squares.clone(), castlingRights, enPassantSquare);
+    }
+
+    /**
+     * Restores a snapshot taken with {@link #snapshot()}.
+     *
+     * @param snapshot the snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        Arrays.fill(pieceCounts, (byte) 0);
+        occupied = 0;
+        for (int square = 0; square < 64; square++) {
+            int code = snapshot.squares()[square];
+            squares[square] = PieceCode.EMPTY;
+            if (code != PieceCode.EMPTY) put(square, code);
+        }
+        castlingRights = snapshot.castlingRights();
+        enPassantSquare = snapshot.enPassantSquare();
+    } //the piece lists are rebuilt from the squares, which is cheaper than copying them into every snapshot
+
+    /**
+     * Finds the king of a player.
+     *
+     * @param color the king's color
+     * @return the king's location, or null if there is no such king
+     */
+    public Location findKing(Color color) {
+        int square = kingSquare(color);
+        return square < 0 ? null : Location.ofSquare(square);
+    }
+
+    /**
+     * Finds the square of a player's king.
+     *
+     * @param color the king's color
+     * @return the king's square, or -1 if there is no such king
+     */
+    public int kingSquare(Color color) {
+        int code = PieceCode.of(PieceCode.KING, color);
+        return pieceCounts[code] == 0 ? -1 : pieceLists[code * LIST_SIZE];
+    }
+
+    /**
+     * Checks if a player's king is attacked.
+     *
+     * @param color the king's color
+     * @return true if the king is in check, false if not (or if there is no king)
+     */
+    public boolean isInCheck(Color color) {
+        int king = kingSquare(color);
+        return king >= 0 && isAttacked(king, color.nextColor());
+    }
+
+    /**
+     * Checks if a square is attacked by any piece of a player.
+     *
+     * @param target the square
+     * @param by the attacking player
+     * @return true if at least one piece of that player attacks the square
+     */
+    public boolean isAttacked(Location target, Color by) {
+        return isAttacked(target.getSquare(), by);
+    }
+
+    /**
+     * Checks if a square index is attacked by any piece of a player.
+     *
+     * @param target the square index
+     * @param by the attacking player
+     * @return true if at least one piece of that player attacks the square
+     */
+    public boolean isAttacked(int target, Color by) {
+        int side = by == Color.WHITE ? 0 : PieceCode.BLACK;
+        if (attacks(Attacks.pawn(by == Color.WHITE ? 1 : 0, target), PieceCode.PAWN | side)) return true;
+        if (attacks(Attacks.knight(target), PieceCode.KNIGHT | side) || attacks(Attacks.king(target), PieceCode.KING | side)) return true;
+        long straight = Attacks.rook(target, occupied);
+        long diagonal = Attacks.bishop(target, occupied);
+        return attacks(straight, PieceCode.ROOK | side) || attacks(diagonal, PieceCode.BISHOP | side)
+                || attacks(straight | diagonal, PieceCode.QUEEN | side);
+    } //looks outwards from the target: a piece attacks it if the target would attack that piece's square the same way
+
+    private boolean attacks(long from, int code) {
+        for (int i = pieceCounts[code] - 1; i >= 0; i--) {
+            if ((from & (1L << pieceLists[code * LIST_SIZE + i])) != 0) return true;
+        }
+        return false;
+    } //checks the few pieces of one kind rather than every square of the attack set
+
+    private boolean isPiece(int row, int col, int code) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8 && squares[row * 8 + col] == code;
+    }
+
+    /**
+     * Computes the Zobrist hash of the current position.
+     * Two boards with the same pieces on the same squares, the same side to move, castling rights and
+     * en passant chance have the same hash.
+     *
+     * @param sideToMove the player whose turn it is
+     * @return the 64-bit position hash
+     */
+    public long hash(Color sideToMove) {
+        long hash = (sideToMove == Color.WHITE ? Zobrist.whiteToMove() : 0) ^ Zobrist.castling(castlingRights);
+        if (enPassantSquare >= 0) {
+            int pawnRow = (enPassantSquare >>> 3) - (sideToMove == Color.WHITE ? 1 : -1);
+            int col = enPassantSquare & 7;
+            int pawn = PieceCode.of(PieceCode.PAWN, sideToMove);
+            if (isPiece(pawnRow, col - 1, pawn) || isPiece(pawnRow, col + 1, pawn)) {
+                hash ^= Zobrist.enPassant(col); //as in Polyglot, only when a pawn can actually capture
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != PieceCode.EMPTY) {
+                hash ^= Zobrist.piece(squares[square], square);
+            }
+        }
+        return hash;
+    } //recomputed from scratch, the board is small enough that this is cheap
+
     /**
      * Checks if there are any pieces between two locations horizontally.
      * Used for validating rook and queen moves.
@@ -124,16 +624,7 @@ public class Board {
      * @return true if the horizontal path is clear, false otherwise
      */
     public boolean freeHorizontalPath(Location from, Location to) {
-        if (from.getRow() != to.getRow()) return false;
-        
-        int row = from.getRow();
-        int start = Math.min(from.getColumn(), to.getColumn()) + 1;
-        int end = Math.max(from.getColumn(), to.getColumn());
-        
-        for (int col = start; col < end; col++) {
-            if (pieces[row][col] != null) return false;
-        }
-        return true;
+        return from.getRow() == to.getRow() && freePath(from.getSquare(), to.getSquare());
     } //checks if horizontal path is free, used for rook and queen
 
     /**
@@ -145,16 +636,7 @@ public class Board {
      * @return true if the vertical path is clear, false otherwise
      */
     public boolean freeVerticalPath(Location from, Location to) {
-        if (from.getColumn() != to.getColumn()) return false;
-        
-        int col = from.getColumn();
-        int start = Math.min(from.getRow(), to.getRow()) + 1;
-        int end = Math.max(from.getRow(), to.getRow());
-        
-        for (int row = start; row < end; row++) {
-            if (pieces[row][col] != null) return false;
-        }
-        return true;
+        return from.getColumn() == to.getColumn() && freePath(from.getSquare(), to.getSquare());
     } //same as the previous one but for vertical path, used for rook and queen
 
     /**
@@ -169,23 +651,22 @@ public class Board {
     public boolean freeDiagonalPath(Location from, Location to) { // no need for freeAntidiagonalPath, this already checks both directions
         int rowDiff = to.getRow() - from.getRow();
         int colDiff = to.getColumn() - from.getColumn();
-        
-        if (Math.abs(rowDiff) != Math.abs(colDiff)) return false;
-        
-        int rowStep = rowDiff > 0 ? 1 : -1;
-        int colStep = colDiff > 0 ? 1 : -1;
-        
-        int row = from.getRow() + rowStep;
-        int col = from.getColumn() + colStep;
-        
-        while (row != to.getRow() && col != to.getColumn()) {
-            if (pieces[row][col] != null) return false;
-            row += rowStep;
-            col += colStep;
-        }
-        return true;
+        if (rowDiff == 0 || Math.abs(rowDiff) != Math.abs(colDiff)) return false; //staying on the same square is not a diagonal
+        return freePath(from.getSquare(), to.getSquare());
     } //same as the previous ones but for diagonal (and antidiagonal) paths, used for queen and bishop
 
+    /**
+     * Checks if the squares strictly between two square indices on a line (row, column or diagonal) are empty.
+     * The caller makes sure the squares are on a common line.
+     *
+     * @param from the starting square
+     * @param to the ending square
+     * @return true if nothing stands in between
+     */
+    public boolean freePath(int from, int to) {
+        return (Attacks.between(from, to) & occupied) == 0;
+    } //one table lookup instead of a walk over the squares in between
+
     /**
      * Returns a string representation of the current board state.
      * The board is displayed with ranks 8-1 from top to bottom and files a-h from left to right.
@@ -202,12 +683,7 @@ public class Board {
         for (int i = 7; i >= 0; i--) {
             sb.append(i + 1).append("|");
             for (int j = 0; j < 8; j++) {
-                Piece piece = pieces[i][j];
-                if (piece == null) {
-                    sb.append(". ");
-                } else {
-                    sb.append(piece).append(" ");
-                }
+                sb.append(PieceCode.symbol(squares[i * 8 + j])).append(" ");
             }
             sb.append("|").append(i + 1).append("\n");
         }
@@ -222,4 +698,4 @@ public class Board {
     public void display() {
         System.out.println(this);
     }
-}
\ No newline at end of file
+}
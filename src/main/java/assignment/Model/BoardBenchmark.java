@@ -0,0 +1,132 @@
+package assignment.Model;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.MoveGenerator;
+import assignment.Exceptions.InvalidLocationException;
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Pieces.Piece;
+
+/**
+ * Measures the memory footprint and rule-checking speed of {@link Board}.
+ * <ul>
+ *     <li>Footprint: keeps many boards of a middlegame position alive and divides the heap growth by their number.</li>
+ *     <li>Reads: scans every square of a board through {@link Board#getPieceAt(Location)}, which creates piece views,
+ *     and through {@link Board#pieceAt(int)}, which reads the piece codes directly.</li>
+ *     <li>Moves: tries every piece of the side to move on every square through {@link Piece#moveTo(Location, char)},
+ *     taking accepted moves back, as the game does when validating input.</li>
+ * </ul>
+ * Each measurement is repeated after a warm-up so the JIT has compiled the code.
+ * <p>
+ * Usage: {@code java -Xmx2g assignment.Model.BoardBenchmark [boards]}
+ */
+public final class BoardBenchmark {
+    private static final String[] POSITIONS = {
+            EngineBoard.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+    private static final int ROUNDS = 5;
+
+    private BoardBenchmark() {
+    } //only static helpers, no instances
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of boards for the footprint measurement
+     * @throws InvalidLocationException never, all squares are on the board
+     */
+    public static void main(String[] args) throws InvalidLocationException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        EngineBoard source = EngineBoard.fromFen(POSITIONS[1]);
+        Board[] boards = new Board[count];
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            boards[i] = source.toBoard();
+        }
+        long after = usedHeap();
+        System.out.printf("Footprint: %.0f bytes per board (%d boards)%n", (after - before) / (double) count, boards.length);
+        boards = null;
+
+        Board[] positions = new Board[POSITIONS.length];
+        Color[] sides = new Color[POSITIONS.length];
+        for (int i = 0; i < POSITIONS.length; i++) {
+            EngineBoard engine = EngineBoard.fromFen(POSITIONS[i]);
+            positions[i] = engine.toBoard();
+            sides[i] = engine.sideToMoveColor();
+        }
+        Location[] squares = new Location[64];
+        for (int square = 0; square < 64; square++) {
+            squares[square] = new Location(square >>> 3, square & 7);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            long reads = 0;
+            int found = 0;
+            for (int repeat = 0; repeat < 20_000; repeat++) {
+                for (Board board : positions) {
+                    for (Location square : squares) {
+                        if (board.getPieceAt(square) != null) found++;
+                    }
+                    reads += 64;
+                }
+            }
+            long readNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int codes = 0;
+            for (int repeat = 0; repeat < 20_000; repeat++) {
+                for (Board board : positions) {
+                    for (int square = 0; square < 64; square++) {
+                        if (board.pieceAt(square) != PieceCode.EMPTY) codes++;
+                    }
+                }
+            }
+            long codeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long tries = 0;
+            long accepted = 0;
+            for (int repeat = 0; repeat < 20; repeat++) {
+                for (int p = 0; p < positions.length; p++) {
+                    accepted += tryAllMoves(positions[p], sides[p], squares);
+                    tries += 64L * 64;
+                }
+            }
+            long moveNanos = System.nanoTime() - start;
+            System.out.printf("Round %d: views %.1f ns/square (%d pieces), codes %.2f ns/square (%d pieces), moves %.0f ns/try (%d legal of %d)%n",
+                    round, readNanos / (double) reads, found / 20_000, codeNanos / (double) reads, codes / 20_000,
+                    moveNanos / (double) tries, accepted / 20, tries / 20);
+        }
+        System.out.println("Generator check: " + MoveGenerator.legal(source, new int[MoveGenerator.MAX_MOVES]) + " legal moves in the footprint position");
+    }
+
+    private static long tryAllMoves(Board board, Color side, Location[] squares) {
+        long accepted = 0;
+        for (Location from : squares) {
+            for (Location to : squares) {
+                Piece piece = board.getPieceAt(from);
+                if (piece == null || piece.getColor() != side) continue;
+                Board.Snapshot before = board.snapshot();
+                try {
+                    piece.moveTo(to, 'q');
+                    accepted++;
+                    board.restore(before);
+                } catch (InvalidMoveException e) {
+                    //rejected moves leave the board unchanged
+                }
+            }
+        }
+        return accepted;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    } //a few GCs so that only live objects are counted
+}
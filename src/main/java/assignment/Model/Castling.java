@@ -0,0 +1,146 @@
+package assignment.Model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Castling rights as written in FEN, for standard chess and Chess960.
+ * <p>
+ * A castling right is indexed like its Zobrist flag bit (0 = white king side, 1 = white queen side, 2 = black king
+ * side, 3 = black queen side) and belongs to one rook, given by its square. In standard chess those are the corner
+ * rooks; in Chess960 they can stand on any file, as long as the king side rook is right of the king and the queen
+ * side rook left of it.
+ * <p>
+ * The text follows X-FEN: a right is written {@code K}, {@code Q}, {@code k} or {@code q} when its rook is the
+ * outermost rook on that side of the king, which covers standard chess and most Chess960 positions, and as the
+ * rook's file otherwise ({@code A}-{@code H} for white, {@code a}-{@code h} for black). Reading also accepts
+ * Shredder-FEN, which always writes the files (e.g. {@code HAha}).
+ */
+public final class Castling {
+    /** The castling rights flag bits for both sides of one color, indexed by side index (0 = white) */
+    private static final int[] BOTH_SIDES = {Zobrist.WHITE_KING_SIDE | Zobrist.WHITE_QUEEN_SIDE,
+            Zobrist.BLACK_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE};
+
+    private Castling() {
+    } //only static helpers, no instances
+
+    /**
+     * Returns the rook square of a right in standard chess.
+     *
+     * @param right the index of the castling right bit (0 = white king side ... 3 = black queen side)
+     * @return h1, a1, h8 or a8
+     */
+    public static int standardRook(int right) {
+        return (right < 2 ? 0 : 56) | ((right & 1) == 0 ? 7 : 0);
+    }
+
+    /**
+     * Returns both castling rights of one color.
+     *
+     * @param black true for black's rights
+     * @return the king side and queen side flags of that color
+     */
+    public static int rightsOf(boolean black) {
+        return BOTH_SIDES[black ? 1 : 0];
+    }
+
+    /**
+     * Checks whether castling rights can be written and played as in standard chess: every right left has its king
+     * on the e-file and its rook in the corner.
+     *
+     * @param rights the castling rights, a combination of the Zobrist flags
+     * @param rooks the rook square of each right
+     * @param pieceAt the piece code on a square
+     * @return true if no right needs Chess960 castling
+     */
+    public static boolean isStandard(int rights, int[] rooks, IntUnaryOperator pieceAt) {
+        for (int right = 0; right < 4; right++) {
+            if ((rights & (1 << right)) == 0) continue;
+            int rank = right < 2 ? 0 : 56;
+            int king = PieceCode.KING | (right < 2 ? 0 : PieceCode.BLACK);
+            if (rooks[right] != standardRook(right) || pieceAt.applyAsInt(rank | 4) != king) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes castling rights in X-FEN.
+     *
+     * @param rights the castling rights, a combination of the Zobrist flags
+     * @param rooks the rook square of each right
+     * @param pieceAt the piece code on a square
+     * @return e.g. "KQkq" or "Kkb", or "-" if no right is left
+     */
+    public static String format(int rights, int[] rooks, IntUnaryOperator pieceAt) {
+        StringBuilder sb = new StringBuilder();
+        for (int right = 0; right < 4; right++) {
+            if ((rights & (1 << right)) == 0) continue;
+            boolean black = right >= 2;
+            boolean kingSide = (right & 1) == 0;
+            char letter;
+            if (outermostRook(rooks[right] & 56, black, kingSide, pieceAt) == rooks[right]) {
+                letter = kingSide ? 'K' : 'Q';
+            } else {
+                letter = (char) ('A' + (rooks[right] & 7));
+            }
+            sb.append(black ? Character.toLowerCase(letter) : letter);
+        }
+        return sb.isEmpty() ? "-" : sb.toString();
+    }
+
+    /**
+     * Reads castling rights in X-FEN or Shredder-FEN. The pieces must already stand on the board: a letter
+     * {@code K} or {@code Q} stands for the outermost rook, and a file is king side or queen side depending
+     * on where the king is. Rights without a king or rook to castle with are read as given; boards drop those
+     * when they are set up.
+     *
+     * @param text the castling field, e.g. "KQkq", "HAha" or "-"
+     * @param rooks filled with the rook square of every right read (the other entries are left alone)
+     * @param pieceAt the piece code on a square
+     * @return the castling rights, a combination of the Zobrist flags
+     * @throws IllegalArgumentException if the text holds another character
+     */
+    public static int parse(String text, int[] rooks, IntUnaryOperator pieceAt) {
+        if (text.equals("-")) return 0;
+        int rights = 0;
+        for (char c : text.toCharArray()) {
+            boolean black = Character.isLowerCase(c);
+            int rank = black ? 56 : 0;
+            char upper = Character.toUpperCase(c);
+            int right;
+            int rook;
+            if (upper == 'K' || upper == 'Q') {
+                boolean kingSide = upper == 'K';
+                right = (black ? 2 : 0) + (kingSide ? 0 : 1);
+                rook = outermostRook(rank, black, kingSide, pieceAt);
+                if (rook < 0) rook = standardRook(right);
+            } else if (upper >= 'A' && upper <= 'H') {
+                rook = rank | (upper - 'A');
+                int king = kingFile(rank, black, pieceAt);
+                right = (black ? 2 : 0) + ((rook & 7) > (king < 0 ? 4 : king) ? 0 : 1);
+            } else {
+                throw new IllegalArgumentException("Invalid castling rights: " + text);
+            }
+            rights |= 1 << right;
+            rooks[right] = rook;
+        }
+        return rights;
+    }
+
+    private static int outermostRook(int rank, boolean black, boolean kingSide, IntUnaryOperator pieceAt) {
+        int king = kingFile(rank, black, pieceAt);
+        int rook = PieceCode.ROOK | (black ? PieceCode.BLACK : 0);
+        if (king < 0) return -1;
+        for (int col = kingSide ? 7 : 0; col != king; col += kingSide ? -1 : 1) {
+            if (pieceAt.applyAsInt(rank | col) == rook) return rank | col;
+        }
+        return -1;
+    } //walks in from the corner, so the first rook found is the outermost one
+
+    private static int kingFile(int rank, boolean black, IntUnaryOperator pieceAt) {
+        int king = PieceCode.KING | (black ? PieceCode.BLACK : 0);
+        for (int col = 0; col < 8; col++) {
+            if (pieceAt.applyAsInt(rank | col) == king) return col;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,179 @@
+package assignment.Model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The line of positions a game went through, indexed by ply, with the moves played between them.
+ * <p>
+ * Ply 0 is the position the game started from (the initial position, or whatever was loaded); the move at ply n
+ * leads from position n to position n + 1. Taking moves back only moves the current ply, so they can be replayed
+ * until a different move is played, which drops them.
+ * <p>
+ * The positions' hashes are kept in a plain array next to them, so a repetition check compares one hash per two
+ * plies and stops at the last capture or pawn move: no position before that can come back, since those moves
+ * cannot be undone on the board.
+ * <p>
+ * A history is used by the game thread only and is not thread-safe.
+ */
+public final class GameHistory {
+    private Position[] positions = new Position[64];
+    private long[] hashes = new long[64];
+    private String[] moves = new String[64]; //moves[n] leads from positions[n] to positions[n + 1]
+    private int ply;
+    private int end; //the last ply that can be reached again by redo
+
+    /**
+     * Starts a history.
+     *
+     * @param start the position the game starts from
+     */
+    public GameHistory(Position start) {
+        positions[0] = start;
+        hashes[0] = start.hash();
+    }
+
+    /**
+     * Records a move played in the current position. Moves that were taken back are dropped.
+     *
+     * @param move the move in coordinate notation, e.g. "e2e4" or "e7e8q"
+     * @param next the position after the move
+     */
+    public void play(String move, Position next) {
+        if (ply + 1 == positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[ply] = move;
+        ply++;
+        positions[ply] = next;
+        hashes[ply] = next.hash();
+        if (end > ply) Arrays.fill(positions, ply + 1, end + 1, null); //the dropped line is no longer reachable
+        end = ply;
+    }
+
+    /**
+     * Checks if there is a move to take back.
+     *
+     * @return true unless the current position is the first one
+     */
+    public boolean canUndo() {
+        return ply > 0;
+    }
+
+    /**
+     * Takes back the last move. It can be replayed with {@link #redo()} until another move is played.
+     *
+     * @return the position before the move
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public Position undo() {
+        if (ply == 0) throw new IllegalStateException("There is no move to take back");
+        return positions[--ply];
+    }
+
+    /**
+     * Checks if there is a taken back move to replay.
+     *
+     * @return true if {@link #undo()} was called since the last move was played
+     */
+    public boolean canRedo() {
+        return ply < end;
+    }
+
+    /**
+     * Replays the next move that was taken back.
+     *
+     * @return the position after the move
+     * @throws IllegalStateException if there is no move to replay
+     */
+    public Position redo() {
+        if (ply == end) throw new IllegalStateException("There is no move to replay");
+        return positions[++ply];
+    }
+
+    /**
+     * Returns the current position.
+     *
+     * @return the position at the current ply
+     */
+    public Position current() {
+        return positions[ply];
+    }
+
+    /**
+     * Returns the position the game started from.
+     *
+     * @return the position at ply 0
+     */
+    public Position start() {
+        return positions[0];
+    }
+
+    /**
+     * Returns the current ply, the number of moves played from the start to the current position.
+     *
+     * @return the ply
+     */
+    public int ply() {
+        return ply;
+    }
+
+    /**
+     * Returns a position of the current line, including moves that were taken back.
+     *
+     * @param ply the ply, 0 to the last ply that can be replayed
+     * @return the position
+     */
+    public Position positionAt(int ply) {
+        return positions[Objects.checkIndex(ply, end + 1)];
+    }
+
+    /**
+     * Returns the hash of a position of the current line.
+     *
+     * @param ply the ply, 0 to the last ply that can be replayed
+     * @return the position's Zobrist hash
+     */
+    public long hashAt(int ply) {
+        return hashes[Objects.checkIndex(ply, end + 1)];
+    }
+
+    /**
+     * Returns the move played in a position of the current line.
+     *
+     * @param ply the ply of the position the move was played in
+     * @return the move in coordinate notation
+     */
+    public String moveAt(int ply) {
+        return moves[Objects.checkIndex(ply, end)];
+    }
+
+    /**
+     * Returns the moves from the start to the current position.
+     *
+     * @return the moves in coordinate notation, in order
+     */
+    public List<String> moves() {
+        return List.of(Arrays.copyOf(moves, ply));
+    }
+
+    /**
+     * Counts how often the current position occurred in the game so far, with the same side to move,
+     * castling rights and en passant chance. Positions are compared by hash, which only counts an en passant
+     * square when a pawn can actually capture there, as the repetition rule does.
+     *
+     * @return 1 for a new position, 3 or more when a draw by threefold repetition can be claimed
+     */
+    public int repetitions() {
+        long hash = hashes[ply];
+        int oldest = Math.max(0, ply - positions[ply].halfmoveClock());
+        int count = 1;
+        for (int i = ply - 4; i >= oldest; i -= 2) {
+            if (hashes[i] == hash) count++;
+        }
+        return count;
+    } //a position needs at least four plies to come back, and only with the same side to move
+}
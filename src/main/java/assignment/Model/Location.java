@@ -14,6 +14,15 @@ public class Location {
     /** The column index (0-7) corresponding to files a-h in chess notation */
     private final int column;
 
+    /** One shared instance per square, locations are immutable */
+    private static final Location[] SQUARES = new Location[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new Location(square);
+        }
+    }
+
     /**
      * Creates a new Location from chess notation (e.g. "e4").
      *
@@ -52,6 +61,21 @@ public class Location {
         this.column = column;
     } //saves the row and column values assuming valid input
 
+    private Location(int square) {
+        this.row = square >>> 3;
+        this.column = square & 7;
+    }
+
+    /**
+     * Returns the location of a square index, without allocating.
+     *
+     * @param square the square index, row * 8 + column (0-63)
+     * @return the shared location of that square
+     */
+    public static Location ofSquare(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * Gets the row index of this location.
      *
@@ -70,6 +94,15 @@ public class Location {
         return column;
     }
 
+    /**
+     * Gets the square index of this location, as used by the board's piece codes.
+     *
+     * @return row * 8 + column (0-63)
+     */
+    public int getSquare() {
+        return row * 8 + column;
+    }
+
     /**
      * Converts the location to chess notation.
      *
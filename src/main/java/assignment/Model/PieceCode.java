@@ -0,0 +1,129 @@
+package assignment.Model;
+
+import assignment.Pieces.*;
+
+/**
+ * Compact numeric codes for chess pieces.
+ * A piece code fits in four bits: the low three bits hold the piece type
+ * (1 = pawn up to 6 = king) and bit 3 is set for black pieces. Code 0 means an empty square.
+ * These codes are how the {@link Board} itself stores pieces, and they are used wherever a position has to be
+ * stored or hashed (binary save files, hash keys, the engine board).
+ */
+public final class PieceCode {
+    /** Code of an empty square */
+    public static final int EMPTY = 0;
+    /** Piece type of a pawn */
+    public static final int PAWN = 1;
+    /** Piece type of a knight */
+    public static final int KNIGHT = 2;
+    /** Piece type of a bishop */
+    public static final int BISHOP = 3;
+    /** Piece type of a rook */
+    public static final int ROOK = 4;
+    /** Piece type of a queen */
+    public static final int QUEEN = 5;
+    /** Piece type of a king */
+    public static final int KING = 6;
+    /** Flag bit marking a black piece */
+    public static final int BLACK = 8;
+
+    /** Display characters indexed by piece code, matching {@link Piece#toString()} */
+    private static final String SYMBOLS = ".PNBRQK..pnbrqk.";
+
+    private PieceCode() {
+    } //only static helpers, no instances
+
+    /**
+     * Builds the code for a piece type and color.
+     *
+     * @param type the piece type (PAWN to KING)
+     * @param color the color of the piece
+     * @return the piece code
+     */
+    public static int of(int type, Color color) {
+        return color == Color.WHITE ? type : type | BLACK;
+    }
+
+    /**
+     * Returns the code of an existing piece.
+     *
+     * @param piece the piece, may be null
+     * @return the piece code, or EMPTY if the piece is null
+     */
+    public static int of(Piece piece) {
+        return piece == null ? EMPTY : piece.getCode();
+    }
+
+    /**
+     * Extracts the piece type from a code.
+     *
+     * @param code the piece code
+     * @return the piece type (PAWN to KING), or EMPTY for an empty square
+     */
+    public static int type(int code) {
+        return code & 7;
+    }
+
+    /**
+     * Extracts the color from a non-empty code.
+     *
+     * @param code the piece code
+     * @return the color of the piece
+     */
+    public static Color color(int code) {
+        return (code & BLACK) == 0 ? Color.WHITE : Color.BLACK;
+    }
+
+    /**
+     * Checks if a code is a valid piece code (empty squares included).
+     *
+     * @param code the code to check
+     * @return true if the code is EMPTY or a white or black piece
+     */
+    public static boolean isValid(int code) {
+        int type = code & 7;
+        return code >= 0 && code < 16 && (code == EMPTY || (type >= PAWN && type <= KING));
+    }
+
+    /**
+     * Creates a piece object for a code, a view of that square of the board.
+     *
+     * @param code the piece code
+     * @param location the location of the new piece
+     * @param board the board the piece belongs to
+     * @return the new piece, or null for EMPTY
+     */
+    public static Piece create(int code, Location location, Board board) {
+        Color color = color(code);
+        return switch (type(code)) {
+            case PAWN -> new Pawn(color, location, board);
+            case KNIGHT -> new Knight(color, location, board);
+            case BISHOP -> new Bishop(color, location, board);
+            case ROOK -> new Rook(color, location, board);
+            case QUEEN -> new Queen(color, location, board);
+            case KING -> new King(color, location, board);
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns the display character of a code, as printed on the board.
+     *
+     * @param code the piece code
+     * @return 'P', 'n', ... for pieces or '.' for an empty square
+     */
+    public static char symbol(int code) {
+        return SYMBOLS.charAt(code & 15);
+    }
+
+    /**
+     * Parses a display character back into a code.
+     *
+     * @param symbol a piece letter ('P', 'n', ...) or '.'
+     * @return the piece code, or -1 if the character is not a piece letter
+     */
+    public static int fromSymbol(char symbol) {
+        int index = SYMBOLS.indexOf(symbol);
+        return index < 0 || (index != EMPTY && !isValid(index)) ? -1 : index;
+    }
+}
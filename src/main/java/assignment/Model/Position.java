@@ -0,0 +1,276 @@
+package assignment.Model;
+
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Pieces.Rules;
+
+/**
+ * An immutable snapshot of a game position: the pieces, the side to move, castling rights (with their rooks, for
+ * Chess960), the en passant square and the move counters, together with its Zobrist hash.
+ * <p>
+ * Playing a move does not change a position, it returns a new one that links back to it, so the positions of a game
+ * form a persistent list: every position shares the whole line that led to it, and two lines branching from the same
+ * position share everything before the branch. The pieces themselves are packed into four longs (4 bits per square,
+ * see {@link PieceCode}), so a new position costs one small object and no arrays.
+ * <p>
+ * All fields are final, so a position can be handed to any number of reader threads without locks or copying,
+ * for example through a volatile field that the game replaces after every move.
+ */
+public final class Position {
+    private static final int SQUARES_PER_WORD = 16;
+
+    /** Piece codes of squares 0-15, 16-31, 32-47 and 48-63, 4 bits each */
+    private final long word0, word1, word2, word3;
+    private final Color sideToMove;
+    private final int castlingRights;
+    /** The file of each castling right's rook, 3 bits per right in right bit order (0 for rights that are gone) */
+    private final int castlingFiles;
+    private final int enPassantSquare;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final long hash;
+    private final Position previous;
+
+    private Position(Board board, Color sideToMove, int halfmoveClock, int fullmoveNumber, Position previous) {
+        long[] words = new long[4];
+        for (int square = 0; square < 64; square++) {
+            words[square / SQUARES_PER_WORD] |= (long) board.pieceAt(square) << (4 * (square % SQUARES_PER_WORD));
+        }
+        this.word0 = words[0];
+        this.word1 = words[1];
+        this.word2 = words[2];
+        this.word3 = words[3];
+        this.sideToMove = sideToMove;
+        this.castlingRights = board.getCastlingRights();
+        int files = 0;
+        for (int right = 0; right < 4; right++) {
+            if ((castlingRights & (1 << right)) != 0) files |= (board.castlingRook(right) & 7) << (3 * right);
+        }
+        this.castlingFiles = files;
+        this.enPassantSquare = board.enPassantSquare();
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.hash = board.hash(sideToMove);
+        this.previous = previous;
+    }
+
+    /**
+     * Takes a snapshot of a board, as the first position of a line.
+     *
+     * @param board the board (not kept, later changes to it do not affect the snapshot)
+     * @param sideToMove the player whose turn it is
+     * @return the position, with move counters at their starting values and no previous position
+     */
+    public static Position of(Board board, Color sideToMove) {
+        return of(board, sideToMove, 0, 1);
+    }
+
+    /**
+     * Takes a snapshot of a board with known move counters, as the first position of a line.
+     *
+     * @param board the board (not kept, later changes to it do not affect the snapshot)
+     * @param sideToMove the player whose turn it is
+     * @param halfmoveClock moves since the last capture or pawn move
+     * @param fullmoveNumber the move number, starting at 1
+     * @return the position, with no previous position
+     */
+    public static Position of(Board board, Color sideToMove, int halfmoveClock, int fullmoveNumber) {
+        return new Position(board, sideToMove, halfmoveClock, fullmoveNumber, null);
+    }
+
+    /**
+     * Returns the standard starting position.
+     *
+     * @return the starting position, white to move
+     */
+    public static Position initial() {
+        return of(new Board(), Color.WHITE);
+    }
+
+    /**
+     * Takes a snapshot of a board on which one move was played from this position.
+     * The side to move passes to the other player, and the fifty-move counter starts again if a pawn moved
+     * or a piece was captured.
+     *
+     * @param board the board after the move
+     * @return the new position, linked back to this one
+     */
+    public Position next(Board board) {
+        boolean irreversible = false;
+        int before = 0;
+        int after = 0;
+        for (int square = 0; square < 64; square++) {
+            int old = pieceAt(square);
+            int now = board.pieceAt(square);
+            if (old != now && (PieceCode.type(old) == PieceCode.PAWN || PieceCode.type(now) == PieceCode.PAWN)) irreversible = true;
+            if (old != PieceCode.EMPTY) before++;
+            if (now != PieceCode.EMPTY) after++;
+        }
+        irreversible |= after < before;
+        return new Position(board, sideToMove.nextColor(), irreversible ? 0 : halfmoveClock + 1,
+                sideToMove == Color.BLACK ? fullmoveNumber + 1 : fullmoveNumber, this);
+    } //a pawn square that changed means a pawn moved (or was promoted or captured), fewer pieces means a capture
+
+    /**
+     * Plays a move for the side to move and returns the resulting position. This position is not changed.
+     *
+     * @param from the square of the piece to move
+     * @param to the destination square
+     * @param promotion the piece a pawn reaching the last rank becomes: 'Q', 'R', 'B' or 'N'
+     * @return the new position, linked back to this one
+     * @throws InvalidMoveException if the square holds no piece of the side to move or the move is not legal
+     */
+    public Position play(Location from, Location to, char promotion) throws InvalidMoveException {
+        int code = pieceAt(from.getSquare());
+        if (code == PieceCode.EMPTY || PieceCode.color(code) != sideToMove) {
+            throw new InvalidMoveException("There is no " + sideToMove + " piece on " + from + ".");
+        }
+        Board board = toBoard();
+        Rules.move(board, from.getSquare(), to.getSquare(), promotion);
+        return next(board);
+    }
+
+    /**
+     * Gets the piece code on a square.
+     *
+     * @param square the square index, row * 8 + column
+     * @return the piece code, or PieceCode.EMPTY
+     */
+    public int pieceAt(int square) {
+        long word = switch (square / SQUARES_PER_WORD) {
+            case 0 -> word0;
+            case 1 -> word1;
+            case 2 -> word2;
+            default -> word3;
+        };
+        return (int) (word >>> (4 * (square % SQUARES_PER_WORD))) & 15;
+    }
+
+    /**
+     * Copies this position onto a new, mutable board.
+     *
+     * @return a board with the same pieces, castling rights and en passant square
+     */
+    public Board toBoard() {
+        Board board = new Board();
+        board.clear();
+        for (int square = 0; square < 64; square++) {
+            board.setPiece(square, pieceAt(square));
+        }
+        board.setCastlingRights(castlingRights);
+        for (int right = 0; right < 4; right++) {
+            board.setCastlingRook(right, castlingRook(right));
+        }
+        board.setEnPassantTarget(enPassantSquare < 0 ? null : Location.ofSquare(enPassantSquare));
+        return board;
+    }
+
+    /**
+     * Returns the player whose turn it is.
+     *
+     * @return the side to move
+     */
+    public Color sideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * Returns the castling rights that are left.
+     *
+     * @return a combination of the Zobrist castling flags
+     */
+    public int castlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Returns the square of the rook a castling right castles with.
+     *
+     * @param right the index of the castling right bit (0 = white king side ... 3 = black queen side)
+     * @return the rook's starting square, see {@link Board#castlingRook(int)}; only meaningful while the right is left
+     */
+    public int castlingRook(int right) {
+        return (right < 2 ? 0 : 56) | (castlingFiles >>> (3 * right)) & 7;
+    }
+
+    /**
+     * Returns the en passant square.
+     *
+     * @return the square the last double-stepping pawn passed over, or -1
+     */
+    public int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Returns the number of moves since the last capture or pawn move, for the fifty-move rule.
+     *
+     * @return the halfmove clock
+     */
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Returns the move number, starting at 1 and increased after every black move.
+     *
+     * @return the fullmove number
+     */
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Returns the Zobrist hash, the same as {@link Board#hash(Color)} of this position.
+     *
+     * @return the 64-bit position hash
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Returns the position this one was played from.
+     *
+     * @return the previous position, or null for the first position of a line
+     */
+    public Position previous() {
+        return previous;
+    }
+
+    /**
+     * Checks if two positions have the same pieces, side to move, castling rights (and rooks) and en passant square.
+     * The move counters and the line that led to the positions are not compared.
+     *
+     * @param obj the object to compare with
+     * @return true if the positions are the same
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Position other)) return false;
+        return hash == other.hash && word0 == other.word0 && word1 == other.word1 && word2 == other.word2
+                && word3 == other.word3 && sideToMove == other.sideToMove && castlingRights == other.castlingRights
+                && castlingFiles == other.castlingFiles
+                && enPassantSquare == other.enPassantSquare;
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}, taken from the Zobrist hash.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * Returns the board diagram of this position, as printed by {@link Board#toString()}.
+     *
+     * @return the diagram
+     */
+    @Override
+    public String toString() {
+        return toBoard().toString();
+    }
+}
@@ -3,15 +3,25 @@ package assignment.Pieces;
 import assignment.Model.Board;
 import assignment.Model.Color;
 import assignment.Model.Location;
+import assignment.Model.PieceCode;
 import assignment.Exceptions.InvalidMoveException;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
 
 /**
  * Abstract base class for all chess pieces.
  * Provides common functionality and properties that all chess pieces share.
- * Each specific piece type (Pawn, Rook, etc.) extends this class and implements
- * its own movement rules.
+ * <p>
+ * The board stores pieces as {@link PieceCode}s, not as objects. A piece is a view of one square of a board:
+ * it knows its type, color and location, and {@link #moveTo(Location, char)} applies the movement rules of its
+ * type from {@link Rules}. The subclasses (Pawn, Rook, etc.) only fix the type.
  */
 public abstract class Piece {
+    private static final LatencyHistogram MOVE_TIME = Metrics.histogram("piece.moveTo");
+    private static final Counter REJECTED = Metrics.counter("piece.moveTo.rejected");
+
+    private final int code; //piece type and color, this cannot be changed
     protected final Color color; //this cannot be changed
     protected Location location;
     protected final Board board; //this cannot be changed
@@ -19,11 +29,13 @@ public abstract class Piece {
     /**
      * Creates a new chess piece.
      *
+     * @param type the piece type, PieceCode.PAWN to PieceCode.KING
      * @param color the color of the piece (WHITE or BLACK)
      * @param location the initial position of the piece on the board
      * @param board the chess board this piece belongs to
      */
-    public Piece(Color color, Location location, Board board) {
+    protected Piece(int type, Color color, Location location, Board board) {
+        this.code = PieceCode.of(type, color);
         this.color = color;
         this.location = location;
         this.board = board;
@@ -39,8 +51,25 @@ public abstract class Piece {
     }
 
     /**
-     * Updates the piece's location on the board.
-     * This method is called internally by the Board class when moving pieces.
+     * Gets the piece code of this piece.
+     *
+     * @return the piece code, see {@link PieceCode}
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Gets the location of this piece.
+     *
+     * @return the square the piece stands on
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    /**
+     * Updates the piece's location, i.e. which square of the board this piece refers to.
      *
      * @param location the new location of the piece
      */
@@ -50,13 +79,39 @@ public abstract class Piece {
 
     /**
      * Attempts to move this piece to a new location on the board.
-     * Each piece type implements its own movement rules in this method.
+     * A pawn reaching the last rank becomes a queen.
      *
      * @param newLoc the destination location for the piece
-     * @throws InvalidMoveException if the move violates the piece's movement rules
+     * @throws InvalidMoveException if the move violates the piece's movement rules or leaves the own king in check
      */
-    @SuppressWarnings("unused")
-    public abstract void moveTo(Location newLoc) throws InvalidMoveException; //just a declaration, it is implemented in each piece's class
+    public final void moveTo(Location newLoc) throws InvalidMoveException {
+        moveTo(newLoc, 'Q');
+    }
+
+    /**
+     * Attempts to move this piece to a new location on the board, following the rules in
+     * {@link Rules#move(Board, int, int, char)}. After a successful move this piece refers to the new location.
+     *
+     * @param newLoc the destination location for the piece
+     * @param promotion the piece a pawn reaching the last rank becomes: 'Q', 'R', 'B' or 'N' (ignored by other moves)
+     * @throws InvalidMoveException if the move violates the piece's movement rules, leaves the own king in check,
+     *         or this piece is no longer on the board
+     */
+    public final void moveTo(Location newLoc, char promotion) throws InvalidMoveException {
+        long start = Metrics.start();
+        try {
+            if (board.pieceAt(location.getSquare()) != code) {
+                throw new InvalidMoveException("That piece is no longer on " + location + ".");
+            }
+            Rules.move(board, location.getSquare(), newLoc.getSquare(), promotion);
+            location = newLoc;
+        } catch (InvalidMoveException e) {
+            REJECTED.increment();
+            throw e;
+        } finally {
+            MOVE_TIME.stop(start);
+        }
+    }
 
     /**
      * Returns a string representation of this piece.
@@ -66,5 +121,7 @@ public abstract class Piece {
      * @return a single character representing this piece
      */
     @Override
-    public abstract String toString();
-} 
\ No newline at end of file
+    public String toString() {
+        return String.valueOf(PieceCode.symbol(code));
+    }
+}
@@ -0,0 +1,265 @@
+package assignment.Pieces;
+
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Model.Board;
+import assignment.Model.Color;
+import assignment.Model.Location;
+import assignment.Model.PieceCode;
+
+/**
+ * The movement rules of every piece type, working directly on the piece codes of a {@link Board}.
+ * <p>
+ * {@link #move(Board, int, int, char)} switches on the type of the piece on the starting square and calls the matching
+ * static method, so checking a move needs no piece objects and no virtual calls. The {@link Piece} classes are
+ * views that forward here. Squares are indices, row * 8 + column.
+ */
+public final class Rules {
+    private static final String PROMOTIONS = "QRBN";
+
+    private Rules() {
+    } //only static helpers, no instances
+
+    /**
+     * Plays a move if the rules allow it. On top of the movement rules of the piece, a move that leaves the own king
+     * in check is taken back and rejected, which also covers pinned pieces and kings stepping into check.
+     *
+     * @param board the board
+     * @param from the square of the piece to move
+     * @param to the destination square
+     * @param promotion the piece a pawn reaching the last rank becomes: 'Q', 'R', 'B' or 'N' (ignored by other moves)
+     * @throws InvalidMoveException if the move violates the piece's movement rules or leaves the own king in check
+     */
+    public static void move(Board board, int from, int to, char promotion) throws InvalidMoveException {
+        int code = board.pieceAt(from);
+        Color color = PieceCode.color(code);
+        Board.Snapshot before = board.snapshot();
+        switch (PieceCode.type(code)) {
+            case PieceCode.PAWN -> pawn(board, from, to, color, promotion);
+            case PieceCode.KNIGHT -> knight(board, from, to, color);
+            case PieceCode.BISHOP -> bishop(board, from, to, color);
+            case PieceCode.ROOK -> rook(board, from, to, color);
+            case PieceCode.QUEEN -> queen(board, from, to, color);
+            case PieceCode.KING -> king(board, from, to, color);
+            default -> throw new InvalidMoveException("There is no piece on that square.");
+        }
+        if (board.isInCheck(color)) {
+            board.restore(before);
+            throw new InvalidMoveException("That move would leave your king in check.");
+        }
+    }
+
+    /**
+     * Pawn rules. The move is valid if one of these conditions is met:
+     * <ul>
+     *     <li>Moving one square forward to an empty square</li>
+     *     <li>Moving two squares forward from starting position to an empty square, with no pieces in between</li>
+     *     <li>Moving one square diagonally forward to capture an opponent's piece</li>
+     *     <li>Moving one square diagonally forward to the en passant square, capturing the pawn that just passed it</li>
+     * </ul>
+     * A pawn that reaches the last rank is replaced by the chosen piece.
+     */
+    private static void pawn(Board board, int from, int to, Color color, char promotion) throws InvalidMoveException {
+        int rowDiff = (to >>> 3) - (from >>> 3);
+        int colDiff = Math.abs((to & 7) - (from & 7));
+
+        //White moves upwards, black moves downwards, no going back
+        int direction = (color == Color.WHITE) ? 1 : -1;
+        boolean promotes = to >>> 3 == (color == Color.WHITE ? 7 : 0);
+        if (promotes && PROMOTIONS.indexOf(Character.toUpperCase(promotion)) < 0) {
+            throw new InvalidMoveException("Pawns can only be promoted to a queen (q), rook (r), bishop (b) or knight (n).");
+        }
+
+        //Moving one-square
+        if (colDiff == 0 && rowDiff == direction) {
+            if (board.pieceAt(to) != PieceCode.EMPTY) {
+                throw new InvalidMoveException("Pawns can only move to an empty spot.");
+            }
+            board.movePiece(from, to);
+            if (promotes) board.promote(to, promotion);
+            return;
+        }
+
+        //If pawn is still in its initial position, it can move two squares
+        if (colDiff == 0 && rowDiff == 2 * direction && from >>> 3 == (color == Color.WHITE ? 1 : 6)) {
+            if (board.pieceAt(to) != PieceCode.EMPTY) {
+                throw new InvalidMoveException("Pawns can only move to an empty spot.");
+            }
+            int intermediate = from + 8 * direction;
+            if (board.pieceAt(intermediate) != PieceCode.EMPTY) {
+                throw new InvalidMoveException("Pawns cannot jump over other pieces.");
+            }
+            board.movePiece(from, to);
+            board.setEnPassantTarget(Location.ofSquare(intermediate)); //for one move, enemy pawns can capture as if this pawn only moved one square
+            return;
+        }
+
+        //Pawns capture diagonally, including en passant
+        if (colDiff == 1 && rowDiff == direction) {
+            int target = board.pieceAt(to);
+            if (target != PieceCode.EMPTY && PieceCode.color(target) != color) {
+                board.movePieceCapturing(from, to);
+                if (promotes) board.promote(to, promotion);
+                return;
+            }
+            if (target == PieceCode.EMPTY && to == board.enPassantSquare()) {
+                board.captureEnPassant(from, to);
+                return;
+            }
+            throw new InvalidMoveException("You need to attack an opponent for the pawn to move diagonally.");
+        }
+
+        throw new InvalidMoveException("Invalid pawn move. Pawns only move forwards. They can move 2 squares if they have not moved before, else they can only move one step. They can only capture enemy pieces diagonally, if they are one square away, and not if they are in front of them, or en passant right after an enemy pawn moved two squares past them.");
+    }
+
+    /**
+     * Knight rules: an L-shape (2 squares in one direction, 1 in the perpendicular one) onto an empty square or
+     * an opponent's piece. Knights jump, so the path is not checked.
+     */
+    private static void knight(Board board, int from, int to, Color color) throws InvalidMoveException {
+        int rowDiff = Math.abs((to >>> 3) - (from >>> 3));
+        int colDiff = Math.abs((to & 7) - (from & 7));
+        if ((rowDiff == 2 && colDiff == 1) || (rowDiff == 1 && colDiff == 2)) { //checks for L-shape move
+            land(board, from, to, color);
+            return;
+        }
+        throw new InvalidMoveException("Knight can only move in an L-shape.");
+    }
+
+    /**
+     * Bishop rules: any distance diagonally, through empty squares, onto an empty square or an opponent's piece.
+     */
+    private static void bishop(Board board, int from, int to, Color color) throws InvalidMoveException {
+        if (isDiagonal(from, to)) {
+            slide(board, from, to, color);
+            return;
+        }
+        throw new InvalidMoveException("Bishop can only move diagonally.");
+    }
+
+    /**
+     * Rook rules: any distance along a row or column, through empty squares, onto an empty square or an
+     * opponent's piece. Castling is played by moving the king, not the rook.
+     */
+    private static void rook(Board board, int from, int to, Color color) throws InvalidMoveException {
+        if (isStraight(from, to)) {
+            slide(board, from, to, color);
+            return;
+        }
+        throw new InvalidMoveException("Rook can only move horizontally or vertically. To castle, move the king two squares towards the rook.");
+    }
+
+    /**
+     * Queen rules: the rook and bishop moves combined.
+     */
+    private static void queen(Board board, int from, int to, Color color) throws InvalidMoveException {
+        if (isDiagonal(from, to) || isStraight(from, to)) {
+            slide(board, from, to, color);
+            return;
+        }
+        throw new InvalidMoveException("Queen can only move horizontally, vertically, or diagonally.");
+    }
+
+    /**
+     * King rules: one square in any direction onto an empty square or an opponent's piece, or castling,
+     * see {@link #castle(Board, int, int, Color)}.
+     */
+    private static void king(Board board, int from, int to, Color color) throws InvalidMoveException {
+        int right = castlingRight(board, from, to, color);
+        if (right >= 0) {
+            castle(board, from, right, color);
+            return;
+        }
+        int rowDiff = Math.abs((to >>> 3) - (from >>> 3));
+        int colDiff = Math.abs((to & 7) - (from & 7));
+        //no need to check if path is free, since it only moves one square, so it skips to the null/enemy check
+        if (rowDiff <= 1 && colDiff <= 1) {
+            land(board, from, to, color);
+            return;
+        }
+        throw new InvalidMoveException("King can only move one square in any direction, or two squares towards a rook to castle.");
+    }
+
+    /**
+     * Finds the castling right a king move asks for. Castling is entered either as the king taking its own castling
+     * rook, which works in every Chess960 position, or as the standard king move of two squares to the g or c file.
+     *
+     * @return the index of the castling right bit, or -1 if the move is not a castling move
+     */
+    private static int castlingRight(Board board, int from, int to, Color color) {
+        int rank = color == Color.WHITE ? 0 : 56;
+        if ((from & 56) != rank || (to & 56) != rank) return -1;
+        int first = color == Color.WHITE ? 0 : 2;
+        for (int right = first; right < first + 2; right++) {
+            int rook = board.castlingRook(right);
+            boolean kingSide = right == first;
+            if (to == rook && board.pieceAt(to) == PieceCode.of(PieceCode.ROOK, color)) return right;
+            if (to == (rank | (kingSide ? 6 : 2)) && Math.abs(to - from) == 2 && (rook > from) == kingSide) return right;
+        }
+        return -1;
+    } //the two square form only exists for a king on the e file, so it never clashes with an ordinary king move
+
+    /**
+     * Castling is allowed if neither the king nor that rook has moved (the board still has the castling right),
+     * every square the king and the rook cross or land on is empty apart from the two of them, and the king is not
+     * in check and does not pass over an attacked square. The king ends on the g or c file and the rook next to it,
+     * wherever they started, as in Chess960.
+     * Landing in check is rejected by {@link #move(Board, int, int, char)} like for any other move.
+     */
+    private static void castle(Board board, int from, int right, Color color) throws InvalidMoveException {
+        if ((board.getCastlingRights() & (1 << right)) == 0) {
+            throw new InvalidMoveException("You can no longer castle on that side, the king or the rook has already moved.");
+        }
+        boolean kingSide = (right & 1) == 0;
+        int rank = from & 56;
+        int rookFrom = board.castlingRook(right);
+        int kingTo = rank | (kingSide ? 6 : 2);
+        int rookTo = rank | (kingSide ? 5 : 3);
+        if (board.pieceAt(rookFrom) != PieceCode.of(PieceCode.ROOK, color)) {
+            throw new InvalidMoveException("There is no rook to castle with.");
+        }
+        int low = Math.min(Math.min(from, rookFrom), Math.min(kingTo, rookTo));
+        int high = Math.max(Math.max(from, rookFrom), Math.max(kingTo, rookTo));
+        for (int square = low; square <= high; square++) {
+            if (square != from && square != rookFrom && board.pieceAt(square) != PieceCode.EMPTY) {
+                throw new InvalidMoveException("Another piece is in the way of castling.");
+            }
+        }
+        if (board.isInCheck(color)) {
+            throw new InvalidMoveException("You cannot castle out of check.");
+        }
+        int step = kingTo > from ? 1 : -1;
+        for (int square = from + step; square != kingTo && from != kingTo; square += step) {
+            if (board.isAttacked(square, color.nextColor())) {
+                throw new InvalidMoveException("The king cannot castle through an attacked square.");
+            }
+        }
+        board.castle(from, kingTo);
+    } //the destination square is checked afterwards, like every other king move
+
+    private static boolean isDiagonal(int from, int to) {
+        int rowDiff = Math.abs((to >>> 3) - (from >>> 3));
+        return rowDiff != 0 && rowDiff == Math.abs((to & 7) - (from & 7)); //staying on the same square is not a diagonal
+    }
+
+    private static boolean isStraight(int from, int to) {
+        return (to >>> 3) == (from >>> 3) || (to & 7) == (from & 7);
+    }
+
+    private static void slide(Board board, int from, int to, Color color) throws InvalidMoveException {
+        if (!board.freePath(from, to)) {
+            throw new InvalidMoveException("Another piece is in the way.");
+        }
+        land(board, from, to, color);
+    }
+
+    private static void land(Board board, int from, int to, Color color) throws InvalidMoveException {
+        int target = board.pieceAt(to);
+        if (target == PieceCode.EMPTY) { //checks if the destination is empty or an enemy piece
+            board.movePiece(from, to);
+        } else if (PieceCode.color(target) != color) {
+            board.movePieceCapturing(from, to);
+        } else {
+            throw new InvalidMoveException("No civil wars here, try attacking the opponent instead.");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package assignment.Puzzle;
+
+import assignment.Analysis.BatchAnalyzer;
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Engine.Notation;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Verifies forced mates in a batch of puzzle positions with {@link MateSolver}, one solver per core.
+ * <p>
+ * The input is read like {@link BatchAnalyzer}'s: a file with one FEN per line, a PGN collection (the final position
+ * of every game) or a directory of saved games. Puzzles are solved by a pool of workers, each with its own solver
+ * and node table, and the results are written in input order as CSV: the mate distance and the full forced line in
+ * coordinate and standard notation, or why there is none. At most a few results per worker are pending at once, so
+ * inputs of millions of puzzles stream through in constant memory.
+ * <p>
+ * Usage: {@code java assignment.Puzzle.MateFinder input [-mate N] [-nodes N] [-workers N] [-hash MB] [-output file]}
+ */
+public final class MateFinder {
+    /** Longest mate looked for when no -mate is given, in moves */
+    public static final int DEFAULT_MATE = 5;
+
+    /**
+     * The outcome of one puzzle. If the position could not be set up or searched, the solution fields are empty and the
+     * error is filled.
+     *
+     * @param index the puzzle's number in the input
+     * @param source where the puzzle comes from
+     * @param fen the position solved, or null
+     * @param solution the solution, or null
+     * @param san the forced line in standard algebraic notation, or null
+     * @param error why the puzzle could not be solved, or null
+     */
+    public record Result(int index, String source, String fen, MateSolver.Solution solution, String san, String error) {
+    }
+
+    private final int workers;
+    private final int maxMate;
+    private final long nodeLimit;
+    private final long tableBytes;
+
+    /**
+     * Creates a mate finder.
+     *
+     * @param workers the number of worker threads
+     * @param maxMate the longest mate to look for, in moves
+     * @param nodeLimit the most nodes per puzzle, or 0 for no limit
+     * @param tableBytes the node table size of each worker
+     */
+    public MateFinder(int workers, int maxMate, long nodeLimit, long tableBytes) {
+        if (workers < 1) throw new IllegalArgumentException("At least one worker is needed");
+        if (maxMate < 1 || maxMate > MateSolver.MAX_MATE) throw new IllegalArgumentException("Mates of 1 to " + MateSolver.MAX_MATE + " moves can be searched");
+        this.workers = workers;
+        this.maxMate = maxMate;
+        this.nodeLimit = nodeLimit;
+        this.tableBytes = tableBytes;
+    }
+
+    /**
+     * Solves every puzzle and passes the results to a sink in input order.
+     *
+     * @param jobs the puzzles, in order (see {@link BatchAnalyzer#jobs(Path)})
+     * @param sink receives the results, on the calling thread
+     * @return the number of results passed to the sink
+     * @throws InterruptedException if the calling thread is interrupted; the workers are stopped
+     */
+    public long run(Stream<BatchAnalyzer.Job> jobs, Consumer<Result> sink) throws InterruptedException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "mate-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadLocal<MateSolver> solvers = ThreadLocal.withInitial(() -> new MateSolver(new MateTable(tableBytes)));
+        Deque<Future<Result>> pending = new ArrayDeque<>();
+        long written = 0;
+        try (jobs) {
+            Iterator<BatchAnalyzer.Job> iterator = jobs.iterator();
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (iterator.hasNext() && pending.size() < 4 * workers) {
+                    BatchAnalyzer.Job job = iterator.next();
+                    pending.add(pool.submit(() -> solve(job, solvers.get())));
+                }
+                sink.accept(pending.poll().get());
+                written++;
+            }
+            return written;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Mate search failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    } //reading the input is cheap next to solving, so the calling thread reads and writes, and only solving is parallel
+
+    private Result solve(BatchAnalyzer.Job job, MateSolver solver) {
+        String fen = null;
+        try {
+            EngineBoard board = job.load();
+            fen = board.toFen();
+            MateSolver.Solution solution = solver.solve(board, maxMate, nodeLimit);
+            return new Result(job.index(), job.source(), fen, solution, Notation.toSan(board, solution.line()), null);
+        } catch (Exception e) {
+            return new Result(job.index(), job.source(), fen, null, null, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    } //a failure is reported for its own puzzle only, the others are still solved
+
+    /**
+     * Writes the CSV header.
+     *
+     * @param out the output
+     */
+    public static void writeHeader(PrintWriter out) {
+        out.println("index,source,fen,status,mate,line,san,nodes,millis,error");
+    }
+
+    /**
+     * Writes one result as a CSV line.
+     *
+     * @param out the output
+     * @param result the result
+     */
+    public static void write(PrintWriter out, Result result) {
+        MateSolver.Solution solution = result.solution();
+        StringBuilder line = new StringBuilder();
+        if (solution != null) {
+            for (int move : solution.line()) {
+                if (!line.isEmpty()) line.append(' ');
+                line.append(Move.toUci(move));
+            }
+        }
+        out.println(String.join(",",
+                String.valueOf(result.index()), csv(result.source()), csv(result.fen()),
+                solution == null ? "" : solution.status().name().toLowerCase(),
+                solution == null || solution.mateIn() == 0 ? "" : String.valueOf(solution.mateIn()),
+                line.toString(), csv(result.san()),
+                solution == null ? "" : String.valueOf(solution.nodes()),
+                solution == null ? "" : String.valueOf(solution.nanos() / 1_000_000),
+                csv(result.error())));
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     * Results go to the output file or standard output, the summary to standard error.
+     *
+     * @param args the input and the options
+     * @throws IOException if reading the input or writing the output fails
+     * @throws InterruptedException if interrupted while waiting for results
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path input = null;
+        Path output = null;
+        int maxMate = DEFAULT_MATE;
+        long nodes = 0;
+        int workers = Runtime.getRuntime().availableProcessors();
+        long hashMegabytes = MateSolver.DEFAULT_TABLE_BYTES >> 20;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-mate" -> maxMate = Integer.parseInt(args[++i]);
+                case "-nodes" -> nodes = Long.parseLong(args[++i]);
+                case "-workers" -> workers = Integer.parseInt(args[++i]);
+                case "-hash" -> hashMegabytes = Long.parseLong(args[++i]);
+                case "-output" -> output = Path.of(args[++i]);
+                default -> input = Path.of(args[i]);
+            }
+        }
+        if (input == null) {
+            System.out.println("Usage: MateFinder input [-mate N] [-nodes N] [-workers N] [-hash MB] [-output file]");
+            return;
+        }
+        MateFinder finder = new MateFinder(workers, maxMate, nodes, hashMegabytes << 20);
+
+        long start = System.nanoTime();
+        PrintWriter out = output == null ? new PrintWriter(System.out) : new PrintWriter(Files.newBufferedWriter(output));
+        long[] counts = new long[MateSolver.Status.values().length + 1]; //the last one counts errors
+        long count;
+        try (out) {
+            writeHeader(out);
+            count = finder.run(BatchAnalyzer.jobs(input), result -> {
+                counts[result.solution() == null ? counts.length - 1 : result.solution().status().ordinal()]++;
+                write(out, result);
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Solved %d puzzles in %.1f s with %d workers (%.1f puzzles/s): %d mates, %d without mate in %d, %d unknown, %d errors%n",
+                count, seconds, workers, count / seconds, counts[MateSolver.Status.MATE.ordinal()],
+                counts[MateSolver.Status.NO_MATE.ordinal()], maxMate, counts[MateSolver.Status.UNKNOWN.ordinal()], counts[counts.length - 1]);
+    }
+}
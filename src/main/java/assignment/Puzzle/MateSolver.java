@@ -0,0 +1,271 @@
+package assignment.Puzzle;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Engine.MoveGenerator;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+
+import java.util.Arrays;
+
+/**
+ * Proves forced mates with a depth-first proof-number search (df-pn).
+ * <p>
+ * Proof-number search treats the game tree as an AND/OR tree: at the attacker's nodes one move must mate (OR), at
+ * the defender's nodes every reply must lose (AND). Every node carries a proof number, the fewest leaves that still
+ * have to be proven to prove it, and a disproof number, the same for refuting it. The search always expands the most
+ * proving node, the one that settles the root with the least work, so it follows checks and forcing moves into
+ * narrow lines without searching the whole tree to a fixed depth as alpha-beta does. Depth-first with thresholds
+ * (df-pn) stays inside a subtree as long as its numbers are below what its siblings offer, and keeps the numbers of
+ * the nodes it leaves in a {@link MateTable} of fixed size instead of an explicit tree.
+ * <p>
+ * A mate in n is a proof of the root with 2n - 1 plies left: the attacker's nth move must mate. The plies left are
+ * part of every table key, so the search graph has no cycles and repetitions need no special care. Proofs for
+ * n = 1, 2, ... are tried in turn, so the first mate found is the shortest. The forced line is then read from the
+ * proof: the attacker's fastest mating move and the defender's longest resistance, move by move.
+ * <p>
+ * A solver is not thread-safe: it owns its table and move buffers, so concurrent solvers need one instance each.
+ */
+public final class MateSolver {
+    /** Longest mate that can be searched, in moves */
+    public static final int MAX_MATE = 32;
+    /** Default node table size, 8 MiB: puzzle proofs are small, and a small table stays in the caches */
+    public static final long DEFAULT_TABLE_BYTES = 8L << 20;
+
+    private static final int INFINITY = 100_000_000;
+    private static final int MAX_PLIES = 2 * MAX_MATE;
+    private static final long DEPTH_KEY = 0x9E3779B97F4A7C15L;
+
+    private static final LatencyHistogram SOLVE_TIME = Metrics.histogram("mate.solve");
+    private static final Counter NODES = Metrics.counter("mate.nodes");
+    private static final Counter PROVEN = Metrics.counter("mate.proven");
+
+    /** How a search ended */
+    public enum Status {
+        /** A forced mate was found */
+        MATE,
+        /** There is no forced mate within the moves searched */
+        NO_MATE,
+        /** The node limit was reached first */
+        UNKNOWN
+    }
+
+    /**
+     * The outcome of a search.
+     *
+     * @param status whether a mate was proven, refuted or neither
+     * @param mateIn the moves to the shortest mate, or 0 without one
+     * @param line the forced line: the attacker's fastest mate against the longest defense (empty without a mate)
+     * @param nodes the nodes expanded
+     * @param nanos the time spent
+     */
+    public record Solution(Status status, int mateIn, int[] line, long nodes, long nanos) {
+    }
+
+    private final MateTable table;
+    private final int[][] moves = new int[MAX_PLIES + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] proofs = new int[MAX_PLIES + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] disproofs = new int[MAX_PLIES + 1][MoveGenerator.MAX_MOVES];
+    private long nodes;
+    private long nodeLimit;
+
+    /**
+     * Creates a solver with the default table size.
+     */
+    public MateSolver() {
+        this(new MateTable(DEFAULT_TABLE_BYTES));
+    }
+
+    /**
+     * Creates a solver.
+     *
+     * @param table the node table, owned by this solver from now on
+     */
+    public MateSolver(MateTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Looks for the shortest forced mate by the side to move.
+     *
+     * @param board the position (restored before returning)
+     * @param maxMate the longest mate to look for, in moves (at most MAX_MATE)
+     * @param nodeLimit the most nodes to expand, or 0 for no limit
+     * @return the solution
+     */
+    public Solution solve(EngineBoard board, int maxMate, long nodeLimit) {
+        if (maxMate < 1 || maxMate > MAX_MATE) throw new IllegalArgumentException("Mates of 1 to " + MAX_MATE + " moves can be searched");
+        long start = Metrics.start();
+        long begin = System.nanoTime();
+        nodes = 0;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        table.newSearch(); //results must not depend on the puzzles solved before
+        Solution solution = null;
+        for (int mate = 1; mate <= maxMate && solution == null; mate++) {
+            long numbers = prove(board, 2 * mate - 1);
+            if (MateTable.proof(numbers) == 0) {
+                this.nodeLimit = Long.MAX_VALUE; //the line is read from a finished proof, it must not stop halfway
+                solution = new Solution(Status.MATE, mate, line(board, 2 * mate - 1), nodes, 0);
+                PROVEN.increment();
+            } else if (MateTable.disproof(numbers) != 0) {
+                solution = new Solution(Status.UNKNOWN, 0, new int[0], nodes, 0);
+            }
+        }
+        if (solution == null) solution = new Solution(Status.NO_MATE, 0, new int[0], nodes, 0);
+        SOLVE_TIME.stop(start);
+        NODES.add(nodes);
+        return new Solution(solution.status(), solution.mateIn(), solution.line(), nodes, System.nanoTime() - begin);
+    }
+
+    private long prove(EngineBoard board, int plies) {
+        return search(board, plies, true, INFINITY, INFINITY, 0);
+    } //plies is 2n - 1 for a mate in n; thresholds of infinity only return once the root is solved or the node limit is reached
+
+    private long search(EngineBoard board, int plies, boolean attacker, int proofLimit, int disproofLimit, int ply) {
+        long key = key(board, plies);
+        long startNodes = ++nodes;
+        int[] list = moves[ply];
+        int count = MoveGenerator.legal(board, list);
+        if (count == 0) {
+            boolean mated = board.inCheck() && !attacker;
+            return store(key, mated ? 0 : INFINITY, mated ? INFINITY : 0, 1);
+        }
+        if (plies == 0) return store(key, INFINITY, 0, 1); //the defender is still on his feet
+
+        int[] proof = proofs[ply];
+        int[] disproof = disproofs[ply];
+        for (int i = 0; i < count; i++) {
+            board.make(list[i]);
+            long known = table.probe(key(board, plies - 1));
+            if (known != MateTable.MISS) {
+                proof[i] = MateTable.proof(known);
+                disproof[i] = MateTable.disproof(known);
+            } else if (plies == 1) {
+                boolean mate = board.inCheck() && !MoveGenerator.hasLegalMove(board);
+                proof[i] = mate ? 0 : INFINITY;
+                disproof[i] = mate ? INFINITY : 0;
+            } else {
+                proof[i] = attacker && !board.inCheck() ? 2 : 1; //checks are the likeliest mating moves
+                disproof[i] = 1;
+            }
+            board.unmake();
+        }
+
+        while (true) {
+            int nodeProof = attacker ? min(proof, count) : sum(proof, count);
+            int nodeDisproof = attacker ? sum(disproof, count) : min(disproof, count);
+            if (nodeProof >= proofLimit || nodeDisproof >= disproofLimit || nodes >= nodeLimit) {
+                return store(key, nodeProof, nodeDisproof, nodes - startNodes + 1);
+            }
+            int[] own = attacker ? proof : disproof; //the numbers this node minimizes over its children
+            int best = 0;
+            int second = INFINITY;
+            for (int i = 1; i < count; i++) {
+                if (own[i] < own[best]) {
+                    second = own[best];
+                    best = i;
+                } else if (own[i] < second) {
+                    second = own[i];
+                }
+            }
+            int childProofLimit;
+            int childDisproofLimit;
+            if (attacker) {
+                childProofLimit = Math.min(proofLimit, grow(second));
+                childDisproofLimit = add(disproofLimit - nodeDisproof, disproof[best]);
+            } else {
+                childProofLimit = add(proofLimit - nodeProof, proof[best]);
+                childDisproofLimit = Math.min(disproofLimit, grow(second));
+            }
+            board.make(list[best]);
+            long numbers = search(board, plies - 1, !attacker, childProofLimit, childDisproofLimit, ply + 1);
+            board.unmake();
+            proof[best] = MateTable.proof(numbers);
+            disproof[best] = MateTable.disproof(numbers);
+        }
+    } //the last attacker move is resolved without a visit: only a check can mate, and a mate needs no search
+
+    private int[] line(EngineBoard board, int plies) {
+        int[] line = new int[plies];
+        int length = 0;
+        boolean attacker = true;
+        for (int left = plies; left > 0; left--) {
+            int move = attacker ? fastestMate(board, left) : longestDefense(board, left);
+            if (move == 0) break; //the defender is mated
+            line[length++] = move;
+            board.make(move);
+            attacker = !attacker;
+        }
+        for (int i = 0; i < length; i++) board.unmake();
+        return Arrays.copyOf(line, length);
+    }
+
+    private int fastestMate(EngineBoard board, int plies) {
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, list);
+        int proven = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            board.make(list[i]);
+            boolean mates = board.inCheck() && !MoveGenerator.hasLegalMove(board);
+            if (proven == Move.NONE && MateTable.proof(table.probe(key(board, plies - 1))) == 0) proven = list[i];
+            board.unmake();
+            if (mates) return list[i];
+        }
+        if (proven != Move.NONE) return proven;
+        for (int i = 0; i < count; i++) {
+            board.make(list[i]);
+            boolean mates = MateTable.proof(search(board, plies - 1, false, INFINITY, INFINITY, 0)) == 0;
+            board.unmake();
+            if (mates) return list[i];
+        }
+        throw new IllegalStateException("The proof of a mate in " + (plies + 1) / 2 + " was lost");
+    } //a mate at once, else the move of the proof (usually still in the table), which keeps the line within the mate
+
+    private int longestDefense(EngineBoard board, int plies) {
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, list);
+        int longest = Move.NONE;
+        int longestPlies = -1;
+        for (int i = 0; i < count && longestPlies < plies - 1; i++) {
+            board.make(list[i]);
+            int left = 1;
+            while (left < plies - 1 && MateTable.proof(search(board, left, true, INFINITY, INFINITY, 0)) != 0) left += 2;
+            board.unmake();
+            if (left > longestPlies) {
+                longest = list[i];
+                longestPlies = left;
+            }
+        }
+        return longest;
+    } //every reply loses within the plies left, the best one takes longest; none can take longer than all of them
+
+    private long store(long key, int proof, int disproof, long work) {
+        table.store(key, proof, disproof, work);
+        return MateTable.pack(proof, disproof);
+    }
+
+    private static long key(EngineBoard board, int plies) {
+        return board.hash() ^ plies * DEPTH_KEY;
+    }
+
+    private static int grow(int second) {
+        return second >= INFINITY ? INFINITY : second + 1 + (second >> 2);
+    } //the 1 + epsilon trick: searching the best child until it passes the second best by a quarter stops thrashing
+
+    private static int min(int[] values, int count) {
+        int min = INFINITY;
+        for (int i = 0; i < count; i++) min = Math.min(min, values[i]);
+        return min;
+    }
+
+    private static int sum(int[] values, int count) {
+        int sum = 0;
+        for (int i = 0; i < count; i++) sum = add(sum, values[i]);
+        return sum;
+    }
+
+    private static int add(int a, int b) {
+        return (int) Math.min(INFINITY, (long) a + b);
+    }
+}
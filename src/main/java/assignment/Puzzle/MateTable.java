@@ -0,0 +1,141 @@
+package assignment.Puzzle;
+
+import java.util.Arrays;
+
+/**
+ * The node table of a proof-number search: the proof and disproof numbers of every position searched, keyed by
+ * the position's hash and the plies left to mate.
+ * <p>
+ * The table has a fixed size chosen up front, so a solver never uses more memory than it was given however large
+ * the proof tree gets. Entries live in three parallel arrays (key, packed numbers, work), grouped in buckets of two:
+ * a new entry takes the bucket's empty or less valuable slot, where the value of an entry is the number of nodes
+ * searched to obtain it. Cheap leaves are evicted first, while the expensive entries near the root of a proof stay.
+ * Each search has a generation number that is part of every key, so a new search starts on an empty table without
+ * clearing it, and the entries of earlier searches are the first to be replaced.
+ * The table is not thread-safe, every solver has its own.
+ */
+public final class MateTable {
+    /** Returned by {@link #probe(long)} when the position is not in the table */
+    public static final long MISS = -1;
+
+    private static final int ENTRY_BYTES = 21;
+    private static final long GENERATION_KEY = 0xC2B2AE3D27D4EB4FL;
+
+    private final long[] keys;
+    private final long[] numbers;
+    private final int[] work;
+    private final byte[] generations;
+    private final int mask;
+    private int generation;
+
+    /**
+     * Creates a table.
+     *
+     * @param bytes the memory to use, rounded down to a power of two number of entries (at least 1024 entries)
+     */
+    public MateTable(long bytes) {
+        int size = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(1024, bytes / ENTRY_BYTES)));
+        this.keys = new long[size];
+        this.numbers = new long[size];
+        this.work = new int[size];
+        this.generations = new byte[size];
+        this.mask = size - 2; //the first slot of a bucket
+        clear();
+    }
+
+    /**
+     * Looks up a node.
+     *
+     * @param key the node's key
+     * @return the packed proof and disproof numbers (read them with {@link #proof(long)} and {@link #disproof(long)}),
+     * or MISS
+     */
+    public long probe(long key) {
+        key ^= generation * GENERATION_KEY;
+        int slot = (int) key & mask;
+        if (keys[slot] == key) return numbers[slot];
+        if (keys[slot + 1] == key) return numbers[slot + 1];
+        return MISS;
+    }
+
+    /**
+     * Stores the numbers of a node.
+     *
+     * @param key the node's key
+     * @param proof the proof number
+     * @param disproof the disproof number
+     * @param nodes the nodes searched below the node, its value when a slot has to be freed
+     */
+    public void store(long key, int proof, int disproof, long nodes) {
+        key ^= generation * GENERATION_KEY;
+        int slot = (int) key & mask;
+        if (keys[slot] != key && (keys[slot + 1] == key || value(slot + 1) < value(slot))) slot++;
+        keys[slot] = key;
+        numbers[slot] = pack(proof, disproof);
+        work[slot] = (int) Math.min(Integer.MAX_VALUE, nodes);
+        generations[slot] = (byte) generation;
+    }
+
+    /**
+     * Starts a new search: the entries of earlier searches are no longer found and are replaced first.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+        if (generation == 0) clear(); //after 256 searches a key could come back, start from scratch
+    }
+
+    private long value(int slot) {
+        return generations[slot] == (byte) generation ? work[slot] : -1;
+    } //an empty slot or one of an earlier search is always the one taken
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(numbers, MISS);
+        Arrays.fill(work, -1);
+        Arrays.fill(generations, (byte) -1);
+        generation = 0;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the capacity in entries
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Packs proof and disproof numbers into one value.
+     *
+     * @param proof the proof number
+     * @param disproof the disproof number
+     * @return the packed numbers
+     */
+    public static long pack(int proof, int disproof) {
+        return (long) proof << 32 | disproof;
+    }
+
+    /**
+     * Reads the proof number of packed numbers.
+     *
+     * @param numbers the packed numbers
+     * @return the proof number
+     */
+    public static int proof(long numbers) {
+        return (int) (numbers >>> 32);
+    }
+
+    /**
+     * Reads the disproof number of packed numbers.
+     *
+     * @param numbers the packed numbers
+     * @return the disproof number
+     */
+    public static int disproof(long numbers) {
+        return (int) numbers;
+    }
+}
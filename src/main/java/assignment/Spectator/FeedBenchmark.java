@@ -0,0 +1,127 @@
+package assignment.Spectator;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the fan-out of a {@link GameFeed}: one thread publishes random games as fast as it can while the
+ * spectator threads follow them with a {@link SpectatorView} each.
+ * <ul>
+ *     <li>Publishing: the time per move and the bytes per move, snapshots included.</li>
+ *     <li>Spectators: the frames read per second over all of them, how often one fell a ring behind and had to
+ *     skip to a snapshot, how often a view rejected a frame (never, unless frames are lost or corrupted), and
+ *     whether every view ends on the publisher's final position.</li>
+ * </ul>
+ * The games are generated before the clock starts, so only the feed is measured.
+ * <p>
+ * Usage: {@code java assignment.Spectator.FeedBenchmark [spectators] [moves]}
+ */
+public final class FeedBenchmark {
+    private static final int MAX_GAME_PLIES = 200;
+    private static final long IDLE_NANOS = 50_000; //how long an up to date spectator sleeps, as a network writer would
+
+    private FeedBenchmark() {
+    } //only static helpers, no instances
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of spectator threads and of moves to publish
+     * @throws InterruptedException if interrupted while waiting for the spectators
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int spectators = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() - 1;
+        int total = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        List<int[]> games = games(total, new Random(1));
+
+        GameFeed feed = new GameFeed();
+        EngineBoard start = EngineBoard.fromFen(EngineBoard.START_FEN);
+        feed.reset(start, 0);
+        AtomicBoolean done = new AtomicBoolean();
+        long[] frames = new long[spectators];
+        long[] resyncs = new long[spectators];
+        GameFeed.Subscription[] subscriptions = new GameFeed.Subscription[spectators];
+        SpectatorView[] views = new SpectatorView[spectators];
+        Thread[] threads = new Thread[spectators];
+        for (int i = 0; i < spectators; i++) {
+            int index = i;
+            GameFeed.Subscription subscription = feed.subscribe();
+            subscriptions[i] = subscription;
+            views[i] = new SpectatorView();
+            threads[i] = new Thread(() -> {
+                SpectatorView view = views[index];
+                while (true) {
+                    boolean finished = done.get(); //read before polling, so the last frames are not missed
+                    byte[] frame = subscription.poll();
+                    if (frame == null) {
+                        if (finished) return;
+                        LockSupport.parkNanos(IDLE_NANOS);
+                        continue;
+                    }
+                    frames[index]++;
+                    boolean synced = view.isSynced();
+                    if (!view.apply(frame) && synced) resyncs[index]++;
+                }
+            }, "spectator-" + i);
+            threads[i].start();
+        }
+
+        long begin = System.nanoTime();
+        long moves = 0;
+        for (int[] game : games) {
+            feed.reset(start, 0);
+            for (int move : game) {
+                feed.publishMove(move);
+                moves++;
+            }
+        }
+        long publishNanos = System.nanoTime() - begin;
+        done.set(true);
+        for (Thread thread : threads) thread.join();
+        long readNanos = System.nanoTime() - begin;
+
+        EngineBoard last = start.copy();
+        for (int move : games.get(games.size() - 1)) last.make(move);
+        long read = 0;
+        long resynced = 0;
+        long laps = 0;
+        int inSync = 0;
+        for (int i = 0; i < spectators; i++) {
+            read += frames[i];
+            resynced += resyncs[i];
+            laps += subscriptions[i].laps();
+            if (views[i].isSynced() && views[i].board().hash() == last.hash()) inSync++;
+        }
+        System.out.printf("Published %d moves in %d games: %.0f ns per move, %.1f bytes per move (%d frames)%n",
+                moves, games.size(), (double) publishNanos / moves, (double) feed.bytes() / moves, feed.published());
+        System.out.printf("%d spectators read %d frames: %.1f million frames/s, %d skips to a snapshot, %d resyncs, %d of %d on the final position%n",
+                spectators, read, read * 1e3 / readNanos, laps, resynced, inSync, spectators);
+    }
+
+    private static List<int[]> games(int total, Random random) {
+        List<int[]> games = new ArrayList<>();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int played = 0;
+        while (played < total) {
+            EngineBoard board = EngineBoard.fromFen(EngineBoard.START_FEN);
+            int[] game = new int[Math.min(MAX_GAME_PLIES, total - played)];
+            int length = 0;
+            while (length < game.length) {
+                int count = MoveGenerator.legal(board, moves);
+                if (count == 0) break;
+                game[length++] = moves[random.nextInt(count)];
+                board.make(game[length - 1]);
+            }
+            games.add(Arrays.copyOf(game, length));
+            played += length;
+        }
+        return games;
+    }
+}
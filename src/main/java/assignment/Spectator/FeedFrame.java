@@ -0,0 +1,146 @@
+package assignment.Spectator;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Static helpers for the binary frames of a {@link GameFeed}.
+ * Frames are plain byte arrays so they can be handed to any number of spectators, or written to a socket,
+ * without copying. All numbers are big-endian. There are two kinds:
+ * <ul>
+ *     <li>A delta, one move (15 bytes): the kind, the ply after the move (2 bytes), the move as encoded by
+ *     {@link assignment.Engine.Move} (3 bytes), the piece it captured as a {@link assignment.Model.PieceCode}
+ *     (1 byte) and the Zobrist hash of the position after it (8 bytes).</li>
+ *     <li>A snapshot, a whole position (about 70 bytes): the kind, the ply (2 bytes), the hash (8 bytes), the length
+ *     of the FEN (1 byte) and the FEN itself in ASCII, which also carries Chess960 castling rights and the clocks.</li>
+ * </ul>
+ * The ply wraps at 65536; it only has to tell a spectator whether it missed a frame.
+ */
+public final class FeedFrame {
+    /** The kind of a delta frame */
+    public static final byte DELTA = 1;
+    /** The kind of a snapshot frame */
+    public static final byte SNAPSHOT = 2;
+    /** The size of a delta frame in bytes */
+    public static final int DELTA_BYTES = 15;
+
+    private static final int SNAPSHOT_HEADER_BYTES = 12;
+
+    private FeedFrame() {
+    } //only static helpers, no instances
+
+    /**
+     * Encodes a move.
+     *
+     * @param ply the ply after the move
+     * @param move the encoded move
+     * @param captured the piece code of the captured piece, or PieceCode.EMPTY
+     * @param hash the hash of the position after the move
+     * @return the frame
+     */
+    public static byte[] delta(int ply, int move, int captured, long hash) {
+        byte[] frame = new byte[DELTA_BYTES];
+        frame[0] = DELTA;
+        putShort(frame, 1, ply);
+        frame[3] = (byte) (move >>> 16);
+        frame[4] = (byte) (move >>> 8);
+        frame[5] = (byte) move;
+        frame[6] = (byte) captured;
+        putLong(frame, 7, hash);
+        return frame;
+    }
+
+    /**
+     * Encodes a position.
+     *
+     * @param ply the ply of the position in its game
+     * @param fen the position
+     * @param hash the hash of the position
+     * @return the frame
+     */
+    public static byte[] snapshot(int ply, String fen, long hash) {
+        byte[] text = fen.getBytes(StandardCharsets.US_ASCII);
+        if (text.length > 255) throw new IllegalArgumentException("FEN too long: " + fen);
+        byte[] frame = new byte[SNAPSHOT_HEADER_BYTES + text.length];
+        frame[0] = SNAPSHOT;
+        putShort(frame, 1, ply);
+        putLong(frame, 3, hash);
+        frame[11] = (byte) text.length;
+        System.arraycopy(text, 0, frame, SNAPSHOT_HEADER_BYTES, text.length);
+        return frame;
+    }
+
+    /**
+     * Returns the kind of a frame.
+     *
+     * @param frame the frame
+     * @return DELTA or SNAPSHOT
+     */
+    public static byte kind(byte[] frame) {
+        return frame[0];
+    }
+
+    /**
+     * Returns the ply of a frame.
+     *
+     * @param frame the frame
+     * @return the ply after the move or of the position, modulo 65536
+     */
+    public static int ply(byte[] frame) {
+        return (frame[1] & 0xFF) << 8 | frame[2] & 0xFF;
+    }
+
+    /**
+     * Returns the hash of a frame's position.
+     *
+     * @param frame the frame
+     * @return the Zobrist hash after the move, or of the snapshot's position
+     */
+    public static long hash(byte[] frame) {
+        int offset = frame[0] == DELTA ? 7 : 3;
+        long hash = 0;
+        for (int i = 0; i < 8; i++) hash = hash << 8 | frame[offset + i] & 0xFF;
+        return hash;
+    }
+
+    /**
+     * Returns the move of a delta frame.
+     *
+     * @param frame the delta frame
+     * @return the encoded move
+     */
+    public static int move(byte[] frame) {
+        return (frame[3] & 0xFF) << 16 | (frame[4] & 0xFF) << 8 | frame[5] & 0xFF;
+    }
+
+    /**
+     * Returns the captured piece of a delta frame.
+     *
+     * @param frame the delta frame
+     * @return the piece code, or PieceCode.EMPTY
+     */
+    public static int captured(byte[] frame) {
+        return frame[6];
+    }
+
+    /**
+     * Returns the position of a snapshot frame.
+     *
+     * @param frame the snapshot frame
+     * @return the FEN
+     */
+    public static String fen(byte[] frame) {
+        return new String(frame, SNAPSHOT_HEADER_BYTES, frame[11] & 0xFF, StandardCharsets.US_ASCII);
+    }
+
+    private static void putShort(byte[] frame, int offset, int value) {
+        frame[offset] = (byte) (value >>> 8);
+        frame[offset + 1] = (byte) value;
+    }
+
+    private static void putLong(byte[] frame, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            frame[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package assignment.Spectator;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Engine.Notation;
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Model.PieceCode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Streams a game to spectators as compact binary frames (see {@link FeedFrame}).
+ * <p>
+ * Every move is published as a delta of 15 bytes, and every {@link #DEFAULT_SNAPSHOT_INTERVAL} moves, or whenever
+ * the game jumps (a new game, a load, a move taken back), as a full snapshot. A spectator starts at the newest
+ * snapshot and then follows the deltas, so a late joiner never needs the moves before it, and a
+ * {@link SpectatorView} checks every delta against the hash it carries.
+ * <p>
+ * Frames go into a ring buffer of fixed size that one game thread writes and any number of spectator threads read
+ * without locks: a slot holds an immutable frame with its sequence number and is replaced with a single volatile
+ * write. The publisher does not know its spectators, so publishing costs the same for one spectator or thousands,
+ * and a slow spectator never holds the game up. Each {@link Subscription} keeps its own read position; one that
+ * falls a whole ring behind finds a newer frame in its next slot and skips ahead to the newest snapshot.
+ * <p>
+ * The feed keeps its own engine board of the game, which is where the deltas' captured pieces and hashes and the
+ * snapshots' FENs come from. The publishing methods must be called from one thread; subscriptions may be taken and
+ * read from any thread, each subscription by one thread at a time.
+ */
+public final class GameFeed {
+    /** Default ring size in frames */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** Default number of moves between two snapshots */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 32;
+
+    private static final LatencyHistogram PUBLISH_TIME = Metrics.histogram("feed.publish");
+    private static final Counter DELTAS = Metrics.counter("feed.deltas");
+    private static final Counter SNAPSHOTS = Metrics.counter("feed.snapshots");
+    private static final Counter BYTES = Metrics.counter("feed.bytes");
+    private static final Counter LAPPED = Metrics.counter("feed.lapped");
+
+    private record Slot(long sequence, byte[] frame) {
+    }
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final int snapshotInterval;
+    private volatile long published; //the sequence number of the next frame
+    private volatile long lastSnapshot = -1; //the sequence number of the newest snapshot, still in the ring
+
+    private EngineBoard board; //the game as the spectators see it
+    private int ply;
+    private int sinceSnapshot;
+    private long bytes;
+
+    /**
+     * Creates a feed with the default ring size and snapshot interval.
+     * Nothing can be published before the first {@link #reset(EngineBoard, int)}.
+     */
+    public GameFeed() {
+        this(DEFAULT_CAPACITY, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Creates a feed.
+     *
+     * @param capacity the ring size in frames, a power of two more than twice the snapshot interval
+     * @param snapshotInterval the number of moves between two snapshots
+     */
+    public GameFeed(int capacity, int snapshotInterval) {
+        if (snapshotInterval < 1) throw new IllegalArgumentException("The snapshot interval must be positive");
+        if (Integer.bitCount(capacity) != 1 || capacity <= 2 * (snapshotInterval + 1)) {
+            throw new IllegalArgumentException("The capacity must be a power of two above twice the snapshot interval");
+        } //the newest snapshot must stay in the ring while a lapped spectator jumps to it
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Starts the feed over at a position, publishing a snapshot of it.
+     *
+     * @param position the position (copied)
+     * @param ply the ply of the position in its game
+     */
+    public void reset(EngineBoard position, int ply) {
+        this.board = position.copy();
+        this.ply = ply;
+        snapshot();
+    }
+
+    /**
+     * Publishes a move given in coordinate notation.
+     *
+     * @param uci the move, e.g. "e2e4"
+     * @throws InvalidMoveException if the move is not legal in the feed's position
+     */
+    public void publishMove(String uci) throws InvalidMoveException {
+        if (board == null) throw new IllegalStateException("The feed has no position yet");
+        publishMove(Notation.parseUci(board, uci));
+    }
+
+    /**
+     * Publishes a move, followed by a snapshot when one is due.
+     *
+     * @param move the encoded move, legal in the feed's position
+     */
+    public void publishMove(int move) {
+        if (board == null) throw new IllegalStateException("The feed has no position yet");
+        long start = Metrics.start();
+        int captured = captured(board, move);
+        board.make(move);
+        ply++;
+        append(FeedFrame.delta(ply, move, captured, board.hash()));
+        DELTAS.increment();
+        if (++sinceSnapshot >= snapshotInterval) snapshot();
+        PUBLISH_TIME.stop(start);
+    }
+
+    /**
+     * Subscribes a spectator. Its first frame is the newest snapshot.
+     *
+     * @return the new subscription
+     */
+    public Subscription subscribe() {
+        return new Subscription(Math.max(0, lastSnapshot));
+    }
+
+    /**
+     * Returns the number of frames published so far.
+     *
+     * @return the sequence number of the next frame
+     */
+    public long published() {
+        return published;
+    }
+
+    /**
+     * Returns the size of all frames published so far. Must be called from the publishing thread.
+     *
+     * @return the number of bytes
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    private void snapshot() {
+        long sequence = append(FeedFrame.snapshot(ply, board.toFen(), board.hash()));
+        lastSnapshot = sequence;
+        sinceSnapshot = 0;
+        SNAPSHOTS.increment();
+    }
+
+    private long append(byte[] frame) {
+        long sequence = published;
+        slots.set((int) sequence & mask, new Slot(sequence, frame));
+        published = sequence + 1;
+        bytes += frame.length;
+        BYTES.add(frame.length);
+        return sequence;
+    } //one writer, so a plain read-then-write of the volatile sequence is enough
+
+    private static int captured(EngineBoard board, int move) {
+        return switch (Move.kind(move)) {
+            case Move.CASTLING -> PieceCode.EMPTY; //the king "takes" its own rook
+            case Move.EN_PASSANT -> PieceCode.of(PieceCode.PAWN, board.sideToMoveColor().nextColor());
+            default -> board.pieceAt(Move.to(move));
+        };
+    }
+
+    /**
+     * One spectator's read position in the feed.
+     * Reading never blocks and never allocates: the frames returned are the feed's own and must not be changed.
+     */
+    public final class Subscription {
+        private long next;
+        private long laps;
+
+        private Subscription(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Returns the next frame, if one has been published.
+         *
+         * @return the frame, or null if the spectator is up to date
+         */
+        public byte[] poll() {
+            while (true) {
+                Slot slot = slots.get((int) next & mask);
+                if (slot == null || slot.sequence() < next) return null;
+                if (slot.sequence() == next) {
+                    next++;
+                    return slot.frame();
+                }
+                laps++;
+                LAPPED.increment(); //the frame was overwritten before it was read
+                next = lastSnapshot;
+            }
+        }
+
+        /**
+         * Returns how far the spectator is behind.
+         *
+         * @return the number of frames published but not yet read
+         */
+        public long lag() {
+            return published - next;
+        }
+
+        /**
+         * Returns how often the spectator fell a whole ring behind and skipped to the newest snapshot.
+         *
+         * @return the number of skips
+         */
+        public long laps() {
+            return laps;
+        }
+    }
+}
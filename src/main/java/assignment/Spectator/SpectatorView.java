@@ -0,0 +1,87 @@
+package assignment.Spectator;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Model.PieceCode;
+
+/**
+ * A spectator's copy of a game, rebuilt from the frames of a {@link GameFeed}.
+ * <p>
+ * A snapshot sets the position up; every delta after it plays one move. A delta that does not follow the last
+ * frame (a frame was missed), whose captured piece is not the one on the board, or whose hash differs from the
+ * position after the move puts the view out of sync: it drops the position and waits for the next snapshot.
+ * A snapshot of the position the view already has is only checked, not parsed, so following a game costs one
+ * move per delta. A view is not thread-safe.
+ */
+public final class SpectatorView {
+    private EngineBoard board; //null while out of sync
+    private int ply;
+    private int lastCaptured = PieceCode.EMPTY;
+
+    /**
+     * Applies a frame.
+     *
+     * @param frame a delta or snapshot frame
+     * @return true if the view is in sync after the frame
+     */
+    public boolean apply(byte[] frame) {
+        if (FeedFrame.kind(frame) == FeedFrame.SNAPSHOT) {
+            if (board == null || ply != FeedFrame.ply(frame) || board.hash() != FeedFrame.hash(frame)) {
+                board = EngineBoard.fromFen(FeedFrame.fen(frame));
+                ply = FeedFrame.ply(frame);
+            }
+            return true;
+        }
+        if (board == null) return false;
+        int move = FeedFrame.move(frame);
+        int captured = Move.kind(move) == Move.NORMAL || Move.kind(move) == Move.PROMOTION ? board.pieceAt(Move.to(move)) : FeedFrame.captured(frame);
+        if (FeedFrame.ply(frame) != (ply + 1 & 0xFFFF) || captured != FeedFrame.captured(frame)) {
+            board = null;
+            return false;
+        }
+        board.make(move);
+        if (board.hash() != FeedFrame.hash(frame)) {
+            board = null;
+            return false;
+        }
+        ply = ply + 1 & 0xFFFF;
+        lastCaptured = captured;
+        return true;
+    } //castling and en passant captures are not on the destination square, the hash check covers them
+
+    /**
+     * Checks if the view follows the game.
+     *
+     * @return false before the first snapshot and after a frame that did not fit
+     */
+    public boolean isSynced() {
+        return board != null;
+    }
+
+    /**
+     * Returns the position. The board belongs to the view and changes with the next frame.
+     *
+     * @return the current position, or null while out of sync
+     */
+    public EngineBoard board() {
+        return board;
+    }
+
+    /**
+     * Returns the ply of the current position.
+     *
+     * @return the ply modulo 65536
+     */
+    public int ply() {
+        return ply;
+    }
+
+    /**
+     * Returns the piece taken by the last move applied.
+     *
+     * @return the piece code, or PieceCode.EMPTY
+     */
+    public int lastCaptured() {
+        return lastCaptured;
+    }
+}
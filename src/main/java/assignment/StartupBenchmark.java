@@ -0,0 +1,146 @@
+package assignment;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how fast a freshly started game answers, as a pipeline that starts {@link Main} for every request sees it.
+ * Each run starts a JVM on the game, types the first move at once, and takes the time from starting the process to
+ * the first prompt and to the board after the move (the time to first move). The game is started {@code -runs} times
+ * without and with the class-data-sharing archive, and the medians are reported.
+ * <p>
+ * The archive ({@code target/chess.jsa}) is written by {@code mvn package}: it starts the game on the jar with
+ * {@code -XX:ArchiveClassesAtExit} and {@code -train}, which plays a short scripted game, so the classes a game
+ * loads are stored parsed and verified. The game uses it when started as
+ * {@code java -XX:SharedArchiveFile=target/chess.jsa -cp target/chess.jar assignment.Main}; the class path must be
+ * the jar the archive was made from, otherwise the JVM ignores the archive.
+ * <p>
+ * With {@code -max} the benchmark exits with status 1 if the median time to first move (with the archive, if there
+ * is one) is longer, so a build can guard against startup regressions ({@code mvn verify -Pstartup}).
+ * <p>
+ * Usage: {@code java -cp target/chess.jar assignment.StartupBenchmark [-runs N] [-archive file] [-max millis]}
+ */
+public final class StartupBenchmark {
+    /** What the training run types: moves with a capture and castling, an illegal move, analysis, take back and replay */
+    private static final String TRAINING_SCRIPT = String.join("\n",
+            "e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "g8f6", "e1g1", "f6e4", "d2d3", "e4c5", "a1a5", ":a", ":u", ":r", ":h", "");
+    private static final String FIRST_PROMPT = "WHITE's turn";
+    private static final String FIRST_MOVE_PROMPT = "BLACK's turn";
+
+    private StartupBenchmark() {
+    } //only static helpers, no instances
+
+    /**
+     * Runs the benchmark, or the training run.
+     *
+     * @param args the options; {@code -train} plays the scripted game in this JVM, used to write the archive
+     * @throws IOException if a game JVM cannot be started
+     * @throws InterruptedException if interrupted while waiting for a game JVM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("-train")) {
+            System.setIn(new ByteArrayInputStream(TRAINING_SCRIPT.getBytes(StandardCharsets.US_ASCII)));
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Main.main(new String[0]); //exits when the script ends, which is when the JVM writes the archive
+            return;
+        }
+        int runs = 10;
+        Path archive = Path.of("target", "chess.jsa");
+        long maxMillis = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-runs" -> runs = Integer.parseInt(args[++i]);
+                case "-archive" -> archive = Path.of(args[++i]);
+                case "-max" -> maxMillis = Long.parseLong(args[++i]);
+                default -> {
+                    System.out.println("Usage: StartupBenchmark [-runs N] [-archive file] [-max millis]");
+                    return;
+                }
+            }
+        }
+        String classPath = System.getProperty("java.class.path");
+        boolean shared = Files.isRegularFile(archive);
+        if (!shared) System.err.println("No archive at " + archive + " (mvn package writes it), measuring without one");
+        if (shared && Files.isDirectory(Path.of(classPath))) {
+            System.err.println("The class path is a directory, which the archive cannot be used with: run on the jar");
+            shared = false;
+        }
+
+        long[] plain = measure(command(classPath, null), runs);
+        report("without archive", plain);
+        long[] result = plain;
+        if (shared) {
+            result = measure(command(classPath, archive), runs);
+            report("with " + archive, result);
+        }
+        long median = median(result, 1) / 1_000_000;
+        if (maxMillis > 0 && median > maxMillis) {
+            System.err.printf("Time to first move %d ms is over the limit of %d ms%n", median, maxMillis);
+            System.exit(1);
+        }
+    }
+
+    private static List<String> command(String classPath, Path archive) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (archive != null) command.add("-XX:SharedArchiveFile=" + archive);
+        command.addAll(List.of("-cp", classPath, Main.class.getName()));
+        return command;
+    }
+
+    private static long[] measure(List<String> command, int runs) throws IOException, InterruptedException {
+        measureOnce(command); //the first start also pays for reading the files into the page cache
+        long[] times = new long[2 * runs]; //per run: nanoseconds to the first prompt, to the board after the move
+        for (int run = 0; run < runs; run++) {
+            long[] once = measureOnce(command);
+            times[2 * run] = once[0];
+            times[2 * run + 1] = once[1];
+        }
+        return times;
+    }
+
+    private static long[] measureOnce(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        OutputStream input = process.getOutputStream();
+        input.write("e2e4\n".getBytes(StandardCharsets.US_ASCII));
+        input.flush(); //typed at once, as a pipeline does; the game reads it when it is ready
+        long prompt = 0;
+        long moved = 0;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII))) {
+            while (moved == 0) { //the game waits for more input after the move, so no line is read past it
+                String line = output.readLine();
+                if (line == null) break;
+                if (prompt == 0 && line.equals(FIRST_PROMPT)) prompt = System.nanoTime() - start;
+                if (line.equals(FIRST_MOVE_PROMPT)) moved = System.nanoTime() - start;
+            }
+            input.close(); //the end of the input ends the game
+            output.transferTo(Writer.nullWriter());
+        }
+        if (process.waitFor() != 0 || moved == 0) throw new IllegalStateException("The game did not play the first move: " + command);
+        return new long[]{prompt, moved};
+    }
+
+    private static void report(String name, long[] times) {
+        System.out.printf("%-30s first prompt %6.1f ms, first move %6.1f ms (median of %d)%n",
+                name, median(times, 0) / 1e6, median(times, 1) / 1e6, times.length / 2);
+    }
+
+    private static long median(long[] times, int column) {
+        long[] values = new long[times.length / 2];
+        for (int i = 0; i < values.length; i++) values[i] = times[2 * i + column];
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+}
@@ -0,0 +1,449 @@
+package assignment.Storage;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.MoveGenerator;
+import assignment.Model.Board;
+import assignment.Model.Color;
+import assignment.Model.Location;
+import assignment.Model.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * A large array of positions kept outside the Java heap, in fixed-size packed records.
+ * <p>
+ * A record takes {@value #RECORD_SIZE} bytes (pieces at 4 bits per square, Zobrist hash, side to move, castling
+ * rights, en passant square and move counters), so hundreds of millions of positions need no objects and put no
+ * load on the garbage collector. The records live in a {@link MemorySegment}: either plain off-heap memory
+ * ({@link #allocate(long)}) or a memory-mapped file ({@link #create(Path, long)}, {@link #open(Path)}), so a dataset
+ * written once is loaded again without copying or parsing.
+ * <p>
+ * Appends are serialized and publish the new size only after the records are written; reads are lock-free and
+ * may run on any number of threads. Positions are read back field by field, onto a reusable {@link Board}
+ * ({@link #copyTo(long, Board)}) or as {@link Position} snapshots.
+ */
+public final class PositionArena implements Closeable {
+    /** Size of one record in bytes */
+    public static final int RECORD_SIZE = 48;
+
+    private static final long MAGIC = 0x43485341524E4131L; //"CHSARNA1"
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /** Byte offsets inside the header */
+    private static final class HeaderLayout {
+        static final int SIZE = 64;
+        static final int MAGIC = 0;
+        static final int RECORD_SIZE = 8;
+        static final int CAPACITY = 16;
+        static final int COUNT = 24;
+    }
+
+    /** Byte offsets inside a record */
+    private static final int PIECES = 0;
+    private static final int HASH = 32;
+    private static final int SIDE = 40;
+    private static final int CASTLING = 41;
+    private static final int EN_PASSANT = 42;
+    private static final int HALFMOVE = 44;
+    private static final int FULLMOVE = 46;
+
+    private final Arena arena;
+    private final FileChannel channel;
+    private final MemorySegment header;
+    private final MemorySegment records;
+    private final long capacity;
+    private volatile long size;
+
+    private PositionArena(Arena arena, FileChannel channel, MemorySegment memory, long capacity) {
+        this.arena = arena;
+        this.channel = channel;
+        this.header = memory.asSlice(0, HeaderLayout.SIZE);
+        this.records = memory.asSlice(HeaderLayout.SIZE, capacity * RECORD_SIZE);
+        this.capacity = capacity;
+        this.size = header.get(LONG, HeaderLayout.COUNT);
+    }
+
+    /**
+     * Allocates an arena in off-heap memory. The memory is released by {@link #close()}.
+     *
+     * @param capacity the maximum number of positions
+     * @return the empty arena
+     */
+    public static PositionArena allocate(long capacity) {
+        Arena arena = Arena.ofShared();
+        MemorySegment memory = arena.allocate(HeaderLayout.SIZE + capacity * RECORD_SIZE, Long.BYTES);
+        initHeader(memory, capacity);
+        return new PositionArena(arena, null, memory, capacity);
+    }
+
+    /**
+     * Creates a new arena file (replacing any existing one) and maps it into memory.
+     *
+     * @param file the file
+     * @param capacity the maximum number of positions
+     * @return the empty arena
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static PositionArena create(Path file, long capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Arena arena = Arena.ofShared();
+        try {
+            MemorySegment memory = channel.map(FileChannel.MapMode.READ_WRITE, 0, HeaderLayout.SIZE + capacity * RECORD_SIZE, arena);
+            initHeader(memory, capacity);
+            return new PositionArena(arena, channel, memory, capacity);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps an existing arena file into memory. The positions in it are available at once, nothing is read or copied.
+     *
+     * @param file the file written by {@link #create(Path, long)}
+     * @return the arena, with the capacity and positions it was saved with
+     * @throws IOException if the file cannot be mapped or is not an arena file
+     */
+    public static PositionArena open(Path file) throws IOException {
+        if (Files.size(file) < HeaderLayout.SIZE) throw new IOException("Not a position arena: " + file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Arena arena = Arena.ofShared();
+        try {
+            MemorySegment memory = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size(), arena);
+            if (memory.get(LONG, HeaderLayout.MAGIC) != MAGIC || memory.get(INT, HeaderLayout.RECORD_SIZE) != RECORD_SIZE) {
+                throw new IOException("Not a position arena: " + file);
+            }
+            long capacity = memory.get(LONG, HeaderLayout.CAPACITY);
+            long count = memory.get(LONG, HeaderLayout.COUNT);
+            if (capacity < 0 || count < 0 || count > capacity || HeaderLayout.SIZE + capacity * RECORD_SIZE > memory.byteSize()) {
+                throw new IOException("Corrupted position arena header: " + file);
+            }
+            return new PositionArena(arena, channel, memory, capacity);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void initHeader(MemorySegment memory, long capacity) {
+        memory.set(LONG, HeaderLayout.MAGIC, MAGIC);
+        memory.set(INT, HeaderLayout.RECORD_SIZE, RECORD_SIZE);
+        memory.set(LONG, HeaderLayout.CAPACITY, capacity);
+        memory.set(LONG, HeaderLayout.COUNT, 0);
+    }
+
+    /**
+     * Appends a position snapshot.
+     *
+     * @param position the position
+     * @return the index of the new record
+     * @throws IllegalStateException if the arena is full
+     */
+    public synchronized long append(Position position) {
+        long index = reserve(1);
+        write(index, position);
+        publish(index + 1);
+        return index;
+    }
+
+    /**
+     * Appends the position on a board.
+     *
+     * @param board the board
+     * @param sideToMove the player whose turn it is
+     * @return the index of the new record
+     * @throws IllegalStateException if the arena is full
+     */
+    public synchronized long append(Board board, Color sideToMove) {
+        long index = reserve(1);
+        long offset = index * RECORD_SIZE;
+        for (int word = 0; word < 4; word++) {
+            long packed = 0;
+            for (int i = 0; i < 16; i++) {
+                packed |= (long) board.pieceAt(word * 16 + i) << (4 * i);
+            }
+            records.set(LONG, offset + PIECES + word * Long.BYTES, packed);
+        }
+        writeState(offset, board.hash(sideToMove), sideToMove, board.getCastlingRights(), board.enPassantSquare(), 0, 1);
+        publish(index + 1);
+        return index;
+    }
+
+    /**
+     * Appends many positions at once, publishing them together.
+     *
+     * @param positions the positions, in order
+     * @return the index of the first new record
+     * @throws IllegalStateException if they do not all fit
+     */
+    public synchronized long appendAll(Collection<Position> positions) {
+        long first = reserve(positions.size());
+        long index = first;
+        for (Position position : positions) {
+            write(index++, position);
+        }
+        publish(index);
+        return first;
+    }
+
+    private long reserve(int count) {
+        if (size + count > capacity) {
+            throw new IllegalStateException("The position arena is full (" + capacity + " positions).");
+        }
+        return size;
+    }
+
+    private void write(long index, Position position) {
+        long offset = index * RECORD_SIZE;
+        for (int word = 0; word < 4; word++) {
+            long packed = 0;
+            for (int i = 0; i < 16; i++) {
+                packed |= (long) position.pieceAt(word * 16 + i) << (4 * i);
+            }
+            records.set(LONG, offset + PIECES + word * Long.BYTES, packed);
+        }
+        writeState(offset, position.hash(), position.sideToMove(), position.castlingRights(), position.enPassantSquare(),
+                position.halfmoveClock(), position.fullmoveNumber());
+    }
+
+    private void writeState(long offset, long hash, Color sideToMove, int castling, int enPassant, int halfmove, int fullmove) {
+        records.set(LONG, offset + HASH, hash);
+        records.set(ValueLayout.JAVA_BYTE, offset + SIDE, (byte) sideToMove.ordinal());
+        records.set(ValueLayout.JAVA_BYTE, offset + CASTLING, (byte) castling);
+        records.set(ValueLayout.JAVA_BYTE, offset + EN_PASSANT, (byte) (enPassant + 1));
+        records.set(SHORT, offset + HALFMOVE, (short) Math.min(halfmove, Short.MAX_VALUE));
+        records.set(SHORT, offset + FULLMOVE, (short) Math.min(fullmove, Short.MAX_VALUE));
+    } //the en passant square is stored plus one, so that 0 means none
+
+    private void publish(long newSize) {
+        header.set(LONG, HeaderLayout.COUNT, newSize);
+        size = newSize;
+    } //the volatile write makes the records visible to readers that see the new size
+
+    /**
+     * Returns the number of positions in the arena.
+     *
+     * @return the number of records written
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of positions.
+     *
+     * @return the capacity
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the piece code on a square of a stored position.
+     *
+     * @param index the record index
+     * @param square the square index, row * 8 + column
+     * @return the piece code, or PieceCode.EMPTY
+     */
+    public int pieceAt(long index, int square) {
+        long word = records.get(LONG, offset(index) + PIECES + (square >>> 4) * Long.BYTES);
+        return (int) (word >>> (4 * (square & 15))) & 15;
+    }
+
+    /**
+     * Gets the Zobrist hash of a stored position.
+     *
+     * @param index the record index
+     * @return the hash
+     */
+    public long hash(long index) {
+        return records.get(LONG, offset(index) + HASH);
+    }
+
+    /**
+     * Gets the side to move of a stored position.
+     *
+     * @param index the record index
+     * @return the player whose turn it is
+     */
+    public Color sideToMove(long index) {
+        return records.get(ValueLayout.JAVA_BYTE, offset(index) + SIDE) == 0 ? Color.WHITE : Color.BLACK;
+    }
+
+    /**
+     * Gets the castling rights of a stored position.
+     *
+     * @param index the record index
+     * @return a combination of the Zobrist castling flags
+     */
+    public int castlingRights(long index) {
+        return records.get(ValueLayout.JAVA_BYTE, offset(index) + CASTLING);
+    }
+
+    /**
+     * Gets the en passant square of a stored position.
+     *
+     * @param index the record index
+     * @return the square index, or -1
+     */
+    public int enPassantSquare(long index) {
+        return records.get(ValueLayout.JAVA_BYTE, offset(index) + EN_PASSANT) - 1;
+    }
+
+    /**
+     * Gets the halfmove clock of a stored position.
+     *
+     * @param index the record index
+     * @return moves since the last capture or pawn move
+     */
+    public int halfmoveClock(long index) {
+        return records.get(SHORT, offset(index) + HALFMOVE);
+    }
+
+    /**
+     * Gets the move number of a stored position.
+     *
+     * @param index the record index
+     * @return the fullmove number
+     */
+    public int fullmoveNumber(long index) {
+        return records.get(SHORT, offset(index) + FULLMOVE);
+    }
+
+    /**
+     * Sets up a board with a stored position, so code written for boards can work through the arena
+     * without allocating a board per position.
+     *
+     * @param index the record index
+     * @param board the board to overwrite
+     */
+    public void copyTo(long index, Board board) {
+        board.clear();
+        long offset = offset(index);
+        for (int word = 0; word < 4; word++) {
+            long packed = records.get(LONG, offset + PIECES + word * Long.BYTES);
+            for (int i = 0; packed != 0; i++, packed >>>= 4) {
+                if ((packed & 15) != 0) board.setPiece(word * 16 + i, (int) (packed & 15));
+            }
+        }
+        board.setCastlingRights(castlingRights(index));
+        int enPassant = enPassantSquare(index);
+        board.setEnPassantTarget(enPassant < 0 ? null : Location.ofSquare(enPassant));
+    }
+
+    /**
+     * Creates a new board holding a stored position.
+     *
+     * @param index the record index
+     * @return the board
+     */
+    public Board toBoard(long index) {
+        Board board = new Board();
+        copyTo(index, board);
+        return board;
+    }
+
+    /**
+     * Reads a stored position back as an immutable snapshot.
+     *
+     * @param index the record index
+     * @return the position, with no previous position
+     */
+    public Position position(long index) {
+        return Position.of(toBoard(index), sideToMove(index), halfmoveClock(index), fullmoveNumber(index));
+    }
+
+    private long offset(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Position " + index + " is outside the arena (size " + size + ").");
+        }
+        return index * RECORD_SIZE;
+    }
+
+    /**
+     * Writes changes of a file-backed arena to disk. Does nothing for an arena in plain memory.
+     */
+    public void force() {
+        if (channel != null) header.force();
+    }
+
+    /**
+     * Flushes a file-backed arena and releases the memory. Any use of the arena afterwards fails.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!arena.scope().isAlive()) return;
+        if (channel != null) records.force();
+        force();
+        arena.close();
+        if (channel != null) channel.close();
+    }
+
+    /**
+     * Fills an arena file with the positions of random games, maps it again and checks every record,
+     * printing the speed of both passes.
+     * <p>
+     * Usage: {@code java assignment.Storage.PositionArena file [positions] [seed]}
+     *
+     * @param args the file, optionally the number of positions (default 1,000,000) and a random seed
+     * @throws IOException if the file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java assignment.Storage.PositionArena file [positions] [seed]");
+            return;
+        }
+        Path file = Path.of(args[0]);
+        long count = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+
+        long start = System.nanoTime();
+        try (PositionArena arena = create(file, count)) {
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            EngineBoard game = EngineBoard.fromFen(EngineBoard.START_FEN);
+            while (arena.size() < count) {
+                arena.append(game.toBoard(), game.sideToMoveColor());
+                int legal = MoveGenerator.legal(game, moves);
+                if (legal == 0 || game.ply() >= 200) {
+                    game = EngineBoard.fromFen(EngineBoard.START_FEN);
+                } else {
+                    game.make(moves[random.nextInt(legal)]);
+                }
+            }
+        }
+        long writeNanos = System.nanoTime() - start;
+        System.out.printf("Wrote %,d positions (%,d MB) in %d ms%n", count, Files.size(file) >> 20, writeNanos / 1_000_000);
+
+        start = System.nanoTime();
+        long mismatches = 0;
+        try (PositionArena arena = open(file)) {
+            Board board = new Board();
+            for (long index = 0; index < arena.size(); index++) {
+                arena.copyTo(index, board);
+                if (board.hash(arena.sideToMove(index)) != arena.hash(index)) mismatches++;
+            }
+        }
+        long readNanos = System.nanoTime() - start;
+        System.out.printf("Mapped again and checked %,d positions in %d ms (%.0f ns each), %d hash mismatches%n",
+                count, readNanos / 1_000_000, readNanos / (double) count, mismatches);
+        if (mismatches > 0) System.exit(1);
+    }
+}
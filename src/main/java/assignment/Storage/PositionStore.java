@@ -0,0 +1,325 @@
+package assignment.Storage;
+
+import assignment.Model.Board;
+import assignment.Model.Color;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single-file store of saved positions, kept in a memory-mapped file.
+ * The file holds:
+ * <ul>
+ *     <li>A header with the capacity and the number of records written so far</li>
+ *     <li>Fixed-size binary records, one per saved position (hash, packed board, side to move,
+ *     castling rights and their rooks, en passant square, name)</li>
+ *     <li>Two open-addressing hash indexes, one keyed by name and one keyed by position hash</li>
+ * </ul>
+ * Both lookups are O(1) on average and only touch the pages of the index slot and the record,
+ * so opening a saved game does not scan or parse anything.
+ * <p>
+ * Appends are safe from many threads at once: a record number is reserved with an atomic add on the
+ * header, the record is written, and only then is it published into the indexes with a compare-and-set.
+ * Saving under an existing name appends a new record and repoints the name index to it.
+ */
+public final class PositionStore implements Closeable {
+    /** Size of one record in bytes */
+    public static final int RECORD_SIZE = 128;
+    /** Longest name (in UTF-8 bytes) that fits in a record */
+    public static final int MAX_NAME_LENGTH = 64;
+    /** Largest capacity whose record region still fits into a single mapping */
+    public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HeaderLayout.SIZE) / RECORD_SIZE;
+
+    private static final long MAGIC = 0x43485353544F5231L; //"CHSSTOR1"
+
+    /** Byte offsets inside the header */
+    private static final class HeaderLayout {
+        static final int SIZE = 4096;
+        static final int MAGIC = 0;
+        static final int CAPACITY = 8;
+        static final int SLOTS = 12;
+        static final int COUNT = 16;
+    }
+
+    /** Byte offsets inside a record */
+    private static final int HASH = 0;
+    private static final int NAME_HASH = 8;
+    private static final int SQUARES = 16;
+    private static final int SIDE = 48;
+    private static final int CASTLING = 49;
+    private static final int EN_PASSANT = 50;
+    private static final int NAME_LENGTH = 51;
+    private static final int CASTLING_ROOKS = 52;
+    private static final int NAME = 64;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer nameIndex;
+    private final MappedByteBuffer hashIndex;
+    private final int capacity;
+    private final int slotMask;
+
+    private PositionStore(FileChannel channel, int capacity, int slots) throws IOException {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.slotMask = slots - 1;
+        long recordsEnd = HeaderLayout.SIZE + (long) capacity * RECORD_SIZE;
+        long indexSize = (long) slots * Integer.BYTES;
+        header = map(0, HeaderLayout.SIZE);
+        records = map(HeaderLayout.SIZE, (long) capacity * RECORD_SIZE);
+        nameIndex = map(recordsEnd, indexSize);
+        hashIndex = map(recordsEnd + indexSize, indexSize);
+    }
+
+    /**
+     * Opens an existing store, or creates a new one with the given capacity if the file does not exist.
+     *
+     * @param file the store file
+     * @param capacity the maximum number of records of a newly created store (ignored for existing files)
+     * @return the opened store
+     * @throws IOException if the file cannot be mapped or is not a position store
+     */
+    public static PositionStore open(Path file, int capacity) throws IOException {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (exists) {
+                ByteBuffer head = channel.map(FileChannel.MapMode.READ_WRITE, 0, HeaderLayout.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                if (head.getLong(HeaderLayout.MAGIC) != MAGIC) {
+                    throw new IOException(file + " is not a position store");
+                }
+                return new PositionStore(channel, head.getInt(HeaderLayout.CAPACITY), head.getInt(HeaderLayout.SLOTS));
+            }
+            int slots = Integer.highestOneBit(capacity) << 2; //keeps the load factor at or below 50%
+            PositionStore store = new PositionStore(channel, capacity, slots);
+            store.header.putInt(HeaderLayout.CAPACITY, capacity);
+            store.header.putInt(HeaderLayout.SLOTS, slots);
+            store.header.putLong(HeaderLayout.MAGIC, MAGIC);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Saves a position under a name.
+     * If the name already exists, the name now refers to the new position.
+     *
+     * @param name the name of the saved game
+     * @param board the board to save
+     * @param sideToMove the player whose turn it is
+     * @return the record number of the saved position
+     * @throws IOException if the store is full
+     */
+    public int put(String name, Board board, Color sideToMove) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name is longer than " + MAX_NAME_LENGTH + " bytes: " + name);
+        }
+        long id = (long) LONG.getAndAdd(header, HeaderLayout.COUNT, 1L);
+        if (id >= capacity) {
+            LONG.getAndAdd(header, HeaderLayout.COUNT, -1L);
+            throw new IOException("Position store is full (" + capacity + " positions)");
+        }
+        int offset = (int) id * RECORD_SIZE;
+        long hash = board.hash(sideToMove);
+        long nameHash = nameHash(nameBytes);
+
+        records.putLong(offset + HASH, hash);
+        records.putLong(offset + NAME_HASH, nameHash);
+        records.put(offset + SQUARES, pack(board));
+        records.put(offset + SIDE, (byte) sideToMove.ordinal());
+        records.put(offset + CASTLING, (byte) board.getCastlingRights());
+        records.put(offset + EN_PASSANT, (byte) (board.enPassantSquare() + 1));
+        for (int right = 0; right < 4; right++) {
+            records.put(offset + CASTLING_ROOKS + right, (byte) board.castlingRook(right));
+        }
+        records.put(offset + NAME_LENGTH, (byte) nameBytes.length);
+        records.put(offset + NAME, nameBytes);
+
+        publishName((int) id, nameHash, nameBytes);
+        publishHash((int) id, hash);
+        return (int) id;
+    } //the record is fully written before the index CAS makes it visible to readers
+
+    /**
+     * Looks up a position by the name it was saved under.
+     *
+     * @param name the name of the saved game
+     * @return the stored position, or null if there is no position with this name
+     */
+    public StoredPosition get(String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long nameHash = nameHash(nameBytes);
+        for (int slot = slot(nameHash); ; slot = (slot + 1) & slotMask) {
+            int entry = (int) INT.getVolatile(nameIndex, slot * Integer.BYTES);
+            if (entry == 0) return null;
+            if (nameMatches(entry - 1, nameHash, nameBytes)) return read(entry - 1);
+        }
+    }
+
+    /**
+     * Finds every saved game that contains a position.
+     *
+     * @param hash the Zobrist hash of the position (see {@link Board#hash(Color)})
+     * @return the stored positions with this hash, in no particular order
+     */
+    public List<StoredPosition> findByHash(long hash) {
+        List<StoredPosition> found = new ArrayList<>();
+        for (int slot = slot(hash); ; slot = (slot + 1) & slotMask) {
+            int entry = (int) INT.getVolatile(hashIndex, slot * Integer.BYTES);
+            if (entry == 0) return found;
+            if (records.getLong((entry - 1) * RECORD_SIZE + HASH) == hash) found.add(read(entry - 1));
+        }
+    }
+
+    /**
+     * Reads a record by its number.
+     *
+     * @param id the record number, as returned by {@link #put}
+     * @return the stored position
+     */
+    public StoredPosition read(int id) {
+        if (id < 0 || id >= size()) {
+            throw new IndexOutOfBoundsException("No position with id " + id);
+        }
+        int offset = id * RECORD_SIZE;
+        byte[] squares = new byte[64];
+        for (int i = 0; i < 32; i++) {
+            int packed = records.get(offset + SQUARES + i);
+            squares[2 * i] = (byte) (packed & 15);
+            squares[2 * i + 1] = (byte) ((packed >>> 4) & 15);
+        }
+        byte[] nameBytes = new byte[records.get(offset + NAME_LENGTH)];
+        records.get(offset + NAME, nameBytes);
+        Color side = Color.values()[records.get(offset + SIDE)];
+        byte[] castlingRooks = new byte[4];
+        for (int right = 0; right < 4; right++) {
+            castlingRooks[right] = records.get(offset + CASTLING_ROOKS + right);
+        }
+        return new StoredPosition(id, new String(nameBytes, StandardCharsets.UTF_8), records.getLong(offset + HASH), side, squares,
+                records.get(offset + CASTLING), castlingRooks, records.get(offset + EN_PASSANT) - 1);
+    }
+
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return the record count
+     */
+    public int size() {
+        return (int) Math.min((long) LONG.getVolatile(header, HeaderLayout.COUNT), capacity);
+    }
+
+    /**
+     * Returns the maximum number of records this store can hold.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Flushes all written records and index entries to the file.
+     */
+    public void force() {
+        header.force();
+        records.force();
+        nameIndex.force();
+        hashIndex.force();
+    }
+
+    /**
+     * Flushes the store and closes the file.
+     * The mappings stay valid until they are garbage collected, but the store must not be used afterwards.
+     *
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private MappedByteBuffer map(long offset, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private void publishName(int id, long nameHash, byte[] nameBytes) {
+        int slot = slot(nameHash);
+        while (true) {
+            int index = slot * Integer.BYTES;
+            int entry = (int) INT.getVolatile(nameIndex, index);
+            if (entry == 0) {
+                if (INT.compareAndSet(nameIndex, index, 0, id + 1)) return;
+                continue; //another thread took the slot first, look at it again
+            }
+            if (nameMatches(entry - 1, nameHash, nameBytes)) {
+                if (entry - 1 > id || INT.compareAndSet(nameIndex, index, entry, id + 1)) return;
+                continue; //a concurrent save under the same name changed the slot, look at it again
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    } //an existing name is repointed to the newest record, unless an even newer save already won
+
+    private void publishHash(int id, long hash) {
+        for (int slot = slot(hash); ; slot = (slot + 1) & slotMask) {
+            if (INT.compareAndSet(hashIndex, slot * Integer.BYTES, 0, id + 1)) return;
+        }
+    }
+
+    private boolean nameMatches(int id, long nameHash, byte[] nameBytes) {
+        int offset = id * RECORD_SIZE;
+        if (records.getLong(offset + NAME_HASH) != nameHash || records.get(offset + NAME_LENGTH) != nameBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < nameBytes.length; i++) {
+            if (records.get(offset + NAME + i) != nameBytes[i]) return false;
+        }
+        return true;
+    }
+
+    private int slot(long hash) {
+        long mixed = hash * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & slotMask;
+    }
+
+    private static long nameHash(byte[] nameBytes) {
+        long hash = 0xCBF29CE484222325L; //64-bit FNV-1a
+        for (byte b : nameBytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static byte[] pack(Board board) {
+        byte[] packed = new byte[32];
+        for (int square = 0; square < 64; square++) {
+            int code = board.pieceAt(square);
+            packed[square / 2] |= (byte) (square % 2 == 0 ? code : code << 4);
+        }
+        return packed;
+    } //two squares per byte, a piece code always fits in four bits
+}
@@ -0,0 +1,287 @@
+package assignment.Storage;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Pgn;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+import assignment.Model.Board;
+import assignment.Model.Color;
+import assignment.Model.Location;
+import assignment.Model.PieceCode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Checks saved games for damage, one file on load or whole archives at once.
+ * <p>
+ * Every position read from a file must pass the structural rules of {@link #problems(Board, Color)}: one king per
+ * side, no pawns on the first or last rank, no more pieces than promotions allow, the side that just moved not in
+ * check, castling rights that have their king and rook, and an en passant square behind a pawn that just
+ * double-stepped. On top of that each format has its own checks:
+ * <ul>
+ *     <li>Saves ({@code .txt}): everything {@link SavedGame#read(Path)} checks, the checksum line included</li>
+ *     <li>PGN collections ({@code .pgn}): the start position of every game, and that all its moves are legal</li>
+ *     <li>Position stores ({@code .store}): the piece codes and side of every record</li>
+ * </ul>
+ * The command-line tool verifies every such file in a directory tree with a pool of workers and lists the corrupt
+ * ones with their problems, in path order. It exits with status 1 if any file is corrupt, so it can guard a pipeline.
+ * <p>
+ * Usage: {@code java assignment.Storage.SaveValidator input [-workers N]}
+ */
+public final class SaveValidator {
+    private static final LatencyHistogram VERIFY_TIME = Metrics.histogram("save.verify");
+    private static final Counter CORRUPT = Metrics.counter("save.corrupt");
+
+    /**
+     * The outcome of checking one file.
+     *
+     * @param file the file
+     * @param items the games or positions checked in it
+     * @param problems what is wrong with it, empty if nothing is
+     */
+    public record Report(Path file, int items, List<String> problems) {
+        /**
+         * Checks if the file passed.
+         *
+         * @return true if no problem was found
+         */
+        public boolean ok() {
+            return problems.isEmpty();
+        }
+    }
+
+    private SaveValidator() {
+    } //only static helpers, no instances
+
+    /**
+     * Checks the structural rules of a position.
+     *
+     * @param board the position, with its castling rights and en passant square
+     * @param sideToMove the player whose turn it is
+     * @return the rules broken, empty if the position is sound
+     */
+    public static List<String> problems(Board board, Color sideToMove) {
+        List<String> problems = new ArrayList<>();
+        for (Color color : Color.values()) {
+            int kings = board.pieceCount(PieceCode.of(PieceCode.KING, color));
+            if (kings != 1) problems.add(color + " has " + kings + " kings");
+            int pawns = board.pieceCount(PieceCode.of(PieceCode.PAWN, color));
+            int promoted = extra(board, color, PieceCode.KNIGHT, 2) + extra(board, color, PieceCode.BISHOP, 2)
+                    + extra(board, color, PieceCode.ROOK, 2) + extra(board, color, PieceCode.QUEEN, 1);
+            if (pawns + promoted > 8) problems.add(color + " has more pieces than promotions allow");
+        }
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            if ((row == 0 || row == 7) && PieceCode.type(board.pieceAt(square)) == PieceCode.PAWN) {
+                problems.add("A pawn stands on " + Location.ofSquare(square));
+            }
+        }
+        if (board.isInCheck(sideToMove.nextColor())) problems.add(sideToMove.nextColor() + " is in check, but it is " + sideToMove + "'s turn");
+        for (int right = 0; right < 4; right++) {
+            if ((board.getCastlingRights() & 1 << right) == 0) continue;
+            Color color = right < 2 ? Color.WHITE : Color.BLACK;
+            int backRank = color == Color.WHITE ? 0 : 7;
+            int king = board.kingSquare(color);
+            int rook = board.castlingRook(right);
+            if (king < 0 || king >>> 3 != backRank || board.pieceAt(rook) != PieceCode.of(PieceCode.ROOK, color)) {
+                problems.add(color + " may castle " + (right % 2 == 0 ? "king side" : "queen side") + " without its king and rook on the back rank");
+            }
+        }
+        int enPassant = board.enPassantSquare();
+        if (enPassant >= 0) {
+            int row = sideToMove == Color.WHITE ? 5 : 2;
+            int pawn = enPassant + (sideToMove == Color.WHITE ? -8 : 8); //where the pawn that passed over it stands
+            int origin = enPassant + (sideToMove == Color.WHITE ? 8 : -8);
+            if (enPassant >>> 3 != row || board.pieceAt(pawn) != PieceCode.of(PieceCode.PAWN, sideToMove.nextColor())
+                    || board.pieceAt(enPassant) != PieceCode.EMPTY || board.pieceAt(origin) != PieceCode.EMPTY) {
+                problems.add("No pawn can just have passed over the en passant square " + Location.ofSquare(enPassant));
+            }
+        }
+        return problems;
+    }
+
+    private static int extra(Board board, Color color, int type, int start) {
+        return Math.max(0, board.pieceCount(PieceCode.of(type, color)) - start);
+    }
+
+    /**
+     * Checks one file, by its extension.
+     *
+     * @param file a save ({@code .txt}), a PGN collection ({@code .pgn}) or a position store ({@code .store})
+     * @return the report; a file that cannot be read is reported as corrupt
+     */
+    public static Report verify(Path file) {
+        long start = Metrics.start();
+        String name = file.getFileName().toString().toLowerCase();
+        List<String> problems = new ArrayList<>();
+        int items = 0;
+        try {
+            if (name.endsWith(".pgn")) {
+                items = verifyPgn(file, problems);
+            } else if (name.endsWith(".store")) {
+                items = verifyStore(file, problems);
+            } else {
+                SavedGame.read(file); //runs the structural rules on the saved position
+                items = 1;
+            }
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            problems.add(e.getMessage() == null ? e.toString() : e.getMessage());
+        } finally {
+            VERIFY_TIME.stop(start);
+        }
+        if (!problems.isEmpty()) CORRUPT.increment();
+        return new Report(file, items, problems);
+    }
+
+    private static int verifyPgn(Path file, List<String> problems) throws IOException {
+        int games = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file); Stream<Pgn.Game> stream = Pgn.games(reader)) {
+            for (Pgn.Game game : (Iterable<Pgn.Game>) stream::iterator) {
+                games++;
+                try {
+                    EngineBoard start = EngineBoard.fromFen(game.startFen());
+                    for (String problem : problems(start.toBoard(), start.sideToMoveColor())) problems.add("Game " + games + ": " + problem);
+                } catch (IllegalArgumentException e) {
+                    problems.add("Game " + games + ": " + e.getMessage());
+                    continue;
+                }
+                int legal = Pgn.replay(game).length;
+                if (legal < game.moves().size()) {
+                    problems.add("Game " + games + ": move " + (legal + 1) + " (" + game.moves().get(legal) + ") is illegal");
+                }
+            }
+        }
+        return games;
+    }
+
+    private static int verifyStore(Path file, List<String> problems) throws IOException {
+        try (PositionStore store = PositionStore.open(file, 1)) { //the capacity only applies to new stores
+            if (store.size() > store.capacity()) {
+                problems.add("The header counts " + store.size() + " records in room for " + store.capacity());
+                return 0;
+            }
+            for (int id = 0; id < store.size(); id++) {
+                StoredPosition stored;
+                try {
+                    stored = store.read(id);
+                } catch (RuntimeException e) {
+                    problems.add("Record " + id + ": unreadable (" + e + ")");
+                    continue;
+                }
+                boolean codes = true;
+                for (byte code : stored.squares()) codes &= PieceCode.isValid(code);
+                if (!codes) {
+                    problems.add("Record " + id + " (" + stored.name() + "): invalid piece codes");
+                    continue;
+                }
+                for (String problem : problems(stored.toBoard(), stored.sideToMove())) {
+                    problems.add("Record " + id + " (" + stored.name() + "): " + problem);
+                }
+            }
+            return store.size();
+        }
+    }
+
+    /**
+     * Lists the files the tool checks: the file itself, or every save, PGN collection and position store below
+     * a directory, in path order.
+     *
+     * @param input a file or a directory
+     * @return the files to check
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> files(Path input) throws IOException {
+        if (!Files.isDirectory(input)) return List.of(input);
+        try (Stream<Path> files = Files.walk(input)) {
+            return files.filter(Files::isRegularFile).filter(file -> {
+                String name = file.getFileName().toString().toLowerCase();
+                return name.endsWith(".txt") || name.endsWith(".pgn") || name.endsWith(".store");
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * Checks files with a pool of workers and passes the reports to a sink in the order of the files.
+     *
+     * @param files the files
+     * @param workers the number of worker threads
+     * @param sink receives the reports, on the calling thread
+     * @throws InterruptedException if the calling thread is interrupted; the workers are stopped
+     */
+    public static void verifyAll(List<Path> files, int workers, Consumer<Report> sink) throws InterruptedException {
+        if (workers < 1) throw new IllegalArgumentException("At least one worker is needed");
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "verify-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Report>> pending = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < files.size() || !pending.isEmpty()) {
+                while (next < files.size() && pending.size() < 4 * workers) {
+                    Path file = files.get(next++);
+                    pending.add(pool.submit(() -> verify(file)));
+                }
+                sink.accept(pending.poll().get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Verification failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    } //a few reports per worker are pending at most, so an archive of any size streams through
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     * Corrupt files go to standard output, the summary to standard error.
+     *
+     * @param args the input and the options
+     * @throws IOException if the input cannot be listed
+     * @throws InterruptedException if interrupted while waiting for reports
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path input = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-workers" -> workers = Integer.parseInt(args[++i]);
+                default -> input = Path.of(args[i]);
+            }
+        }
+        if (input == null) {
+            System.out.println("Usage: SaveValidator input [-workers N]");
+            return;
+        }
+        long start = System.nanoTime();
+        List<Path> files = files(input);
+        int[] counts = new int[2]; //items checked, corrupt files
+        verifyAll(files, workers, report -> {
+            counts[0] += report.items();
+            if (report.ok()) return;
+            counts[1]++;
+            System.out.println(report.file() + ":");
+            for (String problem : report.problems()) System.out.println("    " + problem);
+        });
+        System.err.printf("Verified %d files (%d games and positions) in %.1f s with %d workers: %d corrupt%n",
+                files.size(), counts[0], (System.nanoTime() - start) / 1e9, workers, counts[1]);
+        if (counts[1] > 0) System.exit(1);
+    }
+}
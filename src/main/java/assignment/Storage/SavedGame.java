@@ -0,0 +1,197 @@
+package assignment.Storage;
+
+import assignment.Engine.EngineBoard;
+import assignment.Exceptions.InvalidLocationException;
+import assignment.Exceptions.InvalidMoveException;
+import assignment.Model.Board;
+import assignment.Model.Castling;
+import assignment.Model.Color;
+import assignment.Model.GameHistory;
+import assignment.Model.Location;
+import assignment.Model.PieceCode;
+import assignment.Model.Position;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A game saved as a text file, the format written by the {@code :s} command.
+ * The file holds:
+ * <ul>
+ *     <li>The current player's turn (WHITE or BLACK)</li>
+ *     <li>The castling rights and the en passant square, e.g. {@code castling,KQkq,enpassant,-} (older saves lack this line);
+ *     Chess960 rooks that are not the outermost ones are named by their file, as in X-FEN (see {@link Castling})</li>
+ *     <li>If moves were played: the position the game started from, {@code start,<FEN>}, and the moves that led from
+ *     it to the saved position, {@code moves,e2e4 e7e5 ...} (older saves lack these lines)</li>
+ *     <li>One line per occupied square: {@code row,column,PieceType,COLOR}; squares without a line are empty
+ *     (older saves also list the empty ones, as {@code row,column,empty,none})</li>
+ *     <li>A checksum of all the lines above it, {@code checksum,<CRC-32C in hex>} (older saves lack this line)</li>
+ * </ul>
+ * The format is meant to be easy to edit by hand. The moves are replayed on reading, so a reloaded game keeps its
+ * move counters and can still claim a draw by repetition; they must lead to the position the square lines describe.
+ * Reading is strict, so a damaged file is refused instead of loaded as a different game: every line must be one of
+ * the above, a square may only be given once, the checksum must match, and the position must pass the structural
+ * rules of {@link SaveValidator#problems(Board, Color)}. A file edited by hand needs its checksum line removed.
+ *
+ * @param board the saved position
+ * @param sideToMove the player whose turn it is
+ * @param history the moves that led to the saved position, starting at the saved position itself if none are known
+ */
+public record SavedGame(Board board, Color sideToMove, GameHistory history) {
+    /** Piece class names as written in save files, indexed by piece type */
+    private static final List<String> TYPE_NAMES = List.of("empty", "Pawn", "Knight", "Bishop", "Rook", "Queen", "King");
+
+    /**
+     * Creates a saved game without a known history.
+     *
+     * @param board the saved position
+     * @param sideToMove the player whose turn it is
+     */
+    public SavedGame(Board board, Color sideToMove) {
+        this(board, sideToMove, new GameHistory(Position.of(board, sideToMove)));
+    }
+
+    /**
+     * Reads a save file and checks it.
+     * Castling rights are inferred from the pieces for older saves without a castling line.
+     *
+     * @param file the save file
+     * @return the saved game
+     * @throws IOException if the file cannot be read, a line cannot be parsed, or the file fails a check
+     */
+    public static SavedGame read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String colorLine = reader.readLine();
+            if (colorLine == null) throw new IOException("The save file is empty.");
+            CRC32C crc = new CRC32C();
+            update(crc, colorLine);
+            Board board = new Board();
+            board.clear();
+            long given = 0; //the squares that have a line, as a bitboard
+            String castling = null;
+            Location enPassant = null;
+            String startFen = null;
+            String[] moves = new String[0];
+            String checksum = null;
+            int lineNumber = 1;
+            try {
+                Color sideToMove = Color.valueOf(colorLine.trim());
+                String line;
+                while ((line = reader.readLine()) != null) { //populate the board with the saved piece positions
+                    lineNumber++;
+                    if (checksum != null) {
+                        if (!line.isBlank()) throw new IllegalArgumentException("Text after the checksum line");
+                        continue;
+                    }
+                    String[] parts = line.split(",");
+                    if (line.isBlank()) {
+                        //blank lines are harmless, hand-edited files often end with some
+                    } else if (parts.length == 2 && parts[0].equals("checksum")) {
+                        checksum = parts[1].trim();
+                    } else if (parts.length == 2 && parts[0].equals("start")) {
+                        startFen = parts[1].trim();
+                    } else if (parts.length == 2 && parts[0].equals("moves")) {
+                        moves = parts[1].isBlank() ? new String[0] : parts[1].trim().split("\\s+");
+                    } else if (parts.length == 4 && parts[0].equals("castling")) {
+                        castling = parts[1]; //read once the pieces are placed, Chess960 rights depend on them
+                        enPassant = parts[3].equals("-") ? null : new Location(parts[3]);
+                    } else if (parts.length == 4) {
+                        Location loc = new Location(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+                        if ((given & 1L << loc.getSquare()) != 0) throw new IllegalArgumentException("Square " + loc + " is given twice");
+                        given |= 1L << loc.getSquare();
+                        int type = TYPE_NAMES.indexOf(parts[2]);
+                        if (type < 0) throw new IllegalArgumentException("Unknown piece type: " + parts[2]);
+                        if (type == PieceCode.EMPTY) {
+                            if (!parts[3].equals("none")) throw new IllegalArgumentException("An empty square has no color: " + parts[3]);
+                        } else {
+                            board.setPiece(loc.getSquare(), PieceCode.of(type, Color.valueOf(parts[3])));
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Not a line of a save: " + line);
+                    }
+                    if (checksum == null) update(crc, line);
+                }
+                if (checksum != null && !checksum.equalsIgnoreCase(Long.toHexString(crc.getValue()))) {
+                    throw new IOException("The checksum does not match, the file was changed or damaged (remove the checksum line after editing it by hand)");
+                }
+                if (castling == null) {
+                    board.inferCastlingRights(); //older saves have no castling line
+                } else {
+                    board.setCastlingText(castling);
+                }
+                board.setEnPassantTarget(enPassant);
+                List<String> problems = SaveValidator.problems(board, sideToMove);
+                if (!problems.isEmpty()) throw new IOException("Not a valid position: " + String.join("; ", problems));
+                if (startFen == null) return new SavedGame(board, sideToMove);
+                return new SavedGame(board, sideToMove, replay(startFen, moves, Position.of(board, sideToMove)));
+            } catch (InvalidLocationException | IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void update(CRC32C crc, String line) {
+        crc.update(line.getBytes(StandardCharsets.UTF_8));
+        crc.update('\n');
+    } //line endings are left out, so a file keeps its checksum when it moves between Windows and Unix
+
+    /**
+     * Rebuilds the history of a save by replaying its moves from its start position.
+     *
+     * @param startFen the position the game started from
+     * @param moves the moves in coordinate notation
+     * @param saved the position the square lines describe
+     * @return the history, at the saved position
+     * @throws IOException if a move is illegal or the moves do not lead to the saved position
+     */
+    private static GameHistory replay(String startFen, String[] moves, Position saved) throws IOException {
+        EngineBoard start = EngineBoard.fromFen(startFen);
+        GameHistory history = new GameHistory(Position.of(start.toBoard(), start.sideToMoveColor(), start.halfmoveClock(), start.fullmoveNumber()));
+        for (String move : moves) {
+            try {
+                if (move.length() != 4 && move.length() != 5) throw new InvalidMoveException("Not a move: " + move);
+                Location from = new Location(move.substring(0, 2));
+                Location to = new Location(move.substring(2, 4));
+                char promotion = move.length() == 5 ? Character.toUpperCase(move.charAt(4)) : 'Q';
+                history.play(move, history.current().play(from, to, promotion));
+            } catch (InvalidLocationException | InvalidMoveException e) {
+                throw new IOException("Move " + (history.ply() + 1) + " of the history: " + e.getMessage(), e);
+            }
+        }
+        if (!history.current().equals(saved)) throw new IOException("The move history does not lead to the saved position");
+        return history;
+    }
+
+    /**
+     * Writes this game to a save file, replacing it if it exists.
+     *
+     * @param file the save file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        //first line in the saved file is the current player's turn, the second one the castling rights and en passant square
+        text.append(sideToMove.name()).append('\n');
+        Location enPassant = board.getEnPassantTarget();
+        text.append("castling,").append(board.castlingText()).append(",enpassant,").append(enPassant == null ? "-" : enPassant).append('\n');
+        if (history.ply() > 0) {
+            text.append("start,").append(EngineBoard.of(history.start()).toFen()).append('\n');
+            text.append("moves,").append(String.join(" ", history.moves())).append('\n');
+        }
+        for (int square = 0; square < 64; square++) {
+            int code = board.pieceAt(square);
+            if (code == PieceCode.EMPTY) continue; //squares without a line are empty
+            text.append(square >>> 3).append(',').append(square & 7).append(',').append(TYPE_NAMES.get(PieceCode.type(code)))
+                    .append(',').append(PieceCode.color(code)).append('\n');
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(text.toString().getBytes(StandardCharsets.UTF_8));
+        text.append("checksum,").append(Long.toHexString(crc.getValue())).append('\n');
+        Files.writeString(file, text);
+    }
+}
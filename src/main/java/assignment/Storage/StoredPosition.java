@@ -0,0 +1,41 @@
+package assignment.Storage;
+
+import assignment.Model.Board;
+import assignment.Model.Color;
+import assignment.Model.Location;
+import assignment.Model.PieceCode;
+
+/**
+ * A single position read from a {@link PositionStore}.
+ *
+ * @param id the record number inside the store
+ * @param name the name the position was saved under
+ * @param hash the Zobrist hash of the position
+ * @param sideToMove the player whose turn it is
+ * @param squares the piece code of every square, indexed by row * 8 + column (see {@link PieceCode})
+ * @param castlingRights a combination of the Zobrist castling flags
+ * @param castlingRooks the starting square of the rook each castling right castles with (see {@link Board#castlingRook})
+ * @param enPassantSquare the square the last double-stepping pawn passed over, or -1
+ */
+public record StoredPosition(int id, String name, long hash, Color sideToMove, byte[] squares,
+                             int castlingRights, byte[] castlingRooks, int enPassantSquare) {
+
+    /**
+     * Rebuilds a playable board from the stored record.
+     *
+     * @return a new board holding the stored position
+     */
+    public Board toBoard() {
+        Board board = new Board();
+        board.clear();
+        for (int square = 0; square < 64; square++) {
+            board.setPiece(square, squares[square]);
+        }
+        board.setCastlingRights(castlingRights);
+        for (int right = 0; right < 4; right++) {
+            board.setCastlingRook(right, castlingRooks[right]);
+        }
+        board.setEnPassantTarget(enPassantSquare < 0 ? null : Location.ofSquare(enPassantSquare));
+        return board;
+    }
+}
@@ -0,0 +1,239 @@
+package assignment.Tablebase;
+
+import assignment.Engine.EngineBoard;
+import assignment.Model.PieceCode;
+
+import java.util.Arrays;
+
+/**
+ * The material of an endgame table, such as "KQK" or "KRKP", and the indexing of its positions.
+ * A signature lists the white king and white pieces, then the black king and black pieces, strongest first.
+ * Each piece gets a slot; a position is indexed by the square of every slot and the side to move:
+ * {@code index = ((sq[0] * 64 + sq[1]) * 64 + ...) * 2 + side}.
+ * <p>
+ * Tables are only built for the canonical orientation, in which white has the stronger material.
+ * Positions of the mirrored material ("KKQ") are probed by swapping colors and flipping the board vertically.
+ */
+public final class Material {
+    /** Most pieces (kings included) a table can have */
+    public static final int MAX_PIECES = 4;
+
+    private static final String ORDER = "KQRBNP";
+
+    private final String signature;
+    private final int[] codes;
+
+    private Material(String signature, int[] codes) {
+        this.signature = signature;
+        this.codes = codes;
+    }
+
+    /**
+     * Parses a material signature.
+     *
+     * @param signature e.g. "KQK", "KBNK" or "KRKP"
+     * @return the material
+     * @throws IllegalArgumentException if the signature is malformed or has too many pieces
+     */
+    public static Material of(String signature) {
+        String sig = signature.trim().toUpperCase();
+        int second = sig.indexOf('K', 1);
+        if (!sig.startsWith("K") || second < 0 || sig.indexOf('K', second + 1) >= 0) {
+            throw new IllegalArgumentException("A signature needs exactly one king per side: " + signature);
+        }
+        if (sig.length() > MAX_PIECES) {
+            throw new IllegalArgumentException("Tables are limited to " + MAX_PIECES + " pieces: " + signature);
+        }
+        int[] codes = new int[sig.length()];
+        for (int i = 0; i < sig.length(); i++) {
+            int type = PieceCode.type(PieceCode.fromSymbol(sig.charAt(i)));
+            if (ORDER.indexOf(sig.charAt(i)) < 0) throw new IllegalArgumentException("Unknown piece '" + sig.charAt(i) + "' in " + signature);
+            codes[i] = i < second ? type : type | PieceCode.BLACK;
+        }
+        return fromCodes(codes);
+    }
+
+    /**
+     * Builds the material of a position.
+     *
+     * @param board the position
+     * @return the material, or null if the position has more than MAX_PIECES pieces
+     */
+    public static Material of(EngineBoard board) {
+        if (Long.bitCount(board.occupied()) > MAX_PIECES) return null;
+        int[] codes = new int[Long.bitCount(board.occupied())];
+        int n = 0;
+        for (long occupied = board.occupied(); occupied != 0; occupied &= occupied - 1) {
+            codes[n++] = board.pieceAt(Long.numberOfTrailingZeros(occupied));
+        }
+        return fromCodes(codes);
+    }
+
+    /**
+     * Builds a material from piece codes in any order.
+     *
+     * @param codes the piece codes, one per piece
+     * @return the material, with its slots in signature order
+     */
+    static Material fromCodes(int[] codes) {
+        Integer[] sorted = Arrays.stream(codes).boxed().toArray(Integer[]::new);
+        Arrays.sort(sorted, (a, b) -> (a & PieceCode.BLACK) != (b & PieceCode.BLACK)
+                ? (a & PieceCode.BLACK) - (b & PieceCode.BLACK)
+                : ORDER.indexOf(PieceCode.symbol(a & 7)) - ORDER.indexOf(PieceCode.symbol(b & 7)));
+        int[] ordered = Arrays.stream(sorted).mapToInt(Integer::intValue).toArray();
+        StringBuilder sb = new StringBuilder();
+        for (int code : ordered) {
+            sb.append(PieceCode.symbol(code & 7));
+        }
+        return new Material(sb.toString(), ordered);
+    } //sorts white before black, and each side king first, then queen ... pawn
+
+    /**
+     * Returns the material with colors swapped ("KQK" becomes "KKQ").
+     *
+     * @return the mirrored material
+     */
+    public Material flipped() {
+        int[] flipped = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            flipped[i] = codes[i] ^ PieceCode.BLACK;
+        }
+        return fromCodes(flipped);
+    }
+
+    /**
+     * Checks if this is the orientation tables are built for: white has at least as much material as black.
+     *
+     * @return true if tables of this material are stored as is
+     */
+    public boolean isCanonical() {
+        String white = signature.substring(1, blackKingSlot());
+        String black = signature.substring(blackKingSlot() + 1);
+        if (white.length() != black.length()) return white.length() > black.length();
+        for (int i = 0; i < white.length(); i++) {
+            int w = ORDER.indexOf(white.charAt(i));
+            int b = ORDER.indexOf(black.charAt(i));
+            if (w != b) return w < b;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the canonical orientation of this material.
+     *
+     * @return this material if it is canonical, otherwise the flipped one
+     */
+    public Material canonical() {
+        return isCanonical() ? this : flipped();
+    }
+
+    /**
+     * Checks if both sides have pawns. Such tables would need en passant rights in their index and are not supported.
+     *
+     * @return true if both white and black have at least one pawn
+     */
+    public boolean hasPawnsOnBothSides() {
+        boolean white = false;
+        boolean black = false;
+        for (int code : codes) {
+            if (code == PieceCode.PAWN) white = true;
+            if (code == (PieceCode.PAWN | PieceCode.BLACK)) black = true;
+        }
+        return white && black;
+    }
+
+    /**
+     * Returns the signature, e.g. "KQK".
+     *
+     * @return the signature
+     */
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * Returns the number of pieces, kings included.
+     *
+     * @return the piece count
+     */
+    public int pieceCount() {
+        return codes.length;
+    }
+
+    /**
+     * Returns the piece code of a slot.
+     *
+     * @param slot the slot number
+     * @return the piece code
+     */
+    public int code(int slot) {
+        return codes[slot];
+    }
+
+    /**
+     * Returns the slot of the black king.
+     *
+     * @return the slot number
+     */
+    public int blackKingSlot() {
+        for (int i = 1; i < codes.length; i++) {
+            if (codes[i] == (PieceCode.KING | PieceCode.BLACK)) return i;
+        }
+        throw new IllegalStateException("No black king in " + signature);
+    }
+
+    /**
+     * Returns the number of positions in a table of this material, legal or not.
+     *
+     * @return 64 to the power of the piece count, times two sides to move
+     */
+    public long size() {
+        return (1L << (6 * codes.length)) * 2;
+    }
+
+    /**
+     * Computes the index of a position.
+     *
+     * @param squares the square of each slot
+     * @param side the side to move (WHITE or BLACK)
+     * @return the index
+     */
+    public long index(int[] squares, int side) {
+        long index = 0;
+        for (int i = 0; i < codes.length; i++) {
+            index = (index << 6) | squares[i];
+        }
+        return (index << 1) | side;
+    }
+
+    /**
+     * Decodes the slot squares of an index.
+     *
+     * @param index the index
+     * @param squares the array to write the square of each slot into
+     * @return the side to move
+     */
+    public int decode(long index, int[] squares) {
+        long rest = index >>> 1;
+        for (int i = codes.length - 1; i >= 0; i--) {
+            squares[i] = (int) (rest & 63);
+            rest >>>= 6;
+        }
+        return (int) (index & 1);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Material other && signature.equals(other.signature) && Arrays.equals(codes, other.codes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(codes);
+    }
+
+    @Override
+    public String toString() {
+        return signature;
+    }
+}
@@ -0,0 +1,166 @@
+package assignment.Tablebase;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Move;
+import assignment.Engine.MoveGenerator;
+import assignment.Model.PieceCode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Probes generated endgame tables for perfect play.
+ * Tables are looked up in a directory ({@code KQK.tb}, {@code KRKP.tb}, ...) and mapped the first time a position
+ * of their material is probed. Probing is thread-safe.
+ * <p>
+ * Tables do not include castling or en passant rights, so positions that still have them are not probed.
+ * Distances are distance-to-mate in plies and ignore the fifty-move rule.
+ */
+public final class Tablebase implements Closeable {
+    /** Result class of a position won by the side to move */
+    public static final int WIN = 1;
+    /** Result class of a drawn position */
+    public static final int DRAW = 0;
+    /** Result class of a position lost by the side to move */
+    public static final int LOSS = -1;
+
+    /**
+     * The result of probing a position.
+     *
+     * @param wdl WIN, DRAW or LOSS, from the point of view of the side to move
+     * @param dtm the distance to mate in plies for won and lost positions, 0 for draws
+     */
+    public record Result(int wdl, int dtm) {
+    }
+
+    private final Path directory;
+    private final Map<String, Optional<TablebaseFile>> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a prober for the tables in a directory.
+     *
+     * @param directory the directory holding the table files
+     */
+    public Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Probes a position.
+     *
+     * @param board the position
+     * @return the result, or null if no table covers this position
+     */
+    public Result probe(EngineBoard board) {
+        if (board.castlingRights() != 0 || board.enPassantSquare() >= 0) return null;
+        Material material = Material.of(board);
+        if (material == null) return null;
+        if (material.pieceCount() == 2) return new Result(DRAW, 0);
+        Material canonical = material.canonical();
+        boolean flip = !material.isCanonical();
+        TablebaseFile table = table(canonical);
+        if (table == null) return null;
+
+        int[] squares = new int[canonical.pieceCount()];
+        long used = 0;
+        for (int slot = 0; slot < squares.length; slot++) {
+            int code = flip ? canonical.code(slot) ^ PieceCode.BLACK : canonical.code(slot);
+            long candidates = board.pieces(code) & ~used;
+            int square = Long.numberOfTrailingZeros(candidates);
+            used |= 1L << square;
+            squares[slot] = flip ? square ^ 56 : square;
+        }
+        int side = flip ? board.sideToMove() ^ 1 : board.sideToMove();
+        return toResult(table.value(canonical.index(squares, side)));
+    } //a position of the mirrored material is looked up with colors swapped and the board flipped vertically
+
+    /**
+     * Finds the move that keeps the best result: the fastest mate when winning,
+     * a drawing move when drawn, and the longest resistance when losing.
+     *
+     * @param board the position (left unchanged)
+     * @return the encoded move, or Move.NONE if the position is not covered or has no legal moves
+     */
+    public int bestMove(EngineBoard board) {
+        if (probe(board) == null) return Move.NONE;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        int best = Move.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            Result reply = probe(board);
+            board.unmake();
+            if (reply == null) continue;
+            int score = switch (reply.wdl()) {
+                case LOSS -> 1000 - reply.dtm(); //the opponent is lost, mate as fast as possible
+                case WIN -> -1000 + reply.dtm(); //the opponent wins, delay the mate as long as possible
+                default -> 0;
+            };
+            if (score > bestScore) {
+                bestScore = score;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the mapped table of a canonical material, opening it on first use.
+     *
+     * @param material the canonical material
+     * @return the table, or null if its file does not exist
+     */
+    TablebaseFile table(Material material) {
+        return tables.computeIfAbsent(material.signature(), signature -> {
+            Path file = directory.resolve(signature + ".tb");
+            if (!Files.exists(file)) return Optional.empty();
+            try {
+                return Optional.of(TablebaseFile.open(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Forgets a material whose file was missing, so that a newly generated file is picked up.
+     *
+     * @param material the material
+     */
+    void refresh(Material material) {
+        tables.remove(material.signature(), Optional.empty());
+    }
+
+    /**
+     * Converts a signed table value to a result.
+     *
+     * @param value the value (see {@link TablebaseFile})
+     * @return the result, or null for an illegal position
+     */
+    static Result toResult(byte value) {
+        if (value == TablebaseFile.ILLEGAL) return null;
+        if (value > 0) return new Result(WIN, value);
+        if (value < 0) return new Result(LOSS, -value - 1);
+        return new Result(DRAW, 0);
+    }
+
+    /**
+     * Closes all mapped tables.
+     *
+     * @throws IOException if closing a table fails
+     */
+    @Override
+    public void close() throws IOException {
+        for (Optional<TablebaseFile> table : tables.values()) {
+            if (table.isPresent()) table.get().close();
+        }
+        tables.clear();
+    }
+}
@@ -0,0 +1,150 @@
+package assignment.Tablebase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A generated endgame table stored in a memory-mapped file.
+ * The file has a small header, then a bit-packed win/draw/loss array (2 bits per position),
+ * then a distance-to-mate array (1 byte per position, in plies). Probing a position reads
+ * two bytes of the mapping, so tables are never loaded into the heap.
+ * <p>
+ * Internally values are single signed bytes: 0 for a draw, d &gt; 0 for a win in d plies,
+ * -(d + 1) for a loss in d plies (so -1 means the side to move is checkmated), and ILLEGAL for positions
+ * that cannot occur.
+ */
+public final class TablebaseFile implements Closeable {
+    /** Value of a position that cannot occur (overlapping pieces, side not to move in check, ...) */
+    public static final byte ILLEGAL = Byte.MIN_VALUE;
+
+    static final int WDL_DRAW = 0;
+    static final int WDL_WIN = 1;
+    static final int WDL_LOSS = 2;
+    static final int WDL_ILLEGAL = 3;
+
+    private static final long MAGIC = 0x4348544230303031L; //"CHTB0001"
+    private static final int HEADER_SIZE = 32;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer wdl;
+    private final MappedByteBuffer dtm;
+    private final Material material;
+
+    private TablebaseFile(FileChannel channel, Material material) throws IOException {
+        this.channel = channel;
+        this.material = material;
+        long size = material.size();
+        wdl = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size / 4);
+        dtm = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + size / 4, size);
+    }
+
+    /**
+     * Opens a table file.
+     *
+     * @param file the table file
+     * @return the opened table
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static TablebaseFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getLong(0) != MAGIC) throw new IOException(file + " is not an endgame table");
+            byte[] signature = new byte[header.get(8)];
+            header.get(9, signature);
+            Material material = Material.of(new String(signature, StandardCharsets.US_ASCII));
+            if (channel.size() != HEADER_SIZE + material.size() / 4 + material.size()) {
+                throw new IOException(file + " is truncated");
+            }
+            return new TablebaseFile(channel, material);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a table file. The file is written under a temporary name and moved into place,
+     * so a crashed generator never leaves a half-written table behind.
+     *
+     * @param file the file to write
+     * @param material the material of the table
+     * @param values the value of every position, indexed like {@link Material#index}
+     * @throws IOException if writing fails
+     */
+    static void write(Path file, Material material, byte[] values) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer.wrap(header).putLong(MAGIC).put((byte) material.signature().length())
+                .put(material.signature().getBytes(StandardCharsets.US_ASCII));
+        byte[] packed = new byte[values.length / 4];
+        byte[] distances = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int value = values[i];
+            int wdl = value == ILLEGAL ? WDL_ILLEGAL : value > 0 ? WDL_WIN : value < 0 ? WDL_LOSS : WDL_DRAW;
+            packed[i >>> 2] |= (byte) (wdl << ((i & 3) * 2));
+            distances[i] = (byte) (wdl == WDL_WIN ? value : wdl == WDL_LOSS ? -value - 1 : 0);
+        }
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            out.write(header);
+            out.write(packed);
+            out.write(distances);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the material of this table.
+     *
+     * @return the material
+     */
+    public Material material() {
+        return material;
+    }
+
+    /**
+     * Returns the win/draw/loss class of a position.
+     *
+     * @param index the position index
+     * @return WDL_WIN, WDL_DRAW, WDL_LOSS or WDL_ILLEGAL
+     */
+    int wdl(long index) {
+        return (wdl.get((int) (index >>> 2)) >>> ((index & 3) * 2)) & 3;
+    }
+
+    /**
+     * Returns the signed value of a position (see the class description).
+     *
+     * @param index the position index
+     * @return the value
+     */
+    byte value(long index) {
+        int distance = dtm.get((int) index) & 0xFF;
+        return switch (wdl(index)) {
+            case WDL_WIN -> (byte) distance;
+            case WDL_LOSS -> (byte) (-distance - 1);
+            case WDL_ILLEGAL -> ILLEGAL;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Closes the table file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
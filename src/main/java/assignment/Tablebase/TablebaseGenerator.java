@@ -0,0 +1,439 @@
+package assignment.Tablebase;
+
+import assignment.Engine.Attacks;
+import assignment.Engine.EngineBoard;
+import assignment.Model.PieceCode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Generates endgame tables by retrograde analysis.
+ * <p>
+ * Generation runs in two phases, both split over all cores:
+ * <ol>
+ *     <li>A forward pass over every index marks illegal positions and checkmates, counts each position's legal moves
+ *     that stay inside the table, and resolves moves that leave it (captures and promotions) by probing the smaller
+ *     tables, which are generated first.</li>
+ *     <li>A backward pass walks outward from the mates one ply at a time. Every predecessor of a lost position is won;
+ *     a predecessor of a won position loses one more of its escapes, and is lost once none are left.</li>
+ * </ol>
+ * Positions never resolved are draws. Tables have at most {@link Material#MAX_PIECES} pieces and no castling or
+ * en passant rights; material with pawns on both sides is rejected because en passant would matter.
+ * <p>
+ * Usage: {@code java assignment.Tablebase.TablebaseGenerator directory KQK KRK KPK KBNK ...}
+ */
+public final class TablebaseGenerator {
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    /** Deepest distance to mate a table value can hold */
+    private static final int MAX_DEPTH = 126;
+    private static final int[] PROMOTIONS = {PieceCode.QUEEN, PieceCode.ROOK, PieceCode.BISHOP, PieceCode.KNIGHT};
+    private static final int CHUNK = 1 << 16;
+
+    private final Path directory;
+    private final Tablebase tablebase;
+
+    /**
+     * Creates a generator writing to a directory.
+     *
+     * @param directory the directory for the table files (also searched for existing smaller tables)
+     */
+    public TablebaseGenerator(Path directory) {
+        this.directory = directory;
+        this.tablebase = new Tablebase(directory);
+    }
+
+    /**
+     * Generates the table of a material, and every smaller table it depends on, unless they already exist.
+     *
+     * @param signature the material, e.g. "KRK"
+     * @return the table file
+     * @throws IOException if writing a table fails
+     */
+    public Path generate(String signature) throws IOException {
+        return generate(Material.of(signature));
+    }
+
+    /**
+     * Generates the table of a material, and every smaller table it depends on, unless they already exist.
+     *
+     * @param material the material
+     * @return the table file
+     * @throws IOException if writing a table fails
+     */
+    public Path generate(Material material) throws IOException {
+        Material canonical = material.canonical();
+        if (canonical.hasPawnsOnBothSides()) {
+            throw new IllegalArgumentException("Tables with pawns on both sides are not supported: " + canonical);
+        }
+        Path file = directory.resolve(canonical.signature() + ".tb");
+        if (Files.exists(file)) return file;
+        Files.createDirectories(directory);
+        Job job = new Job(canonical);
+        TablebaseFile.write(file, canonical, job.run());
+        tablebase.refresh(canonical);
+        return file;
+    }
+
+    /** Where a capture or promotion leads: the smaller table and how the slots map into it */
+    private record Transition(Material target, TablebaseFile table, boolean flip, int[] sourceSlots) {
+        byte value(int[] squares, int side) {
+            if (table == null) return 0; //only the kings are left
+            int[] mapped = new int[sourceSlots.length];
+            for (int k = 0; k < mapped.length; k++) {
+                mapped[k] = flip ? squares[sourceSlots[k]] ^ 56 : squares[sourceSlots[k]];
+            }
+            return table.value(target.index(mapped, flip ? side ^ 1 : side));
+        }
+    }
+
+    /** A growable list of ints, used for frontiers and buckets */
+    private static final class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) add(other.items[i]);
+        }
+    }
+
+    /** The generation of one table */
+    private final class Job {
+        final Material material;
+        final int n;
+        final int size;
+        final int blackKing;
+        final byte[] value;
+        final byte[] remaining;
+        final byte[] extLoss;
+        final IntList[] winBuckets = new IntList[MAX_DEPTH + 2];
+        final IntList[] lossBuckets = new IntList[MAX_DEPTH + 2];
+        /** Transitions indexed by moving slot, captured slot + 1 (0 for none) and promotion index + 1 (0 for none) */
+        final Transition[][][] transitions;
+
+        Job(Material material) throws IOException {
+            this.material = material;
+            this.n = material.pieceCount();
+            this.size = (int) material.size();
+            this.blackKing = material.blackKingSlot();
+            this.transitions = new Transition[n][n + 1][PROMOTIONS.length + 1];
+            for (int i = 0; i < n; i++) {
+                int promotions = PieceCode.type(material.code(i)) == PieceCode.PAWN ? PROMOTIONS.length : 0;
+                for (int j = -1; j < n; j++) {
+                    if (j >= 0 && (color(j) == color(i) || PieceCode.type(material.code(j)) == PieceCode.KING)) continue;
+                    for (int p = 0; p <= promotions; p++) {
+                        if (j < 0 && p == 0) continue; //a quiet move stays in this table
+                        transitions[i][j + 1][p] = transition(i, j, p == 0 ? 0 : PROMOTIONS[p - 1]);
+                    }
+                }
+            }
+            this.value = new byte[size];
+            this.remaining = new byte[size];
+            this.extLoss = new byte[size];
+            for (int b = 0; b < winBuckets.length; b++) {
+                winBuckets[b] = new IntList();
+                lossBuckets[b] = new IntList();
+            }
+        }
+
+        private Transition transition(int mover, int captured, int promotion) throws IOException {
+            int[] codes = new int[n - (captured >= 0 ? 1 : 0)];
+            int[] slots = new int[codes.length];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (i == captured) continue;
+                codes[k] = i == mover && promotion != 0 ? promotion | (material.code(i) & PieceCode.BLACK) : material.code(i);
+                slots[k++] = i;
+            }
+            Material target = Material.fromCodes(codes);
+            boolean flip = !target.isCanonical();
+            Material canonical = target.canonical();
+            if (canonical.pieceCount() == 2) return new Transition(canonical, null, false, new int[0]);
+            generate(canonical);
+            int[] sourceSlots = new int[codes.length];
+            boolean[] used = new boolean[codes.length];
+            for (int slot = 0; slot < codes.length; slot++) {
+                int wanted = flip ? canonical.code(slot) ^ PieceCode.BLACK : canonical.code(slot);
+                for (int s = 0; s < codes.length; s++) {
+                    if (!used[s] && codes[s] == wanted) {
+                        used[s] = true;
+                        sourceSlots[slot] = slots[s];
+                        break;
+                    }
+                }
+            }
+            return new Transition(canonical, tablebase.table(canonical), flip, sourceSlots);
+        } //generates the smaller table first if it does not exist yet
+
+        byte[] run() {
+            int chunks = (size + CHUNK - 1) / CHUNK;
+            List<IntList> mates = IntStream.range(0, chunks).parallel().mapToObj(this::forwardPass).toList();
+            IntList frontier = new IntList();
+            mates.forEach(frontier::addAll);
+
+            for (int depth = 1; ; depth++) {
+                if (frontier.size == 0 && !bucketsAfter(depth - 1)) break;
+                if (depth > MAX_DEPTH) throw new IllegalStateException("Distance to mate exceeds " + MAX_DEPTH + " plies in " + material);
+                IntList next = new IntList();
+                IntList wins = winBuckets[depth];
+                for (int i = 0; i < wins.size; i++) {
+                    if (BYTES.compareAndSet(value, wins.items[i], (byte) 0, (byte) depth)) next.add(wins.items[i]);
+                }
+                IntList losses = lossBuckets[depth];
+                for (int i = 0; i < losses.size; i++) {
+                    if (BYTES.compareAndSet(value, losses.items[i], (byte) 0, (byte) -(depth + 1))) next.add(losses.items[i]);
+                }
+                IntList current = frontier;
+                int level = depth;
+                int parts = (current.size + CHUNK - 1) / CHUNK;
+                IntStream.range(0, parts).parallel()
+                        .mapToObj(part -> backwardPass(current, part * CHUNK, Math.min(current.size, (part + 1) * CHUNK), level))
+                        .toList().forEach(next::addAll);
+                frontier = next;
+            }
+            return value;
+        }
+
+        private boolean bucketsAfter(int depth) {
+            for (int d = depth + 1; d < winBuckets.length; d++) {
+                if (winBuckets[d].size > 0 || lossBuckets[d].size > 0) return true;
+            }
+            return false;
+        }
+
+        /** Phase one for the indices of one chunk, returns the checkmated positions */
+        private IntList forwardPass(int chunk) {
+            IntList mates = new IntList();
+            IntList[] wins = new IntList[MAX_DEPTH + 2];
+            IntList[] losses = new IntList[MAX_DEPTH + 2];
+            int[] squares = new int[n];
+            int end = Math.min(size, (chunk + 1) * CHUNK);
+            for (int index = chunk * CHUNK; index < end; index++) {
+                int side = material.decode(index, squares);
+                long occupied = 0;
+                for (int i = 0; i < n; i++) occupied |= 1L << squares[i];
+                if (Long.bitCount(occupied) != n || pawnOnBackRank(squares)) {
+                    value[index] = TablebaseFile.ILLEGAL;
+                    continue;
+                }
+                int ownKing = squares[side == EngineBoard.WHITE ? 0 : blackKing];
+                int enemyKing = squares[side == EngineBoard.WHITE ? blackKing : 0];
+                if (attacked(enemyKing, side, squares, -1, occupied)) {
+                    value[index] = TablebaseFile.ILLEGAL; //the side that just moved cannot be in check
+                    continue;
+                }
+
+                int legal = 0;
+                int inTable = 0;
+                int extWin = Integer.MAX_VALUE;
+                int extLossMax = 0;
+                boolean extDraw = false;
+                for (int i = 0; i < n; i++) {
+                    if (color(i) != side) continue;
+                    int from = squares[i];
+                    boolean pawn = PieceCode.type(material.code(i)) == PieceCode.PAWN;
+                    for (long targets = targets(i, squares, occupied, side); targets != 0; targets &= targets - 1) {
+                        int to = Long.numberOfTrailingZeros(targets);
+                        int captured = slotAt(to, squares);
+                        squares[i] = to;
+                        long after = (occupied & ~(1L << from)) | (1L << to);
+                        boolean safe = !attacked(i == 0 || i == blackKing ? to : ownKing, side ^ 1, squares, captured, after);
+                        boolean promotion = pawn && (to >>> 3) == (side == EngineBoard.WHITE ? 7 : 0);
+                        if (safe) {
+                            legal++;
+                            if (captured < 0 && !promotion) {
+                                inTable++;
+                            } else {
+                                for (int p = promotion ? 1 : 0; p <= (promotion ? PROMOTIONS.length : 0); p++) {
+                                    int reply = transitions[i][captured + 1][p].value(squares, side ^ 1);
+                                    if (reply == TablebaseFile.ILLEGAL) continue;
+                                    if (reply < 0) extWin = Math.min(extWin, -reply); //the opponent is lost in -reply - 1 plies
+                                    else if (reply > 0) extLossMax = Math.max(extLossMax, reply + 1);
+                                    else extDraw = true;
+                                }
+                            }
+                        }
+                        squares[i] = from;
+                    }
+                }
+
+                if (legal == 0) {
+                    if (attacked(ownKing, side ^ 1, squares, -1, occupied)) {
+                        value[index] = -1; //checkmated, lost in 0 plies
+                        mates.add(index);
+                    }
+                    continue; //stalemates stay drawn
+                }
+                boolean escape = extDraw || extWin != Integer.MAX_VALUE;
+                remaining[index] = (byte) (inTable + (escape ? 1 : 0)); //an extra count keeps positions with a draw or win outside from being lost
+                extLoss[index] = (byte) extLossMax;
+                if (extWin != Integer.MAX_VALUE) {
+                    bucket(wins, extWin).add(index);
+                } else if (inTable == 0 && !extDraw) {
+                    bucket(losses, extLossMax).add(index);
+                }
+            }
+            synchronized (this) {
+                for (int d = 0; d < wins.length; d++) {
+                    if (wins[d] != null) winBuckets[d].addAll(wins[d]);
+                    if (losses[d] != null) lossBuckets[d].addAll(losses[d]);
+                }
+            }
+            return mates;
+        }
+
+        /** Phase two for part of a frontier resolved at depth - 1, returns the positions resolved at depth */
+        private IntList backwardPass(IntList frontier, int start, int end, int depth) {
+            IntList resolved = new IntList();
+            int[] squares = new int[n];
+            for (int f = start; f < end; f++) {
+                int current = frontier.items[f];
+                boolean lost = value[current] < 0;
+                int mover = material.decode(current, squares) ^ 1;
+                long occupied = 0;
+                for (int i = 0; i < n; i++) occupied |= 1L << squares[i];
+                for (int i = 0; i < n; i++) {
+                    if (color(i) != mover) continue;
+                    int to = squares[i];
+                    for (long origins = origins(i, to, occupied, mover); origins != 0; origins &= origins - 1) {
+                        squares[i] = Long.numberOfTrailingZeros(origins);
+                        int previous = (int) material.index(squares, mover);
+                        squares[i] = to;
+                        if (value[previous] != 0) continue; //illegal or already resolved
+                        if (lost) {
+                            if (BYTES.compareAndSet(value, previous, (byte) 0, (byte) depth)) resolved.add(previous);
+                            continue;
+                        }
+                        int left = (byte) BYTES.getAndAdd(remaining, previous, (byte) -1) & 0xFF;
+                        if (left != 1) continue;
+                        int lossDepth = Math.max(depth, extLoss[previous]);
+                        if (lossDepth > depth) {
+                            synchronized (this) {
+                                lossBuckets[lossDepth].add(previous);
+                            }
+                        } else if (BYTES.compareAndSet(value, previous, (byte) 0, (byte) -(depth + 1))) {
+                            resolved.add(previous);
+                        }
+                    }
+                }
+            }
+            return resolved;
+        } //every move into a won position is one escape less, the last one makes the position lost
+
+        private IntList bucket(IntList[] buckets, int depth) {
+            if (depth > MAX_DEPTH) throw new IllegalStateException("Distance to mate exceeds " + MAX_DEPTH + " plies in " + material);
+            if (buckets[depth] == null) buckets[depth] = new IntList();
+            return buckets[depth];
+        }
+
+        private int color(int slot) {
+            return material.code(slot) >>> 3;
+        }
+
+        private boolean pawnOnBackRank(int[] squares) {
+            for (int i = 0; i < n; i++) {
+                int row = squares[i] >>> 3;
+                if (PieceCode.type(material.code(i)) == PieceCode.PAWN && (row == 0 || row == 7)) return true;
+            }
+            return false;
+        }
+
+        private int slotAt(int square, int[] squares) {
+            for (int i = 0; i < n; i++) {
+                if (squares[i] == square) return i;
+            }
+            return -1;
+        }
+
+        private boolean attacked(int target, int bySide, int[] squares, int skip, long occupied) {
+            for (int i = 0; i < n; i++) {
+                if (i == skip || color(i) != bySide) continue;
+                if ((attacks(material.code(i), squares[i], occupied) & (1L << target)) != 0) return true;
+            }
+            return false;
+        }
+
+        private long targets(int slot, int[] squares, long occupied, int side) {
+            int code = material.code(slot);
+            int from = squares[slot];
+            long own = 0;
+            for (int i = 0; i < n; i++) {
+                if (color(i) == side) own |= 1L << squares[i];
+            }
+            if (PieceCode.type(code) != PieceCode.PAWN) return attacks(code, from, occupied) & ~own;
+            long enemy = occupied & ~own;
+            long moves = Attacks.pawn(side, from) & enemy;
+            int forward = side == EngineBoard.WHITE ? 8 : -8;
+            int one = from + forward;
+            if ((occupied & (1L << one)) == 0) {
+                moves |= 1L << one;
+                int startRow = side == EngineBoard.WHITE ? 1 : 6;
+                if ((from >>> 3) == startRow && (occupied & (1L << (one + forward))) == 0) moves |= 1L << (one + forward);
+            }
+            return moves;
+        }
+
+        private long origins(int slot, int to, long occupied, int side) {
+            int code = material.code(slot);
+            if (PieceCode.type(code) != PieceCode.PAWN) return attacks(code, to, occupied) & ~occupied;
+            int forward = side == EngineBoard.WHITE ? 8 : -8;
+            int one = to - forward;
+            int row = one >>> 3;
+            if (row < 1 || row > 6 || (occupied & (1L << one)) != 0) return 0;
+            long origins = 1L << one;
+            int pushRow = side == EngineBoard.WHITE ? 3 : 4;
+            if ((to >>> 3) == pushRow && (occupied & (1L << (one - forward))) == 0) origins |= 1L << (one - forward);
+            return origins;
+        } //squares a piece could have come from without capturing, pieces move back the way they came
+
+        private long attacks(int code, int square, long occupied) {
+            return switch (PieceCode.type(code)) {
+                case PieceCode.PAWN -> Attacks.pawn(code >>> 3, square);
+                case PieceCode.KNIGHT -> Attacks.knight(square);
+                case PieceCode.BISHOP -> Attacks.bishop(square, occupied);
+                case PieceCode.ROOK -> Attacks.rook(square, occupied);
+                case PieceCode.QUEEN -> Attacks.queen(square, occupied);
+                default -> Attacks.king(square);
+            };
+        }
+    }
+
+    /**
+     * Command-line entry point: generates the listed tables into a directory.
+     *
+     * @param args the directory followed by one or more material signatures
+     * @throws IOException if writing a table fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TablebaseGenerator directory KQK [KRK KPK KBNK ...]");
+            return;
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(Path.of(args[0]));
+        List<String> failed = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            long start = System.nanoTime();
+            try {
+                Path file = generator.generate(args[i]);
+                System.out.println(file + " ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException e) {
+                System.out.println("Skipping " + args[i] + ": " + e.getMessage());
+                failed.add(args[i]);
+            }
+        }
+        if (!failed.isEmpty()) System.exit(1);
+    }
+}
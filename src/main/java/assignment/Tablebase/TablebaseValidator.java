@@ -0,0 +1,158 @@
+package assignment.Tablebase;
+
+import assignment.Engine.EngineBoard;
+import assignment.Engine.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Checks a generated table against the move generator.
+ * Random legal positions of the table are set up on an {@link EngineBoard} and checked two ways:
+ * <ul>
+ *     <li>Every position must agree with its best move one ply later, probed through {@link Tablebase}
+ *     (so captures and promotions into smaller tables are checked too).</li>
+ *     <li>Short mates are confirmed by an independent brute-force search that knows nothing about tables.</li>
+ * </ul>
+ * <p>
+ * Usage: {@code java assignment.Tablebase.TablebaseValidator directory KRK [samples] [seed]}
+ */
+public final class TablebaseValidator {
+    /** Longest distance in plies confirmed by brute force, deeper ones only get the one-ply check */
+    private static final int SEARCH_PLIES = 3;
+
+    private final Tablebase tablebase;
+
+    /**
+     * Creates a validator for the tables in a directory.
+     *
+     * @param tablebase the tables to check
+     */
+    public TablebaseValidator(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Checks random positions of one table.
+     *
+     * @param material the material of the table
+     * @param samples the number of positions to draw (illegal ones are skipped)
+     * @param seed the random seed
+     * @return the number of positions that failed a check
+     */
+    public int validate(Material material, int samples, long seed) {
+        Material canonical = material.canonical();
+        TablebaseFile table = tablebase.table(canonical);
+        if (table == null) throw new IllegalArgumentException("No table for " + canonical);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] squares = new int[canonical.pieceCount()];
+        int failures = 0;
+        int checked = 0;
+        for (int i = 0; i < samples; i++) {
+            long index = random.nextLong(canonical.size());
+            if (table.value(index) == TablebaseFile.ILLEGAL) continue;
+            int side = canonical.decode(index, squares);
+            EngineBoard board = new EngineBoard();
+            board.clear();
+            for (int slot = 0; slot < squares.length; slot++) {
+                board.setPiece(squares[slot], canonical.code(slot));
+            }
+            board.setSideToMove(side);
+            checked++;
+            String problem = check(board);
+            if (problem != null) {
+                failures++;
+                System.out.println(board.toFen() + ": " + problem);
+            }
+        }
+        System.out.println(canonical + ": " + checked + " positions checked, " + failures + " failures");
+        return failures;
+    }
+
+    private String check(EngineBoard board) {
+        Tablebase.Result stored = tablebase.probe(board);
+        Tablebase.Result expected = fromChildren(board);
+        if (expected == null) return "a move leads to a position without a table";
+        if (!expected.equals(stored)) return "stored " + stored + ", moves give " + expected;
+        if (stored.wdl() == Tablebase.WIN && stored.dtm() <= SEARCH_PLIES) {
+            if (!mates(board, stored.dtm()) || mates(board, stored.dtm() - 2)) return "search disagrees with " + stored;
+        } else if (stored.wdl() == Tablebase.LOSS && stored.dtm() <= SEARCH_PLIES) {
+            if (!isLost(board, stored.dtm()) || isLost(board, stored.dtm() - 2)) return "search disagrees with " + stored;
+        }
+        return null;
+    }
+
+    /** Derives the result of a position from the probed results after each of its moves */
+    private Tablebase.Result fromChildren(EngineBoard board) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        if (count == 0) return board.inCheck() ? new Tablebase.Result(Tablebase.LOSS, 0) : new Tablebase.Result(Tablebase.DRAW, 0);
+        int fastestWin = Integer.MAX_VALUE;
+        int slowestLoss = -1;
+        boolean draw = false;
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            Tablebase.Result reply = tablebase.probe(board);
+            board.unmake();
+            if (reply == null) return null;
+            switch (reply.wdl()) {
+                case Tablebase.LOSS -> fastestWin = Math.min(fastestWin, reply.dtm() + 1);
+                case Tablebase.WIN -> slowestLoss = Math.max(slowestLoss, reply.dtm() + 1);
+                default -> draw = true;
+            }
+        }
+        if (fastestWin != Integer.MAX_VALUE) return new Tablebase.Result(Tablebase.WIN, fastestWin);
+        if (draw) return new Tablebase.Result(Tablebase.DRAW, 0);
+        return new Tablebase.Result(Tablebase.LOSS, slowestLoss);
+    }
+
+    /** Checks if the side to move can force mate within a number of plies */
+    private static boolean mates(EngineBoard board, int plies) {
+        if (plies <= 0) return false;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            boolean mated = isLost(board, plies - 1);
+            board.unmake();
+            if (mated) return true;
+        }
+        return false;
+    }
+
+    /** Checks if the side to move gets mated within a number of plies whatever it plays */
+    private static boolean isLost(EngineBoard board, int plies) {
+        if (plies < 0) return false;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legal(board, moves);
+        if (count == 0) return board.inCheck();
+        for (int i = 0; i < count; i++) {
+            board.make(moves[i]);
+            boolean mated = mates(board, plies - 1);
+            board.unmake();
+            if (!mated) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     *
+     * @param args the directory, the material and optionally the sample count and seed
+     * @throws IOException if a table cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TablebaseValidator directory KRK [samples] [seed]");
+            return;
+        }
+        int samples = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        int failures;
+        try (Tablebase tablebase = new Tablebase(Path.of(args[0]))) {
+            failures = new TablebaseValidator(tablebase).validate(Material.of(args[1]), samples, seed);
+        }
+        if (failures > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,461 @@
+package assignment.Tournament;
+
+import assignment.Analysis.Analyzer;
+import assignment.Engine.EngineBoard;
+import assignment.Engine.Evaluator;
+import assignment.Engine.MoveGenerator;
+import assignment.Engine.NnueEvaluator;
+import assignment.Engine.Notation;
+import assignment.Engine.PieceSquareEvaluator;
+import assignment.Engine.Search;
+import assignment.Engine.TimeControl;
+import assignment.Engine.TimeManager;
+import assignment.Engine.TranspositionTable;
+import assignment.Metrics.Counter;
+import assignment.Metrics.LatencyHistogram;
+import assignment.Metrics.Metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Plays matches between two engine configurations in-process, to measure whether an engine change gains Elo.
+ * <p>
+ * Games run concurrently on a fixed thread pool, each thread keeping one {@link Search} per engine so that no
+ * transposition table is allocated per game. Every opening is played twice with colors reversed, which cancels
+ * out most of the opening's own bias. Games are adjudicated by the rules alone: checkmate, stalemate, threefold
+ * repetition, the fifty-move rule, insufficient material, a lost flag, or a maximum game length (a draw).
+ * <p>
+ * After every game the {@link Sprt} statistics are updated; once the test accepts a hypothesis no new games are
+ * started and the running ones are finished and counted.
+ * <p>
+ * Usage: {@code java assignment.Tournament.SelfPlay -a spec -b spec [-tc 10+0.1] [-games N] [-concurrency N]
+ * [-openings file] [-sprt elo0 elo1] [-alpha A] [-beta B] [-maxplies N] [-pgn file] [-report N]}
+ * <p>
+ * An engine spec is a comma-separated list of {@code key=value}: {@code name}, {@code eval} (one of
+ * {@link #EVALUATORS}), {@code hash} (MB), and optional per-move limits {@code depth} and {@code nodes},
+ * e.g. {@code -a name=new,depth=5 -b name=old,depth=4}. Without a time control every engine needs a per-move limit.
+ */
+public final class SelfPlay {
+    /** Evaluations an engine spec can choose by name */
+    public static final Map<String, Supplier<Evaluator>> EVALUATORS = Map.of("pst", PieceSquareEvaluator::new, "nnue", NnueEvaluator::new);
+    /** Games longer than this many plies are adjudicated as draws */
+    public static final int DEFAULT_MAX_PLIES = 400;
+
+    private static final LatencyHistogram GAME_TIME = Metrics.histogram("selfplay.game");
+    private static final Counter MOVES = Metrics.counter("selfplay.moves");
+
+    /** Short, balanced openings used when no openings file is given */
+    private static final List<String> DEFAULT_OPENINGS = List.of(
+            "rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2",
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+            "rnbqkbnr/pppp1ppp/4p3/8/3PP3/8/PPP2PPP/RNBQKBNR b KQkq - 0 2",
+            "rnbqkbnr/pp1ppppp/2p5/8/3PP3/8/PPP2PPP/RNBQKBNR b KQkq - 0 2",
+            "rnbqkbnr/ppp1pppp/8/3p4/2PP4/8/PP2PPPP/RNBQKBNR b KQkq - 0 2",
+            "rnbqkb1r/pppppp1p/5np1/8/2PP4/8/PP2PPPP/RNBQKBNR w KQkq - 0 3",
+            "rnbqkb1r/pppp1ppp/4pn2/8/2PP4/8/PP2PPPP/RNBQKBNR w KQkq - 0 3",
+            "rnbqkbnr/pppppppp/8/8/2P5/8/PP1PPPPP/RNBQKBNR b KQkq - 0 1",
+            "rnbqkbnr/ppp1pppp/8/3p4/8/5N2/PPPPPPPP/RNBQKB1R w KQkq - 0 2",
+            "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3",
+            "rnbqkb1r/pp2pppp/3p1n2/8/3NP3/8/PPP2PPP/RNBQKB1R w KQkq - 1 5",
+            "rnbqkbnr/pppp2pp/8/4pp2/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 0 3");
+
+    /**
+     * An engine configuration.
+     *
+     * @param name the name used in reports and PGN
+     * @param evaluator creates the evaluation, once per thread
+     * @param hashBytes the transposition table size
+     * @param depth the most plies to search per move, 0 for no limit
+     * @param nodes the most nodes to search per move, 0 for no limit
+     */
+    public record Engine(String name, Supplier<Evaluator> evaluator, long hashBytes, int depth, long nodes) {
+        /**
+         * Parses an engine spec such as {@code name=new,eval=pst,hash=16,depth=6}.
+         * Missing keys get defaults: the given name, the piece-square evaluation, 16 MB, and no per-move limit.
+         *
+         * @param spec the spec
+         * @param defaultName the name if the spec has none
+         * @return the engine
+         * @throws IllegalArgumentException if a key or value is not understood
+         */
+        public static Engine parse(String spec, String defaultName) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String part : spec.split(",")) {
+                if (part.isBlank()) continue;
+                int equals = part.indexOf('=');
+                if (equals < 0) throw new IllegalArgumentException("Expected key=value in engine spec: " + part);
+                values.put(part.substring(0, equals).trim(), part.substring(equals + 1).trim());
+            }
+            Supplier<Evaluator> evaluator = EVALUATORS.get(values.getOrDefault("eval", "pst"));
+            if (evaluator == null) throw new IllegalArgumentException("Unknown evaluation " + values.get("eval") + ", expected one of " + EVALUATORS.keySet());
+            for (String key : values.keySet()) {
+                if (!List.of("name", "eval", "hash", "depth", "nodes").contains(key)) throw new IllegalArgumentException("Unknown engine option " + key);
+            }
+            try {
+                return new Engine(values.getOrDefault("name", defaultName), evaluator,
+                        Long.parseLong(values.getOrDefault("hash", "16")) << 20,
+                        Integer.parseInt(values.getOrDefault("depth", "0")), Long.parseLong(values.getOrDefault("nodes", "0")));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in engine spec: " + spec);
+            }
+        }
+    }
+
+    /**
+     * A finished game.
+     *
+     * @param round the game's number, starting at 1
+     * @param opening the FEN the game started from
+     * @param white the engine that played white
+     * @param black the engine that played black
+     * @param whiteScore 1 if white won, 0.5 for a draw, 0 if black won
+     * @param reason how the game ended, e.g. "checkmate" or "threefold repetition"
+     * @param moves the moves in standard algebraic notation
+     */
+    public record Game(int round, String opening, Engine white, Engine black, double whiteScore, String reason, List<String> moves) {
+        /**
+         * Returns the PGN result token.
+         *
+         * @return "1-0", "0-1" or "1/2-1/2"
+         */
+        public String result() {
+            return whiteScore == 1 ? "1-0" : whiteScore == 0 ? "0-1" : "1/2-1/2";
+        }
+    }
+
+    /**
+     * Receives the games of a match as they finish.
+     */
+    @FunctionalInterface
+    public interface GameListener {
+        /**
+         * Called after every game.
+         *
+         * @param game the game
+         * @param sprt the statistics including the game
+         */
+        void finished(Game game, Sprt sprt);
+    }
+
+    private final Engine a;
+    private final Engine b;
+    private final TimeControl timeControl;
+    private final List<String> openings;
+    private final int maxPlies;
+    private final ThreadLocal<Search[]> searches;
+
+    /**
+     * Creates a match.
+     *
+     * @param a the engine under test
+     * @param b the reference engine
+     * @param timeControl the clock, or null to play with the engines' per-move limits only
+     * @param openings the starting positions as FEN, each played once with either color
+     * @param maxPlies the game length after which a game is a draw
+     * @throws IllegalArgumentException if there is no opening or an engine could search forever
+     */
+    public SelfPlay(Engine a, Engine b, TimeControl timeControl, List<String> openings, int maxPlies) {
+        if (openings.isEmpty()) throw new IllegalArgumentException("No openings");
+        for (Engine engine : List.of(a, b)) {
+            if (timeControl == null && engine.depth() == 0 && engine.nodes() == 0) {
+                throw new IllegalArgumentException("Engine " + engine.name() + " needs a depth or node limit without a time control");
+            }
+        }
+        this.a = a;
+        this.b = b;
+        this.timeControl = timeControl;
+        this.openings = List.copyOf(openings);
+        this.maxPlies = maxPlies;
+        this.searches = ThreadLocal.withInitial(() -> new Search[]{
+                new Search(a.evaluator().get(), new TranspositionTable(a.hashBytes())),
+                new Search(b.evaluator().get(), new TranspositionTable(b.hashBytes()))});
+    }
+
+    /**
+     * Plays games until the game count is reached or the SPRT concludes.
+     *
+     * @param games the most games to play; rounded up to an even number so every opening is played with both colors
+     * @param concurrency the number of games played at once
+     * @param sprt the statistics to start from
+     * @param listener receives every finished game and the statistics including it, on the calling thread
+     * @return the final statistics
+     * @throws InterruptedException if interrupted while waiting for games
+     */
+    public Sprt run(int games, int concurrency, Sprt sprt, GameListener listener) throws InterruptedException {
+        int total = games + (games & 1);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, task -> {
+            Thread thread = new Thread(task, "selfplay-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Game> finished = new ExecutorCompletionService<>(pool);
+        try {
+            int started = 0;
+            int running = 0;
+            while (started < total && running < concurrency) {
+                int round = ++started;
+                finished.submit(() -> play(round));
+                running++;
+            }
+            while (running > 0) {
+                Game game = finished.take().get();
+                running--;
+                sprt = sprt.plus(game.white() == a ? game.whiteScore() : 1 - game.whiteScore());
+                listener.finished(game, sprt);
+                if (started < total && sprt.status() == Sprt.Status.CONTINUE) {
+                    int round = ++started;
+                    finished.submit(() -> play(round));
+                    running++;
+                }
+            }
+            return sprt;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    } //at most concurrency games are in flight, so a concluded test wastes at most that many games
+
+    /**
+     * Plays one game. Odd rounds give engine A white, and each pair of rounds shares an opening.
+     *
+     * @param round the game's number, starting at 1
+     * @return the finished game
+     */
+    public Game play(int round) {
+        long start = Metrics.start();
+        String opening = openings.get((round - 1) / 2 % openings.size());
+        boolean aIsWhite = (round & 1) == 1;
+        Engine white = aIsWhite ? a : b;
+        Engine black = aIsWhite ? b : a;
+        Search[] engines = searches.get();
+        Search whiteSearch = engines[aIsWhite ? 0 : 1];
+        Search blackSearch = engines[aIsWhite ? 1 : 0];
+        whiteSearch.clear();
+        blackSearch.clear();
+
+        EngineBoard board = EngineBoard.fromFen(opening);
+        long[] clock = timeControl == null ? null : new long[]{timeControl.baseMillis(), timeControl.baseMillis()};
+        List<String> moves = new ArrayList<>();
+        double whiteScore;
+        String reason;
+        while (true) {
+            String ending = ending(board, moves.size());
+            if (ending != null) {
+                boolean mated = ending.equals("checkmate");
+                whiteScore = !mated ? 0.5 : board.sideToMove() == EngineBoard.WHITE ? 0 : 1;
+                reason = ending;
+                break;
+            }
+            int side = board.sideToMove();
+            Engine engine = side == EngineBoard.WHITE ? white : black;
+            Search search = side == EngineBoard.WHITE ? whiteSearch : blackSearch;
+            Search.Limits limits = new Search.Limits(engine.depth(), 0, engine.nodes());
+            long moveStart = System.nanoTime();
+            Search.Result result;
+            if (clock == null) {
+                result = search.search(board, limits);
+            } else {
+                TimeManager time = TimeManager.clock(clock[side], timeControl.incrementMillis());
+                time.start();
+                result = search.search(board, limits, 1, time);
+            }
+            if (clock != null) {
+                clock[side] -= (System.nanoTime() - moveStart) / 1_000_000;
+                if (clock[side] < 0) {
+                    whiteScore = side == EngineBoard.WHITE ? 0 : 1;
+                    reason = (side == EngineBoard.WHITE ? "white" : "black") + " lost on time";
+                    break;
+                }
+                clock[side] += timeControl.incrementMillis();
+            }
+            moves.add(Notation.toSan(board, result.bestMove()));
+            board.make(result.bestMove());
+            MOVES.increment();
+        }
+        GAME_TIME.stop(start);
+        return new Game(round, opening, white, black, whiteScore, reason, moves);
+    }
+
+    private String ending(EngineBoard board, int plies) {
+        if (!MoveGenerator.hasLegalMove(board)) return board.inCheck() ? "checkmate" : "stalemate";
+        if (board.halfmoveClock() >= 100) return "fifty-move rule";
+        if (isThreefold(board)) return "threefold repetition";
+        if (Analyzer.isInsufficientMaterial(board)) return "insufficient material";
+        if (plies >= maxPlies) return "maximum game length";
+        return null;
+    }
+
+    private static boolean isThreefold(EngineBoard board) {
+        int seen = 1;
+        long hash = board.hash();
+        int oldest = Math.max(0, board.ply() - board.halfmoveClock());
+        for (int i = board.ply() - 4; i >= oldest; i -= 2) {
+            if (board.hashAt(i) == hash && ++seen == 3) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes a game in PGN.
+     *
+     * @param out the output
+     * @param game the game
+     */
+    public static void writePgn(PrintWriter out, Game game) {
+        out.println("[Event \"Self-play\"]");
+        out.println("[Round \"" + game.round() + "\"]");
+        out.println("[White \"" + game.white().name() + "\"]");
+        out.println("[Black \"" + game.black().name() + "\"]");
+        out.println("[Result \"" + game.result() + "\"]");
+        if (!game.opening().equals(EngineBoard.START_FEN)) {
+            out.println("[SetUp \"1\"]");
+            out.println("[FEN \"" + game.opening() + "\"]");
+        }
+        out.println("[Termination \"" + game.reason() + "\"]");
+        out.println();
+        EngineBoard board = EngineBoard.fromFen(game.opening());
+        StringBuilder line = new StringBuilder();
+        int number = board.fullmoveNumber();
+        boolean white = board.sideToMove() == EngineBoard.WHITE;
+        Consumer<String> token = text -> {
+            if (line.length() + text.length() + 1 > 80) {
+                out.println(line);
+                line.setLength(0);
+            }
+            if (!line.isEmpty()) line.append(' ');
+            line.append(text);
+        };
+        for (int i = 0; i < game.moves().size(); i++) {
+            if (white) token.accept(number + ".");
+            else if (i == 0) token.accept(number + "...");
+            token.accept(game.moves().get(i));
+            if (!white) number++;
+            white = !white;
+        }
+        token.accept(game.result());
+        out.println(line);
+        out.println();
+    }
+
+    /**
+     * Reads openings: one FEN (or EPD) per line; empty lines and lines starting with {@code #} are skipped.
+     *
+     * @param file the openings file
+     * @return the openings, in file order
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line is not a valid position
+     */
+    public static List<String> readOpenings(Path file) throws IOException {
+        List<String> openings = new ArrayList<>();
+        int number = 0;
+        for (String line : Files.readAllLines(file)) {
+            number++;
+            if (line.isBlank() || line.startsWith("#")) continue;
+            try {
+                openings.add(EngineBoard.fromFen(line).toFen());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + number + ": " + e.getMessage());
+            }
+        }
+        return openings;
+    } //normalized through the board, so EPD lines without move counters become full FENs
+
+    /**
+     * Command-line entry point, see the class description for the arguments.
+     * Exits with status 0 if the SPRT passed or the game count was reached, and 1 if it failed.
+     *
+     * @param args the options
+     * @throws IOException if the openings cannot be read or the PGN cannot be written
+     * @throws InterruptedException if interrupted while waiting for games
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String specA = null;
+        String specB = null;
+        TimeControl timeControl = null;
+        int games = 1000;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        Path openingsFile = null;
+        Path pgnFile = null;
+        double elo0 = 0;
+        double elo1 = 5;
+        double alpha = 0.05;
+        double beta = 0.05;
+        int maxPlies = DEFAULT_MAX_PLIES;
+        int report = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-a" -> specA = args[++i];
+                case "-b" -> specB = args[++i];
+                case "-tc" -> timeControl = TimeControl.parse(args[++i]);
+                case "-games" -> games = Integer.parseInt(args[++i]);
+                case "-concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "-openings" -> openingsFile = Path.of(args[++i]);
+                case "-pgn" -> pgnFile = Path.of(args[++i]);
+                case "-sprt" -> {
+                    elo0 = Double.parseDouble(args[++i]);
+                    elo1 = Double.parseDouble(args[++i]);
+                }
+                case "-alpha" -> alpha = Double.parseDouble(args[++i]);
+                case "-beta" -> beta = Double.parseDouble(args[++i]);
+                case "-maxplies" -> maxPlies = Integer.parseInt(args[++i]);
+                case "-report" -> report = Integer.parseInt(args[++i]);
+                default -> {
+                    System.out.println("Unknown option " + args[i]);
+                    specA = null;
+                    i = args.length;
+                }
+            }
+        }
+        if (specA == null || specB == null) {
+            System.out.println("Usage: SelfPlay -a spec -b spec [-tc 10+0.1] [-games N] [-concurrency N] [-openings file] "
+                    + "[-sprt elo0 elo1] [-alpha A] [-beta B] [-maxplies N] [-pgn file] [-report N]");
+            System.out.println("Engine spec: name=...,eval=" + String.join("|", EVALUATORS.keySet()) + ",hash=MB,depth=N,nodes=N");
+            return;
+        }
+        Engine a = Engine.parse(specA, "A");
+        Engine b = Engine.parse(specB, "B");
+        if (timeControl == null && (a.depth() == 0 && a.nodes() == 0 || b.depth() == 0 && b.nodes() == 0)) {
+            timeControl = TimeControl.parse("10+0.1");
+        }
+        List<String> openings = openingsFile == null ? DEFAULT_OPENINGS : readOpenings(openingsFile);
+        SelfPlay match = new SelfPlay(a, b, timeControl, openings, maxPlies);
+        System.out.printf("%s vs %s, %s, %d openings, up to %d games, %d at a time%n", a.name(), b.name(),
+                timeControl == null ? "no clock" : timeControl,
+                openings.size(), games, concurrency);
+
+        long start = System.nanoTime();
+        int every = Math.max(1, report);
+        Sprt result;
+        try (PrintWriter pgn = pgnFile == null ? null : new PrintWriter(Files.newBufferedWriter(pgnFile))) {
+            result = match.run(games, concurrency, new Sprt(elo0, elo1, alpha, beta), (game, sprt) -> {
+                if (pgn != null) writePgn(pgn, game);
+                if (sprt.games() % every == 0) System.out.println(sprt);
+            });
+        }
+        System.out.println(result);
+        System.out.printf("Finished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        switch (result.status()) {
+            case H1 -> System.out.println("SPRT passed: H1 accepted, " + a.name() + " is stronger");
+            case H0 -> System.out.println("SPRT failed: H0 accepted, " + a.name() + " is not stronger");
+            case CONTINUE -> System.out.println("SPRT inconclusive after " + result.games() + " games");
+        }
+        if (result.status() == Sprt.Status.H0) System.exit(1);
+    }
+}
@@ -0,0 +1,206 @@
+package assignment.Tournament;
+
+/**
+ * Match statistics of engine A against engine B: the Elo difference with its error margin, and a sequential
+ * probability ratio test (SPRT) that decides between "A is no better than elo0" (H0) and "A is at least elo1
+ * better" (H1) as soon as the games played allow it.
+ * <p>
+ * The log-likelihood ratio uses the usual normal approximation of the trinomial (win/draw/loss) model, as fishtest
+ * and cutechess do: with score s, per-game variance v and the expected scores s0 and s1 of the two hypotheses,
+ * {@code LLR = n (s1 - s0) (2s - s0 - s1) / (2v)}. The test accepts H1 when the LLR reaches
+ * {@code ln((1 - beta) / alpha)} and H0 when it falls to {@code ln(beta / (1 - alpha))}.
+ * Instances are immutable; {@link #plus(double)} returns the statistics with one more game.
+ */
+public final class Sprt {
+    /** What the test concluded so far */
+    public enum Status {
+        /** Not enough games yet */
+        CONTINUE,
+        /** H1 accepted: the change is an improvement (the test passed) */
+        H1,
+        /** H0 accepted: the change is not an improvement (the test failed) */
+        H0
+    }
+
+    private final double elo0;
+    private final double elo1;
+    private final double alpha;
+    private final double beta;
+    private final int wins;
+    private final int draws;
+    private final int losses;
+
+    /**
+     * Creates the statistics of an empty match.
+     *
+     * @param elo0 the Elo difference of H0
+     * @param elo1 the Elo difference of H1, greater than elo0
+     * @param alpha the false positive rate (accepting H1 when H0 holds)
+     * @param beta the false negative rate (accepting H0 when H1 holds)
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        this(elo0, elo1, alpha, beta, 0, 0, 0);
+    }
+
+    private Sprt(double elo0, double elo1, double alpha, double beta, int wins, int draws, int losses) {
+        if (elo1 <= elo0) throw new IllegalArgumentException("elo1 must be greater than elo0");
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.wins = wins;
+        this.draws = draws;
+        this.losses = losses;
+    }
+
+    /**
+     * Adds a game.
+     *
+     * @param score engine A's score: 1 for a win, 0.5 for a draw, 0 for a loss
+     * @return the statistics including the game
+     */
+    public Sprt plus(double score) {
+        return new Sprt(elo0, elo1, alpha, beta, wins + (score == 1 ? 1 : 0), draws + (score == 0.5 ? 1 : 0), losses + (score == 0 ? 1 : 0));
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return wins + draws + losses
+     */
+    public int games() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * Returns engine A's wins.
+     *
+     * @return the number of wins
+     */
+    public int wins() {
+        return wins;
+    }
+
+    /**
+     * Returns the draws.
+     *
+     * @return the number of draws
+     */
+    public int draws() {
+        return draws;
+    }
+
+    /**
+     * Returns engine A's losses.
+     *
+     * @return the number of losses
+     */
+    public int losses() {
+        return losses;
+    }
+
+    /**
+     * Returns engine A's average score.
+     *
+     * @return the score between 0 and 1, or 0.5 before the first game
+     */
+    public double score() {
+        return games() == 0 ? 0.5 : (wins + 0.5 * draws) / games();
+    }
+
+    /**
+     * Estimates the Elo difference of A over B from the score.
+     *
+     * @return the Elo difference (infinite if one side won every game)
+     */
+    public double elo() {
+        return toElo(score());
+    }
+
+    /**
+     * Returns the half-width of the 95% confidence interval of {@link #elo()}.
+     *
+     * @return the error margin in Elo, or infinity with fewer than two games or a one-sided result
+     */
+    public double eloError() {
+        if (games() < 2) return Double.POSITIVE_INFINITY;
+        double margin = 1.959964 * Math.sqrt(variance() / games());
+        double error = (toElo(score() + margin) - toElo(score() - margin)) / 2;
+        return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+    }
+
+    /**
+     * Returns the log-likelihood ratio of H1 against H0.
+     *
+     * @return the LLR, 0 while the variance is 0 (no games, or only one kind of result)
+     */
+    public double llr() {
+        double variance = variance();
+        if (variance == 0) return 0;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return games() * (s1 - s0) * (2 * score() - s0 - s1) / (2 * variance);
+    }
+
+    /**
+     * Returns the LLR at which H0 is accepted.
+     *
+     * @return ln(beta / (1 - alpha)), negative
+     */
+    public double lowerBound() {
+        return Math.log(beta / (1 - alpha));
+    }
+
+    /**
+     * Returns the LLR at which H1 is accepted.
+     *
+     * @return ln((1 - beta) / alpha), positive
+     */
+    public double upperBound() {
+        return Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Returns the test's decision so far.
+     *
+     * @return H1 if the LLR reached the upper bound, H0 if it reached the lower bound, otherwise CONTINUE
+     */
+    public Status status() {
+        double llr = llr();
+        if (llr >= upperBound()) return Status.H1;
+        if (llr <= lowerBound()) return Status.H0;
+        return Status.CONTINUE;
+    }
+
+    /**
+     * Formats the statistics on one line, e.g. {@code 120 games, +40 =50 -30, Elo +29.0 +/- 45.3, LLR 0.85 (-2.94, 2.94)}.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%d games, +%d =%d -%d, Elo %+.1f +/- %.1f, LLR %.2f (%.2f, %.2f) [%s, %s]",
+                games(), wins, draws, losses, elo() + 0.0, eloError(), llr(), lowerBound(), upperBound(), format(elo0), format(elo1));
+    }
+
+    private double variance() {
+        int n = games();
+        if (n == 0) return 0;
+        double s = score();
+        return (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s) + losses * s * s) / n;
+    } //the variance of a single game's score
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double toElo(double score) {
+        if (score <= 0) return Double.NEGATIVE_INFINITY;
+        if (score >= 1) return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static String format(double elo) {
+        return elo == Math.rint(elo) ? String.valueOf((long) elo) : String.valueOf(elo);
+    }
+}